@@ -83,28 +83,48 @@ public final class Routes implements Function<HttpRequest, CompletionStage<HttpR
      * @param healthCheckPath The path for the health check.
      * @param statusPath The path for the status.
      * @param supplementalRoutes List of supplemental routes in priority order.
+     * @param requestConcurrency The maximum number of requests processed concurrently per connection.
      */
     public Routes(
             final ActorSystem actorSystem,
             final PeriodicMetrics metrics,
             final String healthCheckPath,
             final String statusPath,
-            final ImmutableList<SupplementalRoutes> supplementalRoutes) {
+            final ImmutableList<SupplementalRoutes> supplementalRoutes,
+            final int requestConcurrency) {
         _actorSystem = actorSystem;
         _metrics = metrics;
         _healthCheckPath = healthCheckPath;
         _statusPath = statusPath;
         _supplementalRoutes = supplementalRoutes;
+        _requestConcurrency = requestConcurrency;
     }
 
     /**
      * Creates a {@link Flow} based on executing the routes asynchronously.
+     * Up to the configured request concurrency requests from the connection
+     * are processed at the same time; the responses are emitted in request
+     * order as required for HTTP pipelining. The latency from a request
+     * entering the flow until its response is emitted, which includes
+     * waiting for earlier responses, is recorded per route.
      *
      * @return a new {@link Flow}
      */
     public Flow<HttpRequest, HttpResponse, NotUsed> flow() {
         return Flow.<HttpRequest>create()
-                .mapAsync(1, this)
+                .mapAsync(
+                        _requestConcurrency,
+                        request -> {
+                            final long startNanos = System.nanoTime();
+                            return apply(request).thenApply(response -> new TimedResponse(request, response, startNanos));
+                        })
+                .map(timedResponse -> {
+                    _metrics.recordTimer(
+                            createMetricName(timedResponse._request, LATENCY_METRIC),
+                            System.nanoTime() - timedResponse._startNanos,
+                            Optional.of(Units.NANOSECOND));
+                    return timedResponse._response;
+                })
                 .recover(
                         new PFBuilder<Throwable, HttpResponse>()
                                 .match(Exception.class, e -> HttpResponse.create().withStatus(StatusCodes.INTERNAL_SERVER_ERROR))
@@ -301,6 +321,7 @@ public final class Routes implements Function<HttpRequest, CompletionStage<HttpR
     private final String _statusPath;
     @SuppressFBWarnings("SE_BAD_FIELD")
     private final ImmutableList<SupplementalRoutes> _supplementalRoutes;
+    private final int _requestConcurrency;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Routes.class);
 
@@ -319,6 +340,7 @@ public final class Routes implements Function<HttpRequest, CompletionStage<HttpR
     private static final String REST_SERVICE_METRIC_ROOT = "rest_service/";
     private static final String BODY_SIZE_METRIC = "body_size";
     private static final String REQUEST_METRIC = "request";
+    private static final String LATENCY_METRIC = "latency";
     private static final String STATUS_METRIC = "status";
     private static final ImmutableList<Integer> STATUS_CLASSES = ImmutableList.of(2, 3, 4, 5);
 
@@ -348,4 +370,16 @@ public final class Routes implements Function<HttpRequest, CompletionStage<HttpR
         STATUS_JSON = statusJson;
     }
 
+    private static final class TimedResponse {
+
+        /* package private */ TimedResponse(final HttpRequest request, final HttpResponse response, final long startNanos) {
+            _request = request;
+            _response = response;
+            _startNanos = startNanos;
+        }
+
+        private final HttpRequest _request;
+        private final HttpResponse _response;
+        private final long _startNanos;
+    }
 }
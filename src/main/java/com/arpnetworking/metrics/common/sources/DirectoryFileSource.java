@@ -0,0 +1,433 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.common.sources;
+
+import com.arpnetworking.logback.annotations.LogValue;
+import com.arpnetworking.metrics.common.parsers.Parser;
+import com.arpnetworking.metrics.common.tailer.FilePositionStore;
+import com.arpnetworking.metrics.common.tailer.InitialPosition;
+import com.arpnetworking.metrics.common.tailer.MappedFilePositionStore;
+import com.arpnetworking.metrics.common.tailer.NoPositionStore;
+import com.arpnetworking.metrics.common.tailer.PositionStore;
+import com.arpnetworking.steno.LogValueMapFactory;
+import com.arpnetworking.steno.Logger;
+import com.arpnetworking.steno.LoggerFactory;
+import com.google.common.collect.ImmutableSet;
+import net.sf.oval.constraint.NotEmpty;
+import net.sf.oval.constraint.NotNull;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Produce instances of <code>T</code> from every file in a directory whose
+ * name matches a glob. New files are discovered through a
+ * <code>WatchService</code> as soon as they are created with a periodic
+ * rescan of the directory as a fallback. Each file is tailed by a
+ * <code>FileSource</code> on the shared <code>TailerService</code> and all
+ * files share a single parser and position store. A file is retired once
+ * it no longer exists in the directory and its tailer has finished reading
+ * it.
+ *
+ * Note that rotated copies of a file are tailed as well if their names also
+ * match the glob; the position store prevents their content from being read
+ * twice provided the state file is set.
+ *
+ * @param <T> The data type to parse from the <code>Source</code>.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public final class DirectoryFileSource<T> extends BaseSource {
+
+    @Override
+    public synchronized void start() {
+        if (_executor != null) {
+            return;
+        }
+        _executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "DirectoryFileSource-" + getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            _watchService = Optional.of(_directory.getFileSystem().newWatchService());
+            final Thread watcher = new Thread(() -> dispatch(_watchService.get()), "DirectoryFileSourceWatcher-" + getName());
+            watcher.setDaemon(true);
+            watcher.start();
+        } catch (final IOException e) {
+            LOGGER.warn()
+                    .setMessage("Unable to create watch service; polling only")
+                    .addData("source", this)
+                    .setThrowable(e)
+                    .log();
+        }
+        // Files present at start are tailed from the configured position; any
+        // file discovered later was created since and is tailed from its start
+        _executor.execute(() -> scan(_initialPosition));
+        _executor.scheduleWithFixedDelay(
+                () -> scan(InitialPosition.START),
+                _rescanInterval.toMillis(),
+                _rescanInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (_executor == null) {
+            return;
+        }
+        _executor.shutdown();
+        try {
+            _executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            LOGGER.warn()
+                    .setMessage("Unable to shutdown directory executor")
+                    .addData("source", this)
+                    .setThrowable(e)
+                    .log();
+            Thread.currentThread().interrupt();
+        }
+        if (_watchService.isPresent()) {
+            try {
+                // Closing the watch service releases the watcher thread
+                _watchService.get().close();
+            } catch (final IOException e) {
+                // Ignore close exception.
+            }
+            _watchService = Optional.empty();
+        }
+        _watchKey = Optional.empty();
+        _sources.values().forEach(FileSource::stop);
+        _sources.clear();
+        try {
+            _positionStore.close();
+        } catch (final IOException e) {
+            // Ignore close exception.
+        }
+        _executor = null;
+    }
+
+    /**
+     * Generate a Steno log compatible representation.
+     *
+     * @return Steno log compatible representation.
+     */
+    @LogValue
+    @Override
+    public Object toLogValue() {
+        return LogValueMapFactory.builder(this)
+                .put("super", super.toLogValue())
+                .put("directory", _directory)
+                .put("glob", _glob)
+                .put("files", _sources.size())
+                .build();
+    }
+
+    /* package private */ Set<Path> getFiles() {
+        return ImmutableSet.copyOf(_sources.keySet());
+    }
+
+    private void dispatch(final WatchService watchService) {
+        while (true) {
+            final WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (final InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            for (final WatchEvent<?> event : key.pollEvents()) {
+                if (StandardWatchEventKinds.OVERFLOW.equals(event.kind())) {
+                    // Events were lost so discover any files from the directory
+                    submit(() -> scan(InitialPosition.START));
+                } else {
+                    final Path file = _directory.resolve((Path) event.context());
+                    submit(() -> discover(file, InitialPosition.START));
+                }
+            }
+            if (!key.reset()) {
+                // The directory is gone; the next scan watches it if it returns
+                submit(() -> _watchKey = Optional.empty());
+            }
+        }
+    }
+
+    private void scan(final InitialPosition initialPosition) {
+        if (_watchService.isPresent() && !_watchKey.isPresent()) {
+            try {
+                _watchKey = Optional.of(_directory.register(_watchService.get(), StandardWatchEventKinds.ENTRY_CREATE));
+            } catch (final IOException | ClosedWatchServiceException e) {
+                LOGGER.debug()
+                        .setMessage("Unable to watch directory; polling only")
+                        .addData("source", this)
+                        .setThrowable(e)
+                        .log();
+            }
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(_directory)) {
+            for (final Path file : files) {
+                discover(file, initialPosition);
+            }
+        } catch (final IOException e) {
+            LOGGER.warn()
+                    .setMessage("Unable to scan directory")
+                    .addData("source", this)
+                    .setThrowable(e)
+                    .log();
+        }
+    }
+
+    private void discover(final Path file, final InitialPosition initialPosition) {
+        if (_sources.containsKey(file) || !_matcher.matches(file.getFileName()) || !Files.isRegularFile(file)) {
+            return;
+        }
+        final FileSource<T> source = new FileSource.Builder<T>()
+                .setName(getName() + "/" + file.getFileName())
+                .setSourceFile(file)
+                .setParser(_parser)
+                .setInterval(_interval)
+                .setInitialPosition(initialPosition)
+                .setSharedTailer(true)
+                .setPositionStore(_positionStore)
+                .setFileNotFoundCallback(() -> submit(() -> retire(file)))
+                .build();
+        source.attach((observable, event) -> notify(event));
+        _sources.put(file, source);
+        source.start();
+        LOGGER.info()
+                .setMessage("Discovered file")
+                .addData("source", this)
+                .addData("file", file)
+                .addData("initialPosition", initialPosition)
+                .log();
+    }
+
+    private void retire(final Path file) {
+        // The tailer reports the file as not found only once it has finished
+        // reading the file it had open; the file may have been recreated since
+        if (Files.exists(file)) {
+            return;
+        }
+        final FileSource<T> source = _sources.remove(file);
+        if (source != null) {
+            source.stop();
+            LOGGER.info()
+                    .setMessage("Retired file")
+                    .addData("source", this)
+                    .addData("file", file)
+                    .log();
+        }
+    }
+
+    private void submit(final Runnable runnable) {
+        final ScheduledExecutorService executor = _executor;
+        if (executor != null) {
+            try {
+                executor.execute(runnable);
+            } catch (final RejectedExecutionException e) {
+                // The source is stopping
+            }
+        }
+    }
+
+    private DirectoryFileSource(final Builder<T> builder) {
+        super(builder);
+        _directory = builder._directory;
+        _glob = builder._glob;
+        _matcher = _directory.getFileSystem().getPathMatcher("glob:" + builder._glob);
+        _parser = builder._parser;
+        _interval = builder._interval;
+        _initialPosition = builder._initialPosition;
+        _rescanInterval = builder._rescanInterval;
+        if (builder._stateFile == null) {
+            _positionStore = new NoPositionStore();
+        } else if (builder._mappedStateFile) {
+            _positionStore = new MappedFilePositionStore.Builder().setFile(builder._stateFile).build();
+        } else {
+            _positionStore = new FilePositionStore.Builder().setFile(builder._stateFile).build();
+        }
+    }
+
+    private volatile ScheduledExecutorService _executor;
+    private volatile Optional<WatchService> _watchService = Optional.empty();
+    private Optional<WatchKey> _watchKey = Optional.empty();
+    private final ConcurrentMap<Path, FileSource<T>> _sources = new ConcurrentHashMap<>();
+    private final Path _directory;
+    private final String _glob;
+    private final PathMatcher _matcher;
+    private final Parser<T, byte[]> _parser;
+    private final Duration _interval;
+    private final InitialPosition _initialPosition;
+    private final Duration _rescanInterval;
+    private final PositionStore _positionStore;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectoryFileSource.class);
+
+    /**
+     * Implementation of builder pattern for <code>DirectoryFileSource</code>.
+     *
+     * @param <T> the type parsed from the parser.
+     * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+     */
+    public static final class Builder<T> extends BaseSource.Builder<Builder<T>, DirectoryFileSource<T>> {
+
+        /**
+         * Public constructor.
+         */
+        public Builder() {
+            super(DirectoryFileSource::new);
+        }
+
+        /**
+         * Sets the directory containing the files. Cannot be null. The
+         * directory need not exist when the source is started.
+         *
+         * @param value The directory path.
+         * @return This instance of <code>Builder</code>.
+         */
+        public Builder<T> setDirectory(final Path value) {
+            _directory = value;
+            return this;
+        }
+
+        /**
+         * Sets the glob matched against the names of the files in the
+         * directory. Optional. Cannot be null or empty. Default is
+         * <code>*</code>.
+         *
+         * @param value The file name glob.
+         * @return This instance of <code>Builder</code>.
+         */
+        public Builder<T> setGlob(final String value) {
+            _glob = value;
+            return this;
+        }
+
+        /**
+         * Sets <code>Parser</code>. Cannot be null. The parser is shared by
+         * all files and must be thread safe.
+         *
+         * @param value The <code>Parser</code>.
+         * @return This instance of <code>Builder</code>.
+         */
+        public Builder<T> setParser(final Parser<T, byte[]> value) {
+            _parser = value;
+            return this;
+        }
+
+        /**
+         * Sets file read interval. Optional. Cannot be null. Default is 500
+         * milliseconds.
+         *
+         * @param value The file read interval.
+         * @return This instance of <code>Builder</code>.
+         */
+        public Builder<T> setInterval(final Duration value) {
+            _interval = value;
+            return this;
+        }
+
+        /**
+         * Sets whether to tail the files present when the source starts from
+         * their end or from their start. Files discovered later are always
+         * tailed from their start. Optional. Cannot be null. Default is
+         * InitialPosition.START.
+         *
+         * @param value Initial position to tail from.
+         * @return This instance of <code>Builder</code>.
+         */
+        public Builder<T> setInitialPosition(final InitialPosition value) {
+            _initialPosition = value;
+            return this;
+        }
+
+        /**
+         * Sets the interval between scans of the directory for files missed
+         * by the watch service. Optional. Cannot be null. Default is one
+         * minute.
+         *
+         * @param value The directory rescan interval.
+         * @return This instance of <code>Builder</code>.
+         */
+        public Builder<T> setRescanInterval(final Duration value) {
+            _rescanInterval = value;
+            return this;
+        }
+
+        /**
+         * Sets state file shared by all files. Optional. Default is null.
+         * If null, uses a <code>NoPositionStore</code>.
+         *
+         * @param value The state file.
+         * @return This instance of <code>Builder</code>.
+         */
+        public Builder<T> setStateFile(final Path value) {
+            _stateFile = value;
+            return this;
+        }
+
+        /**
+         * Sets whether the state file is a memory-mapped file of fixed-size
+         * position slots instead of JSON. Optional. Cannot be null. Default
+         * is false.
+         *
+         * @param value Whether the state file is memory-mapped.
+         * @return This instance of <code>Builder</code>.
+         */
+        public Builder<T> setMappedStateFile(final Boolean value) {
+            _mappedStateFile = value;
+            return this;
+        }
+
+        @Override
+        protected Builder<T> self() {
+            return this;
+        }
+
+        @NotNull
+        private Path _directory;
+        @NotNull
+        @NotEmpty
+        private String _glob = "*";
+        @NotNull
+        private Parser<T, byte[]> _parser;
+        @NotNull
+        private Duration _interval = Duration.ofMillis(500);
+        @NotNull
+        private InitialPosition _initialPosition = InitialPosition.START;
+        @NotNull
+        private Duration _rescanInterval = Duration.ofMinutes(1);
+        private Path _stateFile;
+        @NotNull
+        private Boolean _mappedStateFile = false;
+    }
+}
@@ -20,14 +20,17 @@ import com.arpnetworking.metrics.common.parsers.Parser;
 import com.arpnetworking.metrics.common.parsers.exceptions.ParsingException;
 import com.arpnetworking.metrics.common.tailer.FilePositionStore;
 import com.arpnetworking.metrics.common.tailer.InitialPosition;
+import com.arpnetworking.metrics.common.tailer.MappedFilePositionStore;
 import com.arpnetworking.metrics.common.tailer.NoPositionStore;
 import com.arpnetworking.metrics.common.tailer.PositionStore;
 import com.arpnetworking.metrics.common.tailer.StatefulTailer;
 import com.arpnetworking.metrics.common.tailer.Tailer;
 import com.arpnetworking.metrics.common.tailer.TailerListener;
+import com.arpnetworking.metrics.common.tailer.TailerService;
 import com.arpnetworking.steno.LogValueMapFactory;
 import com.arpnetworking.steno.Logger;
 import com.arpnetworking.steno.LoggerFactory;
+import net.sf.oval.constraint.Min;
 import net.sf.oval.constraint.NotEmpty;
 import net.sf.oval.constraint.NotNull;
 
@@ -52,25 +55,58 @@ public final class FileSource<T> extends BaseSource {
 
     @Override
     public void start() {
-        _tailerExecutor.execute(_tailer);
+        if (_tailerService.isPresent()) {
+            _tailerService.get().start(_tailer);
+        } else {
+            _tailerExecutor.execute(_tailer);
+        }
     }
 
     @Override
     public void stop() {
-        _tailer.stop();
+        if (_tailerService.isPresent()) {
+            _tailerService.get().stop(_tailer);
+        } else {
+            _tailer.stop();
+        }
         _tailerExecutor.shutdown();
+        boolean tailerStopped = false;
         try {
-            _tailerExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            tailerStopped = _tailerExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            if (!tailerStopped) {
+                LOGGER.warn()
+                        .setMessage("Timed out waiting for tailer executor to shutdown")
+                        .addData("source", this)
+                        .log();
+            }
         } catch (final InterruptedException e) {
             LOGGER.warn()
                     .setMessage("Unable to shutdown tailer executor")
                     .setThrowable(e)
                     .log();
         }
-        try {
-            _positionStore.close();
-        } catch (final IOException e) {
-            // Ignore close exception.
+        if (_parallelParser.isPresent()) {
+            try {
+                if (!_parallelParser.get().shutdown(TimeUnit.SECONDS.toMillis(10))) {
+                    LOGGER.warn()
+                            .setMessage("Timed out waiting for parser executor to shutdown; skipping remaining checkpoints")
+                            .addData("source", this)
+                            .log();
+                }
+            } catch (final InterruptedException e) {
+                LOGGER.warn()
+                        .setMessage("Unable to shutdown parser executor")
+                        .setThrowable(e)
+                        .log();
+            }
+        }
+        // A tailer which is still running may checkpoint directly to the store
+        if (_ownsPositionStore && (tailerStopped || _parallelParser.isPresent())) {
+            try {
+                _positionStore.close();
+            } catch (final IOException e) {
+                // Ignore close exception.
+            }
         }
     }
 
@@ -84,6 +120,7 @@ public final class FileSource<T> extends BaseSource {
         return LogValueMapFactory.builder(this)
                 .put("super", super.toLogValue())
                 .put("parser", _parser)
+                .put("parallelParser", _parallelParser)
                 .put("tailer", _tailer)
                 .build();
     }
@@ -103,26 +140,61 @@ public final class FileSource<T> extends BaseSource {
         super(builder);
         _logger = logger;
         _parser = builder._parser;
-        if (builder._stateFile == null) {
+        _fileNotFoundCallback = Optional.ofNullable(builder._fileNotFoundCallback);
+        _ownsPositionStore = builder._positionStore == null;
+        if (builder._positionStore != null) {
+            _positionStore = builder._positionStore;
+        } else if (builder._stateFile == null) {
             _positionStore = NO_POSITION_STORE;
+        } else if (builder._mappedStateFile) {
+            _positionStore = new MappedFilePositionStore.Builder().setFile(builder._stateFile).build();
         } else {
             _positionStore = new FilePositionStore.Builder().setFile(builder._stateFile).build();
         }
 
+        // Parsing on multiple threads requires the tailer checkpoints to be
+        // held back until the lines preceding them have been processed
+        final PositionStore tailerPositionStore;
+        if (builder._parserThreads > 1) {
+            _parallelParser = Optional.of(new ParallelLineParser<>(
+                    _parser,
+                    this::notify,
+                    _positionStore,
+                    builder._parserThreads,
+                    builder._parserBatchSize,
+                    builder._preserveOrder,
+                    logger));
+            tailerPositionStore = _parallelParser.get().getPositionStore();
+        } else {
+            _parallelParser = Optional.empty();
+            tailerPositionStore = _positionStore;
+        }
+
         _tailer = new StatefulTailer.Builder()
                 .setFile(builder._sourceFile)
                 .setListener(new LogTailerListener())
                 .setReadInterval(builder._interval)
-                .setPositionStore(_positionStore)
+                .setPositionStore(tailerPositionStore)
                 .setInitialPosition(builder._initialPosition)
+                .setCheckpointLineInterval(builder._checkpointLineInterval)
+                .setCatchUpRotated(builder._catchUpRotated)
                 .build();
         _tailerExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "FileSourceTailer"));
+        if (builder._sharedTailer) {
+            _tailerService = Optional.of(TailerService.getInstance());
+        } else {
+            _tailerService = Optional.empty();
+        }
     }
 
     private final PositionStore _positionStore;
+    private final boolean _ownsPositionStore;
+    private final Optional<Runnable> _fileNotFoundCallback;
     private final Parser<T, byte[]> _parser;
-    private final Tailer _tailer;
+    private final Optional<ParallelLineParser<T>> _parallelParser;
+    private final StatefulTailer _tailer;
     private final ExecutorService _tailerExecutor;
+    private final Optional<TailerService> _tailerService;
     private final Logger _logger;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(FileSource.class);
@@ -150,6 +222,7 @@ public final class FileSource<T> extends BaseSource {
                         .log();
                 _lastFileNotFoundWarning = Optional.of(now);
             }
+            _fileNotFoundCallback.ifPresent(Runnable::run);
         }
 
         @Override
@@ -170,6 +243,10 @@ public final class FileSource<T> extends BaseSource {
 
         @Override
         public void handle(final byte[] line) {
+            if (_parallelParser.isPresent()) {
+                _parallelParser.get().add(line);
+                return;
+            }
             final T record;
             try {
                 record = _parser.parse(line);
@@ -183,6 +260,13 @@ public final class FileSource<T> extends BaseSource {
             FileSource.this.notify(record);
         }
 
+        @Override
+        public void endOfData() {
+            if (_parallelParser.isPresent()) {
+                _parallelParser.get().flush();
+            }
+        }
+
         @Override
         public void handle(final Throwable t) {
             if (t instanceof InterruptedException) {
@@ -197,26 +281,14 @@ public final class FileSource<T> extends BaseSource {
 
                 _tailer.stop();
             } else {
+                // NOTE: The tailer backs off before its next step; sleeping here
+                // would block the tailer thread which may be shared
                 _logger.error()
                         .setMessage("Tailer exception")
                         .addData("source", FileSource.this)
-                        .addData("action", "sleeping")
+                        .addData("action", "backing off")
                         .setThrowable(t)
                         .log();
-                try {
-                    Thread.sleep(1000);
-                } catch (final InterruptedException e) {
-                    Thread.currentThread().interrupt();
-
-                    _logger.info()
-                            .setMessage("Sleep interrupted")
-                            .addData("source", FileSource.this)
-                            .addData("action", "stopping")
-                            .setThrowable(t)
-                            .log();
-
-                    _tailer.stop();
-                }
             }
         }
 
@@ -296,6 +368,118 @@ public final class FileSource<T> extends BaseSource {
             return this;
         }
 
+        /**
+         * Sets whether the file is tailed by the shared
+         * <code>TailerService</code> instead of a dedicated thread.
+         * Optional. Cannot be null. Default is false. The shared service
+         * drives many files from a small pool of threads and reads a file
+         * as soon as it changes where the file system supports change
+         * notification.
+         *
+         * @param value Whether to use the shared tailer service.
+         * @return This instance of <code>Builder</code>.
+         */
+        public final Builder<T> setSharedTailer(final Boolean value) {
+            _sharedTailer = value;
+            return this;
+        }
+
+        /**
+         * Sets whether the state file is a memory-mapped file of fixed-size
+         * position slots instead of JSON. Optional. Cannot be null. Default
+         * is false. The two formats are not interchangeable; switching
+         * formats discards the stored positions.
+         *
+         * @param value Whether the state file is memory-mapped.
+         * @return This instance of <code>Builder</code>.
+         */
+        public final Builder<T> setMappedStateFile(final Boolean value) {
+            _mappedStateFile = value;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of lines read between checkpoints of the
+         * file position. Optional. Must be at least 1. Default is to
+         * checkpoint once per read buffer. See
+         * <code>StatefulTailer.Builder.setCheckpointLineInterval</code>.
+         *
+         * @param value The maximum lines between checkpoints.
+         * @return This instance of <code>Builder</code>.
+         */
+        public final Builder<T> setCheckpointLineInterval(final Integer value) {
+            _checkpointLineInterval = value;
+            return this;
+        }
+
+        /**
+         * Sets whether the unread remainder of files rotated away while the
+         * source was not running is read before the file itself. Optional.
+         * Cannot be null. Default is false. Requires a state file. See
+         * <code>StatefulTailer.Builder.setCatchUpRotated</code>.
+         *
+         * @param value Whether to read rotated files first.
+         * @return This instance of <code>Builder</code>.
+         */
+        public final Builder<T> setCatchUpRotated(final Boolean value) {
+            _catchUpRotated = value;
+            return this;
+        }
+
+        /**
+         * Sets the number of threads parsing lines. Optional. Cannot be null.
+         * Must be at least 1. Default is 1 which parses each line on the
+         * tailer thread. With more than one thread the parser must be thread
+         * safe and the file position is only checkpointed once all lines
+         * before it have been parsed.
+         *
+         * @param value The number of parser threads.
+         * @return This instance of <code>Builder</code>.
+         */
+        public final Builder<T> setParserThreads(final Integer value) {
+            _parserThreads = value;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of lines handed to a parser thread at once.
+         * Optional. Cannot be null. Must be at least 1. Default is 256. Only
+         * applies with more than one parser thread.
+         *
+         * @param value The maximum number of lines per batch.
+         * @return This instance of <code>Builder</code>.
+         */
+        public final Builder<T> setParserBatchSize(final Integer value) {
+            _parserBatchSize = value;
+            return this;
+        }
+
+        /**
+         * Sets whether records are emitted in the order their lines were read.
+         * Optional. Cannot be null. Default is true. Only applies with more
+         * than one parser thread.
+         *
+         * @param value Whether to preserve the order of records.
+         * @return This instance of <code>Builder</code>.
+         */
+        public final Builder<T> setPreserveOrder(final Boolean value) {
+            _preserveOrder = value;
+            return this;
+        }
+
+        // NOTE: Package private for sources tailing many files into one store;
+        // the store must be thread-safe since the tailers step concurrently
+        /* package private */ Builder<T> setPositionStore(final PositionStore value) {
+            _positionStore = value;
+            return this;
+        }
+
+        // NOTE: Package private for sources retiring files which disappear
+        /* package private */ Builder<T> setFileNotFoundCallback(final Runnable value) {
+            _fileNotFoundCallback = value;
+            return this;
+        }
+
         @Override
         protected Builder<T> self() {
             return this;
@@ -310,6 +494,24 @@ public final class FileSource<T> extends BaseSource {
         private Parser<T, byte[]> _parser;
         private Path _stateFile;
         @NotNull
+        private Boolean _mappedStateFile = false;
+        @NotNull
+        private Boolean _sharedTailer = false;
+        @NotNull
         private InitialPosition _initialPosition = InitialPosition.START;
+        @Min(1)
+        private Integer _checkpointLineInterval;
+        @NotNull
+        private Boolean _catchUpRotated = false;
+        @NotNull
+        @Min(1)
+        private Integer _parserThreads = 1;
+        @NotNull
+        @Min(1)
+        private Integer _parserBatchSize = 256;
+        @NotNull
+        private Boolean _preserveOrder = true;
+        private PositionStore _positionStore;
+        private Runnable _fileNotFoundCallback;
     }
 }
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.common.sources;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import akka.io.Tcp;
+import akka.io.TcpMessage;
+import akka.util.ByteString;
+import com.arpnetworking.metrics.common.parsers.Parser;
+import com.arpnetworking.metrics.common.parsers.exceptions.ParsingException;
+import com.arpnetworking.metrics.mad.model.Record;
+import com.arpnetworking.metrics.mad.parsers.GraphitePickleToRecordParser;
+import com.arpnetworking.steno.Logger;
+import com.arpnetworking.steno.LoggerFactory;
+import net.sf.oval.constraint.Min;
+import net.sf.oval.constraint.NotNull;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Source that receives Graphite pickle protocol frames over tcp. Each frame
+ * is a four byte big endian length followed by a pickled batch of datapoints
+ * and is parsed into records in a single pass. This is the protocol Carbon
+ * relays use to forward to their destinations and is considerably cheaper
+ * to produce and to parse than the line based plaintext protocol.
+ *
+ * https://graphite.readthedocs.io/en/latest/feeding-carbon.html#the-pickle-protocol
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public final class GraphitePickleSource extends BaseTcpSource {
+
+    @Override
+    protected Props createProps() {
+        return TcpListenerActor.props(this);
+    }
+
+    /* package private */ Parser<List<Record>, ByteBuffer> getParser() {
+        return _parser;
+    }
+
+    /* package private */ int getMaxFrameSize() {
+        return _maxFrameSize;
+    }
+
+    /**
+     * Protected constructor.
+     *
+     * @param builder Instance of <code>Builder</code>.
+     */
+    private GraphitePickleSource(final Builder builder) {
+        super(builder);
+        _parser = builder._parser;
+        _maxFrameSize = builder._maxFrameSize;
+    }
+
+    private final Parser<List<Record>, ByteBuffer> _parser;
+    private final int _maxFrameSize;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GraphitePickleSource.class);
+    private static final int LENGTH_PREFIX_SIZE = 4;
+
+    /**
+     * Name of the actor created to accept Graphite pickle connections.
+     */
+    public static final String ACTOR_NAME = "graphite-pickle";
+
+    /**
+     * Internal actor to accept connections.
+     */
+    /* package private */ static final class TcpListenerActor extends BaseTcpListenerActor {
+        /**
+         * Creates a {@link Props} for this actor.
+         *
+         * @param source The {@link GraphitePickleSource} to send notifications through.
+         * @return A new {@link Props}
+         */
+        /* package private */ static Props props(final GraphitePickleSource source) {
+            return Props.create(TcpListenerActor.class, source);
+        }
+
+        @Override
+        protected ActorRef createHandler(final BaseTcpSource source, final Tcp.Connected connected) {
+            return getContext().actorOf(Props.create(
+                    TcpRequestHandlerActor.class,
+                    getSink(),
+                    connected.remoteAddress()));
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param source The {@link GraphitePickleSource} to send notifications through.
+         */
+        /* package private */ TcpListenerActor(final GraphitePickleSource source) {
+            super(source);
+        }
+    }
+
+    /**
+     * Internal actor to process frames received on a connection.
+     */
+    /* package private */ static final class TcpRequestHandlerActor extends AbstractActor {
+
+        /* package private */ TcpRequestHandlerActor(
+                final GraphitePickleSource sink,
+                final InetSocketAddress remoteAddress) {
+            _sink = sink;
+            _remoteAddress = remoteAddress;
+        }
+
+        @Override
+        public Receive createReceive() {
+            return receiveBuilder()
+                    .match(Tcp.Received.class, message -> {
+                        final ByteString data = message.data();
+
+                        LOGGER.trace()
+                                .setMessage("Tcp data received")
+                                .addData("name", _sink.getName())
+                                .addData("remoteAddress", _remoteAddress.getAddress().getHostAddress())
+                                .addData("remotePort", _remoteAddress.getPort())
+                                .addData("bytes", data.size())
+                                .log();
+
+                        try {
+                            processData(data);
+                            // CHECKSTYLE.OFF: IllegalCatch - Ensure all exceptions are logged (this is top level)
+                        } catch (final RuntimeException e) {
+                            // CHECKSTYLE.ON: IllegalCatch
+                            BAD_REQUEST_LOGGER.warn()
+                                    .setMessage("Error processing data")
+                                    .addData("name", _sink.getName())
+                                    .addData("remoteAddress", _remoteAddress.getAddress().getHostAddress())
+                                    .addData("remotePort", _remoteAddress.getPort())
+                                    .setThrowable(e)
+                                    .log();
+                        }
+                    })
+                    .match(Tcp.ConnectionClosed.class, message -> {
+                        getContext().stop(getSelf());
+                        LOGGER.debug()
+                                .setMessage("Tcp connection close")
+                                .addData("name", _sink.getName())
+                                .addData("remoteAddress", _remoteAddress.getAddress().getHostAddress())
+                                .addData("remotePort", _remoteAddress.getPort())
+                                .log();
+                    })
+                    .build();
+        }
+
+        private void processData(final ByteString data) {
+            if (_closing) {
+                return;
+            }
+            _buffer = _buffer.concat(data);
+
+            // It is possible for there to be more than one frame in the buffered data
+            int offset = 0;
+            while (_buffer.size() - offset >= LENGTH_PREFIX_SIZE) {
+                final int length = readLength(offset);
+                if (length < 0 || length > _sink.getMaxFrameSize()) {
+                    BAD_REQUEST_LOGGER.warn()
+                            .setMessage("Frame exceeds maximum size; closing connection")
+                            .addData("name", _sink.getName())
+                            .addData("remoteAddress", _remoteAddress.getAddress().getHostAddress())
+                            .addData("remotePort", _remoteAddress.getPort())
+                            .addData("length", Integer.toUnsignedLong(length))
+                            .addData("maxFrameSize", _sink.getMaxFrameSize())
+                            .log();
+                    _closing = true;
+                    _buffer = ByteString.empty();
+                    getSender().tell(TcpMessage.close(), getSelf());
+                    return;
+                }
+                final int frameEnd = offset + LENGTH_PREFIX_SIZE + length;
+                if (_buffer.size() < frameEnd) {
+                    // Partial frame; wait for more data
+                    break;
+                }
+                // The frame is consumed whether or not it can be processed
+                final ByteString frame = _buffer.slice(offset + LENGTH_PREFIX_SIZE, frameEnd);
+                offset = frameEnd;
+                processRecords(frame);
+            }
+
+            // Retain only the partial frame (if any) which follows the processed frames
+            if (offset > 0) {
+                _buffer = _buffer.drop(offset).compact();
+            }
+        }
+
+        private int readLength(final int offset) {
+            return ((_buffer.apply(offset) & 0xff) << 24)
+                    | ((_buffer.apply(offset + 1) & 0xff) << 16)
+                    | ((_buffer.apply(offset + 2) & 0xff) << 8)
+                    | (_buffer.apply(offset + 3) & 0xff);
+        }
+
+        private void processRecords(final ByteString frame) {
+            try {
+                // NOTE: The parsing occurs in the actor itself which can become a bottleneck
+                // if there are more records to be parsed then a single thread can handle.
+                final List<Record> records = _sink.getParser().parse(frame.asByteBuffer());
+
+                LOGGER.trace()
+                        .setMessage("Parsed records")
+                        .addData("name", _sink.getName())
+                        .addData("records", records.size())
+                        .addData("remoteAddress", _remoteAddress.getAddress().getHostAddress())
+                        .addData("remotePort", _remoteAddress.getPort())
+                        .log();
+
+                records.forEach(_sink::notify);
+            } catch (final ParsingException e) {
+                BAD_REQUEST_LOGGER.warn()
+                        .setMessage("Error processing records")
+                        .addData("name", _sink.getName())
+                        .addData("remoteAddress", _remoteAddress.getAddress().getHostAddress())
+                        .addData("remotePort", _remoteAddress.getPort())
+                        .setThrowable(e)
+                        .log();
+                // CHECKSTYLE.OFF: IllegalCatch - A faulty frame must not wedge the connection
+            } catch (final RuntimeException e) {
+                // CHECKSTYLE.ON: IllegalCatch
+                BAD_REQUEST_LOGGER.error()
+                        .setMessage("Unexpected failure processing records")
+                        .addData("name", _sink.getName())
+                        .addData("remoteAddress", _remoteAddress.getAddress().getHostAddress())
+                        .addData("remotePort", _remoteAddress.getPort())
+                        .setThrowable(e)
+                        .log();
+            }
+        }
+
+        private ByteString _buffer = ByteString.empty();
+        private boolean _closing = false;
+        private final GraphitePickleSource _sink;
+        private final InetSocketAddress _remoteAddress;
+
+        private static final Logger BAD_REQUEST_LOGGER =
+                LoggerFactory.getRateLimitLogger(GraphitePickleSource.class, Duration.ofSeconds(30));
+    }
+
+    /**
+     * GraphitePickleSource {@link BaseSource.Builder} implementation.
+     *
+     * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+     */
+    public static final class Builder extends BaseTcpSource.Builder<Builder, GraphitePickleSource> {
+
+        /**
+         * Public constructor.
+         */
+        public Builder() {
+            super(GraphitePickleSource::new);
+            setActorName(ACTOR_NAME);
+            setPort(DEFAULT_PORT);
+        }
+
+        /**
+         * Set the parser. Optional. Cannot be null. Default is a
+         * {@link GraphitePickleToRecordParser} without global tags or
+         * carbon tag parsing.
+         *
+         * @param value the parser
+         * @return this {@link Builder} instance
+         */
+        public Builder setParser(final Parser<List<Record>, ByteBuffer> value) {
+            _parser = value;
+            return self();
+        }
+
+        /**
+         * Set the maximum frame size in bytes. A connection sending a larger
+         * frame is closed. Optional. Cannot be null. Must be at least 1.
+         * Default is 1 MiB, the same limit Carbon applies.
+         *
+         * @param value the maximum frame size
+         * @return this {@link Builder} instance
+         */
+        public Builder setMaxFrameSize(final Integer value) {
+            _maxFrameSize = value;
+            return self();
+        }
+
+        @Override
+        protected Builder self() {
+            return this;
+        }
+
+        @NotNull
+        private Parser<List<Record>, ByteBuffer> _parser = new GraphitePickleToRecordParser.Builder().build();
+        @NotNull
+        @Min(1)
+        private Integer _maxFrameSize = 1048576;
+
+        private static final int DEFAULT_PORT = 2004;
+    }
+}
@@ -19,25 +19,25 @@ import akka.Done;
 import akka.NotUsed;
 import akka.actor.AbstractActor;
 import akka.actor.Props;
+import akka.http.javadsl.model.HttpEntity;
 import akka.http.javadsl.model.HttpHeader;
 import akka.http.javadsl.model.HttpRequest;
 import akka.http.javadsl.model.HttpResponse;
 import akka.http.javadsl.model.RequestEntity;
-import akka.japi.Pair;
+import akka.http.javadsl.model.StatusCodes;
 import akka.stream.ActorMaterializer;
 import akka.stream.ActorMaterializerSettings;
-import akka.stream.FanInShape2;
-import akka.stream.FlowShape;
-import akka.stream.Graph;
 import akka.stream.Materializer;
+import akka.stream.OverflowStrategy;
+import akka.stream.QueueOfferResult;
+import akka.stream.StreamLimitReachedException;
 import akka.stream.Supervision;
-import akka.stream.UniformFanOutShape;
-import akka.stream.javadsl.Broadcast;
+import akka.stream.javadsl.Compression;
 import akka.stream.javadsl.Flow;
-import akka.stream.javadsl.GraphDSL;
 import akka.stream.javadsl.Keep;
 import akka.stream.javadsl.Sink;
-import akka.stream.javadsl.Zip;
+import akka.stream.javadsl.Source;
+import akka.stream.javadsl.SourceQueueWithComplete;
 import akka.util.ByteString;
 import com.arpnetworking.http.RequestReply;
 import com.arpnetworking.metrics.common.parsers.Parser;
@@ -46,17 +46,33 @@ import com.arpnetworking.metrics.mad.model.Record;
 import com.arpnetworking.steno.Logger;
 import com.arpnetworking.steno.LoggerFactory;
 import com.google.common.collect.ImmutableMultimap;
+import net.sf.oval.constraint.Min;
 import net.sf.oval.constraint.NotNull;
 
 import java.time.Duration;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 
 /**
  * Source that uses HTTP POSTs as input.
  *
+ * Requests are handed to a single long-lived stream materialized when the
+ * source's actor starts. The stream reads and parses up to the configured
+ * parallelism of requests concurrently and buffers a bounded number of
+ * pending requests; requests received while the buffer is full are
+ * rejected with a 503.
+ *
+ * Request bodies may be compressed with gzip or deflate as indicated by
+ * the Content-Encoding header. Compressed bodies are inflated as they are
+ * streamed in and requests whose inflated body exceeds the configured limit
+ * are rejected with a 413.
+ *
  * @author Brandon Arp (brandon dot arp at inscopemetrics dot com)
  */
 public class HttpSource extends ActorSource {
@@ -74,9 +90,15 @@ public class HttpSource extends ActorSource {
     protected HttpSource(final Builder<?, ? extends HttpSource> builder) {
         super(builder);
         _parser = builder._parser;
+        _parallelism = builder._parallelism;
+        _maxPendingRequests = builder._maxPendingRequests;
+        _maxInflatedBodySize = builder._maxInflatedBodySize;
     }
 
     private final Parser<List<Record>, com.arpnetworking.metrics.mad.model.HttpRequest> _parser;
+    private final int _parallelism;
+    private final int _maxPendingRequests;
+    private final long _maxInflatedBodySize;
 
     /**
      * Internal actor to process requests.
@@ -96,84 +118,132 @@ public class HttpSource extends ActorSource {
         public Receive createReceive() {
             return receiveBuilder()
                     .match(RequestReply.class, requestReply -> {
-                        // TODO(barp): Fix the ugly HttpRequest cast here due to java vs scala dsl
-                        akka.stream.javadsl.Source.single(requestReply.getRequest())
-                                .via(_processGraph)
-                                .toMat(_sink, Keep.right())
-                                .run(_materializer)
-                                .whenComplete((done, err) -> {
-                                    final CompletableFuture<HttpResponse> responseFuture = requestReply.getResponse();
-                                    if (err == null) {
-                                        responseFuture.complete(HttpResponse.create().withStatus(200));
-                                    } else {
-                                        BAD_REQUEST_LOGGER.warn()
-                                                .setMessage("Error handling http post")
-                                                .setThrowable(err)
-                                                .log();
-                                        if (err instanceof ParsingException) {
-                                            responseFuture.complete(HttpResponse.create().withStatus(400));
-                                        } else {
-                                            responseFuture.complete(HttpResponse.create().withStatus(500));
-                                        }
-                                    }
-                                });
+                        _requestQueue.offer(requestReply).whenComplete((result, err) -> {
+                            if (err != null || !QueueOfferResult.enqueued().equals(result)) {
+                                BAD_REQUEST_LOGGER.warn()
+                                        .setMessage("Rejected http post")
+                                        .addData("result", result)
+                                        .setThrowable(err)
+                                        .log();
+                                requestReply.getResponse().complete(
+                                        HttpResponse.create().withStatus(StatusCodes.SERVICE_UNAVAILABLE));
+                            }
+                        });
                     })
                     .build();
         }
 
+        @Override
+        public void postStop() throws Exception {
+            _requestQueue.complete();
+            super.postStop();
+        }
+
         /**
          * Constructor.
          *
          * @param source The {@link HttpSource} to send notifications through.
          */
         /* package private */ Actor(final HttpSource source) {
+            _source = source;
             _parser = source._parser;
-            _sink = Sink.foreach(source::notify);
+            _executor = context().dispatcher();
+            _maxInflatedBodySize = source._maxInflatedBodySize;
             _materializer = ActorMaterializer.create(
                     ActorMaterializerSettings.create(context().system())
-                            .withSupervisionStrategy(Supervision.stoppingDecider()),
+                            .withSupervisionStrategy(Supervision.resumingDecider()),
                     context());
 
-            _processGraph = GraphDSL.create(builder -> {
-
-                // Flows
-                final Flow<HttpRequest, ByteString, NotUsed> getBodyFlow = Flow.<HttpRequest>create()
-                        .map(HttpRequest::entity)
-                        .flatMapConcat(RequestEntity::getDataBytes)
-                        .reduce(ByteString::concat)
-                        .named("getBody");
-
-                final Flow<HttpRequest, ImmutableMultimap<String, String>, NotUsed> getHeadersFlow = Flow.<HttpRequest>create()
-                        .map(HttpRequest::getHeaders)
-                        .map(Actor::createHeaderMultimap) // Transform to array form
-                        .named("getHeaders");
-
-                final Flow<Pair<ByteString, ImmutableMultimap<String, String>>, Record, NotUsed> createAndParseFlow =
-                        Flow.<Pair<ByteString, ImmutableMultimap<String, String>>>create()
-                                .map(Actor::mapModel)
-                                .mapConcat(this::parseRecords) // Parse the json string into a record builder
-                                // NOTE: this should be _parser::parse, but aspectj NPEs with that currently
-                                .named("createAndParseRequest");
+            _requestQueue = Source.<RequestReply>queue(source._maxPendingRequests, OverflowStrategy.dropNew())
+                    .mapAsyncUnordered(source._parallelism, this::process)
+                    .named("processRequest")
+                    .toMat(Sink.ignore(), Keep.left())
+                    .run(_materializer);
+        }
 
-                // Shapes
-                final UniformFanOutShape<HttpRequest, HttpRequest> split = builder.add(Broadcast.create(2));
+        private CompletionStage<Done> process(final RequestReply requestReply) {
+            final CompletableFuture<HttpResponse> responseFuture = requestReply.getResponse();
+            return readBody(requestReply.getRequest())
+                    .thenApplyAsync(
+                            body -> {
+                                final com.arpnetworking.metrics.mad.model.HttpRequest request =
+                                        new com.arpnetworking.metrics.mad.model.HttpRequest(
+                                                createHeaderMultimap(requestReply.getRequest().getHeaders()),
+                                                body);
+                                parseRecords(request).forEach(_source::notify);
+                                return Done.getInstance();
+                            },
+                            _executor)
+                    .handle((done, err) -> {
+                        if (err == null) {
+                            responseFuture.complete(HttpResponse.create().withStatus(200));
+                        } else {
+                            final Throwable cause = err instanceof CompletionException ? err.getCause() : err;
+                            BAD_REQUEST_LOGGER.warn()
+                                    .setMessage("Error handling http post")
+                                    .setThrowable(cause)
+                                    .log();
+                            responseFuture.complete(HttpResponse.create().withStatus(getErrorStatus(cause)));
+                        }
+                        return Done.getInstance();
+                    });
+        }
 
-                final FlowShape<HttpRequest, ByteString> getBody = builder.add(getBodyFlow);
-                final FlowShape<HttpRequest, ImmutableMultimap<String, String>> getHeaders = builder.add(getHeadersFlow);
-                final FanInShape2<
-                        ByteString,
-                        ImmutableMultimap<String, String>,
-                        Pair<ByteString, ImmutableMultimap<String, String>>> join = builder.add(Zip.create());
-                final FlowShape<Pair<ByteString, ImmutableMultimap<String, String>>, Record> createRequest =
-                        builder.add(createAndParseFlow);
+        private CompletionStage<ByteString> readBody(final HttpRequest request) {
+            final RequestEntity entity = request.entity();
+            final String encoding = request.getHeader(CONTENT_ENCODING_HEADER)
+                    .map(header -> header.value().trim().toLowerCase(Locale.ROOT))
+                    .orElse(IDENTITY_ENCODING);
+            final Optional<Flow<ByteString, ByteString, NotUsed>> decoder = createDecoder(encoding);
+            if (decoder.isPresent()) {
+                return entity.getDataBytes()
+                        .via(decoder.get())
+                        .limitWeighted(_maxInflatedBodySize, body -> (long) body.size())
+                        .runFold(ByteString.empty(), ByteString::concat, _materializer)
+                        .handle((body, err) -> {
+                            if (err == null) {
+                                return body;
+                            }
+                            if (err instanceof StreamLimitReachedException) {
+                                throw new CompletionException(err);
+                            }
+                            throw new CompletionException(
+                                    new ParsingException("Invalid compressed body", new byte[0], err));
+                        });
+            }
+            if (!IDENTITY_ENCODING.equals(encoding)) {
+                final CompletableFuture<ByteString> future = new CompletableFuture<>();
+                future.completeExceptionally(new UnsupportedContentEncodingException(encoding));
+                return future;
+            }
+            if (entity instanceof HttpEntity.Strict) {
+                // Avoid materializing a stream for bodies already in memory
+                return CompletableFuture.completedFuture(((HttpEntity.Strict) entity).getData());
+            }
+            return entity.getDataBytes().runFold(ByteString.empty(), ByteString::concat, _materializer);
+        }
 
-                // Wire the shapes
-                builder.from(split.out(0)).via(getBody).toInlet(join.in0()); // Split to get the body bytes
-                builder.from(split.out(1)).via(getHeaders).toInlet(join.in1()); // Split to get the headers
-                builder.from(join.out()).toInlet(createRequest.in()); // Join to create the Request and parse it
+        private static Optional<Flow<ByteString, ByteString, NotUsed>> createDecoder(final String encoding) {
+            switch (encoding) {
+                case "gzip":
+                case "x-gzip":
+                    return Optional.of(Compression.gunzip(MAX_BYTES_PER_CHUNK));
+                case "deflate":
+                    return Optional.of(Compression.inflate(MAX_BYTES_PER_CHUNK));
+                default:
+                    return Optional.empty();
+            }
+        }
 
-                return new FlowShape<>(split.in(), createRequest.out());
-            });
+        private static int getErrorStatus(final Throwable cause) {
+            if (cause instanceof ParsingException) {
+                return 400;
+            } else if (cause instanceof StreamLimitReachedException) {
+                return 413;
+            } else if (cause instanceof UnsupportedContentEncodingException) {
+                return 415;
+            }
+            return 500;
         }
 
         private static ImmutableMultimap<String, String> createHeaderMultimap(final Iterable<HttpHeader> headers) {
@@ -186,23 +256,36 @@ public class HttpSource extends ActorSource {
             return headersBuilder.build();
         }
 
-        private static com.arpnetworking.metrics.mad.model.HttpRequest mapModel(
-                final Pair<ByteString, ImmutableMultimap<String, String>> pair) {
-            return new com.arpnetworking.metrics.mad.model.HttpRequest(pair.second(), pair.first());
-        }
-
-        private List<Record> parseRecords(final com.arpnetworking.metrics.mad.model.HttpRequest request)
-                throws ParsingException {
-            return _parser.parse(request);
+        private List<Record> parseRecords(final com.arpnetworking.metrics.mad.model.HttpRequest request) {
+            try {
+                return _parser.parse(request);
+            } catch (final ParsingException e) {
+                throw new CompletionException(e);
+            }
         }
 
-        private final Sink<Record, CompletionStage<Done>> _sink;
+        private final HttpSource _source;
         private final Parser<List<Record>, com.arpnetworking.metrics.mad.model.HttpRequest> _parser;
+        private final Executor _executor;
         private final Materializer _materializer;
-        private final Graph<FlowShape<HttpRequest, Record>, NotUsed> _processGraph;
+        private final SourceQueueWithComplete<RequestReply> _requestQueue;
+        private final long _maxInflatedBodySize;
+
+        private static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+        private static final String IDENTITY_ENCODING = "identity";
+        private static final int MAX_BYTES_PER_CHUNK = 64 * 1024;
 
         private static final Logger BAD_REQUEST_LOGGER =
                 LoggerFactory.getRateLimitLogger(HttpSource.class, Duration.ofSeconds(30));
+
+        private static final class UnsupportedContentEncodingException extends Exception {
+
+            /* package private */ UnsupportedContentEncodingException(final String encoding) {
+                super(String.format("Unsupported content encoding; encoding=%s", encoding));
+            }
+
+            private static final long serialVersionUID = 1L;
+        }
     }
 
     /**
@@ -235,7 +318,55 @@ public class HttpSource extends ActorSource {
             return self();
         }
 
+        /**
+         * Sets the number of requests read and parsed concurrently. Optional.
+         * Cannot be null. Must be at least 1. Default is the number of
+         * available processors.
+         *
+         * @param value Value
+         * @return This builder
+         */
+        public B setParallelism(final Integer value) {
+            _parallelism = value;
+            return self();
+        }
+
+        /**
+         * Sets the maximum number of requests waiting to be processed; further
+         * requests are rejected with a 503. Optional. Cannot be null. Must be
+         * at least 1. Default is 1024.
+         *
+         * @param value Value
+         * @return This builder
+         */
+        public B setMaxPendingRequests(final Integer value) {
+            _maxPendingRequests = value;
+            return self();
+        }
+
+        /**
+         * Sets the maximum size in bytes of a compressed request body once
+         * inflated; larger requests are rejected with a 413. Optional. Cannot
+         * be null. Must be at least 1. Default is 32 MiB.
+         *
+         * @param value Value
+         * @return This builder
+         */
+        public B setMaxInflatedBodySize(final Long value) {
+            _maxInflatedBodySize = value;
+            return self();
+        }
+
         @NotNull
         private Parser<List<Record>, com.arpnetworking.metrics.mad.model.HttpRequest> _parser;
+        @NotNull
+        @Min(1)
+        private Integer _parallelism = Runtime.getRuntime().availableProcessors();
+        @NotNull
+        @Min(1)
+        private Integer _maxPendingRequests = 1024;
+        @NotNull
+        @Min(1)
+        private Long _maxInflatedBodySize = 32L * 1024 * 1024;
     }
 }
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.common.sources;
+
+import com.arpnetworking.logback.annotations.LogValue;
+import com.arpnetworking.metrics.common.parsers.Parser;
+import com.arpnetworking.metrics.common.parsers.exceptions.ParsingException;
+import com.arpnetworking.metrics.mad.model.Record;
+import com.arpnetworking.metrics.mad.parsers.StatsdToRecordParser;
+import com.arpnetworking.steno.LogValueMapFactory;
+import com.arpnetworking.steno.Logger;
+import com.arpnetworking.steno.LoggerFactory;
+import net.sf.oval.constraint.Min;
+import net.sf.oval.constraint.NotEmpty;
+import net.sf.oval.constraint.NotNull;
+import net.sf.oval.constraint.Range;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+/**
+ * Source that uses Statsd as input and scales across cores. Unlike
+ * <code>StatsdSource</code> which receives and parses every datagram in a
+ * single actor, this source reads datagrams from an NIO
+ * <code>DatagramChannel</code> on a dedicated receiver thread and parses
+ * them on a pool of parser threads. Receives on a channel are serialized,
+ * so parsing, which dominates the cost per datagram, is what is spread
+ * across cores. When the parser queue is full the receiver parses the
+ * datagram itself which pushes back on the socket buffer instead of
+ * growing the queue without bound.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public final class MultiThreadedStatsdSource extends BaseSource {
+
+    @Override
+    public synchronized void start() {
+        if (_channel != null) {
+            return;
+        }
+        try {
+            _channel = DatagramChannel.open();
+            _channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            if (_receiveBufferSize != null) {
+                _channel.setOption(StandardSocketOptions.SO_RCVBUF, _receiveBufferSize);
+            }
+            _channel.bind(new InetSocketAddress(_host, _port));
+        } catch (final IOException e) {
+            throw new IllegalStateException(
+                    String.format("Unable to bind statsd channel; host=%s, port=%d", _host, _port),
+                    e);
+        }
+        LOGGER.info()
+                .setMessage("Statsd server binding complete")
+                .addData("source", this)
+                .addData("address", _channel.socket().getLocalAddress().getHostAddress())
+                .addData("port", _channel.socket().getLocalPort())
+                .log();
+
+        _parserExecutor = new ThreadPoolExecutor(
+                _parserThreads,
+                _parserThreads,
+                0,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(_parserQueueSize),
+                runnable -> new Thread(runnable, "StatsdParser-" + PARSER_THREAD_COUNT.incrementAndGet()),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        _receiver = new Thread(new Receiver(_channel), "StatsdReceiver-" + getName());
+        _receiver.setDaemon(true);
+        _receiver.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (_channel == null) {
+            return;
+        }
+        try {
+            // Closing the channel releases the receiver blocked on it
+            _channel.close();
+        } catch (final IOException e) {
+            LOGGER.warn()
+                    .setMessage("Unable to close statsd channel")
+                    .addData("source", this)
+                    .setThrowable(e)
+                    .log();
+        }
+        try {
+            _receiver.join(SHUTDOWN_TIMEOUT.toMillis());
+            _parserExecutor.shutdown();
+            _parserExecutor.awaitTermination(SHUTDOWN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            LOGGER.warn()
+                    .setMessage("Interrupted stopping statsd source")
+                    .addData("source", this)
+                    .setThrowable(e)
+                    .log();
+            Thread.currentThread().interrupt();
+        }
+        _receiver = null;
+        _channel = null;
+    }
+
+    /**
+     * Generate a Steno log compatible representation.
+     *
+     * @return Steno log compatible representation.
+     */
+    @LogValue
+    @Override
+    public Object toLogValue() {
+        return LogValueMapFactory.builder(this)
+                .put("super", super.toLogValue())
+                .put("host", _host)
+                .put("port", _port)
+                .put("parserThreads", _parserThreads)
+                .put("parserQueueSize", _parserQueueSize)
+                .put("receiveBufferSize", _receiveBufferSize)
+                .put("maxDatagramSize", _maxDatagramSize)
+                .build();
+    }
+
+    private void parse(final ByteBuffer datagram) {
+        try {
+            final List<Record> records = PARSER.parse(datagram);
+            records.forEach(this::notify);
+        } catch (final ParsingException e) {
+            BAD_REQUEST_LOGGER.warn()
+                    .setMessage("Error handling statsd datagram")
+                    .addData("source", this)
+                    .setThrowable(e)
+                    .log();
+        // CHECKSTYLE.OFF: IllegalCatch - The receiver may run the parse and must survive it
+        } catch (final RuntimeException e) {
+            // CHECKSTYLE.ON: IllegalCatch
+            BAD_REQUEST_LOGGER.error()
+                    .setMessage("Unexpected failure handling statsd datagram")
+                    .addData("source", this)
+                    .setThrowable(e)
+                    .log();
+        }
+    }
+
+    private MultiThreadedStatsdSource(final Builder builder) {
+        super(builder);
+        _host = builder._host;
+        _port = builder._port;
+        _parserThreads = builder._parserThreads;
+        _parserQueueSize = builder._parserQueueSize;
+        _receiveBufferSize = builder._receiveBufferSize;
+        _maxDatagramSize = builder._maxDatagramSize;
+    }
+
+    private DatagramChannel _channel;
+    private ExecutorService _parserExecutor;
+    private Thread _receiver;
+    private final String _host;
+    private final int _port;
+    private final int _parserThreads;
+    private final int _parserQueueSize;
+    @Nullable
+    private final Integer _receiveBufferSize;
+    private final int _maxDatagramSize;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MultiThreadedStatsdSource.class);
+    private static final Logger BAD_REQUEST_LOGGER =
+            LoggerFactory.getRateLimitLogger(MultiThreadedStatsdSource.class, Duration.ofSeconds(30));
+    private static final Parser<List<Record>, ByteBuffer> PARSER = new StatsdToRecordParser();
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
+    private static final AtomicInteger PARSER_THREAD_COUNT = new AtomicInteger();
+    private static final long RECEIVE_BASE_DELAY_MILLIS = 10;
+    private static final long RECEIVE_MAXIMUM_DELAY_MILLIS = 1000;
+
+    private final class Receiver implements Runnable {
+
+        @Override
+        public void run() {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(_maxDatagramSize);
+            int failures = 0;
+            while (_datagramChannel.isOpen()) {
+                buffer.clear();
+                try {
+                    _datagramChannel.receive(buffer);
+                } catch (final ClosedChannelException e) {
+                    break;
+                } catch (final IOException e) {
+                    BAD_REQUEST_LOGGER.warn()
+                            .setMessage("Error receiving statsd datagram")
+                            .addData("source", MultiThreadedStatsdSource.this)
+                            .addData("failures", ++failures)
+                            .setThrowable(e)
+                            .log();
+                    if (!backOff(failures)) {
+                        break;
+                    }
+                    continue;
+                }
+                failures = 0;
+                buffer.flip();
+                // The receive buffer is reused so the datagram is copied for the parser
+                final ByteBuffer datagram = ByteBuffer.allocate(buffer.remaining());
+                datagram.put(buffer).flip();
+                _parserExecutor.execute(() -> parse(datagram));
+            }
+        }
+
+        private boolean backOff(final int failures) {
+            if (failures < 2) {
+                // Retry a single failure immediately
+                return true;
+            }
+            // Doubles with each consecutive failure up to the maximum
+            final long delay = Math.min(
+                    RECEIVE_BASE_DELAY_MILLIS << Math.min(failures - 2, 16),
+                    RECEIVE_MAXIMUM_DELAY_MILLIS);
+            try {
+                Thread.sleep(delay);
+                return true;
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        /* package private */ Receiver(final DatagramChannel channel) {
+            _datagramChannel = channel;
+        }
+
+        private final DatagramChannel _datagramChannel;
+    }
+
+    /**
+     * Implementation of builder pattern for <code>MultiThreadedStatsdSource</code>.
+     *
+     * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+     */
+    public static final class Builder extends BaseSource.Builder<Builder, MultiThreadedStatsdSource> {
+
+        /**
+         * Public constructor.
+         */
+        public Builder() {
+            super(MultiThreadedStatsdSource::new);
+        }
+
+        /**
+         * Sets the host to bind to. Optional. Cannot be null or empty.
+         * Default is localhost.
+         *
+         * @param value the host to bind to
+         * @return This builder
+         */
+        public Builder setHost(final String value) {
+            _host = value;
+            return self();
+        }
+
+        /**
+         * Sets the port to listen on. Optional. Cannot be null. Must be
+         * between 1 and 65535 (inclusive). Default is 8125.
+         *
+         * @param value the port to listen on
+         * @return This builder
+         */
+        public Builder setPort(final Integer value) {
+            _port = value;
+            return self();
+        }
+
+        /**
+         * Sets the number of threads parsing datagrams. Optional. Cannot be
+         * null. Must be at least 1. Default is the number of available
+         * processors.
+         *
+         * @param value the number of parser threads
+         * @return This builder
+         */
+        public Builder setParserThreads(final Integer value) {
+            _parserThreads = value;
+            return self();
+        }
+
+        /**
+         * Sets the number of datagrams which may be queued for the parser
+         * threads. Optional. Cannot be null. Must be at least 1. Default
+         * is 4096.
+         *
+         * @param value the size of the parser queue
+         * @return This builder
+         */
+        public Builder setParserQueueSize(final Integer value) {
+            _parserQueueSize = value;
+            return self();
+        }
+
+        /**
+         * Sets the socket receive buffer size in bytes (SO_RCVBUF). Optional.
+         * Default is the operating system default.
+         *
+         * @param value the socket receive buffer size
+         * @return This builder
+         */
+        public Builder setReceiveBufferSize(@Nullable final Integer value) {
+            _receiveBufferSize = value;
+            return self();
+        }
+
+        /**
+         * Sets the maximum datagram size in bytes; larger datagrams are
+         * truncated. Optional. Cannot be null. Must be between 1 and 65507
+         * (inclusive). Default is 65507.
+         *
+         * @param value the maximum datagram size
+         * @return This builder
+         */
+        public Builder setMaxDatagramSize(final Integer value) {
+            _maxDatagramSize = value;
+            return self();
+        }
+
+        @Override
+        protected Builder self() {
+            return this;
+        }
+
+        @NotNull
+        @NotEmpty
+        private String _host = "localhost";
+        @NotNull
+        @Range(min = 1, max = 65535)
+        private Integer _port = 8125;
+        @NotNull
+        @Min(1)
+        private Integer _parserThreads = Runtime.getRuntime().availableProcessors();
+        @NotNull
+        @Min(1)
+        private Integer _parserQueueSize = 4096;
+        @Nullable
+        @Min(1)
+        private Integer _receiveBufferSize;
+        @NotNull
+        @Range(min = 1, max = 65507)
+        private Integer _maxDatagramSize = 65507;
+    }
+}
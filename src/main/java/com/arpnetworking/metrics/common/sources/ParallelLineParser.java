@@ -0,0 +1,372 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.common.sources;
+
+import com.arpnetworking.logback.annotations.LogValue;
+import com.arpnetworking.metrics.common.parsers.Parser;
+import com.arpnetworking.metrics.common.parsers.exceptions.ParsingException;
+import com.arpnetworking.metrics.common.tailer.PositionStore;
+import com.arpnetworking.steno.LogValueMapFactory;
+import com.arpnetworking.steno.Logger;
+import com.google.common.collect.Maps;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Parses the lines handed over by a <code>Tailer</code> in batches on a pool
+ * of worker threads. The records are emitted either in the order the lines
+ * were read or as soon as each batch is parsed.
+ *
+ * The tailer checkpoints its position after every line, which would allow
+ * a restart to skip lines that were read but not yet parsed. Therefore the
+ * tailer is given the <code>PositionStore</code> returned by
+ * <code>getPositionStore</code> which holds each checkpoint back until every
+ * line read before it has been parsed and its records emitted.
+ *
+ * The <code>add</code> and <code>flush</code> methods must only be called
+ * from the tailer thread, while the parser must be thread safe. When the
+ * work queue is full the tailer thread parses the batch itself which pushes
+ * back on reading instead of buffering the file in memory.
+ *
+ * @param <T> The data type parsed from each line.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+/* package private */ final class ParallelLineParser<T> {
+
+    /**
+     * Add a line to the current batch, submitting the batch for parsing once
+     * it is full.
+     *
+     * @param line The line to parse.
+     */
+    public void add(final byte[] line) {
+        _batch.add(line);
+        ++_lines;
+        if (_batch.size() >= _batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Submit the current batch for parsing even if it is not full.
+     */
+    public void flush() {
+        if (_batch.isEmpty()) {
+            return;
+        }
+        final Batch<T> batch = new Batch<>(_lines - _batch.size(), _lines, _batch);
+        _batch = new ArrayList<>(_batchSize);
+        _submitted = _lines;
+        try {
+            _executor.execute(() -> process(batch));
+        } catch (final RejectedExecutionException e) {
+            // The lines are neither parsed nor checkpointed and are read
+            // again on restart; no later checkpoint may pass over them
+            _logger.warn()
+                    .setMessage("Discarding lines read after shutdown")
+                    .addData("lines", batch._end - batch._start)
+                    .log();
+            synchronized (_lock) {
+                _closed = true;
+            }
+            batch._lines = null;
+            complete(batch);
+        }
+    }
+
+    /**
+     * Submit the current batch and wait for all submitted batches to be
+     * parsed, emitted and checkpointed. No checkpoint is written to the
+     * underlying <code>PositionStore</code> once this method returns, even
+     * if the wait timed out, so the store may then be closed.
+     *
+     * @param timeoutMillis The maximum time to wait in milliseconds.
+     * @return <code>True</code> if and only if all batches completed in time.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean shutdown(final long timeoutMillis) throws InterruptedException {
+        try {
+            flush();
+            _executor.shutdown();
+            return _executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        } finally {
+            synchronized (_lock) {
+                _closed = true;
+            }
+        }
+    }
+
+    /**
+     * The <code>PositionStore</code> through which the tailer should
+     * checkpoint.
+     *
+     * @return The ordered <code>PositionStore</code>.
+     */
+    public PositionStore getPositionStore() {
+        return _orderedPositionStore;
+    }
+
+    /**
+     * Generate a Steno log compatible representation.
+     *
+     * @return Steno log compatible representation.
+     */
+    @LogValue
+    public Object toLogValue() {
+        return LogValueMapFactory.builder(this)
+                .put("threads", _executor.getMaximumPoolSize())
+                .put("batchSize", _batchSize)
+                .put("preserveOrder", _preserveOrder)
+                .build();
+    }
+
+    @Override
+    public String toString() {
+        return toLogValue().toString();
+    }
+
+    private void process(final Batch<T> batch) {
+        // The batch must always complete; otherwise later checkpoints and, when
+        // preserving order, later batches are held back forever
+        try {
+            final List<T> records = new ArrayList<>(batch._lines.size());
+            for (final byte[] line : batch._lines) {
+                parse(line, records);
+            }
+            batch._lines = null;
+            if (_preserveOrder) {
+                batch._records = records;
+            } else {
+                emit(records);
+            }
+        } finally {
+            complete(batch);
+        }
+    }
+
+    private void parse(final byte[] line, final List<T> records) {
+        try {
+            records.add(_parser.parse(line));
+        } catch (final ParsingException e) {
+            _logger.error()
+                    .setMessage("Failed to parse data")
+                    .setThrowable(e)
+                    .log();
+            // CHECKSTYLE.OFF: IllegalCatch - A faulty line must not stall the batch
+        } catch (final RuntimeException e) {
+            // CHECKSTYLE.ON: IllegalCatch
+            _logger.error()
+                    .setMessage("Unexpected failure parsing data")
+                    .setThrowable(e)
+                    .log();
+        }
+    }
+
+    private void emit(final List<T> records) {
+        for (final T record : records) {
+            try {
+                _sink.accept(record);
+                // CHECKSTYLE.OFF: IllegalCatch - A faulty record must not stall the batch
+            } catch (final RuntimeException e) {
+                // CHECKSTYLE.ON: IllegalCatch
+                _logger.error()
+                        .setMessage("Failed to emit record")
+                        .setThrowable(e)
+                        .log();
+            }
+        }
+    }
+
+    private void complete(final Batch<T> batch) {
+        synchronized (_lock) {
+            _completedBatches.put(batch._start, batch);
+            Batch<T> next = _completedBatches.remove(_completed);
+            while (next != null) {
+                _completed = next._end;
+                if (next._records != null) {
+                    emit(next._records);
+                }
+                next = _completedBatches.remove(_completed);
+            }
+            Checkpoint checkpoint = _checkpoints.peekFirst();
+            while (!_closed && checkpoint != null && checkpoint._lines <= _completed) {
+                _positionStore.setPosition(checkpoint._identifier, checkpoint._position);
+                _checkpoints.removeFirst();
+                checkpoint = _checkpoints.peekFirst();
+            }
+        }
+    }
+
+    private void checkpoint(final String identifier, final long position) {
+        synchronized (_lock) {
+            if (_closed) {
+                // Late checkpoints are dropped; the store may be closed
+                return;
+            }
+            if (_checkpoints.isEmpty() && _completed == _lines) {
+                // Every line read so far has been processed
+                _positionStore.setPosition(identifier, position);
+                return;
+            }
+            final Checkpoint last = _checkpoints.peekLast();
+            if (last != null
+                    && (last._lines == _lines || last._lines > _submitted)
+                    && last._identifier.equals(identifier)) {
+                // Only the latest checkpoint within the current batch is kept
+                _checkpoints.removeLast();
+            }
+            _checkpoints.addLast(new Checkpoint(_lines, identifier, position));
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param parser The thread safe <code>Parser</code> to apply to each line.
+     * @param sink The destination for parsed records.
+     * @param positionStore The <code>PositionStore</code> to checkpoint to.
+     * @param threads The number of parser threads.
+     * @param batchSize The maximum number of lines per batch.
+     * @param preserveOrder Whether records are emitted in the order read.
+     * @param logger The <code>Logger</code> for parsing failures.
+     */
+    /* package private */ ParallelLineParser(
+            final Parser<T, byte[]> parser,
+            final Consumer<T> sink,
+            final PositionStore positionStore,
+            final int threads,
+            final int batchSize,
+            final boolean preserveOrder,
+            final Logger logger) {
+        _parser = parser;
+        _sink = sink;
+        _positionStore = positionStore;
+        _batchSize = batchSize;
+        _preserveOrder = preserveOrder;
+        _logger = logger;
+        _batch = new ArrayList<>(batchSize);
+        _executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                0,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUED_BATCHES_PER_THREAD),
+                runnable -> new Thread(runnable, "FileSourceParser-" + PARSER_THREAD_COUNT.incrementAndGet()),
+                ParallelLineParser::rejected);
+    }
+
+    private static void rejected(final Runnable runnable, final ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            // Unlike CallerRunsPolicy do not drop the batch silently
+            throw new RejectedExecutionException("Parser is shut down");
+        }
+        // Parse the batch on the tailer thread which pushes back on reading
+        runnable.run();
+    }
+
+    private final Parser<T, byte[]> _parser;
+    private final Consumer<T> _sink;
+    private final PositionStore _positionStore;
+    private final int _batchSize;
+    private final boolean _preserveOrder;
+    private final Logger _logger;
+    private final ThreadPoolExecutor _executor;
+    private final PositionStore _orderedPositionStore = new OrderedPositionStore();
+    private final Object _lock = new Object();
+
+    // Accessed only from the tailer thread
+    private List<byte[]> _batch;
+    private long _lines;
+    private long _submitted;
+
+    // Guarded by _lock
+    private long _completed;
+    private boolean _closed;
+    private final Map<Long, Batch<T>> _completedBatches = Maps.newHashMap();
+    private final Deque<Checkpoint> _checkpoints = new ArrayDeque<>();
+
+    private static final int QUEUED_BATCHES_PER_THREAD = 2;
+    private static final AtomicInteger PARSER_THREAD_COUNT = new AtomicInteger();
+
+    private static final class Batch<T> {
+
+        private Batch(final long start, final long end, final List<byte[]> lines) {
+            _start = start;
+            _end = end;
+            _lines = lines;
+        }
+
+        private final long _start;
+        private final long _end;
+        private List<byte[]> _lines;
+        private List<T> _records;
+    }
+
+    private static final class Checkpoint {
+
+        private Checkpoint(final long lines, final String identifier, final long position) {
+            _lines = lines;
+            _identifier = identifier;
+            _position = position;
+        }
+
+        private final long _lines;
+        private final String _identifier;
+        private final long _position;
+    }
+
+    private final class OrderedPositionStore implements PositionStore {
+
+        @Override
+        public Optional<Long> getPosition(final String identifier) {
+            return _positionStore.getPosition(identifier);
+        }
+
+        @Override
+        public void setPosition(final String identifier, final long position) {
+            checkpoint(identifier, position);
+        }
+
+        @Override
+        public void close() {
+            // The underlying store is owned and closed by the file source
+        }
+
+        @LogValue
+        public Object toLogValue() {
+            return LogValueMapFactory.builder(this)
+                    .put("positionStore", _positionStore)
+                    .build();
+        }
+
+        @Override
+        public String toString() {
+            return toLogValue().toString();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.common.sources;
+
+import com.arpnetworking.commons.builder.ThreadLocalBuilder;
+import com.arpnetworking.metrics.mad.model.DefaultMetric;
+import com.arpnetworking.metrics.mad.model.DefaultRecord;
+import com.arpnetworking.metrics.mad.model.Metric;
+import com.arpnetworking.metrics.mad.model.Record;
+import com.arpnetworking.tsdcore.model.MetricType;
+import com.arpnetworking.tsdcore.model.Quantity;
+import com.arpnetworking.tsdcore.model.Unit;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+
+/**
+ * Coalesces statsd records received within a short window by metric name,
+ * dimensions, type and unit. Within a window counter samples are summed,
+ * gauges keep the last value and timer samples are collected into a
+ * single metric with many values. Each flush emits one record per key
+ * timestamped with the time of the first record for that key in the
+ * window.
+ *
+ * Note that coalescing counters follows traditional statsd semantics; the
+ * sum over the window becomes a single sample which affects statistics
+ * other than the sum (e.g. count, min and max).
+ *
+ * This class is not thread safe.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+/* package private */ final class StatsdPreAggregator {
+
+    /**
+     * Add the metrics of a record to the current window.
+     *
+     * @param record The record to add.
+     */
+    public void add(final Record record) {
+        for (final Map.Entry<String, ? extends Metric> entry : record.getMetrics().entrySet()) {
+            final Metric metric = entry.getValue();
+            final Optional<double[]> rawValues = metric.getRawValues();
+            if (rawValues.isPresent()) {
+                final Accumulation accumulation = getAccumulation(
+                        entry.getKey(),
+                        record,
+                        metric.getType(),
+                        metric.getUnit().orElse(null));
+                for (final double value : rawValues.get()) {
+                    accumulation.add(value);
+                }
+            } else {
+                for (final Quantity quantity : metric.getValues()) {
+                    getAccumulation(entry.getKey(), record, metric.getType(), quantity.getUnit().orElse(null))
+                            .add(quantity.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Emit one record per key in the current window and start a new window.
+     *
+     * @param consumer The consumer of the coalesced records.
+     */
+    public void flush(final Consumer<Record> consumer) {
+        for (final Map.Entry<Key, Accumulation> entry : _accumulations.entrySet()) {
+            final Key key = entry.getKey();
+            final Accumulation accumulation = entry.getValue();
+            final Metric metric = ThreadLocalBuilder.build(
+                    DefaultMetric.Builder.class,
+                    b -> b.setType(key._type)
+                            .setRawValues(accumulation.getValues())
+                            .setUnit(key._unit));
+            consumer.accept(ThreadLocalBuilder.build(
+                    DefaultRecord.Builder.class,
+                    b -> b.setTime(accumulation._time)
+                            .setDimensions(key._dimensions)
+                            .setMetrics(ImmutableMap.of(key._name, metric))));
+        }
+        _accumulations.clear();
+    }
+
+    /**
+     * Accessor for the number of keys in the current window.
+     *
+     * @return The number of keys in the current window.
+     */
+    public int size() {
+        return _accumulations.size();
+    }
+
+    private Accumulation getAccumulation(
+            final String name,
+            final Record record,
+            final MetricType type,
+            @Nullable final Unit unit) {
+        return _accumulations.computeIfAbsent(
+                new Key(name, record.getDimensions(), type, unit),
+                key -> new Accumulation(type, record.getTime()));
+    }
+
+    private final Map<Key, Accumulation> _accumulations = Maps.newLinkedHashMap();
+
+    private static final int INITIAL_VALUES_CAPACITY = 8;
+
+    private static final class Key {
+
+        /* package private */ Key(
+                final String name,
+                final ImmutableMap<String, String> dimensions,
+                final MetricType type,
+                @Nullable final Unit unit) {
+            _name = name;
+            _dimensions = dimensions;
+            _type = type;
+            _unit = unit;
+            _hashCode = Objects.hash(name, dimensions, type, unit);
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            final Key otherKey = (Key) other;
+            return _hashCode == otherKey._hashCode
+                    && _type == otherKey._type
+                    && _unit == otherKey._unit
+                    && Objects.equals(_name, otherKey._name)
+                    && Objects.equals(_dimensions, otherKey._dimensions);
+        }
+
+        @Override
+        public int hashCode() {
+            return _hashCode;
+        }
+
+        private final String _name;
+        private final ImmutableMap<String, String> _dimensions;
+        private final MetricType _type;
+        @Nullable
+        private final Unit _unit;
+        private final int _hashCode;
+    }
+
+    private static final class Accumulation {
+
+        /* package private */ Accumulation(final MetricType type, final ZonedDateTime time) {
+            _type = type;
+            _time = time;
+            _values = new double[MetricType.TIMER.equals(type) ? INITIAL_VALUES_CAPACITY : 1];
+        }
+
+        public void add(final double value) {
+            if (MetricType.COUNTER.equals(_type)) {
+                _values[0] += value;
+                _size = 1;
+            } else if (MetricType.GAUGE.equals(_type)) {
+                _values[0] = value;
+                _size = 1;
+            } else {
+                if (_size == _values.length) {
+                    _values = Arrays.copyOf(_values, _size * 2);
+                }
+                _values[_size++] = value;
+            }
+        }
+
+        public double[] getValues() {
+            return _size == _values.length ? _values : Arrays.copyOf(_values, _size);
+        }
+
+        private final MetricType _type;
+        private final ZonedDateTime _time;
+        private double[] _values;
+        private int _size = 0;
+    }
+}
@@ -17,26 +17,38 @@ package com.arpnetworking.metrics.common.sources;
 
 import akka.actor.AbstractActor;
 import akka.actor.ActorRef;
+import akka.actor.Cancellable;
 import akka.actor.Props;
+import akka.dispatch.ExecutionContexts;
+import akka.io.Inet;
 import akka.io.Udp;
 import akka.io.UdpMessage;
+import akka.io.UdpSO;
 import com.arpnetworking.metrics.common.parsers.Parser;
 import com.arpnetworking.metrics.common.parsers.exceptions.ParsingException;
 import com.arpnetworking.metrics.mad.model.Record;
 import com.arpnetworking.metrics.mad.parsers.StatsdToRecordParser;
 import com.arpnetworking.steno.Logger;
 import com.arpnetworking.steno.LoggerFactory;
+import com.google.common.collect.Lists;
+import net.sf.oval.constraint.Min;
 import net.sf.oval.constraint.NotEmpty;
 import net.sf.oval.constraint.NotNull;
 import net.sf.oval.constraint.Range;
+import scala.concurrent.duration.FiniteDuration;
 
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 /**
- * Source that uses Statsd as input.
+ * Source that uses Statsd as input. Optionally, the records received within
+ * a short window can be coalesced by metric name and tags before they are
+ * emitted; see <code>StatsdPreAggregator</code> for details.
  *
  * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
  */
@@ -56,10 +68,15 @@ public final class StatsdSource extends ActorSource {
         super(builder);
         _host = builder._host;
         _port = builder._port;
+        _receiveBufferSize = builder._receiveBufferSize;
+        _preAggregationWindow = Optional.ofNullable(builder._preAggregationWindow);
     }
 
     private final String _host;
     private final int _port;
+    @Nullable
+    private final Integer _receiveBufferSize;
+    private final Optional<Duration> _preAggregationWindow;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(StatsdSource.class);
     private static final Parser<List<Record>, ByteBuffer> PARSER = new StatsdToRecordParser();
@@ -108,9 +125,14 @@ public final class StatsdSource extends ActorSource {
 
                         try {
                             // NOTE: The parsing occurs in the actor itself which can become a bottleneck
-                            // if there are more records to be parsed then a single thread can handle.
-                            final List<Record> records = PARSER.parse(updReceived.data().toByteBuffer());
-                            records.forEach(_sink::notify);
+                            // if there are more records to be parsed then a single thread can handle; use
+                            // MultiThreadedStatsdSource to receive and parse on multiple threads.
+                            final List<Record> records = PARSER.parse(updReceived.data().asByteBuffer());
+                            if (_preAggregator.isPresent()) {
+                                records.forEach(_preAggregator.get()::add);
+                            } else {
+                                records.forEach(_sink::notify);
+                            }
                         } catch (final ParsingException e) {
                             BAD_REQUEST_LOGGER.warn()
                                     .setMessage("Error handling statsd datagram")
@@ -119,6 +141,7 @@ public final class StatsdSource extends ActorSource {
                                     .log();
                         }
                     })
+                    .matchEquals(FLUSH, message -> flush())
                     .matchEquals(UdpMessage.unbind(), message -> {
                         LOGGER.debug()
                                 .setMessage("Statsd unbind")
@@ -131,11 +154,26 @@ public final class StatsdSource extends ActorSource {
                                 .setMessage("Statsd unbound")
                                 .addData("socket", _socket)
                                 .log();
+                        flush();
                         getContext().stop(getSelf());
                     })
                     .build();
         }
 
+        @Override
+        public void postStop() throws Exception {
+            if (_flushTimer.isPresent()) {
+                _flushTimer.get().cancel();
+            }
+            super.postStop();
+        }
+
+        private void flush() {
+            if (_preAggregator.isPresent()) {
+                _preAggregator.get().flush(_sink::notify);
+            }
+        }
+
         /**
          * Constructor.
          *
@@ -146,10 +184,31 @@ public final class StatsdSource extends ActorSource {
             _host = source._host;
             _port = source._port;
 
+            final List<Inet.SocketOption> options = Lists.newArrayList();
+            if (source._receiveBufferSize != null) {
+                options.add(UdpSO.receiveBufferSize(source._receiveBufferSize));
+            }
             final ActorRef udpManager = Udp.get(getContext().system()).getManager();
             udpManager.tell(
-                    UdpMessage.bind(getSelf(), new InetSocketAddress(_host, _port)),
+                    UdpMessage.bind(getSelf(), new InetSocketAddress(_host, _port), options),
                     getSelf());
+
+            if (source._preAggregationWindow.isPresent()) {
+                final FiniteDuration window = new FiniteDuration(
+                        source._preAggregationWindow.get().toNanos(),
+                        TimeUnit.NANOSECONDS);
+                _preAggregator = Optional.of(new StatsdPreAggregator());
+                _flushTimer = Optional.of(getContext().system().scheduler().schedule(
+                        window,
+                        window,
+                        getSelf(),
+                        FLUSH,
+                        ExecutionContexts.global(),
+                        getSelf()));
+            } else {
+                _preAggregator = Optional.empty();
+                _flushTimer = Optional.empty();
+            }
         }
 
         private boolean _isReady = false;
@@ -157,8 +216,11 @@ public final class StatsdSource extends ActorSource {
         private final StatsdSource _sink;
         private final String _host;
         private final int _port;
+        private final Optional<StatsdPreAggregator> _preAggregator;
+        private final Optional<Cancellable> _flushTimer;
 
         private static final String IS_READY = "IsReady";
+        private static final String FLUSH = "Flush";
         private static final Logger BAD_REQUEST_LOGGER =
                 LoggerFactory.getRateLimitLogger(StatsdSource.class, Duration.ofSeconds(30));
     }
@@ -201,6 +263,31 @@ public final class StatsdSource extends ActorSource {
             return self();
         }
 
+        /**
+         * Sets the socket receive buffer size in bytes (SO_RCVBUF). Optional.
+         * Default is the operating system default.
+         *
+         * @param value the socket receive buffer size
+         * @return This builder
+         */
+        public Builder setReceiveBufferSize(@Nullable final Integer value) {
+            _receiveBufferSize = value;
+            return self();
+        }
+
+        /**
+         * Sets the window over which received records are coalesced by
+         * metric name and tags before being emitted. Optional. Default is
+         * no pre-aggregation; each statsd line is emitted as a record.
+         *
+         * @param value the pre-aggregation window
+         * @return This builder
+         */
+        public Builder setPreAggregationWindow(@Nullable final Duration value) {
+            _preAggregationWindow = value;
+            return self();
+        }
+
         @Override
         protected Builder self() {
             return this;
@@ -212,5 +299,10 @@ public final class StatsdSource extends ActorSource {
         @NotNull
         @Range(min = 1, max = 65535)
         private Integer _port = 8125;
+        @Nullable
+        @Min(1)
+        private Integer _receiveBufferSize;
+        @Nullable
+        private Duration _preAggregationWindow;
     }
 }
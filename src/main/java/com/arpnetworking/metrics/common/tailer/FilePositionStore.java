@@ -42,8 +42,9 @@ import java.util.concurrent.ConcurrentMap;
 
 /**
  * Implementation of <code>PositionStore</code> which stores the read
- * position in a file on local disk. This class is thread-safe per file
- * identifier.
+ * position in a file on local disk. This class is thread-safe and may be
+ * shared by tailers of different files; positions of a single file
+ * identifier are expected to be set by one tailer at a time.
  *
  * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
  */
@@ -60,11 +61,14 @@ public final class FilePositionStore implements PositionStore {
 
     @Override
     public void setPosition(final String identifier, final long position) {
-        final Descriptor descriptor = _state.putIfAbsent(
-                identifier,
-                new Descriptor.Builder()
-                        .setPosition(position)
-                        .build());
+        Descriptor descriptor = _state.get(identifier);
+        if (descriptor == null) {
+            descriptor = _state.putIfAbsent(
+                    identifier,
+                    new Descriptor.Builder()
+                            .setPosition(position)
+                            .build());
+        }
 
         final ZonedDateTime now = ZonedDateTime.now();
         boolean requiresFlush = now.minus(_flushInterval).isAfter(_lastFlush);
@@ -103,7 +107,7 @@ public final class FilePositionStore implements PositionStore {
         return toLogValue().toString();
     }
 
-    private void flush() {
+    private synchronized void flush() {
         // Age out old state
         final ZonedDateTime now = ZonedDateTime.now();
         final ZonedDateTime oldest = now.minus(_retention);
@@ -171,7 +175,7 @@ public final class FilePositionStore implements PositionStore {
     private final Duration _retention;
     private final ConcurrentMap<String, Descriptor> _state;
 
-    private ZonedDateTime _lastFlush = ZonedDateTime.now();
+    private volatile ZonedDateTime _lastFlush = ZonedDateTime.now();
 
     private static final TypeReference<ConcurrentMap<String, Descriptor>> STATE_MAP_TYPE_REFERENCE =
             new TypeReference<ConcurrentMap<String, Descriptor>>(){};
@@ -180,26 +184,26 @@ public final class FilePositionStore implements PositionStore {
 
     private static final class Descriptor {
 
-        public void update(final long position, final ZonedDateTime updatedAt) {
+        public synchronized void update(final long position, final ZonedDateTime updatedAt) {
             _delta += position - _position;
             _lastUpdated = updatedAt;
             _position = position;
         }
 
-        public void flush() {
+        public synchronized void flush() {
             _delta = 0;
         }
 
-        public long getPosition() {
+        public synchronized long getPosition() {
             return _position;
         }
 
-        public ZonedDateTime getLastUpdated() {
+        public synchronized ZonedDateTime getLastUpdated() {
             return _lastUpdated;
         }
 
         @JsonIgnore
-        public long getDelta() {
+        public synchronized long getDelta() {
             return _delta;
         }
 
@@ -209,6 +213,7 @@ public final class FilePositionStore implements PositionStore {
             _delta = 0;
         }
 
+        // NOTE: Updated by the tailer of the file and read when flushing
         private long _position;
         private ZonedDateTime _lastUpdated;
         private long _delta;
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.common.tailer;
+
+/**
+ * Splits buffered bytes into lines the way the tailer reads them. A line
+ * ends at a line feed, a carriage return followed by a line feed or a lone
+ * carriage return; the terminator is not part of the line. A carriage
+ * return followed by another carriage return is part of the line. Since a
+ * carriage return can only be classified by the byte after it, one at the
+ * end of the buffer ends a line only at the end of the input.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+/* package private */ final class LineSplitter {
+
+    /**
+     * Pass each complete line in the buffer to the handler.
+     *
+     * @param data The buffer.
+     * @param limit The number of bytes in the buffer.
+     * @param endOfInput Whether no more bytes follow the buffer.
+     * @param handler The handler of each line.
+     * @return The number of bytes consumed; any remaining bytes are a partial line.
+     */
+    public static int split(final byte[] data, final int limit, final boolean endOfInput, final LineHandler handler) {
+        int lineStart = 0;
+        int i = 0;
+        while (i < limit) {
+            // Scan for the next line terminator
+            while (i < limit && data[i] != '\n' && data[i] != '\r') {
+                ++i;
+            }
+            if (i == limit) {
+                break;
+            }
+            if (data[i] == '\n') {
+                handler.handle(data, lineStart, i, i + 1);
+                lineStart = ++i;
+            } else if (i + 1 == limit) {
+                // A carriage return can only be classified by the byte after it
+                if (endOfInput) {
+                    handler.handle(data, lineStart, i, i + 1);
+                    lineStart = ++i;
+                }
+                break;
+            } else if (data[i + 1] == '\n') {
+                handler.handle(data, lineStart, i, i + 2);
+                i += 2;
+                lineStart = i;
+            } else if (data[i + 1] == '\r') {
+                // A carriage return followed by another is part of the line
+                ++i;
+            } else {
+                handler.handle(data, lineStart, i, i + 1);
+                lineStart = ++i;
+            }
+        }
+        return lineStart;
+    }
+
+    private LineSplitter() { }
+
+    /**
+     * Receives the lines found by <code>LineSplitter</code>.
+     *
+     * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+     */
+    @FunctionalInterface
+    /* package private */ interface LineHandler {
+
+        /**
+         * Handle a line.
+         *
+         * @param data The buffer.
+         * @param start The offset of the first byte of the line.
+         * @param end The offset after the last byte of the line.
+         * @param next The offset after the line terminator.
+         */
+        void handle(byte[] data, int start, int end, int next);
+    }
+}
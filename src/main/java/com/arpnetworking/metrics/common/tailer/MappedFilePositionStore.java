@@ -0,0 +1,320 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.common.tailer;
+
+import com.arpnetworking.commons.builder.OvalBuilder;
+import com.arpnetworking.logback.annotations.LogValue;
+import com.arpnetworking.steno.LogValueMapFactory;
+import com.arpnetworking.steno.Logger;
+import com.arpnetworking.steno.LoggerFactory;
+import com.google.common.collect.Maps;
+import net.sf.oval.constraint.Min;
+import net.sf.oval.constraint.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Implementation of <code>PositionStore</code> which stores the read
+ * position in a memory-mapped file of fixed-size slots, one per file
+ * identifier. Updating a known identifier writes its slot in place, so a
+ * checkpoint costs two memory writes instead of serializing every entry.
+ *
+ * Positions written to the mapping survive a crash of the process. The
+ * mapping is forced to disk at most once per flush interval and on close,
+ * which bounds what is lost if the host itself fails. A slot is committed
+ * by writing the identifier length last, so a partially written slot is
+ * ignored on load.
+ *
+ * The file holds a fixed number of slots. Entries not updated within the
+ * retention are released on load, and when every slot is in use the least
+ * recently updated entry is replaced. This class is thread-safe; slots are
+ * read and written under the same lock that reassigns them on eviction,
+ * while forcing the mapping to disk holds no lock so it does not stall
+ * other tailers sharing the store.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public final class MappedFilePositionStore implements PositionStore {
+
+    @Override
+    public synchronized Optional<Long> getPosition(final String identifier) {
+        final Integer slot = _slots.get(identifier);
+        if (slot == null) {
+            return Optional.empty();
+        }
+        return Optional.of(_buffer.getLong(slot + POSITION_OFFSET));
+    }
+
+    @Override
+    public void setPosition(final String identifier, final long position) {
+        final long now = System.currentTimeMillis();
+        synchronized (this) {
+            // Another identifier may evict this one and take over its slot
+            Integer slot = _slots.get(identifier);
+            if (slot == null) {
+                slot = allocate(identifier);
+            }
+            _buffer.putLong(slot + POSITION_OFFSET, position);
+            _buffer.putLong(slot + UPDATED_OFFSET, now);
+        }
+        // Only the thread which claims the interval forces; the others do not wait
+        final long lastForce = _lastForce.get();
+        if (now - lastForce > _flushIntervalMillis && _lastForce.compareAndSet(lastForce, now)) {
+            _buffer.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        _lastForce.set(System.currentTimeMillis());
+        _buffer.force();
+        _channel.close();
+    }
+
+    /**
+     * Generate a Steno log compatible representation.
+     *
+     * @return Steno log compatible representation.
+     */
+    @LogValue
+    public Object toLogValue() {
+        return LogValueMapFactory.builder(this)
+                .put("file", _file)
+                .put("capacity", _capacity)
+                .put("size", _slots.size())
+                .put("flushInterval", _flushInterval)
+                .put("retention", _retention)
+                .build();
+    }
+
+    @Override
+    public String toString() {
+        return toLogValue().toString();
+    }
+
+    private synchronized int allocate(final String identifier) {
+        final Integer existing = _slots.get(identifier);
+        if (existing != null) {
+            return existing;
+        }
+        final byte[] bytes = identifier.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAXIMUM_IDENTIFIER_LENGTH) {
+            throw new IllegalArgumentException(String.format(
+                    "Identifier too long; identifier=%s, maximum=%d",
+                    identifier,
+                    MAXIMUM_IDENTIFIER_LENGTH));
+        }
+        final int slot;
+        if (_free.isEmpty()) {
+            slot = evict();
+        } else {
+            slot = _free.pop();
+        }
+
+        // Clear the length first; it commits the slot once the rest is written
+        _buffer.put(slot + LENGTH_OFFSET, (byte) 0);
+        for (int i = 0; i < bytes.length; ++i) {
+            _buffer.put(slot + IDENTIFIER_OFFSET + i, bytes[i]);
+        }
+        _buffer.putLong(slot + POSITION_OFFSET, 0);
+        _buffer.putLong(slot + UPDATED_OFFSET, System.currentTimeMillis());
+        _buffer.put(slot + LENGTH_OFFSET, (byte) bytes.length);
+        _slots.put(identifier, slot);
+        return slot;
+    }
+
+    private int evict() {
+        String oldestIdentifier = null;
+        long oldestUpdated = Long.MAX_VALUE;
+        for (final Map.Entry<String, Integer> entry : _slots.entrySet()) {
+            final long updated = _buffer.getLong(entry.getValue() + UPDATED_OFFSET);
+            if (updated < oldestUpdated) {
+                oldestUpdated = updated;
+                oldestIdentifier = entry.getKey();
+            }
+        }
+        LOGGER.warn()
+                .setMessage("Position store full; replacing least recently updated entry")
+                .addData("file", _file)
+                .addData("capacity", _capacity)
+                .addData("identifier", oldestIdentifier)
+                .log();
+        return _slots.remove(oldestIdentifier);
+    }
+
+    private void load() {
+        final int magic = _buffer.getInt(MAGIC_OFFSET);
+        if (magic != MAGIC || _buffer.getInt(VERSION_OFFSET) != VERSION) {
+            if (magic != 0) {
+                LOGGER.warn()
+                        .setMessage("Unrecognized position store; discarding state")
+                        .addData("file", _file)
+                        .log();
+            }
+            for (int i = 0; i < _buffer.capacity(); ++i) {
+                _buffer.put(i, (byte) 0);
+            }
+            _buffer.putInt(VERSION_OFFSET, VERSION);
+            _buffer.putInt(MAGIC_OFFSET, MAGIC);
+        }
+
+        final long oldest = System.currentTimeMillis() - _retention.toMillis();
+        final byte[] bytes = new byte[MAXIMUM_IDENTIFIER_LENGTH];
+        for (int slot = _capacity * SLOT_SIZE; slot > 0; slot -= SLOT_SIZE) {
+            final int length = _buffer.get(slot + LENGTH_OFFSET);
+            if (length > 0 && length <= MAXIMUM_IDENTIFIER_LENGTH && _buffer.getLong(slot + UPDATED_OFFSET) > oldest) {
+                for (int i = 0; i < length; ++i) {
+                    bytes[i] = _buffer.get(slot + IDENTIFIER_OFFSET + i);
+                }
+                _slots.put(StandardCharsets.UTF_8.decode(ByteBuffer.wrap(bytes, 0, length)).toString(), slot);
+            } else {
+                _buffer.put(slot + LENGTH_OFFSET, (byte) 0);
+                _free.push(slot);
+            }
+        }
+    }
+
+    private MappedFilePositionStore(final Builder builder) {
+        _file = builder._file;
+        _capacity = builder._capacity;
+        _flushInterval = builder._flushInterval;
+        _flushIntervalMillis = _flushInterval.toMillis();
+        _retention = builder._retention;
+        try {
+            _channel = FileChannel.open(
+                    _file,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            // The first slot holds the header
+            _buffer = _channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) (_capacity + 1) * SLOT_SIZE);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        load();
+        _lastForce = new AtomicLong(System.currentTimeMillis());
+    }
+
+    private final Path _file;
+    private final int _capacity;
+    private final Duration _flushInterval;
+    private final long _flushIntervalMillis;
+    private final Duration _retention;
+    private final FileChannel _channel;
+    private final MappedByteBuffer _buffer;
+    private final ConcurrentMap<String, Integer> _slots = Maps.newConcurrentMap();
+    private final Deque<Integer> _free = new ArrayDeque<>();
+    private final AtomicLong _lastForce;
+
+    private static final int MAGIC = 0x4D414450; // MADP
+    private static final int VERSION = 1;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int SLOT_SIZE = 64;
+    private static final int POSITION_OFFSET = 0;
+    private static final int UPDATED_OFFSET = 8;
+    private static final int LENGTH_OFFSET = 16;
+    private static final int IDENTIFIER_OFFSET = 17;
+    private static final int MAXIMUM_IDENTIFIER_LENGTH = SLOT_SIZE - IDENTIFIER_OFFSET;
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedFilePositionStore.class);
+
+    /**
+     * Implementation of builder pattern for <code>MappedFilePositionStore</code>.
+     *
+     * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+     */
+    public static class Builder extends OvalBuilder<MappedFilePositionStore> {
+
+        /**
+         * Public constructor.
+         */
+        public Builder() {
+            super(MappedFilePositionStore::new);
+        }
+
+        /**
+         * Sets the file to store position in. Cannot be null or empty.
+         *
+         * @param value The file to store position in.
+         * @return This instance of {@link Builder}
+         */
+        public Builder setFile(final Path value) {
+            _file = value;
+            return this;
+        }
+
+        /**
+         * Sets the number of file identifiers the store can hold. Optional.
+         * Default is 1024. Changing the capacity of an existing store
+         * discards entries beyond the new capacity.
+         *
+         * @param value The number of file identifiers.
+         * @return This instance of {@link Builder}
+         */
+        public Builder setCapacity(final Integer value) {
+            _capacity = value;
+            return this;
+        }
+
+        /**
+         * Sets the maximum interval between forcing the position store to
+         * disk. Optional. Default is ten seconds.
+         *
+         * @param value The interval between forcing to disk.
+         * @return This instance of {@link Builder}
+         */
+        public Builder setFlushInterval(final Duration value) {
+            _flushInterval = value;
+            return this;
+        }
+
+        /**
+         * Sets the duration of an entry in the position store. Optional.
+         * Default is one day.
+         *
+         * @param value The retention of an entry in the position store.
+         * @return This instance of {@link Builder}
+         */
+        public Builder setRetention(final Duration value) {
+            _retention = value;
+            return this;
+        }
+
+        @NotNull
+        private Path _file;
+        @NotNull
+        @Min(1)
+        private Integer _capacity = 1024;
+        @NotNull
+        private Duration _flushInterval = Duration.ofSeconds(10);
+        @NotNull
+        private Duration _retention = Duration.ofDays(1);
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.common.tailer;
+
+import com.arpnetworking.steno.Logger;
+import com.arpnetworking.steno.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+import java.util.zip.GZIPInputStream;
+import javax.xml.bind.DatatypeConverter;
+
+/**
+ * Reads the unread remainder of files rotated away from a tailed file while
+ * the tailer was not running. The rotated siblings of the file are the other
+ * files in its directory whose names start with its name; for example,
+ * <code>query.log.1</code> and <code>query.log.1.gz</code> for
+ * <code>query.log</code>. A sibling is identified by the same prefix hash
+ * used by <code>StatefulTailer</code> and is read from its stored position
+ * to its end, oldest first, decompressing gzip files as a stream. Siblings
+ * without a stored position were never tailed and are ignored.
+ *
+ * The reader runs without waiting between reads and checkpoints its
+ * position after each buffer in uncompressed bytes, so an interrupted
+ * catch-up resumes where it stopped.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+/* package private */ final class RotatedFileReader {
+
+    /**
+     * Read the unread lines of each rotated sibling of the file.
+     *
+     * @throws IOException if a rotated file cannot be read.
+     */
+    public void run() throws IOException {
+        for (final Path rotatedFile : findRotatedFiles()) {
+            if (!_isRunning.getAsBoolean()) {
+                return;
+            }
+            catchUp(rotatedFile);
+        }
+    }
+
+    /* package private */ List<Path> findRotatedFiles() throws IOException {
+        final Path directory = _file.toAbsolutePath().getParent();
+        final String name = _file.getFileName().toString();
+        final List<Path> rotatedFiles = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(
+                directory,
+                file -> {
+                    final String fileName = file.getFileName().toString();
+                    return fileName.startsWith(name) && !fileName.equals(name) && Files.isRegularFile(file);
+                })) {
+            files.forEach(rotatedFiles::add);
+        }
+        rotatedFiles.sort(Comparator.comparingLong(RotatedFileReader::getLastModifiedTime));
+        return rotatedFiles;
+    }
+
+    private void catchUp(final Path rotatedFile) throws IOException {
+        try (InputStream stream = open(rotatedFile)) {
+            // Identify the file the same way as the tailer
+            final byte[] prefix = new byte[REQUIRED_BYTES_FOR_HASH];
+            final int prefixLength = readFully(stream, prefix);
+            if (prefixLength < REQUIRED_BYTES_FOR_HASH) {
+                return;
+            }
+            _md5.reset();
+            final String hash = DatatypeConverter.printHexBinary(_md5.digest(prefix));
+            final Optional<Long> storedPosition = _positionStore.getPosition(hash);
+            if (!storedPosition.isPresent() || isFullyRead(rotatedFile, storedPosition.get())) {
+                return;
+            }
+
+            LOGGER.info()
+                    .setMessage("Catching up rotated file")
+                    .addData("file", _file)
+                    .addData("rotatedFile", rotatedFile)
+                    .addData("position", storedPosition.get())
+                    .log();
+
+            // Position the stream; the prefix is retained when the stored
+            // position falls within it
+            final long position = storedPosition.get();
+            int length = 0;
+            if (position < REQUIRED_BYTES_FOR_HASH) {
+                length = REQUIRED_BYTES_FOR_HASH - (int) position;
+                System.arraycopy(prefix, (int) position, _buffer, 0, length);
+            } else if (skipFully(stream, position - REQUIRED_BYTES_FOR_HASH) < position - REQUIRED_BYTES_FOR_HASH) {
+                // The file is shorter than the stored position
+                return;
+            }
+            readLines(stream, hash, position, length);
+        }
+    }
+
+    private void readLines(final InputStream stream, final String hash, final long startPosition, final int startLength)
+            throws IOException {
+        long position = startPosition;
+        int length = startLength;
+        int bytesRead = 0;
+        while (_isRunning.getAsBoolean() && bytesRead != -1) {
+            final int consumed = LineSplitter.split(_buffer, length, false, this::handleLine);
+            position += consumed;
+            if (consumed > 0) {
+                _positionStore.setPosition(hash, position);
+                _listener.endOfData();
+            }
+
+            // Retain any partial line at the start of the buffer
+            length -= consumed;
+            System.arraycopy(_buffer, consumed, _buffer, 0, length);
+            if (length == _buffer.length) {
+                // The partial line fills the buffer
+                _buffer = Arrays.copyOf(_buffer, _buffer.length * 2);
+            }
+            bytesRead = stream.read(_buffer, length, _buffer.length - length);
+            if (bytesRead > 0) {
+                length += bytesRead;
+            }
+        }
+
+        // The rotated file is complete so a trailing carriage return ends a line
+        if (bytesRead == -1) {
+            final int consumed = LineSplitter.split(_buffer, length, true, this::handleLine);
+            if (consumed > 0) {
+                _positionStore.setPosition(hash, position + consumed);
+                _listener.endOfData();
+            }
+        }
+    }
+
+    private void handleLine(final byte[] data, final int start, final int end, final int next) {
+        _listener.handle(Arrays.copyOfRange(data, start, end));
+    }
+
+    private boolean isFullyRead(final Path rotatedFile, final long position) throws IOException {
+        // The gzip trailer holds the uncompressed size modulo 2^32 which
+        // avoids decompressing files which have already been read
+        try (SeekableByteChannel channel = Files.newByteChannel(rotatedFile, StandardOpenOption.READ)) {
+            if (!isCompressed(rotatedFile)) {
+                return channel.size() <= position;
+            }
+            if (channel.size() < GZIP_TRAILER_SIZE) {
+                return false;
+            }
+            final ByteBuffer trailer = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.position(channel.size() - Integer.BYTES);
+            while (trailer.hasRemaining()) {
+                if (channel.read(trailer) == -1) {
+                    return false;
+                }
+            }
+            trailer.flip();
+            return Integer.toUnsignedLong(trailer.getInt()) == (position & 0xFFFFFFFFL);
+        }
+    }
+
+    private static InputStream open(final Path file) throws IOException {
+        final InputStream stream = Files.newInputStream(file);
+        if (isCompressed(file)) {
+            return new GZIPInputStream(stream, BUFFER_SIZE);
+        }
+        return stream;
+    }
+
+    private static boolean isCompressed(final Path file) {
+        return file.getFileName().toString().endsWith(".gz");
+    }
+
+    private static int readFully(final InputStream stream, final byte[] data) throws IOException {
+        int length = 0;
+        while (length < data.length) {
+            final int bytesRead = stream.read(data, length, data.length - length);
+            if (bytesRead == -1) {
+                break;
+            }
+            length += bytesRead;
+        }
+        return length;
+    }
+
+    private static long skipFully(final InputStream stream, final long bytes) throws IOException {
+        long skipped = 0;
+        while (skipped < bytes) {
+            final long bytesSkipped = stream.skip(bytes - skipped);
+            if (bytesSkipped <= 0) {
+                // Skip may return zero before the end of the stream
+                if (stream.read() == -1) {
+                    break;
+                }
+                skipped += 1;
+            } else {
+                skipped += bytesSkipped;
+            }
+        }
+        return skipped;
+    }
+
+    private static long getLastModifiedTime(final Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (final IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Public constructor.
+     *
+     * @param file The tailed file.
+     * @param positionStore The position store of the tailer.
+     * @param listener The listener of the tailer.
+     * @param isRunning Whether the tailer is still running.
+     */
+    /* package private */ RotatedFileReader(
+            final Path file,
+            final PositionStore positionStore,
+            final TailerListener listener,
+            final BooleanSupplier isRunning) {
+        _file = file;
+        _positionStore = positionStore;
+        _listener = listener;
+        _isRunning = isRunning;
+        try {
+            _md5 = MessageDigest.getInstance("MD5");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private final Path _file;
+    private final PositionStore _positionStore;
+    private final TailerListener _listener;
+    private final BooleanSupplier _isRunning;
+    private final MessageDigest _md5;
+    private byte[] _buffer = new byte[BUFFER_SIZE];
+
+    private static final int REQUIRED_BYTES_FOR_HASH = 512;
+    private static final int BUFFER_SIZE = 65536;
+    private static final int GZIP_TRAILER_SIZE = 8;
+    private static final Logger LOGGER = LoggerFactory.getLogger(RotatedFileReader.class);
+}
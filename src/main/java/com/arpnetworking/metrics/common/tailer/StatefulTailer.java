@@ -23,9 +23,9 @@ import com.arpnetworking.steno.LoggerFactory;
 import com.arpnetworking.utility.TimerTrigger;
 import com.arpnetworking.utility.Trigger;
 import com.google.common.base.MoreObjects;
+import net.sf.oval.constraint.Min;
 import net.sf.oval.constraint.NotNull;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
@@ -37,8 +37,14 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.xml.bind.DatatypeConverter;
 
 /**
@@ -68,14 +74,29 @@ public final class StatefulTailer implements Tailer {
                         .log());
 
         while (_isRunning) {
-            try (ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE)) {
-                _lineBuffer = lineBuffer;
-                fileLoop();
-            } catch (final IOException e) {
-                // Ignoring exception from closing line buffer because it's not a
-                // buffered output stream (e.g. nothing to flush).
+            final Wait wait = step();
+            try {
+                switch (wait) {
+                    case READ:
+                    case ROTATION:
+                        _trigger.waitOnReadTrigger();
+                        break;
+                    case FILE_NOT_FOUND:
+                        _trigger.waitOnFileNotFoundTrigger(_openFileAttempt);
+                        break;
+                    case ERROR:
+                        Thread.sleep(getDelay(wait).toMillis());
+                        break;
+                    default:
+                        break;
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                handleThrowable(e);
+                reset();
             }
         }
+        release();
     }
 
     /**
@@ -108,52 +129,172 @@ public final class StatefulTailer implements Tailer {
         return _isRunning;
     }
 
-    private void fileLoop() {
-        InitialPosition nextInitialPosition = _initialPosition;
-        int openFileAttempt = 0;
+    /**
+     * Perform the next unit of work: open the file, read the available lines
+     * or check for rotation. The tailer is driven either by <code>run</code>
+     * which blocks on the <code>Trigger</code> between steps or by a
+     * <code>TailerService</code> which schedules the steps of many tailers
+     * on a shared pool.
+     *
+     * @return The wait required before the next step.
+     */
+    /* package private */ Wait step() {
+        return step(Long.MAX_VALUE);
+    }
+
+    /**
+     * Perform the next unit of work reading at most about the specified
+     * number of bytes from the file. A step which reaches the limit returns
+     * <code>Wait.NONE</code> and the next step continues where it stopped.
+     * The final read of a rotated file is not limited.
+     *
+     * @param maximumReadBytes The number of bytes after which to stop reading.
+     * @return The wait required before the next step.
+     */
+    /* package private */ Wait step(final long maximumReadBytes) {
+        _maximumReadBytes = maximumReadBytes;
         try {
-            while (isRunning()) {
-                // Attempt to open the file
-                openFileAttempt++;
-                try (SeekableByteChannel reader = Files.newByteChannel(_file, StandardOpenOption.READ)) {
-                    LOGGER.trace()
-                            .setMessage("Opened file")
-                            .addData("file", _file)
-                            .log();
-
-                    // Position the reader
-                    resume(reader, nextInitialPosition);
-                    _listener.fileOpened();
-
-                    // Any subsequent file opens we should start at the beginning
-                    nextInitialPosition = InitialPosition.START;
-
-                    // Read the file
-                    readLoop(reader);
-
-                    // Reset per file state
-                    _hash = Optional.empty();
-                    openFileAttempt = 0;
-                } catch (final NoSuchFileException e) {
-                    _listener.fileNotFound();
-                    _trigger.waitOnFileNotFoundTrigger(openFileAttempt);
-                }
-            }
+            final Wait wait = advance();
+            _errorAttempt = 0;
+            return wait;
+        } catch (final NoSuchFileException e) {
+            closeFile();
+            _listener.fileNotFound();
+            return Wait.FILE_NOT_FOUND;
         // Clients may elect to kill the stateful tailer on an exception by calling stop, or they
-        // may log the exception and continue. In the latter case it is strongly recommended that
-        // clients pause before continuing; otherwise, if the error persists the stateful tailer
-        // may create non-trivial load on the io subsystem.
+        // may log the exception and continue. In the latter case the tailer backs off before the
+        // next step so that a persistent error does not create non-trivial load on the io
+        // subsystem; clients should not block the tailer thread, which may be shared.
         // NOTE: Any non-exception throwable will kill the stateful tailer.
-        } catch (final InterruptedException e) {
-            Thread.currentThread().interrupt();
-            handleThrowable(e);
-            // CHECKSTYLE.OFF: IllegalCatch - Allow clients to decide how to handle exceptions
+        // CHECKSTYLE.OFF: IllegalCatch - Allow clients to decide how to handle exceptions
         } catch (final Exception e) {
             // CHECKSTYLE.ON: IllegalCatch
             handleThrowable(e);
-        } finally {
-            _hash = Optional.empty();
+            reset();
+            ++_errorAttempt;
+            return Wait.ERROR;
+        }
+    }
+
+    private Wait advance() throws IOException, InterruptedException {
+        if (!_caughtUp) {
+            return catchUp();
+        }
+        if (!_reader.isPresent()) {
+            return open();
+        }
+        if (_rotation.isPresent()) {
+            // Read any final lines from the old file after the grace period
+            readLines(_reader.get(), Long.MAX_VALUE);
+            completeRotation(_rotation.get());
+            return Wait.NONE;
+        }
+        return read(_reader.get());
+    }
+
+    /**
+     * Release the file held open by the tailer. The tailer starts again from
+     * its initial position if it is stepped after being released.
+     */
+    /* package private */ void release() {
+        if (_catchUp.isPresent()) {
+            // The catch up ends once the tailer is no longer running
+            try {
+                _catchUp.get().get();
+            } catch (final ExecutionException e) {
+                // Ignore catch up exception; the tailer is being released
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            _catchUp = Optional.empty();
+        }
+        if (_reader.isPresent() && _checkpointAfterWait) {
+            try {
+                updateCheckpoint(_reader.get().position());
+            } catch (final IOException e) {
+                // Ignore checkpoint exception; the file is being released
+            }
         }
+        reset();
+    }
+
+    /**
+     * The delay to apply for a wait when not driven by a <code>Trigger</code>.
+     *
+     * @param wait The wait returned by <code>step</code>.
+     * @return The delay before the next step.
+     */
+    /* package private */ Duration getDelay(final Wait wait) {
+        switch (wait) {
+            case READ:
+            case ROTATION:
+                return _timerTrigger.getReadDelay();
+            case FILE_NOT_FOUND:
+                return _timerTrigger.getFileNotFoundDelay(_openFileAttempt);
+            case ERROR:
+                // Doubles with each consecutive error from one second up to the maximum
+                return Duration.ofMillis(Math.min(
+                        ERROR_BASE_DELAY_MILLIS << Math.min(_errorAttempt - 1, 16),
+                        ERROR_MAXIMUM_DELAY_MILLIS));
+            default:
+                return Duration.ZERO;
+        }
+    }
+
+    /* package private */ Path getFile() {
+        return _file;
+    }
+
+    private Wait catchUp() throws InterruptedException {
+        if (!_catchUp.isPresent()) {
+            // Read the files rotated while the tailer was not running on a
+            // separate thread before the file itself
+            final RotatedFileReader reader = new RotatedFileReader(_file, _positionStore, _listener, this::isRunning);
+            _catchUp = Optional.of(CATCH_UP_EXECUTOR.submit(() -> {
+                reader.run();
+                return null;
+            }));
+        }
+        if (!_catchUp.get().isDone()) {
+            return Wait.READ;
+        }
+        final Future<?> catchUp = _catchUp.get();
+        _catchUp = Optional.empty();
+        _caughtUp = true;
+        try {
+            catchUp.get();
+        } catch (final ExecutionException e) {
+            handleThrowable(e.getCause());
+        }
+        return Wait.NONE;
+    }
+
+    private Wait open() throws IOException {
+        // Attempt to open the file
+        _openFileAttempt++;
+        final SeekableByteChannel reader;
+        try {
+            reader = Files.newByteChannel(_file, StandardOpenOption.READ);
+        } catch (final NoSuchFileException e) {
+            _listener.fileNotFound();
+            return Wait.FILE_NOT_FOUND;
+        }
+        _reader = Optional.of(reader);
+        LOGGER.trace()
+                .setMessage("Opened file")
+                .addData("file", _file)
+                .log();
+
+        // Position the reader
+        resume(reader, _nextInitialPosition);
+        _listener.fileOpened();
+
+        // Any subsequent file opens we should start at the beginning
+        _nextInitialPosition = InitialPosition.START;
+        _lastChecked = Optional.empty();
+        _currentReaderPrefixHash = Optional.empty();
+        _currentReaderPrefixHashLength = 0;
+        return Wait.NONE;
     }
 
     private void resume(final SeekableByteChannel reader, final InitialPosition initialPosition) throws IOException {
@@ -186,151 +327,143 @@ public final class StatefulTailer implements Tailer {
     }
 
     // CHECKSTYLE.OFF: MethodLength - Nothing to refactor here.
-    private void readLoop(final SeekableByteChannel reader) throws IOException, InterruptedException {
-        Optional<Long> lastChecked = Optional.empty();
-        Optional<String> currentReaderPrefixHash = Optional.empty();
-        int currentReaderPrefixHashLength = 0;
-        while (isRunning()) {
-            // Obtain properties of file we expect we are reading
-            final Attributes attributes;
-            try {
-                attributes = getAttributes(_file, lastChecked);
-            } catch (final NoSuchFileException t) {
-                rotate(
-                        Optional.of(reader),
-                        String.format(
-                                "File rotation detected based attributes access failure; file=%s",
-                                _file));
+    private Wait read(final SeekableByteChannel reader) throws IOException {
+        if (_checkpointAfterWait) {
+            // Complete the check which preceded the read interval
+            _checkpointAfterWait = false;
+            updatePrefixHashAndCheckpoint(reader);
+            return Wait.NONE;
+        }
+        // Obtain properties of file we expect we are reading
+        final Attributes attributes;
+        try {
+            attributes = getAttributes(_file, _lastChecked);
+        } catch (final NoSuchFileException t) {
+            return rotate(
+                    true,
+                    String.format(
+                            "File rotation detected based attributes access failure; file=%s",
+                            _file));
+        }
 
-                // Return to the file loop
-                return;
-            }
+        if (attributes.getLength() < reader.position()) {
+            // File was rotated; either:
+            // 1) Position is past the length of the file
+            // 2) The expected file is smaller than the current file
+            return rotate(
+                    true,
+                    String.format(
+                            "File rotation detected based on length, position and size; file=%s, length=%d, position=%d, size=%d",
+                            _file,
+                            attributes.getLength(),
+                            reader.position(),
+                            reader.size()));
 
-            if (attributes.getLength() < reader.position()) {
-                // File was rotated; either:
-                // 1) Position is past the length of the file
-                // 2) The expected file is smaller than the current file
-                rotate(
-                        Optional.of(reader),
+        } else {
+            // File was _likely_ not rotated
+            if (reader.size() > reader.position()) {
+                // There is more data in the file
+                if (!readLines(reader, _maximumReadBytes)) {
+                    // There actually isn't any more data in the file; this
+                    // means the file was rotated and the new file has more
+                    // data than the old file (e.g. rotation from empty).
+
+                    // TODO(vkoskela): Account for missing final newline. [MAI-322]
+                    // There is a degenerate case where the last line in a
+                    // file does not have a newline. Then readLines will
+                    // always find new data, but the file has been rotated
+                    // away. We should buffer the contents of partial lines
+                    // thereby detecting when the length grows whether we
+                    // actually got more data in the current file.
+
+                    return rotate(
+                            false,
+                            String.format(
+                                    "File rotation detected based on length and no new data; file=%s, length=%d, position=%d",
+                                    _file,
+                                    attributes.getLength(),
+                                    reader.position()));
+                }
+                _lastChecked = Optional.of(attributes.getLastModifiedTime());
+
+                // This control path, specifically, successfully reading
+                // data from the file does not trigger a wait. This permits
+                // continuous reading without pausing.
+
+            } else if (attributes.isNewer()) {
+                // The file does not contain any additional data, but its
+                // last modified date is after the last read date. The file
+                // must have rotated and contains the same length of
+                // content. This can happen on periodic systems which log
+                // the same data at the beginning of each period.
+
+                return rotate(
+                        false,
                         String.format(
-                                "File rotation detected based on length, position and size; file=%s, length=%d, position=%d, size=%d",
+                                "File rotation detected based equal length and position but newer"
+                                        + "; file=%s, length=%d, position=%d, lastChecked=%s, attributes=%s",
                                 _file,
                                 attributes.getLength(),
                                 reader.position(),
-                                reader.size()));
-
-                // Return to the file loop
-                return;
+                                _lastChecked.get(),
+                                attributes));
 
             } else {
-                // File was _likely_ not rotated
-                if (reader.size() > reader.position()) {
-                    // There is more data in the file
-                    if (!readLines(reader)) {
-                        // There actually isn't any more data in the file; this
-                        // means the file was rotated and the new file has more
-                        // data than the old file (e.g. rotation from empty).
-
-                        // TODO(vkoskela): Account for missing final newline. [MAI-322]
-                        // There is a degenerate case where the last line in a
-                        // file does not have a newline. Then readLines will
-                        // always find new data, but the file has been rotated
-                        // away. We should buffer the contents of partial lines
-                        // thereby detecting when the length grows whether we
-                        // actually got more data in the current file.
-
-                        rotate(
-                                Optional.<SeekableByteChannel>empty(),
-                                String.format(
-                                        "File rotation detected based on length and no new data; file=%s, length=%d, position=%d",
-                                        _file,
-                                        attributes.getLength(),
-                                        reader.position()));
-
-                        // Return to the file loop
-                        return;
-                    }
-                    lastChecked = Optional.of(attributes.getLastModifiedTime());
-
-                    // This control path, specifically, successfully reading
-                    // data from the file does not trigger a wait. This permits
-                    // continuous reading without pausing.
-
-                } else if (attributes.isNewer()) {
-                    // The file does not contain any additional data, but its
-                    // last modified date is after the last read date. The file
-                    // must have rotated and contains the same length of
-                    // content. This can happen on periodic systems which log
-                    // the same data at the beginning of each period.
-
-                    rotate(
-                            Optional.<SeekableByteChannel>empty(),
+                // The files are the same size and the timestamps are the
+                // same. This is more common than it sounds since file
+                // modification timestamps are not very precise on many
+                // file systems.
+                //
+                // Since we're not doing anything at this point let's hash
+                // the first N bytes of the current file and the expected
+                // file to see if we're still working on the same file.
+
+                final Optional<Boolean> hashesSame = compareByHash(_currentReaderPrefixHash, _currentReaderPrefixHashLength);
+                if (hashesSame.isPresent() && !hashesSame.get()) {
+                    // The file rotated with the same length!
+                    return rotate(
+                            false,
                             String.format(
-                                    "File rotation detected based equal length and position but newer"
-                                            + "; file=%s, length=%d, position=%d, lastChecked=%s, attributes=%s",
-                                    _file,
-                                    attributes.getLength(),
-                                    reader.position(),
-                                    lastChecked.get(),
-                                    attributes));
-
-                    // Return to the file loop
-                    return;
-
-                } else {
-                    // The files are the same size and the timestamps are the
-                    // same. This is more common than it sounds since file
-                    // modification timestamps are not very precise on many
-                    // file systems.
-                    //
-                    // Since we're not doing anything at this point let's hash
-                    // the first N bytes of the current file and the expected
-                    // file to see if we're still working on the same file.
-
-                    final Optional<Boolean> hashesSame = compareByHash(currentReaderPrefixHash, currentReaderPrefixHashLength);
-                    if (hashesSame.isPresent() && !hashesSame.get()) {
-                        // The file rotated with the same length!
-                        rotate(
-                                Optional.<SeekableByteChannel>empty(),
-                                String.format(
-                                        "File rotation detected based on hash; file=%s",
-                                        _file));
-
-                        // Return to the file loop
-                        return;
-                    }
-                    // else: the files are empty or the hashes are the same. In
-                    // either case we don't have enough data to determine if
-                    // the files are different; we'll need to wait and see when
-                    // more data is written if the size and age diverge.
-
-                    // TODO(vkoskela): Configurable maximum rotation hash size. [MAI-323]
-                    // TODO(vkoskela): Configurable minimum rotation hash size. [MAI-324]
-                    // TODO(vkoskela): Configurable identity hash size. [MAI-325]
-                    // TODO(vkoskela): We should add a rehash interval. [MAI-326]
-                    // This interval would be separate from the read interval,
-                    // and generally longer, preventing us from rehashing the
-                    // file every interval; but short enough that we don't wait
-                    // too long before realizing a slowly growing file was
-                    // rotated.
-
-                    // Read interval
-                    _trigger.waitOnReadTrigger();
+                                    "File rotation detected based on hash; file=%s",
+                                    _file));
                 }
+                // else: the files are empty or the hashes are the same. In
+                // either case we don't have enough data to determine if
+                // the files are different; we'll need to wait and see when
+                // more data is written if the size and age diverge.
+
+                // TODO(vkoskela): Configurable maximum rotation hash size. [MAI-323]
+                // TODO(vkoskela): Configurable minimum rotation hash size. [MAI-324]
+                // TODO(vkoskela): Configurable identity hash size. [MAI-325]
+                // TODO(vkoskela): We should add a rehash interval. [MAI-326]
+                // This interval would be separate from the read interval,
+                // and generally longer, preventing us from rehashing the
+                // file every interval; but short enough that we don't wait
+                // too long before realizing a slowly growing file was
+                // rotated.
+
+                // Read interval
+                _checkpointAfterWait = true;
+                return Wait.READ;
             }
+        }
 
-            // Compute the prefix hash unless we have an identity
-            final int newPrefixHashLength = (int) Math.min(reader.size(), REQUIRED_BYTES_FOR_HASH);
-            if (!_hash.isPresent() && (currentReaderPrefixHashLength != newPrefixHashLength || !currentReaderPrefixHash.isPresent())) {
-                currentReaderPrefixHashLength = newPrefixHashLength;
-                currentReaderPrefixHash = computeHash(reader, currentReaderPrefixHashLength);
-            }
+        updatePrefixHashAndCheckpoint(reader);
+        return Wait.NONE;
+    }
+    // CHECKSTYLE.ON: MethodLength
 
-            // Update the reader position
-            updateCheckpoint(reader.position());
+    private void updatePrefixHashAndCheckpoint(final SeekableByteChannel reader) throws IOException {
+        // Compute the prefix hash unless we have an identity
+        final int newPrefixHashLength = (int) Math.min(reader.size(), REQUIRED_BYTES_FOR_HASH);
+        if (!_hash.isPresent() && (_currentReaderPrefixHashLength != newPrefixHashLength || !_currentReaderPrefixHash.isPresent())) {
+            _currentReaderPrefixHashLength = newPrefixHashLength;
+            _currentReaderPrefixHash = computeHash(reader, _currentReaderPrefixHashLength);
         }
+
+        // Update the reader position
+        updateCheckpoint(reader.position());
     }
-    // CHECKSTYLE.ON: MethodLength
 
     private Attributes getAttributes(final Path file, final Optional<Long> lastChecked) throws IOException {
         final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
@@ -347,74 +480,99 @@ public final class StatefulTailer implements Tailer {
                 lastChecked.isPresent() && attributes.lastModifiedTime().toMillis() > lastChecked.get());
     }
 
-    private void rotate(final Optional<SeekableByteChannel> reader, final String reason) throws InterruptedException, IOException {
-        // Allow a full read interval before calling it quits on the old file
-        if (reader.isPresent()) {
-            _trigger.waitOnReadTrigger();
-            readLines(reader.get());
+    private Wait rotate(final boolean finalRead, final String reason) {
+        if (finalRead) {
+            // Allow a full read interval before calling it quits on the old file
+            _rotation = Optional.of(reason);
+            return Wait.ROTATION;
         }
+        completeRotation(reason);
+        return Wait.NONE;
+    }
 
+    private void completeRotation(final String reason) {
         // Inform the listener
         _listener.fileRotated();
 
         LOGGER.info(reason);
+
+        // Reset per file state
+        closeFile();
+        _openFileAttempt = 0;
     }
 
-    private boolean readLines(final SeekableByteChannel reader) throws IOException {
+    private void closeFile() {
+        final Optional<SeekableByteChannel> reader = _reader;
+        _reader = Optional.empty();
+        _rotation = Optional.empty();
+        _checkpointAfterWait = false;
+        _hash = Optional.empty();
+        if (reader.isPresent()) {
+            try {
+                reader.get().close();
+            } catch (final IOException e) {
+                // Ignore close exception; the file is no longer read
+            }
+        }
+    }
+
+    private void reset() {
+        closeFile();
+        _nextInitialPosition = _initialPosition;
+        _openFileAttempt = 0;
+    }
+
+    private boolean readLines(final SeekableByteChannel reader, final long maximumReadBytes) throws IOException {
         // Compute the hash if not already set
         if (!_hash.isPresent() && reader.size() >= REQUIRED_BYTES_FOR_HASH) {
             _hash = computeHash(reader, REQUIRED_BYTES_FOR_HASH);
         }
 
-        // Track current position in file and next read position
-        // NOTE: The next read position is always the beginning of a line
-        long position = reader.position();
-        long nextReadPosition = position;
+        // Track the position in the file of the start of the buffer
+        // NOTE: The buffer always starts at the beginning of a line
+        final long startPosition = reader.position();
+        long nextReadPosition = startPosition;
 
-        // Reset buffers
+        // Process available data; limited by the bytes consumed so that the
+        // next read always makes progress even past a very long line
         _buffer.clear();
-        _lineBuffer.reset();
-
-        // Process available data
-        int bufferSize = reader.read(_buffer);
+        int bytesRead = reader.read(_buffer);
         boolean hasData = false;
-        boolean hasCR = false;
-        while (isRunning() && bufferSize != -1) {
+        while (isRunning() && bytesRead != -1 && nextReadPosition - startPosition < maximumReadBytes) {
             hasData = true;
-            for (int i = 0; i < bufferSize; i++) {
-                final byte ch = _buffer.get(i);
-                switch (ch) {
-                    case '\n':
-                        hasCR = false;
-                        handleLine();
-                        nextReadPosition = position + i + 1;
-                        updateCheckpoint(nextReadPosition);
-                        break;
-                    case '\r':
-                        if (hasCR) {
-                            _lineBuffer.write('\r');
-                        }
-                        hasCR = true;
-                        break;
-                    default:
-                        if (hasCR) {
-                            hasCR = false;
-                            handleLine();
-                            nextReadPosition = position + i + 1;
-                            updateCheckpoint(nextReadPosition);
-                        }
-                        _lineBuffer.write(ch);
-                }
+            final int consumed = readBufferedLines(_buffer.array(), _buffer.position(), nextReadPosition);
+            nextReadPosition += consumed;
+            if (_uncheckpointedLines > 0) {
+                updateCheckpoint(nextReadPosition);
+            }
+
+            // Retain any partial line at the start of the buffer
+            _buffer.flip();
+            _buffer.position(consumed);
+            _buffer.compact();
+            if (!_buffer.hasRemaining()) {
+                // The partial line fills the buffer
+                final ByteBuffer buffer = ByteBuffer.allocate(_buffer.capacity() * 2);
+                _buffer.flip();
+                buffer.put(_buffer);
+                _buffer = buffer;
             }
-            position = reader.position();
-            _buffer.clear();
-            bufferSize = reader.read(_buffer);
+            bytesRead = reader.read(_buffer);
         }
+        _listener.endOfData();
 
         reader.position(nextReadPosition);
         return hasData;
     }
 
+    private int readBufferedLines(final byte[] data, final int limit, final long bufferPosition) {
+        return LineSplitter.split(
+                data,
+                limit,
+                false,
+                (line, start, end, next) -> handleLine(line, start, end, bufferPosition + next));
+    }
+
     private Optional<Boolean> compareByHash(final Optional<String> prefixHash, final int prefixLength) {
         final int appliedLength;
         if (_hash.isPresent()) {
@@ -489,14 +647,17 @@ public final class StatefulTailer implements Tailer {
     }
 
     private void updateCheckpoint(final long position) {
+        _uncheckpointedLines = 0;
         if (_hash.isPresent()) {
             _positionStore.setPosition(_hash.get(), position);
         }
     }
 
-    private void handleLine() {
-        _listener.handle(_lineBuffer.toByteArray());
-        _lineBuffer.reset();
+    private void handleLine(final byte[] data, final int start, final int end, final long nextReadPosition) {
+        _listener.handle(Arrays.copyOfRange(data, start, end));
+        if (++_uncheckpointedLines >= _checkpointLineInterval) {
+            updateCheckpoint(nextReadPosition);
+        }
     }
 
     private void handleThrowable(final Throwable t) {
@@ -519,7 +680,12 @@ public final class StatefulTailer implements Tailer {
         }
 
         _initialPosition = builder._initialPosition;
+        _nextInitialPosition = _initialPosition;
+        _timerTrigger = new TimerTrigger(builder._readInterval);
         _maximumOffsetOnResume = Optional.ofNullable(builder._maximumOffsetOnResume);
+        _checkpointLineInterval = Optional.ofNullable(builder._checkpointLineInterval).orElse(Integer.MAX_VALUE);
+        _catchUpRotated = builder._catchUpRotated;
+        _caughtUp = !_catchUpRotated;
         _listener.initialize(this);
     }
 
@@ -531,19 +697,70 @@ public final class StatefulTailer implements Tailer {
     private final Path _file;
     private final PositionStore _positionStore;
     private final TailerListener _listener;
-    private final ByteBuffer _buffer;
     private final MessageDigest _md5;
     private final InitialPosition _initialPosition;
     private final Optional<Long> _maximumOffsetOnResume;
+    private final int _checkpointLineInterval;
     private final Trigger _trigger;
+    private final TimerTrigger _timerTrigger;
+    private final boolean _catchUpRotated;
 
     private volatile boolean _isRunning = true;
     private Optional<String> _hash = Optional.empty();
-    private ByteArrayOutputStream _lineBuffer;
+    private Optional<SeekableByteChannel> _reader = Optional.empty();
+    private Optional<String> _rotation = Optional.empty();
+    private boolean _checkpointAfterWait;
+    private long _maximumReadBytes = Long.MAX_VALUE;
+    private InitialPosition _nextInitialPosition;
+    private int _openFileAttempt;
+    private int _errorAttempt;
+    private Optional<Long> _lastChecked = Optional.empty();
+    private Optional<String> _currentReaderPrefixHash = Optional.empty();
+    private int _currentReaderPrefixHashLength;
+    private ByteBuffer _buffer;
+    private int _uncheckpointedLines;
+    private boolean _caughtUp;
+    private Optional<Future<?>> _catchUp = Optional.empty();
 
     private static final int REQUIRED_BYTES_FOR_HASH = 512;
+    private static final long ERROR_BASE_DELAY_MILLIS = 1000;
+    private static final long ERROR_MAXIMUM_DELAY_MILLIS = 30000;
     private static final int INITIAL_BUFFER_SIZE = 65536;
     private static final Logger LOGGER = LoggerFactory.getLogger(StatefulTailer.class);
+    private static final AtomicInteger CATCH_UP_THREAD_COUNT = new AtomicInteger();
+    private static final ExecutorService CATCH_UP_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "TailerCatchUp-" + CATCH_UP_THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The wait required between steps of the tailer.
+     */
+    /* package private */ enum Wait {
+        /**
+         * Step again immediately.
+         */
+        NONE,
+        /**
+         * Wait for the read interval for more data.
+         */
+        READ,
+        /**
+         * Wait for the read interval before reading the final lines of a
+         * rotated file; this wait should not be cut short.
+         */
+        ROTATION,
+        /**
+         * Wait with backoff for the file to be created.
+         */
+        FILE_NOT_FOUND,
+        /**
+         * Wait with backoff after an exception; this wait should not be cut
+         * short so a persistent error does not spin.
+         */
+        ERROR
+    }
 
     private static final class Attributes {
 
@@ -665,16 +882,59 @@ public final class StatefulTailer implements Tailer {
             return this;
         }
 
+        /**
+         * Sets the maximum number of lines read between checkpoints.
+         * Optional. Must be at least 1. Default is no maximum.
+         *
+         * The read position is checkpointed after the lines in each read
+         * buffer have been handled and, if set, after every this many
+         * lines. Therefore, after a crash at most the lines in one read
+         * buffer or this many lines, whichever is fewer, are read again
+         * beyond those not yet persisted by the <code>PositionStore</code>.
+         *
+         * @param checkpointLineInterval The maximum lines between checkpoints.
+         * @return This instance of {@link Builder}
+         */
+        public Builder setCheckpointLineInterval(final Integer checkpointLineInterval) {
+            _checkpointLineInterval = checkpointLineInterval;
+            return this;
+        }
+
+        /**
+         * Sets whether files rotated away while the tailer was not running
+         * are read before the file itself. Optional. Cannot be null.
+         * Default is false.
+         *
+         * When set, the tailer first reads the remainder of each sibling of
+         * the file whose name starts with the name of the file, such as
+         * <code>query.log.1.gz</code> for <code>query.log</code>, from the
+         * position stored for it. Gzip compressed siblings are decompressed
+         * as they are read. The siblings are read on a separate thread
+         * without waiting between reads; the file itself is read once they
+         * have been read.
+         *
+         * @param catchUpRotated Whether to read rotated files first.
+         * @return This instance of {@link Builder}
+         */
+        public Builder setCatchUpRotated(final Boolean catchUpRotated) {
+            _catchUpRotated = catchUpRotated;
+            return this;
+        }
+
         @NotNull
         private Path _file;
         @NotNull
         private PositionStore _positionStore;
         @NotNull
+        private Boolean _catchUpRotated = false;
+        @NotNull
         private TailerListener _listener;
         @NotNull
         private Duration _readInterval = Duration.ofMillis(250);
         @NotNull
         private InitialPosition _initialPosition = InitialPosition.START;
         private Long _maximumOffsetOnResume = null;
+        @Min(1)
+        private Integer _checkpointLineInterval = null;
     }
 }
@@ -65,9 +65,23 @@ public interface TailerListener {
     void handle(byte[] line);
 
     /**
-     * Handles a <code>Throwable</code> encountered during tailing.
+     * Called after the lines currently available from the file have been
+     * handled and before the <code>Tailer</code> waits for more data or
+     * yields its thread.
+     * Listeners which buffer lines should process them now.
      * <p>
      * <b>Note:</b> this is called from the <code>Tailer</code> thread.
+     */
+    default void endOfData() {
+        // Nothing to do by default
+    }
+
+    /**
+     * Handles a <code>Throwable</code> encountered during tailing.
+     * <p>
+     * <b>Note:</b> this is called from the <code>Tailer</code> thread which
+     * may be shared; the <code>Tailer</code> backs off after an exception so
+     * implementations should not block.
      * @param throwable the <code>Throwable</code>.
      */
     void handle(Throwable throwable);
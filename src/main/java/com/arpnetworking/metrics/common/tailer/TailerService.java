@@ -0,0 +1,420 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.common.tailer;
+
+import com.arpnetworking.commons.builder.OvalBuilder;
+import com.arpnetworking.logback.annotations.LogValue;
+import com.arpnetworking.steno.LogValueMapFactory;
+import com.arpnetworking.steno.Logger;
+import com.arpnetworking.steno.LoggerFactory;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import net.sf.oval.constraint.Min;
+import net.sf.oval.constraint.NotNull;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives many <code>StatefulTailer</code> instances from a small pool of
+ * threads instead of dedicating a mostly idle polling thread to each file.
+ * Each tailer is stepped until it needs to wait and is then rescheduled after
+ * its read interval, or with backoff while its file does not exist, exactly
+ * as when it is run on its own thread.
+ *
+ * The directories containing the tailed files are watched with a
+ * <code>WatchService</code> and a change to a tailed file ends the wait of its
+ * tailer early. Waits before the final read of a rotated file are never cut
+ * short so rotation detection is unchanged, nor are backoffs after an error.
+ * Polling on the read interval continues regardless, which covers file
+ * systems without change notification.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public final class TailerService {
+
+    /**
+     * The shared instance used by sources which do not create their own.
+     *
+     * @return The shared <code>TailerService</code>.
+     */
+    public static TailerService getInstance() {
+        return SharedInstance.INSTANCE;
+    }
+
+    /**
+     * Start driving a tailer.
+     *
+     * @param tailer The <code>StatefulTailer</code> to drive.
+     */
+    public void start(final StatefulTailer tailer) {
+        final Registration registration = new Registration(tailer);
+        if (_registrations.putIfAbsent(tailer, registration) != null) {
+            throw new IllegalStateException("Tailer already started");
+        }
+        watch(registration);
+        registration.schedule(Duration.ZERO);
+    }
+
+    /**
+     * Stop driving a tailer. The tailer is stopped and its file released. When
+     * this method returns the tailer will not invoke its listener again.
+     *
+     * @param tailer The <code>StatefulTailer</code> to stop.
+     */
+    public void stop(final StatefulTailer tailer) {
+        final Registration registration = _registrations.remove(tailer);
+        if (registration != null) {
+            unwatch(registration);
+            registration.cancel();
+        }
+    }
+
+    /**
+     * Stop all tailers and release the threads of this service.
+     */
+    public void shutdown() {
+        _registrations.keySet().forEach(this::stop);
+        _executor.shutdown();
+        if (_watchService.isPresent()) {
+            try {
+                _watchService.get().close();
+            } catch (final IOException e) {
+                LOGGER.warn()
+                        .setMessage("Unable to close watch service")
+                        .setThrowable(e)
+                        .log();
+            }
+        }
+    }
+
+    /**
+     * Generate a Steno log compatible representation.
+     *
+     * @return Steno log compatible representation.
+     */
+    @LogValue
+    public Object toLogValue() {
+        return LogValueMapFactory.builder(this)
+                .put("threads", _executor.getCorePoolSize())
+                .put("tailers", _registrations.size())
+                .put("watching", _watchService.isPresent())
+                .build();
+    }
+
+    @Override
+    public String toString() {
+        return toLogValue().toString();
+    }
+
+    private void watch(final Registration registration) {
+        if (!_watchService.isPresent()) {
+            return;
+        }
+        final Path directory = registration.getDirectory();
+        synchronized (_watches) {
+            Watch watch = _watches.get(directory);
+            if (watch == null) {
+                final WatchKey key;
+                try {
+                    key = directory.register(
+                            _watchService.get(),
+                            StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY,
+                            StandardWatchEventKinds.ENTRY_DELETE);
+                } catch (final IOException | ClosedWatchServiceException e) {
+                    LOGGER.debug()
+                            .setMessage("Unable to watch directory; polling only")
+                            .addData("directory", directory)
+                            .setThrowable(e)
+                            .log();
+                    return;
+                }
+                watch = new Watch(key);
+                _watches.put(directory, watch);
+                _watchesByKey.put(key, watch);
+            }
+            watch._registrations.add(registration);
+        }
+    }
+
+    private void unwatch(final Registration registration) {
+        final Path directory = registration.getDirectory();
+        synchronized (_watches) {
+            final Watch watch = _watches.get(directory);
+            if (watch != null && watch._registrations.remove(registration) && watch._registrations.isEmpty()) {
+                watch._key.cancel();
+                _watches.remove(directory);
+                _watchesByKey.remove(watch._key);
+            }
+        }
+    }
+
+    private void dispatch(final WatchService watchService) {
+        while (!_executor.isShutdown()) {
+            final WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (final ClosedWatchServiceException e) {
+                return;
+            }
+            for (final WatchEvent<?> event : key.pollEvents()) {
+                final Object context = event.context();
+                synchronized (_watches) {
+                    final Watch watch = _watchesByKey.get(key);
+                    if (watch != null) {
+                        for (final Registration registration : watch._registrations) {
+                            // Overflow events have no context; wake every tailer in the directory
+                            if (context == null || context.equals(registration.getFileName())) {
+                                registration.wake();
+                            }
+                        }
+                    }
+                }
+            }
+            key.reset();
+        }
+    }
+
+    private static boolean isInterruptible(final StatefulTailer.Wait wait) {
+        // Waits before the final read of a rotated file and error backoffs
+        // are never cut short by a change to the file
+        return wait != StatefulTailer.Wait.ROTATION && wait != StatefulTailer.Wait.ERROR;
+    }
+
+    private TailerService(final Builder builder) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        _executor = new ScheduledThreadPoolExecutor(
+                builder._threads,
+                runnable -> {
+                    final Thread thread = new Thread(runnable, "TailerService-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        _executor.setRemoveOnCancelPolicy(true);
+
+        Optional<WatchService> watchService = Optional.empty();
+        if (builder._watchFiles) {
+            try {
+                watchService = Optional.of(FileSystems.getDefault().newWatchService());
+            } catch (final IOException | UnsupportedOperationException e) {
+                LOGGER.warn()
+                        .setMessage("Unable to create watch service; polling only")
+                        .setThrowable(e)
+                        .log();
+            }
+        }
+        _watchService = watchService;
+        if (_watchService.isPresent()) {
+            final WatchService service = _watchService.get();
+            final Thread watcher = new Thread(() -> dispatch(service), "TailerServiceWatcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+    }
+
+    private final ScheduledThreadPoolExecutor _executor;
+    private final Optional<WatchService> _watchService;
+    private final Map<StatefulTailer, Registration> _registrations = Maps.newConcurrentMap();
+    private final Map<Path, Watch> _watches = Maps.newHashMap();
+    private final Map<WatchKey, Watch> _watchesByKey = Maps.newHashMap();
+
+    private static final int MAXIMUM_STEPS_PER_RUN = 16;
+    private static final long MAXIMUM_BYTES_PER_STEP = 1024 * 1024;
+    private static final Logger LOGGER = LoggerFactory.getLogger(TailerService.class);
+
+    private static final class SharedInstance {
+        private static final TailerService INSTANCE = new TailerService.Builder().build();
+    }
+
+    private static final class Watch {
+
+        private Watch(final WatchKey key) {
+            _key = key;
+        }
+
+        private final WatchKey _key;
+        private final Set<Registration> _registrations = Sets.newHashSet();
+    }
+
+    private final class Registration {
+
+        private void run(final long generation) {
+            synchronized (_scheduleLock) {
+                if (generation != _generation) {
+                    // Superseded by a later schedule
+                    return;
+                }
+                _running = true;
+                _woken = false;
+            }
+            StatefulTailer.Wait wait = StatefulTailer.Wait.NONE;
+            synchronized (this) {
+                // Yield the thread after a number of steps, each of which
+                // reads a bounded number of bytes, so a busy file does not
+                // starve the others
+                int steps = 0;
+                while (!_cancelled && _tailer.isRunning() && steps < MAXIMUM_STEPS_PER_RUN) {
+                    wait = _tailer.step(MAXIMUM_BYTES_PER_STEP);
+                    ++steps;
+                    if (wait != StatefulTailer.Wait.NONE) {
+                        break;
+                    }
+                }
+                if (!_cancelled && !_tailer.isRunning()) {
+                    // Stopped by its listener
+                    _tailer.release();
+                }
+            }
+            synchronized (_scheduleLock) {
+                _running = false;
+                _wait = wait;
+                if (_woken && isInterruptible(wait)) {
+                    schedule(Duration.ZERO);
+                } else {
+                    schedule(_tailer.getDelay(wait));
+                }
+            }
+        }
+
+        /* package private */ void wake() {
+            synchronized (_scheduleLock) {
+                _woken = true;
+                if (!_running && isInterruptible(_wait) && _future.isPresent()) {
+                    schedule(Duration.ZERO);
+                }
+            }
+        }
+
+        /* package private */ void schedule(final Duration delay) {
+            synchronized (_scheduleLock) {
+                if (_future.isPresent()) {
+                    _future.get().cancel(false);
+                }
+                final long generation = ++_generation;
+                if (_cancelled || !_tailer.isRunning()) {
+                    _future = Optional.empty();
+                    return;
+                }
+                _future = Optional.of(_executor.schedule(() -> run(generation), delay.toNanos(), TimeUnit.NANOSECONDS));
+            }
+        }
+
+        /* package private */ void cancel() {
+            synchronized (_scheduleLock) {
+                _cancelled = true;
+                if (_future.isPresent()) {
+                    _future.get().cancel(false);
+                }
+            }
+            _tailer.stop();
+            synchronized (this) {
+                // Any step in progress has completed
+                _tailer.release();
+            }
+        }
+
+        /* package private */ Path getDirectory() {
+            return _directory;
+        }
+
+        /* package private */ Path getFileName() {
+            return _fileName;
+        }
+
+        /* package private */ Registration(final StatefulTailer tailer) {
+            _tailer = tailer;
+            final Path file = tailer.getFile().toAbsolutePath();
+            _directory = file.getParent();
+            _fileName = file.getFileName();
+        }
+
+        private final StatefulTailer _tailer;
+        private final Path _directory;
+        private final Path _fileName;
+        private final Object _scheduleLock = new Object();
+        private Optional<ScheduledFuture<?>> _future = Optional.empty();
+        private StatefulTailer.Wait _wait = StatefulTailer.Wait.NONE;
+        private long _generation;
+        private boolean _running;
+        private boolean _woken;
+        private volatile boolean _cancelled;
+    }
+
+    /**
+     * Implementation of builder pattern for <code>TailerService</code>.
+     *
+     * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+     */
+    public static class Builder extends OvalBuilder<TailerService> {
+
+        /**
+         * Public constructor.
+         */
+        public Builder() {
+            super(TailerService::new);
+        }
+
+        /**
+         * Sets the number of threads driving the tailers. Optional. Cannot be
+         * null. Must be at least 1. Default is the number of available
+         * processors.
+         *
+         * @param value The number of threads.
+         * @return This instance of {@link Builder}
+         */
+        public Builder setThreads(final Integer value) {
+            _threads = value;
+            return this;
+        }
+
+        /**
+         * Sets whether to watch tailed files for changes. Optional. Cannot be
+         * null. Default is true. Tailers are polled on their read interval
+         * either way.
+         *
+         * @param value Whether to watch tailed files for changes.
+         * @return This instance of {@link Builder}
+         */
+        public Builder setWatchFiles(final Boolean value) {
+            _watchFiles = value;
+            return this;
+        }
+
+        @NotNull
+        @Min(1)
+        private Integer _threads = Runtime.getRuntime().availableProcessors();
+        @NotNull
+        private Boolean _watchFiles = true;
+    }
+}
@@ -23,14 +23,17 @@ import com.arpnetworking.metrics.mad.model.Record;
 import com.arpnetworking.steno.LogValueMapFactory;
 import com.arpnetworking.steno.Logger;
 import com.arpnetworking.steno.LoggerFactory;
+import com.arpnetworking.tsdcore.expressions.Expression;
 import com.arpnetworking.tsdcore.model.DefaultKey;
 import com.arpnetworking.tsdcore.model.Key;
 import com.arpnetworking.tsdcore.sinks.Sink;
 import com.arpnetworking.tsdcore.statistics.Statistic;
 import com.arpnetworking.utility.Launchable;
+import com.arpnetworking.utility.SlabAllocator;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
@@ -130,6 +133,8 @@ public final class Aggregator implements Observer, Launchable {
                 .put("timerStatistics", _specifiedTimerStatistics)
                 .put("counterStatistics", _specifiedCounterStatistics)
                 .put("gaugeStatistics", _specifiedGaugeStatistics)
+                .put("expressions", _expressions)
+                .put("histogramAllocator", _histogramAllocator)
                 .put("periodWorkers", _periodWorkers)
                 .build();
     }
@@ -155,6 +160,8 @@ public final class Aggregator implements Observer, Launchable {
                                     .setDependentTimerStatistics(_dependentTimerStatistics)
                                     .setSpecifiedStatistics(_cachedSpecifiedStatistics)
                                     .setDependentStatistics(_cachedDependentStatistics)
+                                    .setExpressions(_expressions)
+                                    .setHistogramAllocator(_histogramAllocator)
                                     .setPeriod(period)
                                     .setSink(_sink))
                     .build();
@@ -193,6 +200,12 @@ public final class Aggregator implements Observer, Launchable {
             statisticsBuilder.put(pattern, statistics);
         }
         _statistics = statisticsBuilder.build();
+        _expressions = ImmutableList.copyOf(builder._expressions);
+        if (builder._offHeapHistograms) {
+            _histogramAllocator = Optional.of(new SlabAllocator(HISTOGRAM_SLAB_SIZE));
+        } else {
+            _histogramAllocator = Optional.empty();
+        }
 
         _cachedSpecifiedStatistics = CacheBuilder
                 .newBuilder()
@@ -238,12 +251,15 @@ public final class Aggregator implements Observer, Launchable {
     private final ImmutableSet<Statistic> _dependentCounterStatistics;
     private final ImmutableSet<Statistic> _dependentGaugeStatistics;
     private final ImmutableMap<Pattern, ImmutableSet<Statistic>> _statistics;
+    private final ImmutableList<Expression> _expressions;
+    private final Optional<SlabAllocator> _histogramAllocator;
     private final LoadingCache<String, Optional<ImmutableSet<Statistic>>> _cachedSpecifiedStatistics;
     private final LoadingCache<String, Optional<ImmutableSet<Statistic>>> _cachedDependentStatistics;
     private final Map<Key, List<PeriodWorker>> _periodWorkers = Maps.newConcurrentMap();
 
     private ExecutorService _periodWorkerExecutor = null;
 
+    private static final int HISTOGRAM_SLAB_SIZE = 1024 * 1024;
     private static final Logger LOGGER = LoggerFactory.getLogger(Aggregator.class);
 
     /**
@@ -325,6 +341,30 @@ public final class Aggregator implements Observer, Launchable {
             return this;
         }
 
+        /**
+         * The expressions to evaluate for each key and period. Optional.
+         * Cannot be null. Default is empty.
+         *
+         * @param value The expressions.
+         * @return This instance of <code>Builder</code>.
+         */
+        public Builder setExpressions(final List<Expression> value) {
+            _expressions = value;
+            return this;
+        }
+
+        /**
+         * Whether histograms are stored off-heap. Optional. Cannot be null.
+         * Default is false.
+         *
+         * @param value Whether histograms are stored off-heap.
+         * @return This instance of <code>Builder</code>.
+         */
+        public Builder setOffHeapHistograms(final Boolean value) {
+            _offHeapHistograms = value;
+            return this;
+        }
+
         @NotNull
         private Sink _sink;
         @NotNull
@@ -337,5 +377,9 @@ public final class Aggregator implements Observer, Launchable {
         private Set<Statistic> _gaugeStatistics;
         @NotNull
         private Map<String, Set<Statistic>> _statistics = Collections.emptyMap();
+        @NotNull
+        private List<Expression> _expressions = Collections.emptyList();
+        @NotNull
+        private Boolean _offHeapHistograms = false;
     }
 }
@@ -23,6 +23,7 @@ import com.arpnetworking.metrics.mad.model.Record;
 import com.arpnetworking.steno.LogValueMapFactory;
 import com.arpnetworking.steno.Logger;
 import com.arpnetworking.steno.LoggerFactory;
+import com.arpnetworking.tsdcore.expressions.Expression;
 import com.arpnetworking.tsdcore.model.AggregatedData;
 import com.arpnetworking.tsdcore.model.CalculatedValue;
 import com.arpnetworking.tsdcore.model.Key;
@@ -31,9 +32,13 @@ import com.arpnetworking.tsdcore.model.Quantity;
 import com.arpnetworking.tsdcore.sinks.Sink;
 import com.arpnetworking.tsdcore.statistics.Accumulator;
 import com.arpnetworking.tsdcore.statistics.Calculator;
+import com.arpnetworking.tsdcore.statistics.HistogramStatistic;
+import com.arpnetworking.tsdcore.statistics.PeriodStatistic;
 import com.arpnetworking.tsdcore.statistics.Statistic;
 import com.arpnetworking.tsdcore.statistics.StatisticFactory;
+import com.arpnetworking.utility.SlabAllocator;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
@@ -75,24 +80,24 @@ import java.util.function.BiFunction;
                 computeStatistics(_gaugeMetricCalculators, _specifiedGaugeStatistics, data);
                 computeStatistics(_timerMetricCalculators, _specifiedTimerStatistics, data);
                 computeStatistics(_explicitMetricCalculators, _specifiedStatisticsCache, data);
-                // TODO(vkoskela): Perform expression evaluation here. [NEXT]
-                // -> This still requires realizing and indexing the computed aggregated data
-                // in order to feed the expression evaluation. Once the filtering is consolidated
-                // we can probably just build a map here and then do one copy into immutable form
-                // in the PeriodicData. This becomes feasible with consolidated filtering because
-                // fewer copies (e.g. none) are made downstream.
+                final ImmutableMultimap<String, AggregatedData> computedData = evaluateExpressions(data.build());
                 // TODO(vkoskela): Perform alert evaluation here. [NEXT]
                 // -> This requires expressions. Otherwise, it's just a matter of changing the
                 // alerts abstraction from a Sink to something more appropriate and hooking it in
                 // here.
                 final PeriodicData periodicData = ThreadLocalBuilder.build(
                         PeriodicData.Builder.class,
-                        b -> b.setData(data.build())
+                        b -> b.setData(computedData)
                                 .setDimensions(_key)
                                 .setPeriod(_period)
                                 .setStart(_start));
                 _sink.recordAggregateData(periodicData);
             } finally {
+                // Return the calculators to their pools even if computing or emitting failed
+                releaseCalculators(_counterMetricCalculators);
+                releaseCalculators(_gaugeMetricCalculators);
+                releaseCalculators(_timerMetricCalculators);
+                releaseCalculators(_explicitMetricCalculators);
                 _addCloseLock.writeLock().unlock();
             }
         } else {
@@ -113,7 +118,8 @@ import java.util.function.BiFunction;
             final String name = entry.getKey();
             final Metric metric = entry.getValue();
 
-            if (metric.getValues().isEmpty()) {
+            final Optional<double[]> rawValues = metric.getRawValues();
+            if (rawValues.isPresent() ? rawValues.get().length == 0 : metric.getValues().isEmpty()) {
                 LOGGER.debug()
                         .setMessage("Discarding metric")
                         .addData("reason", "no samples")
@@ -213,6 +219,7 @@ import java.util.function.BiFunction;
                 .put("timerStatistics", _specifiedTimerStatistics)
                 .put("counterStatistics", _specifiedCounterStatistics)
                 .put("gaugeStatistics", _specifiedGaugeStatistics)
+                .put("expressions", _expressions)
                 .build();
     }
 
@@ -264,6 +271,7 @@ import java.util.function.BiFunction;
                 }
                 dependencies.put(calculator.getStatistic(), calculator);
             }
+            dependencies.put(PeriodStatistic.KEY, _periodCalculator);
             final CalculatedValue<?> populationSize;
             if (countStatisticCalculator.isPresent()) {
                 populationSize = countStatisticCalculator.get().calculate(dependencies);
@@ -294,6 +302,43 @@ import java.util.function.BiFunction;
         }
     }
 
+    private ImmutableMultimap<String, AggregatedData> evaluateExpressions(
+            final ImmutableMultimap<String, AggregatedData> data) {
+        if (_expressions.isEmpty()) {
+            return data;
+        }
+        ImmutableMultimap.Builder<String, AggregatedData> dataWithExpressions = null;
+        for (final Expression expression : _expressions) {
+            final Optional<AggregatedData> datum;
+            try {
+                datum = expression.evaluate(data);
+            } catch (final IllegalArgumentException | IllegalStateException | UnsupportedOperationException e) {
+                EXPRESSION_LOGGER.warn()
+                        .setMessage("Expression evaluation failed")
+                        .addData("expression", expression)
+                        .addData("key", _key)
+                        .setThrowable(e)
+                        .log();
+                continue;
+            }
+            if (datum.isPresent()) {
+                if (dataWithExpressions == null) {
+                    dataWithExpressions = ImmutableMultimap.<String, AggregatedData>builder().putAll(data);
+                }
+                dataWithExpressions.put(expression.getMetric(), datum.get());
+            }
+        }
+        return dataWithExpressions == null ? data : dataWithExpressions.build();
+    }
+
+    private void releaseCalculators(final ConcurrentMap<String, Collection<Calculator<?>>> calculatorsByMetric) {
+        for (final Collection<Calculator<?>> calculators : calculatorsByMetric.values()) {
+            for (final Calculator<?> calculator : calculators) {
+                calculator.release();
+            }
+        }
+    }
+
     private void addMetric(
             final String name,
             final Metric metric,
@@ -320,12 +365,17 @@ import java.util.function.BiFunction;
             }
 
             // Add the value to any accumulators
+            final Optional<double[]> rawValues = metric.getRawValues();
             for (final Calculator<?> calculator : calculators) {
                 if (calculator instanceof Accumulator) {
                     final Accumulator<?> accumulator = (Accumulator<?>) calculator;
                     synchronized (accumulator) {
-                        for (final Quantity quantity : metric.getValues()) {
-                            accumulator.accumulate(quantity);
+                        if (rawValues.isPresent()) {
+                            accumulator.accumulate(rawValues.get(), metric.getUnit());
+                        } else {
+                            for (final Quantity quantity : metric.getValues()) {
+                                accumulator.accumulate(quantity);
+                            }
                         }
                     }
                 }
@@ -344,10 +394,10 @@ import java.util.function.BiFunction;
         if (calculators == null) {
             final Set<Calculator<?>> newCalculators = Sets.newHashSet();
             for (final Statistic statistic : specifiedStatistics) {
-                newCalculators.add(statistic.createCalculator());
+                newCalculators.add(createCalculator(statistic));
             }
             for (final Statistic statistic : dependentStatistics) {
-                newCalculators.add(statistic.createCalculator());
+                newCalculators.add(createCalculator(statistic));
             }
             newCalculators.add(COUNT_STATISTIC.createCalculator());
             calculators = calculatorsByMetric.putIfAbsent(name, newCalculators);
@@ -358,11 +408,19 @@ import java.util.function.BiFunction;
         return calculators;
     }
 
+    private Calculator<?> createCalculator(final Statistic statistic) {
+        if (_histogramAllocator.isPresent() && statistic instanceof HistogramStatistic) {
+            return ((HistogramStatistic) statistic).createCalculator(_histogramAllocator.get());
+        }
+        return statistic.createCalculator();
+    }
+
     Bucket(final Builder builder) {
         _sink = builder._sink;
         _key = builder._key;
         _start = builder._start;
         _period = builder._period;
+        _periodCalculator = new PeriodStatistic(_period).createCalculator();
         _specifiedCounterStatistics = builder._specifiedCounterStatistics;
         _specifiedGaugeStatistics = builder._specifiedGaugeStatistics;
         _specifiedTimerStatistics = builder._specifiedTimerStatistics;
@@ -371,6 +429,8 @@ import java.util.function.BiFunction;
         _dependentTimerStatistics = builder._dependentTimerStatistics;
         _specifiedStatisticsCache = builder._specifiedStatistics;
         _dependentStatisticsCache = builder._dependentStatistics;
+        _expressions = builder._expressions;
+        _histogramAllocator = builder._histogramAllocator;
     }
 
     private final AtomicBoolean _isOpen = new AtomicBoolean(true);
@@ -383,6 +443,7 @@ import java.util.function.BiFunction;
     private final Key _key;
     private final ZonedDateTime _start;
     private final Duration _period;
+    private final Calculator<?> _periodCalculator;
     private final ImmutableSet<Statistic> _specifiedCounterStatistics;
     private final ImmutableSet<Statistic> _specifiedGaugeStatistics;
     private final ImmutableSet<Statistic> _specifiedTimerStatistics;
@@ -391,11 +452,14 @@ import java.util.function.BiFunction;
     private final ImmutableSet<Statistic> _dependentTimerStatistics;
     private final LoadingCache<String, Optional<ImmutableSet<Statistic>>> _dependentStatisticsCache;
     private final LoadingCache<String, Optional<ImmutableSet<Statistic>>> _specifiedStatisticsCache;
+    private final ImmutableList<Expression> _expressions;
+    private final Optional<SlabAllocator> _histogramAllocator;
 
     private static final StatisticFactory STATISTIC_FACTORY;
     private static final Statistic COUNT_STATISTIC;
     private static final Logger LOGGER = LoggerFactory.getLogger(Bucket.class);
     private static final Logger BUCKET_CLOSED_LOGGER = LoggerFactory.getRateLimitLogger(Bucket.class, Duration.ofSeconds(30));
+    private static final Logger EXPRESSION_LOGGER = LoggerFactory.getRateLimitLogger(Bucket.class, Duration.ofSeconds(30));
 
     static {
         STATISTIC_FACTORY = new StatisticFactory();
@@ -546,6 +610,29 @@ import java.util.function.BiFunction;
             return this;
         }
 
+        /**
+         * Set the expressions to evaluate when the bucket is closed. Optional.
+         * Cannot be null. Default is no expressions.
+         *
+         * @param value The expressions.
+         * @return This <code>Builder</code> instance.
+         */
+        public Builder setExpressions(final ImmutableList<Expression> value) {
+            _expressions = value;
+            return this;
+        }
+
+        /**
+         * Set the allocator for off-heap histograms. Optional. Cannot be null.
+         * Default is to store histograms on-heap.
+         *
+         * @param value The allocator for off-heap histograms.
+         * @return This <code>Builder</code> instance.
+         */
+        public Builder setHistogramAllocator(final Optional<SlabAllocator> value) {
+            _histogramAllocator = value;
+            return this;
+        }
 
         /**
          * Generate a Steno log compatible representation.
@@ -597,5 +684,9 @@ import java.util.function.BiFunction;
         private LoadingCache<String, Optional<ImmutableSet<Statistic>>> _specifiedStatistics;
         @NotNull
         private LoadingCache<String, Optional<ImmutableSet<Statistic>>> _dependentStatistics;
+        @NotNull
+        private ImmutableList<Expression> _expressions = ImmutableList.of();
+        @NotNull
+        private Optional<SlabAllocator> _histogramAllocator = Optional.empty();
     }
 }
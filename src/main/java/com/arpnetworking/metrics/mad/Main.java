@@ -22,6 +22,7 @@ import akka.http.javadsl.ConnectHttp;
 import akka.http.javadsl.Http;
 import akka.http.javadsl.IncomingConnection;
 import akka.http.javadsl.ServerBinding;
+import akka.http.javadsl.settings.ServerSettings;
 import akka.stream.ActorMaterializer;
 import akka.stream.Materializer;
 import akka.stream.javadsl.Sink;
@@ -223,12 +224,15 @@ public final class Main implements Launchable {
                 injector.getInstance(PeriodicMetrics.class),
                 _configuration.getHttpHealthCheckPath(),
                 _configuration.getHttpStatusPath(),
-                supplementalHttpRoutes.build());
+                supplementalHttpRoutes.build(),
+                _configuration.getHttpRequestConcurrency());
         final Http http = Http.get(actorSystem);
         final Source<IncomingConnection, CompletionStage<ServerBinding>> binding = http.bind(
                 ConnectHttp.toHost(
                         _configuration.getHttpHost(),
-                        _configuration.getHttpPort()));
+                        _configuration.getHttpPort()),
+                ServerSettings.create(actorSystem)
+                        .withPipeliningLimit(_configuration.getHttpRequestConcurrency()));
         binding.to(
                 Sink.foreach(
                         connection -> connection.handleWith(routes.flow(), materializer)))
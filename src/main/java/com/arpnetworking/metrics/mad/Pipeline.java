@@ -71,6 +71,8 @@ public final class Pipeline implements Launchable {
                 .setCounterStatistics(_pipelineConfiguration.getCounterStatistics())
                 .setGaugeStatistics(_pipelineConfiguration.getGaugeStatistics())
                 .setStatistics(_pipelineConfiguration.getStatistics())
+                .setExpressions(_pipelineConfiguration.getExpressions())
+                .setOffHeapHistograms(_pipelineConfiguration.getOffHeapHistograms())
                 .setSink(rootSink)
                 .build();
         aggregator.launch();
@@ -69,6 +69,10 @@ public final class AggregatorConfiguration {
         return _httpStatusPath;
     }
 
+    public int getHttpRequestConcurrency() {
+        return _httpRequestConcurrency;
+    }
+
     public Optional<Class<? extends SupplementalRoutes>> getSupplementalHttpRoutesClass() {
         return _supplementalHttpRoutesClass;
     }
@@ -101,6 +105,7 @@ public final class AggregatorConfiguration {
                 .add("HttpPort", _httpPort)
                 .add("HttpHealthCheckPath", _httpHealthCheckPath)
                 .add("HttpStatusPath", _httpStatusPath)
+                .add("HttpRequestConcurrency", _httpRequestConcurrency)
                 .add("SupplementalHttpRoutesClass", _supplementalHttpRoutesClass)
                 .add("AkkaConfiguration", _akkaConfiguration)
                 .add("MetricsClientHost", _metricsClientHost)
@@ -118,6 +123,7 @@ public final class AggregatorConfiguration {
         _httpPort = builder._httpPort;
         _httpHealthCheckPath = builder._httpHealthCheckPath;
         _httpStatusPath = builder._httpStatusPath;
+        _httpRequestConcurrency = builder._httpRequestConcurrency;
         _supplementalHttpRoutesClass = Optional.ofNullable(builder._supplementalHttpRoutesClass);
         _metricsClientHost = Optional.ofNullable(builder._metricsClientHost).orElse(
                 "0.0.0.0".equals(_httpHost) ? "localhost" : _httpHost);
@@ -134,6 +140,7 @@ public final class AggregatorConfiguration {
     private final String _httpHealthCheckPath;
     private final String _httpStatusPath;
     private final int _httpPort;
+    private final int _httpRequestConcurrency;
     private Optional<Class<? extends SupplementalRoutes>> _supplementalHttpRoutesClass;
     private final String _metricsClientHost;
     private final int _metricsClientPort;
@@ -244,6 +251,21 @@ public final class AggregatorConfiguration {
             return this;
         }
 
+        /**
+         * The maximum number of requests processed concurrently on each http
+         * connection; this also limits the number of requests a client may
+         * pipeline on a connection. Responses are always returned in request
+         * order. Cannot be null. Must be between 1 and 1024 (inclusive).
+         * Optional. Default is 8.
+         *
+         * @param value The maximum number of concurrent requests per connection.
+         * @return This instance of <code>Builder</code>.
+         */
+        public Builder setHttpRequestConcurrency(final Integer value) {
+            _httpRequestConcurrency = value;
+            return this;
+        }
+
         /**
          * The supplemental routes class. Optional.
          *
@@ -330,6 +352,9 @@ public final class AggregatorConfiguration {
         @NotNull
         @NotEmpty
         private String _httpStatusPath = "/status";
+        @NotNull
+        @Range(min = 1, max = 1024)
+        private Integer _httpRequestConcurrency = 8;
         private Class<? extends SupplementalRoutes> _supplementalHttpRoutesClass;
         @NotEmpty
         private String _metricsClientHost;
@@ -19,6 +19,7 @@ import com.arpnetworking.commons.builder.OvalBuilder;
 import com.arpnetworking.commons.jackson.databind.ObjectMapperFactory;
 import com.arpnetworking.logback.annotations.Loggable;
 import com.arpnetworking.metrics.common.sources.Source;
+import com.arpnetworking.tsdcore.expressions.Expression;
 import com.arpnetworking.tsdcore.sinks.Sink;
 import com.arpnetworking.tsdcore.statistics.Statistic;
 import com.arpnetworking.tsdcore.statistics.StatisticDeserializer;
@@ -109,6 +110,14 @@ public final class PipelineConfiguration {
         return _statistics;
     }
 
+    public ImmutableList<Expression> getExpressions() {
+        return _expressions;
+    }
+
+    public boolean getOffHeapHistograms() {
+        return _offHeapHistograms;
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
@@ -120,6 +129,8 @@ public final class PipelineConfiguration {
                 .add("TimerStatistic", _timerStatistic)
                 .add("CounterStatistic", _counterStatistic)
                 .add("GaugeStatistic", _gaugeStatistic)
+                .add("Expressions", _expressions)
+                .add("OffHeapHistograms", _offHeapHistograms)
                 .toString();
     }
 
@@ -132,6 +143,16 @@ public final class PipelineConfiguration {
         _counterStatistic = ImmutableSet.copyOf(builder._counterStatistics);
         _gaugeStatistic = ImmutableSet.copyOf(builder._gaugeStatistics);
         _statistics = ImmutableMap.copyOf(builder._statistics);
+        final ImmutableList.Builder<Expression> expressionsBuilder = ImmutableList.builder();
+        for (final Map.Entry<String, String> entry : builder._expressions.entrySet()) {
+            expressionsBuilder.add(
+                    new Expression.Builder()
+                            .setMetric(entry.getKey())
+                            .setExpression(entry.getValue())
+                            .build());
+        }
+        _expressions = expressionsBuilder.build();
+        _offHeapHistograms = builder._offHeapHistograms;
     }
 
     private final String _name;
@@ -142,6 +163,8 @@ public final class PipelineConfiguration {
     private final ImmutableSet<Statistic> _counterStatistic;
     private final ImmutableSet<Statistic> _gaugeStatistic;
     private final ImmutableMap<String, Set<Statistic>> _statistics;
+    private final ImmutableList<Expression> _expressions;
+    private final boolean _offHeapHistograms;
 
     private static final StatisticFactory STATISTIC_FACTORY = new StatisticFactory();
 
@@ -252,6 +275,32 @@ public final class PipelineConfiguration {
             return this;
         }
 
+        /**
+         * The expressions to evaluate for each key and period by the name of
+         * the metric each produces. Each expression is parsed once when the
+         * pipeline is configured. Optional. Cannot be null. Default is empty.
+         *
+         * @param value The expressions by metric name.
+         * @return This instance of <code>Builder</code>.
+         */
+        public Builder setExpressions(final Map<String, String> value) {
+            _expressions = value;
+            return this;
+        }
+
+        /**
+         * Whether histograms are stored off-heap in direct memory slabs
+         * instead of in on-heap trees. Off-heap histogram memory is recycled
+         * when each bucket closes. Optional. Cannot be null. Default is false.
+         *
+         * @param value Whether histograms are stored off-heap.
+         * @return This instance of <code>Builder</code>.
+         */
+        public Builder setOffHeapHistograms(final Boolean value) {
+            _offHeapHistograms = value;
+            return this;
+        }
+
         @NotNull
         @NotEmpty
         private String _name;
@@ -286,5 +335,9 @@ public final class PipelineConfiguration {
                 STATISTIC_FACTORY.getStatistic("mean"));
         @NotNull
         private Map<String, Set<Statistic>> _statistics = Collections.emptyMap();
+        @NotNull
+        private Map<String, String> _expressions = Collections.emptyMap();
+        @NotNull
+        private Boolean _offHeapHistograms = false;
     }
 }
@@ -20,12 +20,20 @@ import com.arpnetworking.logback.annotations.LogValue;
 import com.arpnetworking.steno.LogValueMapFactory;
 import com.arpnetworking.tsdcore.model.MetricType;
 import com.arpnetworking.tsdcore.model.Quantity;
+import com.arpnetworking.tsdcore.model.Unit;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
+import net.sf.oval.constraint.CheckWith;
+import net.sf.oval.constraint.CheckWithCheck;
 import net.sf.oval.constraint.NotNull;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import javax.annotation.Nullable;
 
 /**
  * A variable and data to describe the input to a statistic calculator.
@@ -41,7 +49,17 @@ public final class DefaultMetric implements Metric {
 
     @Override
     public List<Quantity> getValues() {
-        return _values;
+        return _values.get();
+    }
+
+    @Override
+    public Optional<double[]> getRawValues() {
+        return _rawValues;
+    }
+
+    @Override
+    public Optional<Unit> getUnit() {
+        return _unit;
     }
 
     @Override
@@ -66,11 +84,17 @@ public final class DefaultMetric implements Metric {
 
     @Override
     public String toString() {
-        return MoreObjects.toStringHelper(this)
+        final MoreObjects.ToStringHelper helper = MoreObjects.toStringHelper(this)
                 .add("id", Integer.toHexString(System.identityHashCode(this)))
-                .add("Type", _type)
-                .add("Values", _values)
-                .toString();
+                .add("Type", _type);
+        // Avoid creating a quantity per raw value just to print them
+        if (_rawValues.isPresent()) {
+            helper.add("RawValues", Arrays.toString(_rawValues.get()))
+                    .add("Unit", _unit);
+        } else {
+            helper.add("Values", _values.get());
+        }
+        return helper.toString();
     }
 
     /**
@@ -87,17 +111,51 @@ public final class DefaultMetric implements Metric {
     public Object toLogValue() {
         return LogValueMapFactory.builder(this)
                 .put("type", _type)
-                .put("valueSize", _values.size())
+                .put("valueSize", _rawValues.isPresent() ? _rawValues.get().length : _values.get().size())
                 .build();
     }
 
     private DefaultMetric(final Builder builder) {
         _type = builder._type;
-        _values = builder._values;
+        if (builder._rawValues != null) {
+            // Normalize all the values to the default unit at once
+            final double[] rawValues = builder._rawValues;
+            @Nullable final Unit unit = builder._unit;
+            if (unit != null) {
+                final Unit defaultUnit = unit.getDefaultUnit();
+                if (!unit.equals(defaultUnit)) {
+                    for (int i = 0; i < rawValues.length; ++i) {
+                        rawValues[i] = defaultUnit.convert(rawValues[i], unit);
+                    }
+                }
+                _unit = Optional.of(defaultUnit);
+            } else {
+                _unit = Optional.empty();
+            }
+            _rawValues = Optional.of(rawValues);
+            _values = Suppliers.memoize(() -> toQuantities(rawValues, _unit));
+        } else {
+            final ImmutableList<Quantity> values = builder._values;
+            _rawValues = Optional.empty();
+            _unit = Optional.empty();
+            _values = () -> values;
+        }
+    }
+
+    private static ImmutableList<Quantity> toQuantities(final double[] rawValues, final Optional<Unit> unit) {
+        final ImmutableList.Builder<Quantity> quantities = ImmutableList.builderWithExpectedSize(rawValues.length);
+        for (final double value : rawValues) {
+            quantities.add(ThreadLocalBuilder.build(
+                    Quantity.Builder.class,
+                    b -> b.setValue(value).setUnit(unit.orElse(null))));
+        }
+        return quantities.build();
     }
 
     private final MetricType _type;
-    private final ImmutableList<Quantity> _values;
+    private final Supplier<ImmutableList<Quantity>> _values;
+    private final Optional<double[]> _rawValues;
+    private final Optional<Unit> _unit;
 
     /**
      * Implementation of builder pattern for <code>DefaultMetric</code>.
@@ -114,7 +172,8 @@ public final class DefaultMetric implements Metric {
         }
 
         /**
-         * The values <code>List</code>. Cannot be null.
+         * The values <code>List</code>. Either the values or the raw values
+         * must be set but not both.
          *
          * @param value The values <code>List</code>.
          * @return This instance of <code>Builder</code>.
@@ -124,6 +183,33 @@ public final class DefaultMetric implements Metric {
             return this;
         }
 
+        /**
+         * The raw values all expressed in the unit set with <code>setUnit</code>.
+         * The values are normalized in place to the default unit of the unit's
+         * type when the metric is built; the metric takes ownership of the
+         * array and it must not be modified afterwards. Either the values or
+         * the raw values must be set but not both.
+         *
+         * @param value The raw values.
+         * @return This instance of <code>Builder</code>.
+         */
+        public Builder setRawValues(final double[] value) {
+            _rawValues = value;
+            return this;
+        }
+
+        /**
+         * The unit of the raw values. Optional. Default is no unit. Ignored
+         * unless raw values are set.
+         *
+         * @param value The unit of the raw values.
+         * @return This instance of <code>Builder</code>.
+         */
+        public Builder setUnit(@Nullable final Unit value) {
+            _unit = value;
+            return this;
+        }
+
         /**
          * The metric type. Cannot be null.
          *
@@ -138,12 +224,32 @@ public final class DefaultMetric implements Metric {
         @Override
         protected void reset() {
             _values = null;
+            _rawValues = null;
+            _unit = null;
             _type = null;
         }
 
-        @NotNull
+        @CheckWith(
+                value = ValuesValid.class,
+                message = "Exactly one of values and raw values must be set",
+                ignoreIfNull = false)
         private ImmutableList<Quantity> _values;
+        private double[] _rawValues;
+        private Unit _unit;
         @NotNull
         private MetricType _type;
+
+        private static final class ValuesValid implements CheckWithCheck.SimpleCheck {
+            @Override
+            public boolean isSatisfied(final Object validatedObject, final Object value) {
+                if (validatedObject instanceof Builder) {
+                    final Builder builder = (Builder) validatedObject;
+                    return (builder._values == null) != (builder._rawValues == null);
+                }
+                return false;
+            }
+
+            private static final long serialVersionUID = 1L;
+        }
     }
 }
@@ -16,6 +16,8 @@
 package com.arpnetworking.metrics.mad.model;
 
 import com.arpnetworking.commons.builder.ThreadLocalBuilder;
+import com.arpnetworking.commons.uuidfactory.SplittableRandomUuidFactory;
+import com.arpnetworking.commons.uuidfactory.UuidFactory;
 import com.arpnetworking.logback.annotations.Loggable;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
@@ -24,10 +26,15 @@ import net.sf.oval.constraint.NotEmpty;
 import net.sf.oval.constraint.NotNull;
 
 import java.time.ZonedDateTime;
+import javax.annotation.Nullable;
 
 /**
  * Default implementation of the <code>Record</code> interface.
  *
+ * If no identifier is specified a random one is generated on first access
+ * to <code>getId</code>; since the identifier is rarely used this avoids the
+ * cost of generating one for almost all records.
+ *
  * @author Brandon Arp (brandon dot arp at inscopemetrics dot com)
  * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
  * @author Ryan Ascheman (rascheman at groupon dot com)
@@ -37,7 +44,10 @@ public final class DefaultRecord implements Record {
 
     @Override
     public String getId() {
-        return _id;
+        if (_id != null) {
+            return _id;
+        }
+        return _lazyId.get();
     }
 
     @Override
@@ -87,7 +97,7 @@ public final class DefaultRecord implements Record {
         return MoreObjects.toStringHelper(this)
                 .add("id", Integer.toHexString(System.identityHashCode(this)))
                 .add("Metrics", _metrics)
-                .add("Id", _id)
+                .add("Id", getId())
                 .add("Time", _time)
                 .add("Annotations", _annotations)
                 .add("Dimensions", _dimensions)
@@ -99,17 +109,48 @@ public final class DefaultRecord implements Record {
     private DefaultRecord(final Builder builder) {
         _metrics = builder._metrics;
         _id = builder._id;
+        if (_id != null) {
+            _lazyId = null;
+        } else if (builder._lazyId != null) {
+            _lazyId = builder._lazyId;
+        } else {
+            _lazyId = new LazyId();
+        }
         _time = builder._time;
         _annotations = builder._annotations;
         _dimensions = builder._dimensions;
     }
 
     private final ImmutableMap<String, ? extends Metric> _metrics;
+    @Nullable
     private final String _id;
+    @Nullable
+    private final LazyId _lazyId;
     private final ZonedDateTime _time;
     private final ImmutableMap<String, String> _annotations;
     private final ImmutableMap<String, String> _dimensions;
 
+    private static final UuidFactory UUID_FACTORY = new SplittableRandomUuidFactory();
+
+    private static final class LazyId {
+
+        public String get() {
+            String id = _id;
+            if (id == null) {
+                synchronized (this) {
+                    id = _id;
+                    if (id == null) {
+                        id = UUID_FACTORY.create().toString();
+                        _id = id;
+                    }
+                }
+            }
+            return id;
+        }
+
+        private volatile String _id;
+    }
+
     /**
      * Implementation of builder pattern for <code>DefaultRecord</code>.
      *
@@ -136,13 +177,35 @@ public final class DefaultRecord implements Record {
         }
 
         /**
-         * The identifier of the record. Cannot be null or empty.
+         * The identifier of the record. Optional. Default is a random
+         * identifier generated on first access. Cannot be empty.
          *
          * @param value The identifier.
          * @return This instance of <code>Builder</code>.
          */
-        public Builder setId(final String value) {
+        public Builder setId(@Nullable final String value) {
             _id = value;
+            _lazyId = null;
+            return this;
+        }
+
+        /**
+         * Use the identifier of another record. Unlike <code>setId</code> with
+         * the other record's identifier this does not force generation of the
+         * other record's identifier if it has not been accessed yet. Cannot be
+         * null.
+         *
+         * @param value The record whose identifier to use.
+         * @return This instance of <code>Builder</code>.
+         */
+        public Builder setIdFrom(final Record value) {
+            if (value instanceof DefaultRecord && ((DefaultRecord) value)._lazyId != null) {
+                _id = null;
+                _lazyId = ((DefaultRecord) value)._lazyId;
+            } else {
+                _id = value.getId();
+                _lazyId = null;
+            }
             return this;
         }
 
@@ -185,6 +248,7 @@ public final class DefaultRecord implements Record {
         protected void reset() {
             _metrics = null;
             _id = null;
+            _lazyId = null;
             _time = null;
             _annotations = ImmutableMap.of();
             _dimensions = ImmutableMap.of();
@@ -192,9 +256,9 @@ public final class DefaultRecord implements Record {
 
         @NotNull
         private ImmutableMap<String, ? extends Metric> _metrics;
-        @NotNull
         @NotEmpty
         private String _id;
+        private LazyId _lazyId;
         @NotNull
         private ZonedDateTime _time;
         @NotNull
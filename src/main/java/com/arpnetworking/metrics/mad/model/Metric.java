@@ -17,8 +17,10 @@ package com.arpnetworking.metrics.mad.model;
 
 import com.arpnetworking.tsdcore.model.MetricType;
 import com.arpnetworking.tsdcore.model.Quantity;
+import com.arpnetworking.tsdcore.model.Unit;
 
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Interface for a type of collected data .
@@ -40,4 +42,28 @@ public interface Metric {
      * @return The collected data.
      */
     List<Quantity> getValues();
+
+    /**
+     * Accessor for the collected data as raw values all expressed in the
+     * unit returned by <code>getUnit</code>. This representation avoids
+     * building and normalizing a <code>Quantity</code> per sample. Metrics
+     * whose samples do not share a single unit do not support it and
+     * return an empty <code>Optional</code>; use <code>getValues</code>
+     * instead. The returned array must not be modified.
+     *
+     * @return The collected data as raw values, if supported.
+     */
+    default Optional<double[]> getRawValues() {
+        return Optional.empty();
+    }
+
+    /**
+     * Accessor for the unit shared by the raw values. Only meaningful if
+     * <code>getRawValues</code> is supported.
+     *
+     * @return The unit of the raw values.
+     */
+    default Optional<Unit> getUnit() {
+        return Optional.empty();
+    }
 }
@@ -55,7 +55,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.UUID;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 
@@ -116,8 +115,7 @@ public final class CollectdJsonToRecordParser implements Parser<List<Record>, Ht
 
                 final Record defaultRecord = ThreadLocalBuilder.build(
                         DefaultRecord.Builder.class,
-                        b -> b.setId(UUID.randomUUID().toString())
-                                .setTime(record.getTime())
+                        b -> b.setTime(record.getTime())
                                 .setAnnotations(ImmutableMap.copyOf(metricTags))
                                 .setDimensions(ImmutableMap.copyOf(metricTags))
                                 .setMetrics(ImmutableMap.copyOf(collectedMetrics)));
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.mad.parsers;
+
+import com.arpnetworking.commons.builder.ThreadLocalBuilder;
+import com.arpnetworking.metrics.common.parsers.Parser;
+import com.arpnetworking.metrics.common.parsers.exceptions.ParsingException;
+import com.arpnetworking.metrics.mad.model.DefaultMetric;
+import com.arpnetworking.metrics.mad.model.DefaultRecord;
+import com.arpnetworking.metrics.mad.model.Metric;
+import com.arpnetworking.metrics.mad.model.Record;
+import com.arpnetworking.tsdcore.model.MetricType;
+import com.arpnetworking.tsdcore.model.Quantity;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import net.sf.oval.constraint.NotNull;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Parses a Graphite pickle protocol frame as a batch of {@link Record}
+ * instances. The frame payload (without the four byte length prefix) must
+ * be a pickled list of <code>(path, (timestamp, value))</code> tuples as sent
+ * by Carbon relays. Datapoints sharing a timestamp and dimensions are
+ * combined into a single record. Datapoints with a <code>None</code> value
+ * are skipped.
+ *
+ * https://graphite.readthedocs.io/en/latest/feeding-carbon.html#the-pickle-protocol
+ *
+ * The pickle is decoded with a restricted unpickler which only accepts
+ * plain data; frames containing any other object are rejected. Dimensions
+ * are added from global tags and optionally from Carbon tags in the path
+ * in the same way as {@link GraphitePlaintextToRecordParser}.
+ *
+ * Sample MAD configuration:
+ * <pre>
+ * {
+ *   type="com.arpnetworking.metrics.common.sources.GraphitePickleSource"
+ *   name="graphite_pickle_source"
+ *   host="0.0.0.0"
+ *   port="2004"
+ *   parser={
+ *     type="com.arpnetworking.metrics.mad.parsers.GraphitePickleToRecordParser"
+ *     parseCarbonTags=true
+ *   }
+ * }
+ * </pre>
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public final class GraphitePickleToRecordParser implements Parser<List<Record>, ByteBuffer> {
+
+    /**
+     * Parses a graphite pickle frame.
+     *
+     * @param frame a graphite pickle frame payload
+     * @return A list of {@link Record}
+     * @throws ParsingException if the frame is not a pickled list of graphite datapoints
+     */
+    public List<Record> parse(final ByteBuffer frame) throws ParsingException {
+        final Object data = SafeUnpickler.unpickle(frame);
+        if (!(data instanceof List)) {
+            throw new ParsingException("Pickle is not a list of datapoints", toBytes(frame));
+        }
+
+        // Group datapoints into records by timestamp and dimensions
+        final Map<RecordKey, Map<String, ImmutableList.Builder<Quantity>>> records = new LinkedHashMap<>();
+        for (final Object datapoint : (List<?>) data) {
+            addDatapoint(frame, datapoint, records);
+        }
+
+        final ImmutableList.Builder<Record> recordListBuilder = ImmutableList.builder();
+        for (final Map.Entry<RecordKey, Map<String, ImmutableList.Builder<Quantity>>> entry : records.entrySet()) {
+            recordListBuilder.add(createRecord(entry.getKey(), entry.getValue()));
+        }
+        return recordListBuilder.build();
+    }
+
+    private void addDatapoint(
+            final ByteBuffer frame,
+            final Object datapoint,
+            final Map<RecordKey, Map<String, ImmutableList.Builder<Quantity>>> records)
+            throws ParsingException {
+        final List<?> pathAndValue = asPair(frame, datapoint);
+        final List<?> timestampAndValue = asPair(frame, pathAndValue.get(1));
+        if (!(pathAndValue.get(0) instanceof String) || ((String) pathAndValue.get(0)).isEmpty()) {
+            throw new ParsingException("Name not found or empty", toBytes(frame));
+        }
+        if (!(timestampAndValue.get(0) instanceof Number)) {
+            throw new ParsingException("Timestamp is not a number", toBytes(frame));
+        }
+        final Object value = timestampAndValue.get(1);
+        if (value == null) {
+            return;
+        }
+        if (!(value instanceof Number)) {
+            throw new ParsingException("Value is not a number", toBytes(frame));
+        }
+
+        // Add global dimensions (lowest priority) then any carbon tags
+        String name = (String) pathAndValue.get(0);
+        ImmutableMap<String, String> dimensions = _globalTags;
+        if (_parseCarbonTags && name.indexOf(';') >= 0) {
+            final Map<String, String> taggedDimensions = Maps.newHashMap(_globalTags);
+            name = GraphitePlaintextToRecordParser.parseCarbonTags(name, taggedDimensions);
+            if (name.isEmpty()) {
+                throw new ParsingException("Name not found or empty", toBytes(frame));
+            }
+            dimensions = ImmutableMap.copyOf(taggedDimensions);
+        }
+
+        final long timestamp = (long) (((Number) timestampAndValue.get(0)).doubleValue() * 1000d);
+        final double doubleValue = ((Number) value).doubleValue();
+        records.computeIfAbsent(new RecordKey(timestamp, dimensions), k -> new LinkedHashMap<>())
+                .computeIfAbsent(name, k -> ImmutableList.builder())
+                .add(ThreadLocalBuilder.build(Quantity.Builder.class, b -> b.setValue(doubleValue)));
+    }
+
+    private static List<?> asPair(final ByteBuffer frame, final Object value) throws ParsingException {
+        if (!(value instanceof List) || ((List<?>) value).size() != 2) {
+            throw new ParsingException("Datapoint is not a pair", toBytes(frame));
+        }
+        return (List<?>) value;
+    }
+
+    private static Record createRecord(
+            final RecordKey key,
+            final Map<String, ImmutableList.Builder<Quantity>> values) {
+        final ImmutableMap.Builder<String, Metric> metrics = ImmutableMap.builder();
+        for (final Map.Entry<String, ImmutableList.Builder<Quantity>> entry : values.entrySet()) {
+            metrics.put(
+                    entry.getKey(),
+                    ThreadLocalBuilder.build(
+                            DefaultMetric.Builder.class,
+                            b -> b.setValues(entry.getValue().build())
+                                    .setType(MetricType.GAUGE)));
+        }
+        return ThreadLocalBuilder.build(
+                DefaultRecord.Builder.class,
+                b -> b.setDimensions(key._dimensions)
+                        .setMetrics(metrics.build())
+                        .setTime(ZonedDateTime.ofInstant(Instant.ofEpochMilli(key._timestamp), ZoneOffset.UTC)));
+    }
+
+    private static byte[] toBytes(final ByteBuffer buffer) {
+        final ByteBuffer duplicate = buffer.duplicate();
+        final byte[] bytes = new byte[duplicate.remaining()];
+        duplicate.get(bytes);
+        return bytes;
+    }
+
+    private GraphitePickleToRecordParser(final Builder builder) {
+        _globalTags = builder._globalTags;
+        _parseCarbonTags = builder._parseCarbonTags;
+    }
+
+    private final ImmutableMap<String, String> _globalTags;
+    private final boolean _parseCarbonTags;
+
+    private static final class RecordKey {
+
+        RecordKey(final long timestamp, final ImmutableMap<String, String> dimensions) {
+            _timestamp = timestamp;
+            _dimensions = dimensions;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof RecordKey)) {
+                return false;
+            }
+            final RecordKey otherKey = (RecordKey) other;
+            return _timestamp == otherKey._timestamp
+                    && _dimensions.equals(otherKey._dimensions);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(_timestamp, _dimensions);
+        }
+
+        private final long _timestamp;
+        private final ImmutableMap<String, String> _dimensions;
+    }
+
+    /**
+     * Implementation of <code>Builder</code> for {@link GraphitePickleToRecordParser}.
+     */
+    public static final class Builder extends ThreadLocalBuilder<GraphitePickleToRecordParser> {
+
+        /**
+         * Public constructor.
+         */
+        public Builder() {
+            super(GraphitePickleToRecordParser::new);
+        }
+
+        /**
+         * Set global tags. Optional. Cannot be null. Default is an empty map.
+         *
+         * @param value the global tags
+         * @return this {@link Builder} instance
+         */
+        public Builder setGlobalTags(final ImmutableMap<String, String> value) {
+            _globalTags = value;
+            return this;
+        }
+
+        /**
+         * Set parse carbon tags. Optional. Cannot be null. Default is false.
+         *
+         * See: http://graphite.readthedocs.io/en/latest/tags.html
+         *
+         * @param value whether to parse carbon tags
+         * @return this {@link Builder} instance
+         */
+        public Builder setParseCarbonTags(final Boolean value) {
+            _parseCarbonTags = value;
+            return this;
+        }
+
+        @Override
+        protected void reset() {
+            _globalTags = ImmutableMap.of();
+            _parseCarbonTags = false;
+        }
+
+        @NotNull
+        private ImmutableMap<String, String> _globalTags = ImmutableMap.of();
+        @NotNull
+        private Boolean _parseCarbonTags = false;
+    }
+}
@@ -39,7 +39,6 @@ import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.annotation.Nullable;
@@ -76,10 +75,7 @@ import javax.annotation.Nullable;
  * }
  * </pre>
  *
- * TODO(ville): Add pickle support.
- * See:
- * - https://graphite.readthedocs.io/en/latest/feeding-carbon.html#the-pickle-protocol
- * - https://github.com/irmen/Pyrolite
+ * For the batched pickle protocol see {@link GraphitePickleToRecordParser}.
  *
  * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
  */
@@ -115,18 +111,7 @@ public final class GraphitePlaintextToRecordParser implements Parser<List<Record
         String name = parseName(record, matcher.group("NAME"));
         if (_parseCarbonTags) {
             // IMPORTANT: Subsequently processed tags can overwrite these
-            final String[] parts = name.split(";");
-            name = parts[0];
-            for (int i = 1; i < parts.length; ++i) {
-                final String[] subparts = parts[i].split("=");
-                if (subparts.length == 2 && !subparts[0].isEmpty() && !subparts[1].isEmpty()) {
-                    dimensions.put(subparts[0], subparts[1]);
-                }
-                // TODO(ville): should we rate limit log that we potentially dropped something?
-                // ^ This is a bigger question of how to handle partial invalid data as most
-                // parsers now deal with multi-line (or multi-record) input. Currently, partial
-                // invalid input fails the entire ByteBuffer. Is that right?
-            }
+            name = parseName(record, parseCarbonTags(name, dimensions));
         }
 
         // Parse the value
@@ -140,6 +125,34 @@ public final class GraphitePlaintextToRecordParser implements Parser<List<Record
         return recordListBuilder.build();
     }
 
+    /**
+     * Parse Carbon format tags from a metric name into the dimensions.
+     *
+     * See: http://graphite.readthedocs.io/en/latest/tags.html
+     *
+     * @param name the metric name with optional Carbon tags
+     * @param dimensions the dimensions to add the tags to
+     * @return the metric name without tags; empty if there is none
+     */
+    /* package private */ static String parseCarbonTags(final String name, final Map<String, String> dimensions) {
+        final String[] parts = name.split(";");
+        if (parts.length == 0) {
+            // The name consists only of separators
+            return "";
+        }
+        for (int i = 1; i < parts.length; ++i) {
+            final String[] subparts = parts[i].split("=");
+            if (subparts.length == 2 && !subparts[0].isEmpty() && !subparts[1].isEmpty()) {
+                dimensions.put(subparts[0], subparts[1]);
+            }
+            // TODO(ville): should we rate limit log that we potentially dropped something?
+            // ^ This is a bigger question of how to handle partial invalid data as most
+            // parsers now deal with multi-line (or multi-record) input. Currently, partial
+            // invalid input fails the entire ByteBuffer. Is that right?
+        }
+        return parts[0];
+    }
+
     @SuppressFBWarnings("NP_PARAMETER_MUST_BE_NONNULL_BUT_MARKED_AS_NULLABLE")
     // See: https://github.com/findbugsproject/findbugs/issues/79
     private String parseName(final ByteBuffer datagram, @Nullable final String name) throws ParsingException {
@@ -188,8 +201,7 @@ public final class GraphitePlaintextToRecordParser implements Parser<List<Record
             final ImmutableMap<String, String> dimensions) {
         return ThreadLocalBuilder.build(
                 DefaultRecord.Builder.class,
-                b1 -> b1.setId(UUID.randomUUID().toString())
-                .setDimensions(dimensions)
+                b1 -> b1.setDimensions(dimensions)
                 .setMetrics(ImmutableMap.of(
                         name,
                         ThreadLocalBuilder.build(
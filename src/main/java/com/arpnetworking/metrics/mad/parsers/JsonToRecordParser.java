@@ -40,9 +40,11 @@ import com.arpnetworking.tsdcore.model.Quantity;
 import com.arpnetworking.tsdcore.model.Unit;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
 import com.google.common.base.Function;
@@ -60,11 +62,11 @@ import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
 import javax.annotation.Nullable;
 
 /**
@@ -81,6 +83,15 @@ public final class JsonToRecordParser implements Parser<Record, byte[]> {
 
     @Override
     public Record parse(final byte[] data) throws ParsingException {
+        // The current version is parsed in a single pass directly into a
+        // record; other versions and anything the streaming parser does not
+        // accept, including invalid data, are (re)parsed below which also
+        // produces the appropriate error
+        @Nullable final Record record = new Version2gStreamingParser(OBJECT_MAPPER, ZONED_DATE_TIME_READER).parse(data);
+        if (record != null) {
+            return record;
+        }
+
         // Attempt to parse the data as JSON to distinguish between the legacy
         // format and the current JSON format
         final JsonNode jsonNode;
@@ -149,7 +160,6 @@ public final class JsonToRecordParser implements Parser<Record, byte[]> {
         return ThreadLocalBuilder.build(
                 DefaultRecord.Builder.class,
                 b -> b.setMetrics(variables.build())
-                        .setId(UUID.randomUUID().toString())
                         .setTime(timestamp)
                         .setAnnotations(ImmutableMap.copyOf(annotations.getOtherAnnotations()))
                         .setDimensions(dimensionsBuilder.build()));
@@ -177,7 +187,6 @@ public final class JsonToRecordParser implements Parser<Record, byte[]> {
         return ThreadLocalBuilder.build(
                 DefaultRecord.Builder.class,
                 b -> b.setMetrics(variables.build())
-                        .setId(UUID.randomUUID().toString())
                         .setTime(timestamp)
                         .setAnnotations(ImmutableMap.copyOf(annotations.getOtherAnnotations()))
                         .setDimensions(dimensionsBuilder.build()));
@@ -206,7 +215,6 @@ public final class JsonToRecordParser implements Parser<Record, byte[]> {
         return ThreadLocalBuilder.build(
                 DefaultRecord.Builder.class,
                 b -> b.setMetrics(variables.build())
-                        .setId(UUID.randomUUID().toString())
                         .setTime(timestamp)
                         .setAnnotations(annotations.getOtherAnnotations())
                         .setDimensions(dimensionsBuilder.build()));
@@ -302,7 +310,7 @@ public final class JsonToRecordParser implements Parser<Record, byte[]> {
      * @return The existing <code>Unit</code> to which the <code>CompoundUnit</code> maps.
      */
     @Nullable
-    private static Unit getLegacyUnit(@Nullable final CompositeUnit compositeUnit) {
+    /* package private */ static Unit getLegacyUnit(@Nullable final CompositeUnit compositeUnit) {
         return LEGACY_UNIT_MAP.getOrDefault(compositeUnit, null);
     }
 
@@ -436,20 +444,73 @@ public final class JsonToRecordParser implements Parser<Record, byte[]> {
             final ImmutableMap.Builder<String, Metric> variables) {
 
         for (final Map.Entry<String, Version2g.Element> entry : elements.entrySet()) {
-            final Version2g.Element element = entry.getValue();
-            final ImmutableList<Quantity> quantities = Lists.transform(
-                            element.getValues(),
-                            JsonToRecordParser::version2gSampleToQuantity)
-                            .stream()
-                            .filter(Predicates.notNull()::apply)
-                            .collect(ImmutableList.toImmutableList());
-            variables.put(
-                    entry.getKey(),
-                    ThreadLocalBuilder.build(
-                            DefaultMetric.Builder.class,
-                            b -> b.setType(metricKind)
-                                    .setValues(quantities)));
+            final List<Version2g.Sample> samples = entry.getValue().getValues();
+            final double[] values = new double[samples.size()];
+            final Unit[] units = new Unit[samples.size()];
+            int count = 0;
+            for (final Version2g.Sample sample : samples) {
+                if (sample != null) {
+                    values[count] = sample.getValue();
+                    units[count] = getLegacyUnit(getVersion2gNumerator(sample));
+                    ++count;
+                }
+            }
+            variables.put(entry.getKey(), buildMetricVersion2g(values, units, count, metricKind));
+        }
+    }
+
+    /* package private */ static Metric buildMetricVersion2g(
+            final double[] values,
+            final Unit[] units,
+            final int count,
+            final MetricType metricKind) {
+        // Samples sharing a unit are normalized together as raw values;
+        // otherwise the samples are converted individually
+        boolean isRaw = true;
+        for (int i = 0; i < count && isRaw; ++i) {
+            isRaw = Double.isFinite(values[i]) && units[i] == units[0];
+        }
+        if (isRaw) {
+            final double[] rawValues = Arrays.copyOf(values, count);
+            @Nullable final Unit rawUnit = count == 0 ? null : units[0];
+            return ThreadLocalBuilder.build(
+                    DefaultMetric.Builder.class,
+                    b -> b.setType(metricKind)
+                            .setRawValues(rawValues)
+                            .setUnit(rawUnit));
+        }
+
+        final ImmutableList.Builder<Quantity> quantities = ImmutableList.builderWithExpectedSize(count);
+        for (int i = 0; i < count; ++i) {
+            final double value = values[i];
+            @Nullable final Unit unit = units[i];
+            if (Double.isFinite(value)) {
+                quantities.add(
+                        ThreadLocalBuilder.build(
+                                Quantity.Builder.class,
+                                b -> b.setValue(value)
+                                        .setUnit(unit)));
+                // TODO(vkoskela): Support compound units in Tsd Aggregator
+            } else {
+                // TODO(barp): Create a counter for invalid metrics
+                INVALID_SAMPLE_LOGGER
+                        .warn()
+                        .setMessage("Invalid sample for metric")
+                        .addData("value", value)
+                        .log();
+            }
         }
+        return ThreadLocalBuilder.build(
+                DefaultMetric.Builder.class,
+                b -> b.setType(metricKind)
+                        .setValues(quantities.build()));
+    }
+
+    @Nullable
+    private static CompositeUnit getVersion2gNumerator(final Version2g.Sample sample) {
+        return sample.getUnit2g() != null
+                ? sample.getUnit2g().getNumerators().stream().findFirst().orElse(null)
+                : null;
     }
 
     private ZonedDateTime getTimestampFor2c(final Version2c.Annotations annotations)
@@ -527,6 +588,7 @@ public final class JsonToRecordParser implements Parser<Record, byte[]> {
     private final String _defaultCluster;
 
     private static final ObjectMapper OBJECT_MAPPER = ObjectMapperFactory.createInstance();
+    private static final ObjectReader ZONED_DATE_TIME_READER;
     private static final String DATA_KEY = "data";
     private static final String VERSION_KEY = "version";
     private static final String LOCAL_HOST_NAME;
@@ -647,34 +709,6 @@ public final class JsonToRecordParser implements Parser<Record, byte[]> {
         }
     };
 
-    private static Quantity version2gSampleToQuantity(final Version2g.Sample sample) {
-        if (sample != null) {
-            if (Double.isFinite(sample.getValue())) {
-                @Nullable final CompositeUnit sampleUnit = sample.getUnit2g() != null
-                        ? sample.getUnit2g().getNumerators().stream().findFirst().orElse(null)
-                        : null;
-
-                return ThreadLocalBuilder.build(
-                        Quantity.Builder.class,
-                        b -> b.setValue(sample.getValue())
-                                .setUnit(getLegacyUnit(sampleUnit)));
-                // TODO(vkoskela): Support compound units in Tsd Aggregator
-                //.setNumerator(sampleNumerator)  // same as sampleUnit above
-                //.setDenominator(sampleDenominator)
-            } else {
-                // TODO(barp): Create a counter for invalid metrics
-                INVALID_SAMPLE_LOGGER
-                        .warn()
-                        .setMessage("Invalid sample for metric")
-                        .addData("value", sample.getValue())
-                        .log();
-                return null;
-            }
-        } else {
-            return null;
-        }
-    };
-
     static {
         final SimpleModule queryLogParserModule = new SimpleModule("QueryLogParser");
         queryLogParserModule.addDeserializer(
@@ -695,6 +729,9 @@ public final class JsonToRecordParser implements Parser<Record, byte[]> {
         OBJECT_MAPPER.configure(JsonParser.Feature.ALLOW_NON_NUMERIC_NUMBERS, true);
         OBJECT_MAPPER.registerModule(queryLogParserModule);
         OBJECT_MAPPER.registerModule(new AfterburnerModule());
+        // The reader binds a single value from within the record
+        ZONED_DATE_TIME_READER = OBJECT_MAPPER.readerFor(ZonedDateTime.class)
+                .without(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
 
         final String localHostName;
         try {
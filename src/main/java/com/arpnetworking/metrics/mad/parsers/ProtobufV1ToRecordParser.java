@@ -91,22 +91,48 @@ public final class ProtobufV1ToRecordParser implements Parser<List<Record>, Http
             final List<ClientV1.MetricEntry> entries,
             final MetricType metricType) {
         for (final ClientV1.MetricEntry metricEntry : entries) {
-            final ImmutableList.Builder<Quantity> quantities =
-                    ImmutableList.builderWithExpectedSize(metricEntry.getSamplesCount());
-            for (final ClientV1.DoubleQuantity quantity : metricEntry.getSamplesList()) {
-                quantities.add(
-                        ThreadLocalBuilder.build(
-                                Quantity.Builder.class,
-                                b -> b.setUnit(baseUnit(quantity.getUnit()))
-                                        .setValue(quantity.getValue())));
+            metrics.put(metricEntry.getName(), buildMetric(metricEntry, metricType));
+        }
+    }
+
+    private Metric buildMetric(final ClientV1.MetricEntry metricEntry, final MetricType metricType) {
+        // Samples sharing a unit are normalized together as raw values
+        final List<ClientV1.DoubleQuantity> samples = metricEntry.getSamplesList();
+        final double[] values = new double[samples.size()];
+        @Nullable ClientV1.CompoundUnit compoundUnit = null;
+        for (int i = 0; i < values.length; ++i) {
+            final ClientV1.DoubleQuantity quantity = samples.get(i);
+            if (compoundUnit == null) {
+                compoundUnit = quantity.getUnit();
+            } else if (!compoundUnit.equals(quantity.getUnit())) {
+                return buildQuantityMetric(metricEntry, metricType);
             }
+            values[i] = quantity.getValue();
+        }
 
-            final Metric defaultMetric = ThreadLocalBuilder.build(
-                    DefaultMetric.Builder.class,
-                    b -> b.setType(metricType)
-                            .setValues(quantities.build()));
-            metrics.put(metricEntry.getName(), defaultMetric);
+        @Nullable final Unit unit = compoundUnit == null ? null : baseUnit(compoundUnit);
+        return ThreadLocalBuilder.build(
+                DefaultMetric.Builder.class,
+                b -> b.setType(metricType)
+                        .setRawValues(values)
+                        .setUnit(unit));
+    }
+
+    private Metric buildQuantityMetric(final ClientV1.MetricEntry metricEntry, final MetricType metricType) {
+        final ImmutableList.Builder<Quantity> quantities =
+                ImmutableList.builderWithExpectedSize(metricEntry.getSamplesCount());
+        for (final ClientV1.DoubleQuantity quantity : metricEntry.getSamplesList()) {
+            quantities.add(
+                    ThreadLocalBuilder.build(
+                            Quantity.Builder.class,
+                            b -> b.setUnit(baseUnit(quantity.getUnit()))
+                                    .setValue(quantity.getValue())));
         }
+
+        return ThreadLocalBuilder.build(
+                DefaultMetric.Builder.class,
+                b -> b.setType(metricType)
+                        .setValues(quantities.build()));
     }
 
     @Nullable
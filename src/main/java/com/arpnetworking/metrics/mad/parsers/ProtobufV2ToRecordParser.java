@@ -28,124 +28,394 @@ import com.arpnetworking.tsdcore.model.Quantity;
 import com.arpnetworking.tsdcore.model.Unit;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
 import com.inscopemetrics.client.protocol.ClientV2;
 import net.sf.oval.exception.ConstraintsViolatedException;
 
-import java.nio.ByteBuffer;
+import java.io.IOException;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import javax.annotation.Nullable;
 
 /**
  * Parses the Inscope Metrics protobuf binary protocol into records.
  *
+ * The <code>ClientV2.RecordSet</code> message is decoded field by field with
+ * a <code>CodedInputStream</code> reading directly from the request body
+ * instead of materializing the generated message classes. The samples of
+ * each metric are collected as primitive values, the base unit of each
+ * <code>ClientV2.Unit</code> type and scale is resolved once per class load,
+ * and metric, dimension and annotation names are interned since the same
+ * few names repeat across records and requests.
+ *
  * @author Brandon Arp (brandon dot arp at inscopemetrics dot com)
  */
 public final class ProtobufV2ToRecordParser implements Parser<List<Record>, HttpRequest> {
     @Override
     public List<Record> parse(final HttpRequest data) throws ParsingException {
         try {
-            final ClientV2.RecordSet request = ClientV2.RecordSet.parseFrom(data.getBody().asByteBuffer());
+            final CodedInputStream input = CodedInputStream.newInstance(data.getBody().iterator().asInputStream());
+            final Samples samples = new Samples();
             final List<Record> records = Lists.newArrayList();
-            for (final ClientV2.Record record : request.getRecordsList()) {
-                final ByteBuffer byteBuffer = ByteBuffer.wrap(record.getId().toByteArray());
-                final Long high = byteBuffer.getLong();
-                final Long low = byteBuffer.getLong();
-                records.add(ThreadLocalBuilder.build(DefaultRecord.Builder.class, builder -> {
-                        builder.setId(new UUID(high, low).toString())
-                            .setTime(ZonedDateTime.ofInstant(Instant.ofEpochMilli(record.getEndMillisSinceEpoch()), ZoneOffset.UTC))
-                            .setAnnotations(buildAnnotations(record))
-                            .setDimensions(buildDimensions(record))
-                            .setMetrics(buildMetrics(record));
-                }));
+            for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+                if (tag == RECORD_SET_RECORDS) {
+                    final int limit = input.pushLimit(input.readRawVarint32());
+                    records.add(readRecord(input, samples));
+                    input.popLimit(limit);
+                } else if (!input.skipField(tag)) {
+                    break;
+                }
             }
             return records;
-        } catch (final InvalidProtocolBufferException e) {
+        } catch (final IOException e) {
             throw new ParsingException("Could not create Request message from data", data.getBody().toArray(), e);
         } catch (final ConstraintsViolatedException | IllegalArgumentException e) {
             throw new ParsingException("Could not build record", data.getBody().toArray(), e);
         }
     }
 
-    private ImmutableMap<String, ? extends Metric> buildMetrics(final ClientV2.Record record) {
+    private Record readRecord(final CodedInputStream input, final Samples samples) throws IOException {
+        final ImmutableMap.Builder<String, String> annotations = ImmutableMap.builder();
+        final ImmutableMap.Builder<String, String> dimensions = ImmutableMap.builder();
         final ImmutableMap.Builder<String, Metric> metrics = ImmutableMap.builder();
-        processEntries(metrics, record.getCountersList(), MetricType.COUNTER);
-        processEntries(metrics, record.getTimersList(), MetricType.TIMER);
-        processEntries(metrics, record.getGaugesList(), MetricType.GAUGE);
-        return metrics.build();
+        @Nullable String id = null;
+        long endMillisSinceEpoch = 0;
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            switch (tag) {
+                case RECORD_ANNOTATIONS:
+                    readEntry(input, annotations);
+                    break;
+                case RECORD_DIMENSIONS:
+                    readEntry(input, dimensions);
+                    break;
+                case RECORD_GAUGES:
+                    readMetricEntry(input, MetricType.GAUGE, metrics, samples);
+                    break;
+                case RECORD_COUNTERS:
+                    readMetricEntry(input, MetricType.COUNTER, metrics, samples);
+                    break;
+                case RECORD_TIMERS:
+                    readMetricEntry(input, MetricType.TIMER, metrics, samples);
+                    break;
+                case RECORD_ID:
+                    id = readId(input);
+                    break;
+                case RECORD_END_MILLIS_SINCE_EPOCH:
+                    endMillisSinceEpoch = input.readUInt64();
+                    break;
+                default:
+                    skipField(input, tag);
+            }
+        }
+        input.checkLastTagWas(0);
+
+        final String recordId = id;
+        final long endTime = endMillisSinceEpoch;
+        return ThreadLocalBuilder.build(DefaultRecord.Builder.class, builder -> {
+            builder.setId(recordId)
+                    .setTime(ZonedDateTime.ofInstant(Instant.ofEpochMilli(endTime), ZoneOffset.UTC))
+                    .setAnnotations(annotations.build())
+                    .setDimensions(dimensions.build())
+                    .setMetrics(metrics.build());
+        });
+    }
+
+    @Nullable
+    private String readId(final CodedInputStream input) throws IOException {
+        final byte[] bytes = input.readByteArray();
+        if (bytes.length == 0) {
+            // The record is assigned a random identifier on first access
+            return null;
+        }
+        if (bytes.length != UUID_LENGTH) {
+            throw new IllegalArgumentException(String.format("Invalid record id length; length=%d", bytes.length));
+        }
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < Long.BYTES; ++i) {
+            high = (high << Byte.SIZE) | (bytes[i] & 0xff);
+            low = (low << Byte.SIZE) | (bytes[i + Long.BYTES] & 0xff);
+        }
+        return new UUID(high, low).toString();
+    }
+
+    private void readEntry(
+            final CodedInputStream input,
+            final ImmutableMap.Builder<String, String> entries)
+            throws IOException {
+        final int limit = input.pushLimit(input.readRawVarint32());
+        String name = "";
+        String value = "";
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            if (tag == ENTRY_NAME) {
+                name = NAMES.intern(input.readStringRequireUtf8());
+            } else if (tag == ENTRY_VALUE) {
+                value = input.readStringRequireUtf8();
+            } else {
+                skipField(input, tag);
+            }
+        }
+        input.checkLastTagWas(0);
+        input.popLimit(limit);
+        entries.put(name, value);
     }
 
-    private void processEntries(
+    private void readMetricEntry(
+            final CodedInputStream input,
+            final MetricType metricType,
             final ImmutableMap.Builder<String, Metric> metrics,
-            final List<ClientV2.MetricEntry> entries,
-            final MetricType metricType) {
-        for (final ClientV2.MetricEntry metricEntry : entries) {
-            final ImmutableList.Builder<Quantity> quantities =
-                    ImmutableList.builderWithExpectedSize(metricEntry.getSamplesCount());
-            for (final ClientV2.Quantity quantity : metricEntry.getSamplesList()) {
-                if (quantity.getValueCase().equals(ClientV2.Quantity.ValueCase.DOUBLEVALUE)) {
-                    quantities.add(
-                            ThreadLocalBuilder.build(
-                                    Quantity.Builder.class,
-                                    b -> b.setUnit(baseUnit(quantity.getUnit()))
-                                            .setValue(quantity.getDoubleValue())));
-                } else if (quantity.getValueCase().equals(ClientV2.Quantity.ValueCase.LONGVALUE)) {
-                    quantities.add(
-                            ThreadLocalBuilder.build(
-                                    Quantity.Builder.class,
-                                    b -> b.setUnit(baseUnit(quantity.getUnit()))
-                                            .setValue((double) quantity.getLongValue())));
-                }
+            final Samples samples)
+            throws IOException {
+        final int limit = input.pushLimit(input.readRawVarint32());
+        String name = "";
+        samples.clear();
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            if (tag == METRIC_ENTRY_NAME) {
+                name = NAMES.intern(input.readStringRequireUtf8());
+            } else if (tag == METRIC_ENTRY_SAMPLES) {
+                readQuantity(input, samples);
+            } else {
+                skipField(input, tag);
             }
+        }
+        input.checkLastTagWas(0);
+        input.popLimit(limit);
+        metrics.put(name, samples.hasMixedUnits() ? buildQuantityMetric(metricType, samples) : buildMetric(metricType, samples));
+    }
 
-            final Metric defaultMetric = ThreadLocalBuilder.build(
-                    DefaultMetric.Builder.class,
-                    b -> b.setType(metricType)
-                            .setValues(quantities.build()));
-            metrics.put(metricEntry.getName(), defaultMetric);
+    private void readQuantity(final CodedInputStream input, final Samples samples) throws IOException {
+        final int limit = input.pushLimit(input.readRawVarint32());
+        boolean hasValue = false;
+        double value = 0;
+        @Nullable Unit unit = null;
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            if (tag == QUANTITY_DOUBLE_VALUE) {
+                value = input.readDouble();
+                hasValue = true;
+            } else if (tag == QUANTITY_LONG_VALUE) {
+                value = (double) input.readInt64();
+                hasValue = true;
+            } else if (tag == QUANTITY_UNIT) {
+                unit = readCompoundUnit(input);
+            } else {
+                skipField(input, tag);
+            }
+        }
+        input.checkLastTagWas(0);
+        input.popLimit(limit);
+        if (hasValue) {
+            samples.add(value, unit);
         }
     }
 
     @Nullable
-    private Unit baseUnit(final ClientV2.CompoundUnit compoundUnit) {
-        if (!compoundUnit.getNumeratorList().isEmpty()) {
-            final ClientV2.Unit selectedUnit = compoundUnit.getNumerator(0);
-            if (ClientV2.Unit.Type.Value.UNRECOGNIZED.equals(selectedUnit.getType())
-                    || ClientV2.Unit.Type.Value.UNKNOWN.equals(selectedUnit.getType())) {
-                return null;
+    private Unit readCompoundUnit(final CodedInputStream input) throws IOException {
+        // Only the first numerator determines the base unit
+        final int limit = input.pushLimit(input.readRawVarint32());
+        boolean hasNumerator = false;
+        @Nullable Unit unit = null;
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            if (tag == COMPOUND_UNIT_NUMERATOR && !hasNumerator) {
+                unit = readUnit(input);
+                hasNumerator = true;
+            } else {
+                skipField(input, tag);
             }
-            final String unitName;
-            if (!ClientV2.Unit.Scale.Value.UNIT.equals(selectedUnit.getScale())
-                    && !ClientV2.Unit.Scale.Value.UNRECOGNIZED.equals(selectedUnit.getScale())
-                    && !ClientV2.Unit.Scale.Value.UNKNOWN.equals(selectedUnit.getScale())) {
-                unitName = selectedUnit.getScale().name() + selectedUnit.getType().name();
+        }
+        input.checkLastTagWas(0);
+        input.popLimit(limit);
+        return unit;
+    }
+
+    @Nullable
+    private Unit readUnit(final CodedInputStream input) throws IOException {
+        final int limit = input.pushLimit(input.readRawVarint32());
+        int type = 0;
+        int scale = 0;
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            if (tag == UNIT_TYPE) {
+                type = input.readEnum();
+            } else if (tag == UNIT_SCALE) {
+                scale = input.readEnum();
             } else {
-                unitName = selectedUnit.getType().name();
+                skipField(input, tag);
             }
+        }
+        input.checkLastTagWas(0);
+        input.popLimit(limit);
+        return baseUnit(type, scale);
+    }
 
-            return Unit.valueOf(unitName);
+    private void skipField(final CodedInputStream input, final int tag) throws IOException {
+        if (!input.skipField(tag)) {
+            // Groups are not part of the protocol and cannot end a length delimited message
+            throw new InvalidProtocolBufferException("Protocol message end-group tag did not match expected tag.");
         }
-        return null;
     }
 
-    private ImmutableMap<String, String> buildAnnotations(final ClientV2.Record record) {
-        final ImmutableMap.Builder<String, String> annotations = ImmutableMap.builder();
-        for (final ClientV2.AnnotationEntry annotationEntry : record.getAnnotationsList()) {
-            annotations.put(annotationEntry.getName(), annotationEntry.getValue());
+    private Metric buildMetric(final MetricType metricType, final Samples samples) {
+        // Samples sharing a unit are normalized together as raw values
+        final double[] rawValues = samples.copyValues();
+        @Nullable final Unit unit = samples.getUnit(0);
+        return ThreadLocalBuilder.build(
+                DefaultMetric.Builder.class,
+                b -> b.setType(metricType)
+                        .setRawValues(rawValues)
+                        .setUnit(unit));
+    }
+
+    private Metric buildQuantityMetric(final MetricType metricType, final Samples samples) {
+        final ImmutableList.Builder<Quantity> quantities = ImmutableList.builderWithExpectedSize(samples.size());
+        for (int i = 0; i < samples.size(); ++i) {
+            final double value = samples.getValue(i);
+            @Nullable final Unit unit = samples.getUnit(i);
+            quantities.add(
+                    ThreadLocalBuilder.build(
+                            Quantity.Builder.class,
+                            b -> b.setUnit(unit)
+                                    .setValue(value)));
         }
-        return annotations.build();
+
+        return ThreadLocalBuilder.build(
+                DefaultMetric.Builder.class,
+                b -> b.setType(metricType)
+                        .setValues(quantities.build()));
     }
 
-    private ImmutableMap<String, String> buildDimensions(final ClientV2.Record record) {
-        final ImmutableMap.Builder<String, String> dimensions = ImmutableMap.builder();
-        for (final ClientV2.DimensionEntry dimensionEntry : record.getDimensionsList()) {
-            dimensions.put(dimensionEntry.getName(), dimensionEntry.getValue());
+    @Nullable
+    private static Unit baseUnit(final int type, final int scale) {
+        if (type <= 0 || type >= BASE_UNITS.length) {
+            // Unknown and unrecognized unit types are treated as unitless
+            return null;
+        }
+        final Unit[] scaledUnits = BASE_UNITS[type];
+        final Unit unit = scale > 0 && scale < scaledUnits.length ? scaledUnits[scale] : scaledUnits[0];
+        if (unit == null) {
+            throw new IllegalArgumentException(String.format(
+                    "Unsupported unit; type=%s, scale=%s",
+                    ClientV2.Unit.Type.Value.forNumber(type),
+                    ClientV2.Unit.Scale.Value.forNumber(scale)));
+        }
+        return unit;
+    }
+
+    private static Unit[][] createBaseUnits() {
+        // The base unit for each unit type (first index) and scale (second
+        // index); unsupported combinations are null. Unknown and unit scales
+        // as well as unrecognized scales map to the type itself.
+        final Map<String, Unit> unitsByName = Maps.newHashMap();
+        for (final Unit unit : Unit.values()) {
+            unitsByName.put(unit.name(), unit);
+        }
+        final ClientV2.Unit.Type.Value[] types = ClientV2.Unit.Type.Value.values();
+        final ClientV2.Unit.Scale.Value[] scales = ClientV2.Unit.Scale.Value.values();
+        final Unit[][] baseUnits = new Unit[types.length - 1][scales.length - 1];
+        for (final ClientV2.Unit.Type.Value type : types) {
+            if (ClientV2.Unit.Type.Value.UNRECOGNIZED.equals(type)
+                    || ClientV2.Unit.Type.Value.UNKNOWN.equals(type)) {
+                continue;
+            }
+            for (final ClientV2.Unit.Scale.Value scale : scales) {
+                if (ClientV2.Unit.Scale.Value.UNRECOGNIZED.equals(scale)) {
+                    continue;
+                }
+                final String unitName;
+                if (ClientV2.Unit.Scale.Value.UNIT.equals(scale) || ClientV2.Unit.Scale.Value.UNKNOWN.equals(scale)) {
+                    unitName = type.name();
+                } else {
+                    unitName = scale.name() + type.name();
+                }
+                baseUnits[type.getNumber()][scale.getNumber()] = unitsByName.get(unitName);
+            }
+        }
+        return baseUnits;
+    }
+
+    private static final int TAG_TYPE_BITS = 3;
+    private static final int UUID_LENGTH = 16;
+    private static final Unit[][] BASE_UNITS = createBaseUnits();
+    private static final Interner<String> NAMES = Interners.newWeakInterner();
+
+    private static final int RECORD_SET_RECORDS = (1 << TAG_TYPE_BITS) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int RECORD_ANNOTATIONS = (1 << TAG_TYPE_BITS) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int RECORD_DIMENSIONS = (2 << TAG_TYPE_BITS) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int RECORD_GAUGES = (3 << TAG_TYPE_BITS) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int RECORD_COUNTERS = (4 << TAG_TYPE_BITS) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int RECORD_TIMERS = (5 << TAG_TYPE_BITS) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int RECORD_ID = (6 << TAG_TYPE_BITS) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int RECORD_END_MILLIS_SINCE_EPOCH = (7 << TAG_TYPE_BITS) | WireFormat.WIRETYPE_VARINT;
+    private static final int ENTRY_NAME = (1 << TAG_TYPE_BITS) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int ENTRY_VALUE = (2 << TAG_TYPE_BITS) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int METRIC_ENTRY_NAME = (1 << TAG_TYPE_BITS) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int METRIC_ENTRY_SAMPLES = (2 << TAG_TYPE_BITS) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int QUANTITY_DOUBLE_VALUE = (1 << TAG_TYPE_BITS) | WireFormat.WIRETYPE_FIXED64;
+    private static final int QUANTITY_LONG_VALUE = (2 << TAG_TYPE_BITS) | WireFormat.WIRETYPE_VARINT;
+    private static final int QUANTITY_UNIT = (3 << TAG_TYPE_BITS) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int COMPOUND_UNIT_NUMERATOR = (1 << TAG_TYPE_BITS) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int UNIT_TYPE = (1 << TAG_TYPE_BITS) | WireFormat.WIRETYPE_VARINT;
+    private static final int UNIT_SCALE = (2 << TAG_TYPE_BITS) | WireFormat.WIRETYPE_VARINT;
+
+    /**
+     * The samples of the metric entry being decoded. The buffers are reused
+     * across the metric entries of a single request.
+     */
+    private static final class Samples {
+
+        public void clear() {
+            _size = 0;
+            _hasMixedUnits = false;
+        }
+
+        public void add(final double value, @Nullable final Unit unit) {
+            if (_size == _values.length) {
+                _values = Arrays.copyOf(_values, _size * 2);
+                _units = Arrays.copyOf(_units, _size * 2);
+            }
+            if (_size > 0 && _units[0] != unit) {
+                _hasMixedUnits = true;
+            }
+            _values[_size] = value;
+            _units[_size] = unit;
+            ++_size;
+        }
+
+        public int size() {
+            return _size;
+        }
+
+        public boolean hasMixedUnits() {
+            return _hasMixedUnits;
         }
-        return dimensions.build();
+
+        public double getValue(final int index) {
+            return _values[index];
+        }
+
+        @Nullable
+        public Unit getUnit(final int index) {
+            return index < _size ? _units[index] : null;
+        }
+
+        public double[] copyValues() {
+            return Arrays.copyOf(_values, _size);
+        }
+
+        private double[] _values = new double[INITIAL_CAPACITY];
+        private Unit[] _units = new Unit[INITIAL_CAPACITY];
+        private int _size;
+        private boolean _hasMixedUnits;
+
+        private static final int INITIAL_CAPACITY = 16;
     }
 }
@@ -0,0 +1,469 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.mad.parsers;
+
+import com.arpnetworking.metrics.common.parsers.exceptions.ParsingException;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal unpickler for the plain data subset of the Python pickle format
+ * (protocols 0 through 4) used by Carbon relays and clients to send batches
+ * of datapoints.
+ *
+ * Only opcodes that build lists, tuples, strings, numbers, booleans and
+ * <code>None</code> are supported. Opcodes that look up globals, construct
+ * instances or call functions (e.g. <code>GLOBAL</code>, <code>REDUCE</code>,
+ * <code>BUILD</code>) are rejected, so untrusted input can never cause code
+ * or class loading. Lists are decoded as {@link ArrayList}, tuples as
+ * unmodifiable {@link List} instances, strings and bytes as UTF-8
+ * {@link String}, integers as {@link Long} (or {@link BigInteger} if they
+ * do not fit) and floats as {@link Double}.
+ *
+ * See: https://github.com/python/cpython/blob/master/Lib/pickletools.py
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+/* package private */ final class SafeUnpickler {
+
+    /**
+     * Decode a single pickle from the remaining bytes of the buffer.
+     *
+     * @param data the pickled data
+     * @return the decoded object; may be null if the pickle is <code>None</code>
+     * @throws ParsingException if the data is not a valid pickle or uses an unsupported opcode
+     */
+    /* package private */ static Object unpickle(final ByteBuffer data) throws ParsingException {
+        return new SafeUnpickler(data).load();
+    }
+
+    private Object load() throws ParsingException {
+        try {
+            int opcode = _data.get() & 0xff;
+            while (opcode != STOP) {
+                if (!step(opcode)) {
+                    push(readValue(opcode));
+                }
+                opcode = _data.get() & 0xff;
+            }
+        } catch (final BufferUnderflowException | NumberFormatException e) {
+            throw new ParsingException("Truncated or malformed pickle", getOffendingData(), e);
+        }
+        if (_stack.size() != 1 || !_marks.isEmpty()) {
+            throw error("Pickle did not reduce to a single value");
+        }
+        return _stack.get(0);
+    }
+
+    // CHECKSTYLE.OFF: ExecutableStatementCount - Flat opcode dispatch
+    private boolean step(final int opcode) throws ParsingException {
+        switch (opcode) {
+            case PROTO:
+                _data.get();
+                return true;
+            case FRAME:
+                _data.getLong();
+                return true;
+            case MARK:
+                _marks.push(_stack.size());
+                return true;
+            case APPEND:
+                final Object value = pop();
+                peekList().add(value);
+                return true;
+            case APPENDS:
+                final List<Object> values = popMark();
+                peekList().addAll(values);
+                return true;
+            case PUT:
+                _memo.put(Integer.parseInt(readLine()), peek());
+                return true;
+            case BINPUT:
+                _memo.put(_data.get() & 0xff, peek());
+                return true;
+            case LONG_BINPUT:
+                _memo.put(_data.getInt(), peek());
+                return true;
+            case MEMOIZE:
+                _memo.put(_memo.size(), peek());
+                return true;
+            default:
+                return false;
+        }
+    }
+    // CHECKSTYLE.ON: ExecutableStatementCount
+
+    // CHECKSTYLE.OFF: ExecutableStatementCount - Flat opcode dispatch
+    // CHECKSTYLE.OFF: MethodLength - Flat opcode dispatch
+    private Object readValue(final int opcode) throws ParsingException {
+        switch (opcode) {
+            case EMPTY_LIST:
+                return new ArrayList<>();
+            case LIST:
+                return new ArrayList<>(popMark());
+            case EMPTY_TUPLE:
+                return Collections.emptyList();
+            case TUPLE:
+                return Collections.unmodifiableList(popMark());
+            case TUPLE1:
+                return Collections.singletonList(pop());
+            case TUPLE2:
+                final Object second = pop();
+                return Collections.unmodifiableList(Arrays.asList(pop(), second));
+            case TUPLE3:
+                final Object third = pop();
+                final Object middle = pop();
+                return Collections.unmodifiableList(Arrays.asList(pop(), middle, third));
+            case NONE:
+                return null;
+            case NEWTRUE:
+                return Boolean.TRUE;
+            case NEWFALSE:
+                return Boolean.FALSE;
+            case INT:
+                return parseInt(readLine());
+            case BININT:
+                return (long) _data.getInt();
+            case BININT1:
+                return (long) (_data.get() & 0xff);
+            case BININT2:
+                return (long) (_data.getShort() & 0xffff);
+            case LONG:
+                return parseLong(readLine());
+            case LONG1:
+                return readLong(_data.get() & 0xff);
+            case FLOAT:
+                return Double.parseDouble(readLine());
+            case BINFLOAT:
+                // BINFLOAT is the only big endian value in the format
+                return Double.longBitsToDouble(Long.reverseBytes(_data.getLong()));
+            case STRING:
+                return unquote(readLine());
+            case UNICODE:
+                return unescapeUnicode(readLine());
+            case SHORT_BINSTRING:
+            case SHORT_BINUNICODE:
+            case SHORT_BINBYTES:
+                return readString(_data.get() & 0xff);
+            case BINSTRING:
+            case BINUNICODE:
+            case BINBYTES:
+                return readString(_data.getInt());
+            case BINUNICODE8:
+            case BINBYTES8:
+                return readString(_data.getLong());
+            case GET:
+                return getMemo(Integer.parseInt(readLine()));
+            case BINGET:
+                return getMemo(_data.get() & 0xff);
+            case LONG_BINGET:
+                return getMemo(_data.getInt());
+            default:
+                throw error(String.format("Unsupported pickle opcode 0x%02x", opcode));
+        }
+    }
+    // CHECKSTYLE.ON: MethodLength
+    // CHECKSTYLE.ON: ExecutableStatementCount
+
+    private void push(final Object value) {
+        _stack.add(value);
+    }
+
+    private Object pop() throws ParsingException {
+        if (_stack.size() <= currentMark()) {
+            throw error("Pickle stack underflow");
+        }
+        return _stack.remove(_stack.size() - 1);
+    }
+
+    private Object peek() throws ParsingException {
+        if (_stack.size() <= currentMark()) {
+            throw error("Pickle stack underflow");
+        }
+        return _stack.get(_stack.size() - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object> peekList() throws ParsingException {
+        final Object top = peek();
+        if (!(top instanceof ArrayList)) {
+            throw error("Pickle append target is not a list");
+        }
+        return (List<Object>) top;
+    }
+
+    private List<Object> popMark() throws ParsingException {
+        if (_marks.isEmpty()) {
+            throw error("Pickle mark not found");
+        }
+        final int mark = _marks.pop();
+        final List<Object> items = _stack.subList(mark, _stack.size());
+        final List<Object> result = new ArrayList<>(items);
+        items.clear();
+        return result;
+    }
+
+    private int currentMark() {
+        final Integer mark = _marks.peek();
+        if (mark == null) {
+            return 0;
+        }
+        return mark;
+    }
+
+    private Object getMemo(final int index) throws ParsingException {
+        if (!_memo.containsKey(index)) {
+            throw error("Pickle memo entry not found");
+        }
+        return _memo.get(index);
+    }
+
+    private String readString(final long length) throws ParsingException {
+        if (length < 0 || length > _data.remaining()) {
+            throw error("Pickle string length exceeds data");
+        }
+        final int intLength = (int) length;
+        if (_scratch.length < intLength) {
+            _scratch = new byte[Math.max(intLength, _scratch.length * 2)];
+        }
+        _data.get(_scratch, 0, intLength);
+        // CHECKSTYLE.OFF: IllegalInstantiation - This is the recommended way
+        return new String(_scratch, 0, intLength, Charsets.UTF_8);
+        // CHECKSTYLE.ON: IllegalInstantiation
+    }
+
+    private Object readLong(final int length) throws ParsingException {
+        if (length > _data.remaining()) {
+            throw error("Pickle long length exceeds data");
+        }
+        if (length == 0) {
+            return 0L;
+        }
+        // Stored as little endian two's complement; BigInteger expects big endian
+        final byte[] bytes = new byte[length];
+        for (int i = length - 1; i >= 0; --i) {
+            bytes[i] = _data.get();
+        }
+        return narrow(new BigInteger(bytes));
+    }
+
+    private String readLine() throws ParsingException {
+        final int start = _data.position();
+        int end = start;
+        while (end < _data.limit() && _data.get(end) != '\n') {
+            ++end;
+        }
+        if (end == _data.limit()) {
+            throw error("Pickle line not terminated");
+        }
+        final int length = end - start;
+        if (_scratch.length < length) {
+            _scratch = new byte[Math.max(length, _scratch.length * 2)];
+        }
+        _data.get(_scratch, 0, length);
+        _data.get();
+        // CHECKSTYLE.OFF: IllegalInstantiation - This is the recommended way
+        return new String(_scratch, 0, length, Charsets.ISO_8859_1);
+        // CHECKSTYLE.ON: IllegalInstantiation
+    }
+
+    private ParsingException error(final String message) {
+        return new ParsingException(message, getOffendingData());
+    }
+
+    private byte[] getOffendingData() {
+        final ByteBuffer original = _original.duplicate();
+        final byte[] bytes = new byte[original.remaining()];
+        original.get(bytes);
+        return bytes;
+    }
+
+    private static Object parseInt(final String value) {
+        // Protocol 0 encodes booleans as INT with these special values
+        if ("00".equals(value)) {
+            return Boolean.FALSE;
+        } else if ("01".equals(value)) {
+            return Boolean.TRUE;
+        }
+        return parseLong(value);
+    }
+
+    private static Object parseLong(final String value) {
+        final String digits;
+        if (value.endsWith("L")) {
+            digits = value.substring(0, value.length() - 1);
+        } else {
+            digits = value;
+        }
+        return narrow(new BigInteger(digits));
+    }
+
+    private static Object narrow(final BigInteger value) {
+        if (value.bitLength() < Long.SIZE) {
+            return value.longValue();
+        }
+        return value;
+    }
+
+    private String unquote(final String value) throws ParsingException {
+        if (value.length() < 2
+                || value.charAt(0) != value.charAt(value.length() - 1)
+                || (value.charAt(0) != '\'' && value.charAt(0) != '"')) {
+            throw error("Pickle string is not quoted");
+        }
+        final String body = value.substring(1, value.length() - 1);
+        if (body.indexOf('\\') < 0) {
+            // CHECKSTYLE.OFF: IllegalInstantiation - This is the recommended way
+            return new String(body.getBytes(Charsets.ISO_8859_1), Charsets.UTF_8);
+            // CHECKSTYLE.ON: IllegalInstantiation
+        }
+        final byte[] bytes = new byte[body.length()];
+        int length = 0;
+        int i = 0;
+        while (i < body.length()) {
+            char c = body.charAt(i++);
+            if (c == '\\' && i < body.length()) {
+                c = body.charAt(i++);
+                switch (c) {
+                    case 'n':
+                        c = '\n';
+                        break;
+                    case 'r':
+                        c = '\r';
+                        break;
+                    case 't':
+                        c = '\t';
+                        break;
+                    case 'x':
+                        c = (char) Integer.parseInt(body.substring(i, Math.min(i + 2, body.length())), 16);
+                        i += 2;
+                        break;
+                    default:
+                        // Backslash, quotes and anything else escape to themselves
+                        break;
+                }
+            }
+            bytes[length++] = (byte) c;
+        }
+        // CHECKSTYLE.OFF: IllegalInstantiation - This is the recommended way
+        return new String(bytes, 0, length, Charsets.UTF_8);
+        // CHECKSTYLE.ON: IllegalInstantiation
+    }
+
+    private String unescapeUnicode(final String value) throws ParsingException {
+        // The raw-unicode-escape codec only escapes code points outside latin-1
+        if (value.indexOf("\\u") < 0 && value.indexOf("\\U") < 0) {
+            return value;
+        }
+        final StringBuilder builder = new StringBuilder(value.length());
+        int i = 0;
+        while (i < value.length()) {
+            final char c = value.charAt(i);
+            final int digits = unicodeEscapeDigits(value, i);
+            if (digits > 0) {
+                final int codePoint = Integer.parseInt(value.substring(i + 2, i + 2 + digits), 16);
+                if (!Character.isValidCodePoint(codePoint)) {
+                    throw error(String.format("Pickle unicode escape is not a valid code point: 0x%x", codePoint));
+                }
+                builder.appendCodePoint(codePoint);
+                i += 2 + digits;
+            } else {
+                builder.append(c);
+                ++i;
+            }
+        }
+        return builder.toString();
+    }
+
+    private static int unicodeEscapeDigits(final String value, final int index) {
+        if (value.charAt(index) != '\\' || index + 1 >= value.length()) {
+            return 0;
+        }
+        final char type = value.charAt(index + 1);
+        if (type == 'u' && index + 6 <= value.length()) {
+            return 4;
+        } else if (type == 'U' && index + 10 <= value.length()) {
+            return 8;
+        }
+        return 0;
+    }
+
+    private SafeUnpickler(final ByteBuffer data) {
+        _original = data;
+        _data = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private final ByteBuffer _original;
+    private final ByteBuffer _data;
+    private final List<Object> _stack = new ArrayList<>();
+    private final Deque<Integer> _marks = new ArrayDeque<>();
+    private final Map<Integer, Object> _memo = Maps.newHashMap();
+    private byte[] _scratch = new byte[256];
+
+    private static final int MARK = '(';
+    private static final int STOP = '.';
+    private static final int INT = 'I';
+    private static final int BININT = 'J';
+    private static final int BININT1 = 'K';
+    private static final int BININT2 = 'M';
+    private static final int LONG = 'L';
+    private static final int NONE = 'N';
+    private static final int STRING = 'S';
+    private static final int BINSTRING = 'T';
+    private static final int SHORT_BINSTRING = 'U';
+    private static final int UNICODE = 'V';
+    private static final int BINUNICODE = 'X';
+    private static final int APPEND = 'a';
+    private static final int APPENDS = 'e';
+    private static final int GET = 'g';
+    private static final int BINGET = 'h';
+    private static final int LONG_BINGET = 'j';
+    private static final int LIST = 'l';
+    private static final int PUT = 'p';
+    private static final int BINPUT = 'q';
+    private static final int LONG_BINPUT = 'r';
+    private static final int TUPLE = 't';
+    private static final int EMPTY_LIST = ']';
+    private static final int EMPTY_TUPLE = ')';
+    private static final int FLOAT = 'F';
+    private static final int BINFLOAT = 'G';
+    private static final int BINBYTES = 'B';
+    private static final int SHORT_BINBYTES = 'C';
+    private static final int PROTO = 0x80;
+    private static final int TUPLE1 = 0x85;
+    private static final int TUPLE2 = 0x86;
+    private static final int TUPLE3 = 0x87;
+    private static final int NEWTRUE = 0x88;
+    private static final int NEWFALSE = 0x89;
+    private static final int LONG1 = 0x8a;
+    private static final int SHORT_BINUNICODE = 0x8c;
+    private static final int BINUNICODE8 = 0x8d;
+    private static final int BINBYTES8 = 0x8e;
+    private static final int MEMOIZE = 0x94;
+    private static final int FRAME = 0x95;
+}
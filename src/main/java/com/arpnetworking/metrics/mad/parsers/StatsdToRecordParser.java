@@ -25,32 +25,20 @@ import com.arpnetworking.tsdcore.model.MetricType;
 import com.arpnetworking.tsdcore.model.Quantity;
 import com.arpnetworking.tsdcore.model.Unit;
 import com.google.common.base.Charsets;
-import com.google.common.base.Splitter;
-import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Maps;
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import java.nio.ByteBuffer;
-import java.text.NumberFormat;
-import java.text.ParseException;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
-import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.Random;
-import java.util.UUID;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Supplier;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import javax.annotation.Nullable;
 
 /**
@@ -68,148 +56,203 @@ import javax.annotation.Nullable;
  * https://github.com/b/statsd_spec
  * https://docs.datadoghq.com/guides/dogstatsd/
  *
+ * In addition, Influx style tags appended to the metric name are supported
+ * (e.g. {@code users.online,service=statsd:1|c}).
+ *
+ * The datagram is parsed in a single pass directly from the bytes between
+ * the buffer's position and limit; neither the position nor the limit of
+ * the buffer are modified. Only the metric name and tags are decoded into
+ * strings.
+ *
  * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
  */
 public final class StatsdToRecordParser implements Parser<List<Record>, ByteBuffer> {
 
     @Override
     public List<Record> parse(final ByteBuffer datagram) throws ParsingException {
-        // CHECKSTYLE.OFF: IllegalInstantiation - This is the recommended way
-        final String datagramAsString = new String(datagram.array(), Charsets.UTF_8);
         final ImmutableList.Builder<Record> recordListBuilder = ImmutableList.builder();
         try {
-            for (final String line : LINE_SPLITTER.split(datagramAsString)) {
-                // CHECKSTYLE.ON: IllegalInstantiation
-                final Matcher matcher = STATSD_PATTERN.matcher(line);
-                if (!matcher.matches()) {
-                    throw new ParsingException("Invalid statsd line", line.getBytes(Charsets.UTF_8));
-                }
-
-                // Parse the name
-                final String name = parseName(datagram, matcher.group("NAME"));
-
-                // Parse the _metricType
-                final StatsdType type = parseStatsdType(datagram, matcher.group("TYPE"));
-
-                // Parse the value
-                final Number value = parseValue(datagram, matcher.group("VALUE"), type);
-
-                // Parse the sample rate
-                final Optional<Double> sampleRate = parseSampleRate(datagram, matcher.group("SAMPLERATE"), type);
-
-                // Parse the tags
-                final ImmutableMap<String, String> annotations = ImmutableMap.<String, String>builder()
-                        .putAll(parseTags(matcher.group("TAGS")))
-                        .putAll(parseInfluxStyleTags(matcher.group("INFLUXTAGS")))
-                        .build();
-
-                // Enforce sampling
-                if (sampleRate.isPresent() && sampleRate.get().compareTo(1.0) != 0) {
-                    if (sampleRate.get().compareTo(0.0) == 0) {
-                        return Collections.emptyList();
-                    }
-                    if (Double.compare(_randomSupplier.get().nextDouble(), sampleRate.get()) > 0) {
-                        return Collections.emptyList();
+            final int limit = datagram.limit();
+            int lineStart = datagram.position();
+            while (lineStart < limit) {
+                final int lineEnd = indexOf(datagram, (byte) '\n', lineStart, limit);
+                if (lineEnd > lineStart) {
+                    @Nullable final Record record = parseLine(datagram, lineStart, lineEnd);
+                    if (record != null) {
+                        recordListBuilder.add(record);
                     }
                 }
-
-                recordListBuilder.add(createRecord(name, value, type, annotations));
+                lineStart = lineEnd + 1;
             }
         // CHECKSTYLE.OFF: IllegalCatch - We want to turn any exceptions we catch into a ParsingException
         } catch (final RuntimeException e) {
             // CHECKSTYLE.ON: IllegalCatch
-            throw new ParsingException("Error pasring record", datagram.array(), e);
+            throw new ParsingException("Error pasring record", toBytes(datagram), e);
         }
 
         return recordListBuilder.build();
     }
 
-    private StatsdType parseStatsdType(
+    private @Nullable Record parseLine(
             final ByteBuffer datagram,
-            @Nullable final String statsdTypeAsString) throws ParsingException {
-        @Nullable final StatsdType type = StatsdType.fromToken(statsdTypeAsString);
+            final int start,
+            final int end) throws ParsingException {
+        // Parse the name; terminated by either the Influx style tags or the value
+        final int nameEnd = scanTo(datagram, start, end, (byte) ',');
+        if (nameEnd == start) {
+            throw new ParsingException("Name not found or empty", toBytes(datagram));
+        }
+        final String name = decode(datagram, start, nameEnd);
+
+        // Parse the Influx style tags
+        final ImmutableMap.Builder<String, String> annotations = ImmutableMap.builder();
+        int index = nameEnd;
+        if (datagram.get(index) == ',') {
+            index = scanTo(datagram, nameEnd + 1, end, (byte) ':');
+            if (index == nameEnd + 1) {
+                throw new ParsingException("Invalid statsd line", toBytes(datagram, start, end));
+            }
+            parseTags(datagram, nameEnd + 1, index, (byte) '=', annotations);
+        }
+
+        // Locate the value; it is parsed once the type is known
+        final int valueStart = index + 1;
+        final int valueEnd = indexOf(datagram, (byte) '|', valueStart, end);
+        if (valueEnd == end) {
+            throw new ParsingException("Invalid statsd line", toBytes(datagram, start, end));
+        }
+
+        // Parse the type
+        final int typeEnd = indexOf(datagram, (byte) '|', valueEnd + 1, end);
+        @Nullable final StatsdType type = StatsdType.fromBytes(datagram, valueEnd + 1, typeEnd);
         if (type == null) {
-            throw new ParsingException("Type not found or unsupported", datagram.array());
+            throw new ParsingException("Type not found or unsupported", toBytes(datagram));
         }
-        return type;
-    }
 
-    @SuppressFBWarnings("NP_PARAMETER_MUST_BE_NONNULL_BUT_MARKED_AS_NULLABLE")
-    // See: https://github.com/findbugsproject/findbugs/issues/79
-    private String parseName(final ByteBuffer datagram, @Nullable final String name) throws ParsingException {
-        if (Strings.isNullOrEmpty(name)) {
-            throw new ParsingException("Name not found or empty", datagram.array());
+        // Parse the value
+        final double value = parseValue(datagram, valueStart, valueEnd, type);
+
+        // Parse the sample rate and the Data Dog style tags
+        final double sampleRate = parseTrailer(datagram, typeEnd, end, type, annotations);
+
+        // Enforce sampling
+        if (Double.compare(sampleRate, 1.0) != 0) {
+            if (Double.compare(sampleRate, 0.0) == 0) {
+                return null;
+            }
+            if (Double.compare(_randomSupplier.get().nextDouble(), sampleRate) > 0) {
+                return null;
+            }
         }
-        return name;
+
+        return createRecord(name, value, type, annotations.build());
     }
 
-    private Number parseValue(
+    private int scanTo(
             final ByteBuffer datagram,
-            @Nullable final String valueAsString,
-            final StatsdType type) throws ParsingException {
-        try {
-            if (Objects.equals(StatsdType.METERS, type) && valueAsString == null) {
-                return 1;
-            } else if (valueAsString == null) {
-                throw new ParsingException("Value required but not specified", datagram.array());
-            } else {
-                return NUMBER_FORMAT.get().parse(valueAsString);
+            final int start,
+            final int end,
+            final byte alternateTerminator) throws ParsingException {
+        int index = start;
+        while (index < end) {
+            final byte b = datagram.get(index);
+            if (b == ':' || b == alternateTerminator) {
+                return index;
+            }
+            if (b == '@' || b == '|') {
+                throw new ParsingException("Invalid statsd line", toBytes(datagram));
             }
-        } catch (final ParseException e) {
-            throw new ParsingException("Value is not a number", datagram.array(), e);
+            ++index;
         }
+        throw new ParsingException("Invalid statsd line", toBytes(datagram, start, end));
     }
 
-    @SuppressFBWarnings("NP_PARAMETER_MUST_BE_NONNULL_BUT_MARKED_AS_NULLABLE")
-    // See: https://github.com/findbugsproject/findbugs/issues/79
-    private ImmutableMap<String, String> parseTags(@Nullable final String tagsAsString) {
-        if (null != tagsAsString) {
-            return ImmutableMap.copyOf(Splitter.on(',').withKeyValueSeparator(':').split(tagsAsString));
+    private double parseTrailer(
+            final ByteBuffer datagram,
+            final int start,
+            final int end,
+            final StatsdType type,
+            final ImmutableMap.Builder<String, String> annotations) throws ParsingException {
+        double sampleRate = 1.0;
+        int index = start;
+        if (index + 1 < end && datagram.get(index + 1) == '@') {
+            final int sampleRateEnd = indexOf(datagram, (byte) '|', index + 2, end);
+            sampleRate = parseSampleRate(datagram, index + 2, sampleRateEnd, type);
+            index = sampleRateEnd;
         }
-        return ImmutableMap.of();
+        if (index < end) {
+            if (index + 2 >= end || datagram.get(index + 1) != '#') {
+                throw new ParsingException("Invalid statsd line", toBytes(datagram, start, end));
+            }
+            parseTags(datagram, index + 2, end, (byte) ':', annotations);
+        }
+        return sampleRate;
     }
 
-    @SuppressFBWarnings("NP_PARAMETER_MUST_BE_NONNULL_BUT_MARKED_AS_NULLABLE")
-    // See: https://github.com/findbugsproject/findbugs/issues/79
-    private ImmutableMap<String, String> parseInfluxStyleTags(@Nullable final String tagsAsString) {
-        if (null != tagsAsString) {
-            return ImmutableMap.copyOf(Splitter.on(',').withKeyValueSeparator('=').split(tagsAsString));
+    private double parseValue(
+            final ByteBuffer datagram,
+            final int start,
+            final int end,
+            final StatsdType type) throws ParsingException {
+        if (start == end) {
+            if (Objects.equals(StatsdType.METERS, type)) {
+                return 1;
+            }
+            throw new ParsingException("Value required but not specified", toBytes(datagram));
+        }
+        try {
+            return parseNumber(datagram, start, end);
+        } catch (final NumberFormatException e) {
+            throw new ParsingException("Value is not a number", toBytes(datagram), e);
         }
-        return ImmutableMap.of();
     }
 
-    private Optional<Double> parseSampleRate(
+    private double parseSampleRate(
             final ByteBuffer datagram,
-            @Nullable final String sampleRateAsString,
+            final int start,
+            final int end,
             final StatsdType type) throws ParsingException {
+        if (!SAMPLED_STATSD_TYPES.contains(type)) {
+            throw new ParsingException("Sample rate not support for this _metricType", toBytes(datagram));
+        }
+        final double sampleRate;
         try {
-            if (sampleRateAsString != null) {
-                if (SAMPLED_STATSD_TYPES.contains(type)) {
-                    final Double sampleRate = Double.valueOf(sampleRateAsString);
-                    if (sampleRate.compareTo(1.0) > 0 || sampleRate.compareTo(0.0) < 0) {
-                        throw new ParsingException("Invalid sample rate", datagram.array());
-                    }
-                    return Optional.of(sampleRate);
-                } else {
-                    throw new ParsingException("Sample rate not support for this _metricType", datagram.array());
-                }
-            } else {
-                return Optional.empty();
-            }
+            sampleRate = parseNumber(datagram, start, end);
         } catch (final NumberFormatException e) {
-            throw new ParsingException("Sample rate is not a number", datagram.array(), e);
+            throw new ParsingException("Sample rate is not a number", toBytes(datagram), e);
+        }
+        if (sampleRate > 1.0 || sampleRate < 0.0) {
+            throw new ParsingException("Invalid sample rate", toBytes(datagram));
+        }
+        return sampleRate;
+    }
+
+    private void parseTags(
+            final ByteBuffer datagram,
+            final int start,
+            final int end,
+            final byte keyValueSeparator,
+            final ImmutableMap.Builder<String, String> tags) throws ParsingException {
+        int tagStart = start;
+        while (tagStart <= end) {
+            final int tagEnd = indexOf(datagram, (byte) ',', tagStart, end);
+            final int separator = indexOf(datagram, keyValueSeparator, tagStart, tagEnd);
+            if (separator == tagEnd || indexOf(datagram, keyValueSeparator, separator + 1, tagEnd) != tagEnd) {
+                throw new ParsingException("Invalid tag", toBytes(datagram, tagStart, tagEnd));
+            }
+            tags.put(decode(datagram, tagStart, separator), decode(datagram, separator + 1, tagEnd));
+            tagStart = tagEnd + 1;
         }
     }
 
     private Record createRecord(
             final String name,
-            final Number value,
+            final double value,
             final StatsdType type,
             final ImmutableMap<String, String> annotations) {
         return ThreadLocalBuilder.build(
                 DefaultRecord.Builder.class,
                 b1 -> b1.setDimensions(annotations)
-                        .setId(UUID.randomUUID().toString())
                         .setMetrics(ImmutableMap.of(
                                 name,
                                 ThreadLocalBuilder.build(
@@ -218,12 +261,59 @@ public final class StatsdToRecordParser implements Parser<List<Record>, ByteBuff
                                                 ImmutableList.of(
                                                         ThreadLocalBuilder.build(
                                                                 Quantity.Builder.class,
-                                                                b3 -> b3.setValue(value.doubleValue())
+                                                                b3 -> b3.setValue(value)
                                                                         .setUnit(type.getUnit()))))
                                         .setType(type.getMetricType()))))
                         .setTime(ZonedDateTime.ofInstant(Instant.ofEpochMilli(_clock.millis()), ZoneOffset.UTC)));
     }
 
+    /**
+     * Parse a decimal number with an optional sign, fraction and exponent
+     * from the specified bytes. Numbers with at most 15 significant digits
+     * and a small exponent are computed exactly from the digits; others
+     * fall back to {@code Double.parseDouble}.
+     */
+    /* package private */ static double parseNumber(
+            final ByteBuffer buffer,
+            final int start,
+            final int end) {
+        return new DecimalParser(buffer, start, end).parse();
+    }
+
+    private static boolean isDigit(final byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static int indexOf(final ByteBuffer buffer, final byte b, final int start, final int end) {
+        for (int i = start; i < end; ++i) {
+            if (buffer.get(i) == b) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static String decode(final ByteBuffer buffer, final int start, final int end) {
+        // CHECKSTYLE.OFF: IllegalInstantiation - This is the recommended way
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + start, end - start, Charsets.UTF_8);
+        }
+        return new String(toBytes(buffer, start, end), Charsets.UTF_8);
+        // CHECKSTYLE.ON: IllegalInstantiation
+    }
+
+    private static byte[] toBytes(final ByteBuffer buffer) {
+        return toBytes(buffer, buffer.position(), buffer.limit());
+    }
+
+    private static byte[] toBytes(final ByteBuffer buffer, final int start, final int end) {
+        final byte[] bytes = new byte[end - start];
+        final ByteBuffer view = buffer.duplicate();
+        view.limit(end).position(start);
+        view.get(bytes);
+        return bytes;
+    }
+
     /**
      * Public constructor.
      */
@@ -246,10 +336,102 @@ public final class StatsdToRecordParser implements Parser<List<Record>, ByteBuff
             StatsdType.COUNTER,
             StatsdType.HISTOGRAM,
             StatsdType.TIMER);
-    private static final Splitter LINE_SPLITTER = Splitter.on('\n').omitEmptyStrings();
-    private static final ThreadLocal<NumberFormat> NUMBER_FORMAT = ThreadLocal.withInitial(NumberFormat::getInstance);
-    private static final Pattern STATSD_PATTERN = Pattern.compile(
-            "^(?<NAME>[^:@|,]+)(,(?<INFLUXTAGS>[^:@|]+))?:(?<VALUE>[^|]+)\\|(?<TYPE>[^|]+)(\\|@(?<SAMPLERATE>[^|]+))?(\\|#(?<TAGS>.+))?$");
+
+    private static final class DecimalParser {
+
+        /* package private */ DecimalParser(final ByteBuffer buffer, final int start, final int end) {
+            _buffer = buffer;
+            _end = end;
+            _index = start;
+        }
+
+        public double parse() {
+            boolean negative = false;
+            if (_index < _end && (_buffer.get(_index) == '-' || _buffer.get(_index) == '+')) {
+                negative = _buffer.get(_index) == '-';
+                ++_index;
+            }
+            final int unsignedStart = _index;
+            parseDigits(false);
+            if (_index < _end && _buffer.get(_index) == '.') {
+                ++_index;
+                parseDigits(true);
+            }
+            if (!_hasDigits) {
+                throw new NumberFormatException("No digits");
+            }
+            if (_index < _end && (_buffer.get(_index) == 'e' || _buffer.get(_index) == 'E')) {
+                ++_index;
+                parseExponent();
+            }
+            if (_index != _end) {
+                throw new NumberFormatException("Unexpected character");
+            }
+
+            final double value;
+            if (_mantissa == 0) {
+                value = 0.0;
+            } else if (_significantDigits <= MAX_EXACT_DIGITS && Math.abs(_exponent) < POWERS_OF_TEN.length) {
+                // Both the mantissa and the power of ten are exact so the single
+                // operation below is correctly rounded
+                value = _exponent >= 0 ? _mantissa * POWERS_OF_TEN[_exponent] : _mantissa / POWERS_OF_TEN[-_exponent];
+            } else {
+                // The sign was consumed above and is applied below
+                value = Double.parseDouble(decode(_buffer, unsignedStart, _end));
+            }
+            return negative ? -value : value;
+        }
+
+        private void parseDigits(final boolean fraction) {
+            while (_index < _end && isDigit(_buffer.get(_index))) {
+                final int digit = _buffer.get(_index++) - '0';
+                _hasDigits = true;
+                if (_mantissa != 0 || digit != 0) {
+                    ++_significantDigits;
+                }
+                if (_significantDigits <= MAX_MANTISSA_DIGITS) {
+                    _mantissa = _mantissa * 10 + digit;
+                    if (fraction) {
+                        --_exponent;
+                    }
+                } else if (!fraction) {
+                    ++_exponent;
+                }
+            }
+        }
+
+        private void parseExponent() {
+            boolean negative = false;
+            if (_index < _end && (_buffer.get(_index) == '-' || _buffer.get(_index) == '+')) {
+                negative = _buffer.get(_index) == '-';
+                ++_index;
+            }
+            final int exponentStart = _index;
+            int exponent = 0;
+            while (_index < _end && isDigit(_buffer.get(_index))) {
+                exponent = Math.min(exponent * 10 + _buffer.get(_index++) - '0', MAX_EXPONENT);
+            }
+            if (_index == exponentStart) {
+                throw new NumberFormatException("No exponent digits");
+            }
+            _exponent += negative ? -exponent : exponent;
+        }
+
+        private final ByteBuffer _buffer;
+        private final int _end;
+        private int _index;
+        private long _mantissa = 0;
+        private int _significantDigits = 0;
+        private int _exponent = 0;
+        private boolean _hasDigits = false;
+
+        private static final int MAX_MANTISSA_DIGITS = 18;
+        private static final int MAX_EXACT_DIGITS = 15;
+        private static final int MAX_EXPONENT = 9999;
+        private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    }
 
     private enum StatsdType {
         COUNTER("c", MetricType.COUNTER, null),
@@ -260,17 +442,17 @@ public final class StatsdToRecordParser implements Parser<List<Record>, ByteBuff
         //SET("s", null),
         TIMER("ms", MetricType.TIMER, Unit.MILLISECOND);
 
-        private final String _token;
+        private final byte[] _token;
         private final MetricType _metricType;
         private @Nullable final Unit _unit;
 
-        private static final Map<String, StatsdType> TOKEN_TO_TYPE = Maps.newHashMap();
+        private static final StatsdType[] TYPES = values();
 
         /* package private */ StatsdType(
                 final String token,
                 final MetricType metricType,
                 @Nullable final Unit unit) {
-            _token = token;
+            _token = token.getBytes(Charsets.UTF_8);
             _metricType = metricType;
             _unit = unit;
         }
@@ -283,13 +465,25 @@ public final class StatsdToRecordParser implements Parser<List<Record>, ByteBuff
             return _unit;
         }
 
-        public static StatsdType fromToken(final String token) {
-            return TOKEN_TO_TYPE.get(token);
+        public static @Nullable StatsdType fromBytes(final ByteBuffer buffer, final int start, final int end) {
+            for (final StatsdType type : TYPES) {
+                if (type.matches(buffer, start, end)) {
+                    return type;
+                }
+            }
+            return null;
         }
 
-        static {
-            for (final StatsdType statsdType : values()) {
-                TOKEN_TO_TYPE.put(statsdType._token, statsdType);
+        private boolean matches(final ByteBuffer buffer, final int start, final int end) {
+            if (end - start != _token.length) {
+                return false;
             }
+            for (int i = 0; i < _token.length; ++i) {
+                if (buffer.get(start + i) != _token[i]) {
+                    return false;
+                }
+            }
+            return true;
         }
-    }}
+    }
+}
@@ -17,8 +17,6 @@ package com.arpnetworking.metrics.mad.parsers;
 
 import com.arpnetworking.commons.builder.ThreadLocalBuilder;
 import com.arpnetworking.commons.jackson.databind.ObjectMapperFactory;
-import com.arpnetworking.commons.uuidfactory.SplittableRandomUuidFactory;
-import com.arpnetworking.commons.uuidfactory.UuidFactory;
 import com.arpnetworking.metrics.common.parsers.Parser;
 import com.arpnetworking.metrics.common.parsers.exceptions.ParsingException;
 import com.arpnetworking.metrics.mad.model.DefaultMetric;
@@ -152,8 +150,7 @@ public final class TelegrafJsonToRecordParser implements Parser<List<Record>, By
                 records.add(
                         ThreadLocalBuilder.build(
                                 DefaultRecord.Builder.class,
-                                b -> b.setId(UUID_FACTORY.create().toString())
-                                        .setMetrics(metrics.build())
+                                b -> b.setMetrics(metrics.build())
                                         .setDimensions(telegraf.getTags())
                                         .setTime(timestamp)));
             }
@@ -182,7 +179,6 @@ public final class TelegrafJsonToRecordParser implements Parser<List<Record>, By
 
     private final TimestampUnit _timestampUnit;
 
-    private static final UuidFactory UUID_FACTORY = new SplittableRandomUuidFactory();
     private static final ThreadLocal<NumberFormat> NUMBER_FORMAT = ThreadLocal.withInitial(NumberFormat::getInstance);
     private static final ObjectMapper OBJECT_MAPPER = ObjectMapperFactory.getInstance();
     private static final TypeReference<ImmutableList<Telegraf>> TELEGRAF_LIST_TYPE_REFERENCE =
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.mad.parsers;
+
+import com.arpnetworking.commons.builder.ThreadLocalBuilder;
+import com.arpnetworking.metrics.mad.model.DefaultRecord;
+import com.arpnetworking.metrics.mad.model.Metric;
+import com.arpnetworking.metrics.mad.model.Record;
+import com.arpnetworking.metrics.mad.model.json.Version2g.CompositeUnit;
+import com.arpnetworking.tsdcore.model.MetricType;
+import com.arpnetworking.tsdcore.model.Unit;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.collect.ImmutableMap;
+import net.sf.oval.exception.ConstraintsViolatedException;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Locale;
+import javax.annotation.Nullable;
+
+/**
+ * Parses a version 2g record from the JSON token stream without creating
+ * a tree or the <code>Version2g</code> model. It accepts only well formed
+ * version 2g data and otherwise returns null so that the caller can fall
+ * back to the model based parsing. Instances are not thread safe and are
+ * intended to parse a single record.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+/* package private */ final class Version2gStreamingParser {
+
+    @Nullable
+    public Record parse(final byte[] data) {
+        try (JsonParser parser = _objectMapper.getFactory().createParser(data)) {
+            _parser = parser;
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                readField(field, parser.nextToken());
+            }
+            if (parser.nextToken() != null) {
+                return null;
+            }
+            return buildRecord();
+        } catch (final IOException | UnsupportedDataException | IllegalArgumentException | ConstraintsViolatedException e) {
+            return null;
+        }
+    }
+
+    private void readField(final String field, final JsonToken token) throws IOException, UnsupportedDataException {
+        switch (field) {
+            case "version":
+                if (!VERSION_2G.equalsIgnoreCase(readString(token))) {
+                    throw UNSUPPORTED_DATA;
+                }
+                _hasVersion = true;
+                break;
+            case "id":
+                _id = readString(token);
+                break;
+            case "start":
+                _start = readTimestamp(token);
+                break;
+            case "end":
+                _end = readTimestamp(token);
+                break;
+            case "dimensions":
+                _dimensions = readStringMap(token);
+                break;
+            case "annotations":
+                _annotations = readStringMap(token);
+                break;
+            case "timers":
+                _timers = readMetrics(token, MetricType.TIMER);
+                break;
+            case "counters":
+                _counters = readMetrics(token, MetricType.COUNTER);
+                break;
+            case "gauges":
+                _gauges = readMetrics(token, MetricType.GAUGE);
+                break;
+            case "data":
+                // The version of the data node takes precedence
+                throw UNSUPPORTED_DATA;
+            default:
+                skipUnknown();
+        }
+    }
+
+    private Record buildRecord() throws UnsupportedDataException {
+        if (!_hasVersion || _id == null || _start == null || _end == null || _dimensions == null || _annotations == null) {
+            throw UNSUPPORTED_DATA;
+        }
+        final ImmutableMap.Builder<String, Metric> variables = ImmutableMap.builder();
+        variables.putAll(_timers);
+        variables.putAll(_counters);
+        variables.putAll(_gauges);
+
+        return ThreadLocalBuilder.build(
+                DefaultRecord.Builder.class,
+                b -> b.setMetrics(variables.build())
+                        .setTime(_end)
+                        .setId(_id)
+                        .setAnnotations(_annotations)
+                        .setDimensions(_dimensions));
+    }
+
+    private ImmutableMap<String, Metric> readMetrics(final JsonToken token, final MetricType metricKind)
+            throws IOException, UnsupportedDataException {
+        if (token == JsonToken.VALUE_NULL) {
+            return ImmutableMap.of();
+        }
+        expect(token, JsonToken.START_OBJECT);
+        final ImmutableMap.Builder<String, Metric> metrics = ImmutableMap.builder();
+        while (_parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String name = _parser.getCurrentName();
+            expect(_parser.nextToken(), JsonToken.START_OBJECT);
+            metrics.put(name, readElement(metricKind));
+        }
+        return metrics.build();
+    }
+
+    private Metric readElement(final MetricType metricKind) throws IOException, UnsupportedDataException {
+        boolean hasValues = false;
+        while (_parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = _parser.getCurrentName();
+            final JsonToken token = _parser.nextToken();
+            if ("values".equals(field)) {
+                expect(token, JsonToken.START_ARRAY);
+                _count = 0;
+                while (_parser.nextToken() == JsonToken.START_OBJECT) {
+                    readSample();
+                }
+                expect(_parser.currentToken(), JsonToken.END_ARRAY);
+                hasValues = true;
+            } else {
+                skipUnknown();
+            }
+        }
+        if (!hasValues) {
+            throw UNSUPPORTED_DATA;
+        }
+        return JsonToRecordParser.buildMetricVersion2g(_values, _units, _count, metricKind);
+    }
+
+    private void readSample() throws IOException, UnsupportedDataException {
+        boolean hasValue = false;
+        double value = 0;
+        @Nullable Unit unit = null;
+        while (_parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = _parser.getCurrentName();
+            final JsonToken token = _parser.nextToken();
+            if ("value".equals(field)) {
+                // Other representations (e.g. strings) are left to the model based parsing
+                if (token != JsonToken.VALUE_NUMBER_INT && token != JsonToken.VALUE_NUMBER_FLOAT) {
+                    throw UNSUPPORTED_DATA;
+                }
+                value = _parser.getDoubleValue();
+                hasValue = true;
+            } else if ("unit".equals(field)) {
+                unit = readUnit(token);
+            } else {
+                skipUnknown();
+            }
+        }
+        if (!hasValue) {
+            throw UNSUPPORTED_DATA;
+        }
+        if (_count == _values.length) {
+            _values = Arrays.copyOf(_values, _count * 2);
+            _units = Arrays.copyOf(_units, _count * 2);
+        }
+        _values[_count] = value;
+        _units[_count] = unit;
+        ++_count;
+    }
+
+    @Nullable
+    private Unit readUnit(final JsonToken token) throws IOException, UnsupportedDataException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expect(token, JsonToken.START_OBJECT);
+        @Nullable CompositeUnit numerator = null;
+        while (_parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = _parser.getCurrentName();
+            final JsonToken fieldToken = _parser.nextToken();
+            if ("numerators".equals(field)) {
+                numerator = readFirstCompositeUnit(fieldToken);
+            } else if ("denominators".equals(field)) {
+                // TODO(vkoskela): Support compound units in Tsd Aggregator
+                readFirstCompositeUnit(fieldToken);
+            } else {
+                skipUnknown();
+            }
+        }
+        return JsonToRecordParser.getLegacyUnit(numerator);
+    }
+
+    @Nullable
+    private CompositeUnit readFirstCompositeUnit(final JsonToken token) throws IOException, UnsupportedDataException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expect(token, JsonToken.START_ARRAY);
+        @Nullable CompositeUnit first = null;
+        while (_parser.nextToken() == JsonToken.START_OBJECT) {
+            final CompositeUnit compositeUnit = readCompositeUnit();
+            if (first == null) {
+                first = compositeUnit;
+            }
+        }
+        expect(_parser.currentToken(), JsonToken.END_ARRAY);
+        return first;
+    }
+
+    private CompositeUnit readCompositeUnit() throws IOException, UnsupportedDataException {
+        @Nullable CompositeUnit.Type type = null;
+        @Nullable CompositeUnit.Scale scale = null;
+        while (_parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = _parser.getCurrentName();
+            final JsonToken token = _parser.nextToken();
+            if ("type".equals(field)) {
+                type = CompositeUnit.Type.valueOf(readString(token).toUpperCase(Locale.ROOT));
+            } else if ("scale".equals(field)) {
+                scale = token == JsonToken.VALUE_NULL
+                        ? null
+                        : CompositeUnit.Scale.valueOf(readString(token).toUpperCase(Locale.ROOT));
+            } else {
+                skipUnknown();
+            }
+        }
+        if (type == null) {
+            throw UNSUPPORTED_DATA;
+        }
+        return new CompositeUnit(scale, type);
+    }
+
+    private ImmutableMap<String, String> readStringMap(final JsonToken token) throws IOException, UnsupportedDataException {
+        expect(token, JsonToken.START_OBJECT);
+        final ImmutableMap.Builder<String, String> map = ImmutableMap.builder();
+        while (_parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String key = _parser.getCurrentName();
+            map.put(key, readString(_parser.nextToken()));
+        }
+        return map.build();
+    }
+
+    private String readString(final JsonToken token) throws IOException, UnsupportedDataException {
+        expect(token, JsonToken.VALUE_STRING);
+        return _parser.getText();
+    }
+
+    private ZonedDateTime readTimestamp(final JsonToken token) throws IOException, UnsupportedDataException {
+        expect(token, JsonToken.VALUE_STRING);
+        @Nullable final ZonedDateTime timestamp = _timestampReader.readValue(_parser);
+        if (timestamp == null) {
+            throw UNSUPPORTED_DATA;
+        }
+        return timestamp;
+    }
+
+    private void skipUnknown() throws IOException, UnsupportedDataException {
+        if (_objectMapper.isEnabled(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)) {
+            throw UNSUPPORTED_DATA;
+        }
+        _parser.skipChildren();
+    }
+
+    private static void expect(@Nullable final JsonToken actual, final JsonToken expected) throws UnsupportedDataException {
+        if (actual != expected) {
+            throw UNSUPPORTED_DATA;
+        }
+    }
+
+    /**
+     * Package private constructor.
+     *
+     * @param objectMapper the <code>ObjectMapper</code> whose configuration to parse with
+     * @param timestampReader the <code>ObjectReader</code> for timestamp values
+     */
+    /* package private */ Version2gStreamingParser(final ObjectMapper objectMapper, final ObjectReader timestampReader) {
+        _objectMapper = objectMapper;
+        _timestampReader = timestampReader;
+    }
+
+    private final ObjectMapper _objectMapper;
+    private final ObjectReader _timestampReader;
+    private JsonParser _parser;
+    private boolean _hasVersion;
+    private String _id;
+    private ZonedDateTime _start;
+    private ZonedDateTime _end;
+    private ImmutableMap<String, String> _dimensions;
+    private ImmutableMap<String, String> _annotations;
+    private ImmutableMap<String, Metric> _timers = ImmutableMap.of();
+    private ImmutableMap<String, Metric> _counters = ImmutableMap.of();
+    private ImmutableMap<String, Metric> _gauges = ImmutableMap.of();
+    private double[] _values = new double[INITIAL_SAMPLES];
+    private Unit[] _units = new Unit[INITIAL_SAMPLES];
+    private int _count;
+
+    private static final int INITIAL_SAMPLES = 16;
+    private static final String VERSION_2G = "2g";
+    private static final UnsupportedDataException UNSUPPORTED_DATA = new UnsupportedDataException();
+
+    /**
+     * Signals that the data cannot be parsed by <code>Version2gStreamingParser</code>.
+     */
+    private static final class UnsupportedDataException extends Exception {
+
+        private UnsupportedDataException() {
+            // The instance is shared and thrown for control flow only
+            super(null, null, false, false);
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -0,0 +1,422 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.mad.sources;
+
+import com.arpnetworking.commons.builder.OvalBuilder;
+import com.arpnetworking.commons.builder.ThreadLocalBuilder;
+import com.arpnetworking.commons.observer.Observable;
+import com.arpnetworking.commons.observer.Observer;
+import com.arpnetworking.logback.annotations.LogValue;
+import com.arpnetworking.metrics.common.sources.BaseSource;
+import com.arpnetworking.metrics.common.sources.Source;
+import com.arpnetworking.metrics.mad.model.DefaultRecord;
+import com.arpnetworking.metrics.mad.model.Record;
+import com.arpnetworking.steno.LogValueMapFactory;
+import com.arpnetworking.steno.Logger;
+import com.arpnetworking.steno.LoggerFactory;
+import com.arpnetworking.tsdcore.model.Key;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import net.sf.oval.constraint.NotEmpty;
+import net.sf.oval.constraint.NotNull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Implementation of <code>Source</code> which wraps another <code>Source</code>
+ * and rewrites the dimensions of each <code>Record</code> before it reaches
+ * the aggregator. Since the dimensions determine the aggregation key, high
+ * cardinality dimensions such as request or pod identifiers are best dropped
+ * or bucketed here before they create keys, period workers and buckets.
+ *
+ * The rewrites are applied to each dimension in order:
+ * <ol>
+ *     <li>dimensions listed in <code>dropDimensions</code> are removed</li>
+ *     <li>dimensions in <code>renameDimensions</code> are renamed; a
+ *     dimension already present with the new name takes precedence, and
+ *     if several dimensions are renamed to the same name the first one
+ *     in the record is kept</li>
+ *     <li>the value of a dimension in <code>bucketDimensions</code> is
+ *     replaced using the first of its buckets, in order, that matches</li>
+ *     <li>dimensions not in the <code>allowedDimensions</code> of the
+ *     record's service (or the <code>defaultAllowedDimensions</code> for
+ *     other services) are removed</li>
+ * </ol>
+ * The host, service and cluster dimensions are never removed by an allowlist.
+ * Records whose dimensions are unchanged are forwarded as is.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public final class DimensionMappingSource extends BaseSource {
+
+    @Override
+    public void start() {
+        _source.start();
+    }
+
+    @Override
+    public void stop() {
+        _source.stop();
+    }
+
+    /**
+     * Generate a Steno log compatible representation.
+     *
+     * @return Steno log compatible representation.
+     */
+    @LogValue
+    public Object toLogValue() {
+        return LogValueMapFactory.builder(this)
+                .put("source", _source)
+                .put("dropDimensions", _dropDimensions)
+                .put("renameDimensions", _renameDimensions)
+                .put("bucketDimensions", _bucketDimensions)
+                .put("allowedDimensions", _allowedDimensions)
+                .put("defaultAllowedDimensions", _defaultAllowedDimensions)
+                .build();
+    }
+
+    @Override
+    public String toString() {
+        return toLogValue().toString();
+    }
+
+    /**
+     * Rewrite the dimensions of a record.
+     *
+     * @param dimensions The dimensions to rewrite.
+     * @return The rewritten dimensions; the same instance if unchanged.
+     */
+    /* package private */ ImmutableMap<String, String> map(final ImmutableMap<String, String> dimensions) {
+        final Map<String, String> mappedDimensions = Maps.newHashMapWithExpectedSize(dimensions.size());
+        boolean changed = false;
+        for (final Map.Entry<String, String> dimension : dimensions.entrySet()) {
+            if (_dropDimensions.contains(dimension.getKey()) || _renameDimensions.containsKey(dimension.getKey())) {
+                changed = true;
+            } else {
+                mappedDimensions.put(dimension.getKey(), dimension.getValue());
+            }
+        }
+        // Renamed dimensions are added last so they never replace a kept or
+        // previously renamed dimension of the same name
+        if (changed && !_renameDimensions.isEmpty()) {
+            for (final Map.Entry<String, String> dimension : dimensions.entrySet()) {
+                final String renamed = _renameDimensions.get(dimension.getKey());
+                if (renamed != null && !_dropDimensions.contains(dimension.getKey())) {
+                    mappedDimensions.putIfAbsent(renamed, dimension.getValue());
+                }
+            }
+        }
+        changed |= bucket(mappedDimensions);
+        changed |= allow(mappedDimensions);
+        if (!changed) {
+            return dimensions;
+        }
+        return ImmutableMap.copyOf(mappedDimensions);
+    }
+
+    private boolean bucket(final Map<String, String> dimensions) {
+        boolean changed = false;
+        for (final Map.Entry<String, List<Bucket>> buckets : _bucketDimensions.entrySet()) {
+            final String value = dimensions.get(buckets.getKey());
+            if (value == null) {
+                continue;
+            }
+            for (final Bucket bucket : buckets.getValue()) {
+                final Matcher matcher = bucket._pattern.matcher(value);
+                if (matcher.find()) {
+                    final String bucketValue = matcher.replaceAll(bucket._replacement);
+                    if (!bucketValue.equals(value)) {
+                        dimensions.put(buckets.getKey(), bucketValue);
+                        changed = true;
+                    }
+                    break;
+                }
+            }
+        }
+        return changed;
+    }
+
+    private boolean allow(final Map<String, String> dimensions) {
+        Optional<Set<String>> allowedDimensions = _defaultAllowedDimensions;
+        final String service = dimensions.get(Key.SERVICE_DIMENSION_KEY);
+        if (service != null && _allowedDimensions.containsKey(service)) {
+            allowedDimensions = Optional.of(_allowedDimensions.get(service));
+        }
+        if (!allowedDimensions.isPresent()) {
+            return false;
+        }
+        final Set<String> allowed = allowedDimensions.get();
+        return dimensions.keySet().removeIf(name -> !REQUIRED_DIMENSIONS.contains(name) && !allowed.contains(name));
+    }
+
+    private DimensionMappingSource(final Builder builder) {
+        super(builder);
+        _source = builder._source;
+        _dropDimensions = ImmutableSet.copyOf(builder._dropDimensions);
+        _renameDimensions = ImmutableMap.copyOf(builder._renameDimensions);
+
+        final ImmutableMap.Builder<String, List<Bucket>> bucketDimensions = ImmutableMap.builder();
+        for (final Map.Entry<String, ? extends List<Bucket>> entry : builder._bucketDimensions.entrySet()) {
+            bucketDimensions.put(entry.getKey(), ImmutableList.copyOf(entry.getValue()));
+        }
+        _bucketDimensions = bucketDimensions.build();
+
+        final ImmutableMap.Builder<String, Set<String>> allowedDimensions = ImmutableMap.builder();
+        for (final Map.Entry<String, ? extends List<String>> entry : builder._allowedDimensions.entrySet()) {
+            allowedDimensions.put(entry.getKey(), ImmutableSet.copyOf(entry.getValue()));
+        }
+        _allowedDimensions = allowedDimensions.build();
+        _defaultAllowedDimensions = Optional.ofNullable(builder._defaultAllowedDimensions).map(ImmutableSet::copyOf);
+
+        _source.attach(new DimensionMappingObserver(this));
+    }
+
+    private final Source _source;
+    private final Set<String> _dropDimensions;
+    private final Map<String, String> _renameDimensions;
+    private final Map<String, List<Bucket>> _bucketDimensions;
+    private final Map<String, Set<String>> _allowedDimensions;
+    private final Optional<Set<String>> _defaultAllowedDimensions;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DimensionMappingSource.class);
+    private static final Set<String> REQUIRED_DIMENSIONS = ImmutableSet.of(
+            Key.HOST_DIMENSION_KEY,
+            Key.SERVICE_DIMENSION_KEY,
+            Key.CLUSTER_DIMENSION_KEY);
+
+    // NOTE: Package private for testing
+    /* package private */ static final class DimensionMappingObserver implements Observer {
+
+        /* package private */ DimensionMappingObserver(final DimensionMappingSource source) {
+            _source = source;
+        }
+
+        @Override
+        public void notify(final Observable observable, final Object event) {
+            if (!(event instanceof Record)) {
+                LOGGER.error()
+                        .setMessage("Observed unsupported event")
+                        .addData("event", event)
+                        .log();
+                return;
+            }
+
+            // Forward the record untouched unless a dimension is rewritten
+            final Record record = (Record) event;
+            final ImmutableMap<String, String> dimensions = _source.map(record.getDimensions());
+            if (dimensions == record.getDimensions()) {
+                _source.notify(record);
+                return;
+            }
+            _source.notify(
+                    ThreadLocalBuilder.build(
+                            DefaultRecord.Builder.class,
+                            b1 -> b1.setMetrics(record.getMetrics())
+                                    .setIdFrom(record)
+                                    .setTime(record.getTime())
+                                    .setAnnotations(record.getAnnotations())
+                                    .setDimensions(dimensions)));
+        }
+
+        private final DimensionMappingSource _source;
+    }
+
+    /**
+     * A find and replace expression for the value of a dimension. The
+     * buckets of a dimension are configured as a list since the first
+     * matching bucket in order wins.
+     *
+     * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+     */
+    public static final class Bucket {
+
+        @Override
+        public String toString() {
+            return _pattern.pattern() + "=" + _replacement;
+        }
+
+        private Bucket(final Builder builder) {
+            _pattern = Pattern.compile(builder._pattern);
+            _replacement = builder._replacement;
+        }
+
+        private final Pattern _pattern;
+        private final String _replacement;
+
+        /**
+         * Implementation of builder pattern for <code>Bucket</code>.
+         *
+         * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+         */
+        public static final class Builder extends OvalBuilder<Bucket> {
+
+            /**
+             * Public constructor.
+             */
+            public Builder() {
+                super(Bucket::new);
+            }
+
+            /**
+             * Sets the regular expression to find in the value. Required.
+             * Cannot be null or empty.
+             *
+             * @param value The regular expression.
+             * @return This instance of <code>Builder</code>.
+             */
+            public Builder setPattern(final String value) {
+                _pattern = value;
+                return this;
+            }
+
+            /**
+             * Sets the replacement for matches of the pattern; may refer to
+             * capture groups such as <code>$1</code>. Required. Cannot be null.
+             *
+             * @param value The replacement.
+             * @return This instance of <code>Builder</code>.
+             */
+            public Builder setReplacement(final String value) {
+                _replacement = value;
+                return this;
+            }
+
+            @NotNull
+            @NotEmpty
+            private String _pattern;
+            @NotNull
+            private String _replacement;
+        }
+    }
+
+    /**
+     * Implementation of builder pattern for <code>DimensionMappingSource</code>.
+     *
+     * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+     */
+    public static final class Builder extends BaseSource.Builder<Builder, DimensionMappingSource> {
+
+        /**
+         * Public constructor.
+         */
+        public Builder() {
+            super(DimensionMappingSource::new);
+        }
+
+        /**
+         * Sets the underlying source. Cannot be null.
+         *
+         * @param value The underlying source.
+         * @return This instance of <code>Builder</code>.
+         */
+        public Builder setSource(final Source value) {
+            _source = value;
+            return this;
+        }
+
+        /**
+         * Sets the names of the dimensions to drop. Optional. Cannot be null.
+         * Default is none.
+         *
+         * @param value The names of the dimensions to drop.
+         * @return This instance of <code>Builder</code>.
+         */
+        public Builder setDropDimensions(final List<String> value) {
+            _dropDimensions = value;
+            return this;
+        }
+
+        /**
+         * Sets the new names of dimensions by their current names. Optional.
+         * Cannot be null. Default is none.
+         *
+         * @param value The new dimension names by current dimension name.
+         * @return This instance of <code>Builder</code>.
+         */
+        public Builder setRenameDimensions(final Map<String, String> value) {
+            _renameDimensions = value;
+            return this;
+        }
+
+        /**
+         * Sets the ordered value buckets by dimension name. The value is
+         * replaced using the first bucket in order whose pattern matches it;
+         * the value is kept if no bucket matches. For example,
+         * <code>{"status": [{"pattern": "^([1-5])\\d\\d$", "replacement": "$1xx"}]}</code>.
+         * Optional. Cannot be null. Default is none.
+         *
+         * @param value The ordered value buckets by dimension name.
+         * @return This instance of <code>Builder</code>.
+         */
+        public Builder setBucketDimensions(final Map<String, ? extends List<Bucket>> value) {
+            _bucketDimensions = value;
+            return this;
+        }
+
+        /**
+         * Sets the names of the dimensions allowed by service. Other
+         * dimensions are dropped from records of the service except for the
+         * host, service and cluster dimensions. Optional. Cannot be null.
+         * Default is none.
+         *
+         * @param value The names of the dimensions allowed by service.
+         * @return This instance of <code>Builder</code>.
+         */
+        public Builder setAllowedDimensions(final Map<String, ? extends List<String>> value) {
+            _allowedDimensions = value;
+            return this;
+        }
+
+        /**
+         * Sets the names of the dimensions allowed for services without
+         * <code>allowedDimensions</code>. Optional. Default is null which
+         * allows all dimensions for those services.
+         *
+         * @param value The names of the dimensions allowed by default.
+         * @return This instance of <code>Builder</code>.
+         */
+        public Builder setDefaultAllowedDimensions(final List<String> value) {
+            _defaultAllowedDimensions = value;
+            return this;
+        }
+
+        @Override
+        protected Builder self() {
+            return this;
+        }
+
+        @NotNull
+        private Source _source;
+        @NotNull
+        private List<String> _dropDimensions = Collections.emptyList();
+        @NotNull
+        private Map<String, String> _renameDimensions = Collections.emptyMap();
+        @NotNull
+        private Map<String, ? extends List<Bucket>> _bucketDimensions = Collections.emptyMap();
+        @NotNull
+        private Map<String, ? extends List<String>> _allowedDimensions = Collections.emptyMap();
+        private List<String> _defaultAllowedDimensions;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.mad.sources;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites metric names with a set of find and replace regular expressions.
+ * A name matched by any expression is replaced by the result of applying
+ * each of that expression's replacements; mapping to an empty list of
+ * replacements suppresses the name. A name matched by no expression is kept.
+ *
+ * Rather than evaluating every expression against every name, expressions
+ * anchored to the start of the name with a literal prefix are indexed in a
+ * prefix trie; only those whose prefix the name starts with, plus any
+ * expressions without such a prefix, are evaluated. The rewritten names are
+ * cached by name in a bounded least recently used cache since the set of
+ * metric names seen by a source is generally small and stable.
+ *
+ * This class is thread safe.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+/* package private */ final class FindAndReplace {
+
+    /**
+     * Rewrite a metric name.
+     *
+     * @param name The metric name.
+     * @return The rewritten metric names.
+     */
+    public ImmutableList<String> apply(final String name) {
+        if (_cache.isPresent()) {
+            return _cache.get().getUnchecked(name);
+        }
+        return rewrite(name);
+    }
+
+    /**
+     * Whether there are any expressions.
+     *
+     * @return True if and only if there are no expressions.
+     */
+    public boolean isEmpty() {
+        return _ruleCount == 0;
+    }
+
+    private ImmutableList<String> rewrite(final String name) {
+        final List<Rule> candidates = Lists.newArrayList(_unanchoredRules);
+        Node node = _root;
+        candidates.addAll(node._rules);
+        for (int i = 0; i < name.length(); ++i) {
+            node = node._children.get(name.charAt(i));
+            if (node == null) {
+                break;
+            }
+            candidates.addAll(node._rules);
+        }
+        candidates.sort(Comparator.comparingInt(rule -> rule._index));
+
+        boolean found = false;
+        final ImmutableList.Builder<String> names = ImmutableList.builder();
+        for (final Rule rule : candidates) {
+            final Matcher matcher = rule._pattern.matcher(name);
+            if (matcher.find()) {
+                for (final String replacement : rule._replacements) {
+                    names.add(matcher.replaceAll(replacement));
+                }
+                // Having "found" set here means that mapping a metric to an empty list suppresses that metric
+                found = true;
+            }
+        }
+        if (!found) {
+            return ImmutableList.of(name);
+        }
+        return names.build();
+    }
+
+    /* package private */ static Optional<String> getAnchoredPrefix(final String regex) {
+        // NOTE: An alternation may apply outside the anchor; e.g. ^a|b
+        if (!regex.startsWith("^") || regex.contains("\\Q") || hasTopLevelAlternation(regex)) {
+            return Optional.empty();
+        }
+        final StringBuilder prefix = new StringBuilder();
+        int i = 1;
+        while (i < regex.length() && META_CHARACTERS.indexOf(regex.charAt(i)) < 0) {
+            prefix.append(regex.charAt(i));
+            ++i;
+        }
+        if (i < regex.length() && QUANTIFIERS.indexOf(regex.charAt(i)) >= 0 && prefix.length() > 0) {
+            // The quantifier applies to the last literal character
+            prefix.setLength(prefix.length() - 1);
+        }
+        return Optional.of(prefix.toString());
+    }
+
+    private static boolean hasTopLevelAlternation(final String regex) {
+        int groupDepth = 0;
+        int classDepth = 0;
+        int i = 0;
+        while (i < regex.length()) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                // Skip the escaped character
+                ++i;
+            } else if (c == '[') {
+                ++classDepth;
+                // A closing bracket first in a character class is literal
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == '^') {
+                    ++i;
+                }
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') {
+                    ++i;
+                }
+            } else if (c == ']' && classDepth > 0) {
+                --classDepth;
+            } else if (classDepth == 0) {
+                if (c == '(') {
+                    ++groupDepth;
+                } else if (c == ')') {
+                    --groupDepth;
+                } else if (c == '|' && groupDepth == 0) {
+                    return true;
+                }
+            }
+            ++i;
+        }
+        return false;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param findAndReplace The find and replace expressions in order.
+     * @param cacheSize The maximum number of metric names to cache.
+     */
+    /* package private */ FindAndReplace(final Map<Pattern, ? extends List<String>> findAndReplace, final long cacheSize) {
+        int index = 0;
+        for (final Map.Entry<Pattern, ? extends List<String>> entry : findAndReplace.entrySet()) {
+            final Rule rule = new Rule(entry.getKey(), ImmutableList.copyOf(entry.getValue()), index++);
+            final Optional<String> prefix = getAnchoredPrefix(entry.getKey().pattern());
+            if (prefix.isPresent()) {
+                Node node = _root;
+                for (final char c : prefix.get().toCharArray()) {
+                    node = node._children.computeIfAbsent(c, k -> new Node());
+                }
+                node._rules.add(rule);
+            } else {
+                _unanchoredRules.add(rule);
+            }
+        }
+        _ruleCount = index;
+        if (cacheSize > 0) {
+            _cache = Optional.of(CacheBuilder.newBuilder()
+                    .maximumSize(cacheSize)
+                    .build(new CacheLoader<String, ImmutableList<String>>() {
+                        @Override
+                        public ImmutableList<String> load(final String key) {
+                            return rewrite(key);
+                        }
+                    }));
+        } else {
+            _cache = Optional.empty();
+        }
+    }
+
+    private final Node _root = new Node();
+    private final List<Rule> _unanchoredRules = Lists.newArrayList();
+    private final int _ruleCount;
+    private final Optional<LoadingCache<String, ImmutableList<String>>> _cache;
+
+    private static final String META_CHARACTERS = "\\.[]{}()*+?^$|";
+    private static final String QUANTIFIERS = "*+?{";
+
+    private static final class Node {
+        private final Map<Character, Node> _children = Maps.newHashMap();
+        private final List<Rule> _rules = Lists.newArrayList();
+    }
+
+    private static final class Rule {
+
+        private Rule(final Pattern pattern, final ImmutableList<String> replacements, final int index) {
+            _pattern = pattern;
+            _replacements = replacements;
+            _index = index;
+        }
+
+        private final Pattern _pattern;
+        private final ImmutableList<String> _replacements;
+        private final int _index;
+    }
+}
@@ -34,18 +34,20 @@ import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import net.sf.oval.constraint.Min;
 import net.sf.oval.constraint.NotNull;
 
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * Implementation of <code>Source</code> which wraps another <code>Source</code>
  * and merges <code>Metric</code> instances within each <code>Record</code>
  * together if the name matches a regular expression with a new name generated
- * through replacement of all matches in the original name.
+ * through replacement of all matches in the original name. The expressions
+ * are evaluated in the order they are configured and the rewritten names are
+ * cached by metric name; see <code>FindAndReplace</code>.
  *
  * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
  */
@@ -83,12 +85,12 @@ public final class MappingSource extends BaseSource {
         super(builder);
         _source = builder._source;
 
-        _findAndReplace = Maps.newHashMapWithExpectedSize(builder._findAndReplace.size());
+        _findAndReplace = Maps.newLinkedHashMapWithExpectedSize(builder._findAndReplace.size());
         for (final Map.Entry<String, ? extends List<String>> entry : builder._findAndReplace.entrySet()) {
             _findAndReplace.put(Pattern.compile(entry.getKey()), ImmutableList.copyOf(entry.getValue()));
         }
 
-        _source.attach(new MappingObserver(this, _findAndReplace));
+        _source.attach(new MappingObserver(this, new FindAndReplace(_findAndReplace, builder._cacheSize)));
     }
 
     private final Source _source;
@@ -99,7 +101,7 @@ public final class MappingSource extends BaseSource {
     // NOTE: Package private for testing
     /* package private */ static final class MappingObserver implements Observer {
 
-        /* package private */ MappingObserver(final MappingSource source, final Map<Pattern, List<String>> findAndReplace) {
+        /* package private */ MappingObserver(final MappingSource source, final FindAndReplace findAndReplace) {
             _source = source;
             _findAndReplace = findAndReplace;
         }
@@ -114,27 +116,23 @@ public final class MappingSource extends BaseSource {
                 return;
             }
 
-            // Merge the metrics in the record together
+            // Forward the record untouched unless a metric is renamed
             final Record record = (Record) event;
-            final Map<String, MergingMetric> mergedMetrics = Maps.newHashMap();
+            if (!isRenamed(record)) {
+                _source.notify(record);
+                return;
+            }
+
+            // Merge the metrics in the record together
+            final Map<String, Metric> mergedMetrics = Maps.newHashMapWithExpectedSize(record.getMetrics().size());
             for (final Map.Entry<String, ? extends Metric> metric : record.getMetrics().entrySet()) {
-                boolean found = false;
-                for (final Map.Entry<Pattern, List<String>> findAndReplace : _findAndReplace.entrySet()) {
-                    final Matcher matcher = findAndReplace.getKey().matcher(metric.getKey());
-                    if (matcher.find()) {
-                        for (final String replacement : findAndReplace.getValue()) {
-                            merge(metric.getValue(), matcher.replaceAll(replacement), mergedMetrics);
-                        }
-                        //Having "found" set here means that mapping a metric to an empty list suppresses that metric
-                        found = true;
-                    }
-                }
-                if (!found) {
-                    merge(metric.getValue(), metric.getKey(), mergedMetrics);
+                for (final String name : _findAndReplace.apply(metric.getKey())) {
+                    merge(metric.getValue(), name, mergedMetrics);
                 }
             }
 
             // Raise the merged record event with this source's observers
+            // NOTE: Metrics which were not merged are reused as is
             // NOTE: Do not leak instances of MergingMetric since it is mutable
             _source.notify(
                     ThreadLocalBuilder.build(
@@ -143,21 +141,36 @@ public final class MappingSource extends BaseSource {
                                     mergedMetrics.entrySet().stream().collect(
                                             ImmutableMap.toImmutableMap(
                                                     Map.Entry::getKey,
-                                                    e -> ThreadLocalBuilder.clone(
-                                                            e.getValue(),
-                                                            DefaultMetric.Builder.class))))
-                                    .setId(record.getId())
+                                                    e -> e.getValue() instanceof MergingMetric
+                                                            ? ThreadLocalBuilder.clone(
+                                                                    (MergingMetric) e.getValue(),
+                                                                    DefaultMetric.Builder.class)
+                                                            : e.getValue())))
+                                    .setIdFrom(record)
                                     .setTime(record.getTime())
                                     .setAnnotations(record.getAnnotations())
                                     .setDimensions(record.getDimensions())));
         }
 
-        private void merge(final Metric metric, final String key, final Map<String, MergingMetric> mergedMetrics) {
-            final MergingMetric mergedMetric = mergedMetrics.get(key);
+        private boolean isRenamed(final Record record) {
+            if (_findAndReplace.isEmpty()) {
+                return false;
+            }
+            for (final String key : record.getMetrics().keySet()) {
+                final List<String> names = _findAndReplace.apply(key);
+                if (names.size() != 1 || !names.get(0).equals(key)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void merge(final Metric metric, final String key, final Map<String, Metric> mergedMetrics) {
+            final Metric mergedMetric = mergedMetrics.get(key);
             if (mergedMetric == null) {
                 // This is the first time this metric is being merged into
-                mergedMetrics.put(key, new MergingMetric(metric));
-            } else if (!mergedMetric.isMergable(metric)) {
+                mergedMetrics.put(key, metric);
+            } else if (!mergedMetric.getType().equals(metric.getType())) {
                 // This instance of the metric is not mergable with previous
                 LOGGER.error()
                         .setMessage("Discarding metric")
@@ -165,14 +178,19 @@ public final class MappingSource extends BaseSource {
                         .addData("metric", metric)
                         .addData("mergedMetric", mergedMetric)
                         .log();
-            } else {
+            } else if (mergedMetric instanceof MergingMetric) {
                 // Merge the new instance in
-                mergedMetric.merge(metric);
+                ((MergingMetric) mergedMetric).merge(metric);
+            } else {
+                // Copy the values on the first merge into a metric
+                final MergingMetric mergingMetric = new MergingMetric(mergedMetric);
+                mergingMetric.merge(metric);
+                mergedMetrics.put(key, mergingMetric);
             }
         }
 
         private final MappingSource _source;
-        private final Map<Pattern, List<String>> _findAndReplace;
+        private final FindAndReplace _findAndReplace;
     }
 
     // NOTE: Package private for testing
@@ -253,6 +271,19 @@ public final class MappingSource extends BaseSource {
             return this;
         }
 
+        /**
+         * Sets the maximum number of metric names whose rewritten names are
+         * cached. Optional. Cannot be null. Must be at least 0. Default is
+         * 10000.
+         *
+         * @param value The maximum number of cached metric names.
+         * @return This instance of <code>Builder</code>.
+         */
+        public Builder setCacheSize(final Integer value) {
+            _cacheSize = value;
+            return this;
+        }
+
         @Override
         protected Builder self() {
             return this;
@@ -262,5 +293,8 @@ public final class MappingSource extends BaseSource {
         private Source _source;
         @NotNull
         private Map<String, ? extends List<String>> _findAndReplace;
+        @NotNull
+        @Min(0)
+        private Integer _cacheSize = 10000;
     }
 }
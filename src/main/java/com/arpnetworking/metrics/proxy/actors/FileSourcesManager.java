@@ -111,6 +111,7 @@ public final class FileSourcesManager extends AbstractActor {
                             .setInterval(_fileSourceInterval)
                             .setParser(new LogLineParser(filepath))
                             .setInitialPosition(InitialPosition.END)
+                            .setSharedTailer(true)
                             .build();
             source.attach(new LogFileObserver(_streamContextActor, getSelf()));
             source.start();
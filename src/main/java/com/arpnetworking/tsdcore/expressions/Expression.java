@@ -0,0 +1,213 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.tsdcore.expressions;
+
+import com.arpnetworking.commons.builder.OvalBuilder;
+import com.arpnetworking.commons.builder.ThreadLocalBuilder;
+import com.arpnetworking.logback.annotations.LogValue;
+import com.arpnetworking.steno.LogValueMapFactory;
+import com.arpnetworking.tsdcore.model.AggregatedData;
+import com.arpnetworking.tsdcore.model.Quantity;
+import com.arpnetworking.tsdcore.statistics.ExpressionStatistic;
+import com.arpnetworking.tsdcore.statistics.Statistic;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultimap;
+import net.sf.oval.constraint.NotEmpty;
+import net.sf.oval.constraint.NotNull;
+
+import java.util.Optional;
+
+/**
+ * A user-defined expression over the statistics computed for the metrics of
+ * a single key and period. The expression text is parsed and compiled into
+ * an evaluator tree once when the <code>Expression</code> is built; each
+ * evaluation only resolves the referenced values and walks the tree.
+ *
+ * The expression syntax supports numeric literals, the binary operators
+ * <code>+</code>, <code>-</code>, <code>*</code> and <code>/</code>, unary
+ * negation, parentheses and references to computed statistics in the form
+ * <code>{metric:statistic}</code>. For example:
+ *
+ * <code>100 * {errors:sum} / {requests:sum}</code>
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public final class Expression {
+
+    public String getMetric() {
+        return _metric;
+    }
+
+    public String getExpression() {
+        return _expression;
+    }
+
+    public ImmutableList<Reference> getReferences() {
+        return _references;
+    }
+
+    /**
+     * Evaluate the expression against the statistics computed for a key and
+     * period. The result is absent if any referenced statistic was not
+     * computed or if the result is not a finite number.
+     *
+     * @param data The computed <code>AggregatedData</code> by metric name.
+     * @return The <code>AggregatedData</code> for the expression, if any.
+     */
+    public Optional<AggregatedData> evaluate(final ImmutableMultimap<String, AggregatedData> data) {
+        final Quantity[] values = new Quantity[_references.size()];
+        long populationSize = 0;
+        for (int i = 0; i < values.length; ++i) {
+            final Reference reference = _references.get(i);
+            final Optional<AggregatedData> datum = find(data, reference);
+            if (!datum.isPresent()) {
+                return Optional.empty();
+            }
+            values[i] = datum.get().getValue();
+            populationSize = Math.max(populationSize, datum.get().getPopulationSize());
+        }
+
+        final Quantity result = _root.evaluate(values);
+        if (!Double.isFinite(result.getValue())) {
+            return Optional.empty();
+        }
+        final long finalPopulationSize = populationSize;
+        return Optional.of(ThreadLocalBuilder.build(
+                AggregatedData.Builder.class,
+                b -> b.setStatistic(EXPRESSION_STATISTIC)
+                        .setIsSpecified(true)
+                        .setPopulationSize(finalPopulationSize)
+                        .setValue(result)));
+    }
+
+    /**
+     * Generate a Steno log compatible representation.
+     *
+     * @return Steno log compatible representation.
+     */
+    @LogValue
+    public Object toLogValue() {
+        return LogValueMapFactory.builder(this)
+                .put("metric", _metric)
+                .put("expression", _expression)
+                .build();
+    }
+
+    @Override
+    public String toString() {
+        return toLogValue().toString();
+    }
+
+    private static Optional<AggregatedData> find(
+            final ImmutableMultimap<String, AggregatedData> data,
+            final Reference reference) {
+        for (final AggregatedData datum : data.get(reference.getMetric())) {
+            if (reference.getStatistic().equals(datum.getStatistic())) {
+                return Optional.of(datum);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private Expression(final Builder builder) {
+        _metric = builder._metric;
+        _expression = builder._expression;
+        final ExpressionParser parser = new ExpressionParser(_expression);
+        _root = parser.parse();
+        _references = parser.getReferences();
+    }
+
+    private final String _metric;
+    private final String _expression;
+    private final Node _root;
+    private final ImmutableList<Reference> _references;
+
+    private static final Statistic EXPRESSION_STATISTIC = ExpressionStatistic.getInstance();
+
+    /**
+     * A reference to a statistic computed for a metric.
+     *
+     * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+     */
+    public static final class Reference {
+
+        public String getMetric() {
+            return _metric;
+        }
+
+        public Statistic getStatistic() {
+            return _statistic;
+        }
+
+        @Override
+        public String toString() {
+            return "{" + _metric + ":" + _statistic.getName() + "}";
+        }
+
+        /* package private */ Reference(final String metric, final Statistic statistic) {
+            _metric = metric;
+            _statistic = statistic;
+        }
+
+        private final String _metric;
+        private final Statistic _statistic;
+    }
+
+    /**
+     * <code>Builder</code> implementation for <code>Expression</code>.
+     *
+     * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+     */
+    public static final class Builder extends OvalBuilder<Expression> {
+
+        /**
+         * Public constructor.
+         */
+        public Builder() {
+            super(Expression::new);
+        }
+
+        /**
+         * Set the name of the metric the expression produces. Required.
+         * Cannot be null or empty.
+         *
+         * @param value The name of the metric.
+         * @return This <code>Builder</code> instance.
+         */
+        public Builder setMetric(final String value) {
+            _metric = value;
+            return this;
+        }
+
+        /**
+         * Set the expression text. Required. Cannot be null or empty.
+         *
+         * @param value The expression text.
+         * @return This <code>Builder</code> instance.
+         */
+        public Builder setExpression(final String value) {
+            _expression = value;
+            return this;
+        }
+
+        @NotNull
+        @NotEmpty
+        private String _metric;
+        @NotNull
+        @NotEmpty
+        private String _expression;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.tsdcore.expressions;
+
+import com.arpnetworking.tsdcore.model.Quantity;
+import com.arpnetworking.tsdcore.statistics.Statistic;
+import com.arpnetworking.tsdcore.statistics.StatisticFactory;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Recursive descent parser compiling expression text into a tree of
+ * <code>Node</code> instances. The grammar is:
+ *
+ * <pre>
+ * expression := term (('+' | '-') term)*
+ * term       := factor (('*' | '/') factor)*
+ * factor     := '-' factor | '(' expression ')' | number | reference
+ * reference  := '{' metric ':' statistic '}'
+ * </pre>
+ *
+ * References to the same statistic of the same metric share a single slot
+ * in the resolved values.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+/* package private */ final class ExpressionParser {
+
+    /**
+     * Parse the expression.
+     *
+     * @return The root <code>Node</code> of the compiled expression.
+     */
+    public Node parse() {
+        final Node root = parseExpression();
+        skipWhitespace();
+        if (_position < _text.length()) {
+            throw error("Unexpected character");
+        }
+        return root;
+    }
+
+    public ImmutableList<Expression.Reference> getReferences() {
+        return ImmutableList.copyOf(_references);
+    }
+
+    /* package private */ ExpressionParser(final String text) {
+        _text = text;
+    }
+
+    private Node parseExpression() {
+        Node node = parseTerm();
+        while (true) {
+            if (consume('+')) {
+                node = Node.Binary.create(node, parseTerm(), Quantity::add);
+            } else if (consume('-')) {
+                node = Node.Binary.create(node, parseTerm(), Quantity::subtract);
+            } else {
+                return node;
+            }
+        }
+    }
+
+    private Node parseTerm() {
+        Node node = parseFactor();
+        while (true) {
+            if (consume('*')) {
+                node = Node.Binary.create(node, parseFactor(), Quantity::multiply);
+            } else if (consume('/')) {
+                node = Node.Binary.create(node, parseFactor(), Quantity::divide);
+            } else {
+                return node;
+            }
+        }
+    }
+
+    private Node parseFactor() {
+        if (consume('-')) {
+            return Node.Binary.create(NEGATIVE_ONE, parseFactor(), Quantity::multiply);
+        }
+        if (consume('(')) {
+            final Node node = parseExpression();
+            if (!consume(')')) {
+                throw error("Expected ')'");
+            }
+            return node;
+        }
+        if (consume('{')) {
+            return parseReference();
+        }
+        return parseNumber();
+    }
+
+    private Node parseReference() {
+        final int end = _text.indexOf('}', _position);
+        if (end < 0) {
+            throw error("Expected '}'");
+        }
+        final String reference = _text.substring(_position, end);
+        final int separator = reference.lastIndexOf(':');
+        if (separator <= 0 || separator == reference.length() - 1) {
+            throw error("Expected reference of the form {metric:statistic}");
+        }
+        final String metric = reference.substring(0, separator).trim();
+        final Optional<Statistic> statistic = STATISTIC_FACTORY.tryGetStatistic(reference.substring(separator + 1).trim());
+        if (!statistic.isPresent()) {
+            throw error("Unknown statistic");
+        }
+        _position = end + 1;
+
+        for (int i = 0; i < _references.size(); ++i) {
+            final Expression.Reference existing = _references.get(i);
+            if (existing.getMetric().equals(metric) && existing.getStatistic().equals(statistic.get())) {
+                return new Node.ReferenceValue(i);
+            }
+        }
+        _references.add(new Expression.Reference(metric, statistic.get()));
+        return new Node.ReferenceValue(_references.size() - 1);
+    }
+
+    private Node parseNumber() {
+        skipWhitespace();
+        final int start = _position;
+        while (_position < _text.length()) {
+            final char c = _text.charAt(_position);
+            if (Character.isDigit(c) || c == '.') {
+                ++_position;
+            } else if ((c == 'e' || c == 'E') && _position > start) {
+                ++_position;
+                if (_position < _text.length() && (_text.charAt(_position) == '+' || _text.charAt(_position) == '-')) {
+                    ++_position;
+                }
+            } else {
+                break;
+            }
+        }
+        if (start == _position) {
+            throw error("Expected number, reference or '('");
+        }
+        try {
+            return new Node.Constant(Double.parseDouble(_text.substring(start, _position)));
+        } catch (final NumberFormatException e) {
+            _position = start;
+            throw error("Invalid number");
+        }
+    }
+
+    private boolean consume(final char expected) {
+        skipWhitespace();
+        if (_position < _text.length() && _text.charAt(_position) == expected) {
+            ++_position;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while (_position < _text.length() && Character.isWhitespace(_text.charAt(_position))) {
+            ++_position;
+        }
+    }
+
+    private IllegalArgumentException error(final String reason) {
+        return new IllegalArgumentException(String.format(
+                "Invalid expression; reason=%s, position=%d, expression=%s",
+                reason,
+                _position,
+                _text));
+    }
+
+    private final String _text;
+    private final List<Expression.Reference> _references = Lists.newArrayList();
+    private int _position = 0;
+
+    private static final StatisticFactory STATISTIC_FACTORY = new StatisticFactory();
+    private static final Node NEGATIVE_ONE = new Node.Constant(-1.0);
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.tsdcore.expressions;
+
+import com.arpnetworking.commons.builder.ThreadLocalBuilder;
+import com.arpnetworking.tsdcore.model.Quantity;
+
+import java.util.function.BinaryOperator;
+
+/**
+ * A node in a compiled expression evaluator tree.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+/* package private */ interface Node {
+
+    /**
+     * Evaluate the node.
+     *
+     * @param values The resolved value of each reference by reference index.
+     * @return The value of the node.
+     */
+    Quantity evaluate(Quantity[] values);
+
+    /**
+     * Whether the node evaluates to a constant independent of any reference.
+     *
+     * @return True if and only if the node is constant.
+     */
+    default boolean isConstant() {
+        return false;
+    }
+
+    /**
+     * Node evaluating to a numeric literal.
+     */
+    final class Constant implements Node {
+
+        /* package private */ Constant(final double value) {
+            _value = ThreadLocalBuilder.build(Quantity.Builder.class, b -> b.setValue(value));
+        }
+
+        /* package private */ Constant(final Quantity value) {
+            _value = value;
+        }
+
+        @Override
+        public Quantity evaluate(final Quantity[] values) {
+            return _value;
+        }
+
+        @Override
+        public boolean isConstant() {
+            return true;
+        }
+
+        private final Quantity _value;
+    }
+
+    /**
+     * Node evaluating to the resolved value of a reference.
+     */
+    final class ReferenceValue implements Node {
+
+        /* package private */ ReferenceValue(final int index) {
+            _index = index;
+        }
+
+        @Override
+        public Quantity evaluate(final Quantity[] values) {
+            return values[_index];
+        }
+
+        private final int _index;
+    }
+
+    /**
+     * Node applying a binary operator to the values of two child nodes.
+     */
+    final class Binary implements Node {
+
+        /* package private */ static Node create(
+                final Node left,
+                final Node right,
+                final BinaryOperator<Quantity> operator) {
+            final Binary binary = new Binary(left, right, operator);
+            // Constant subtrees are folded at compile time
+            if (left.isConstant() && right.isConstant()) {
+                return new Constant(binary.evaluate(null));
+            }
+            return binary;
+        }
+
+        @Override
+        public Quantity evaluate(final Quantity[] values) {
+            return _operator.apply(_left.evaluate(values), _right.evaluate(values));
+        }
+
+        private Binary(final Node left, final Node right, final BinaryOperator<Quantity> operator) {
+            _left = left;
+            _right = right;
+            _operator = operator;
+        }
+
+        private final Node _left;
+        private final Node _right;
+        private final BinaryOperator<Quantity> _operator;
+    }
+}
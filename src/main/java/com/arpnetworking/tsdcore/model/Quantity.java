@@ -109,14 +109,22 @@ public final class Quantity implements Comparable<Quantity>, Serializable {
 
     /**
      * Divide this <code>Quantity</code> by the specified one returning
-     * the result.
+     * the result. If both <code>Quantity</code> instances have a
+     * <code>Unit</code> of the same type the result has no unit.
      *
      * @param otherQuantity The other <code>Quantity</code>.
      * @return The resulting quotient <code>Quantity</code>.
      */
     public Quantity divide(final Quantity otherQuantity) {
-        // TODO(vkoskela): Support division by quantity with unit [2F].
         if (otherQuantity._unit.isPresent()) {
+            if (_unit.isPresent() && _unit.get().getType().equals(otherQuantity._unit.get().getType())) {
+                final Unit smallerUnit = _unit.get().getSmallerUnit(otherQuantity._unit.get());
+                return new Quantity(
+                        smallerUnit.convert(_value, _unit.get())
+                                / smallerUnit.convert(otherQuantity._value, otherQuantity._unit.get()),
+                        Optional.empty());
+            }
+            // TODO(vkoskela): Support division by quantity with unit of different type [2F].
             throw new UnsupportedOperationException("Compound units not supported yet");
         }
         if (Objects.equals(_unit, otherQuantity._unit)) {
@@ -203,6 +203,16 @@ public enum Unit {
         return SMALLEST_UNIT_BY_TYPE.get(_type);
     }
 
+    /**
+     * Gets the default unit for this unit's type. Values are normalized to
+     * the default unit of their type.
+     *
+     * @return the default unit
+     */
+    public Unit getDefaultUnit() {
+        return _type.getDefaultUnit();
+    }
+
     /**
      * Gets the smaller unit of two.
      *
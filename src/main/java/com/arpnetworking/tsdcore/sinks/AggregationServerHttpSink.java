@@ -21,9 +21,9 @@ import com.arpnetworking.steno.LogValueMapFactory;
 import com.arpnetworking.tsdcore.model.AggregatedData;
 import com.arpnetworking.tsdcore.model.AggregationMessage;
 import com.arpnetworking.tsdcore.model.PeriodicData;
+import com.arpnetworking.tsdcore.statistics.ExpressionStatistic;
 import com.arpnetworking.tsdcore.statistics.HistogramStatistic;
 import com.arpnetworking.tsdcore.statistics.Statistic;
-import com.arpnetworking.tsdcore.statistics.StatisticFactory;
 import com.google.common.collect.ImmutableList;
 import com.google.common.net.MediaType;
 import com.google.protobuf.ByteString;
@@ -125,10 +125,10 @@ public final class AggregationServerHttpSink extends HttpPostSink {
             }
             builder.setUnit(unit);
 
-            for (final Map.Entry<Double, Integer> entry : histogram.getValues()) {
+            for (int i = 0; i < histogram.size(); ++i) {
                 builder.addEntriesBuilder()
-                        .setBucket(entry.getKey())
-                        .setCount(entry.getValue())
+                        .setBucket(histogram.getValue(i))
+                        .setCount(histogram.getCount(i))
                         .build();
             }
             byteString = ByteString.copyFrom(
@@ -143,8 +143,7 @@ public final class AggregationServerHttpSink extends HttpPostSink {
         super(builder);
     }
 
-    private static final StatisticFactory STATISTIC_FACTORY = new StatisticFactory();
-    private static final Statistic EXPRESSION_STATISTIC = STATISTIC_FACTORY.getStatistic("expression");
+    private static final Statistic EXPRESSION_STATISTIC = ExpressionStatistic.getInstance();
 
     /**
      * Implementation of builder pattern for ${code AggregationServerHttpSink}.
@@ -23,9 +23,9 @@ import com.arpnetworking.steno.LoggerFactory;
 import com.arpnetworking.tsdcore.model.AggregatedData;
 import com.arpnetworking.tsdcore.model.AggregationMessage;
 import com.arpnetworking.tsdcore.model.PeriodicData;
+import com.arpnetworking.tsdcore.statistics.ExpressionStatistic;
 import com.arpnetworking.tsdcore.statistics.HistogramStatistic;
 import com.arpnetworking.tsdcore.statistics.Statistic;
-import com.arpnetworking.tsdcore.statistics.StatisticFactory;
 import com.google.protobuf.ByteString;
 
 import java.time.ZonedDateTime;
@@ -125,10 +125,10 @@ public final class AggregationServerSink extends VertxSink {
             }
             builder.setUnit(unit);
 
-            for (final Map.Entry<Double, Integer> entry : histogram.getValues()) {
+            for (int i = 0; i < histogram.size(); ++i) {
                 builder.addEntriesBuilder()
-                        .setBucket(entry.getKey())
-                        .setCount(entry.getValue())
+                        .setBucket(histogram.getValue(i))
+                        .setCount(histogram.getCount(i))
                         .build();
             }
             byteString = ByteString.copyFrom(
@@ -162,8 +162,7 @@ public final class AggregationServerSink extends VertxSink {
         });
     }
 
-    private static final StatisticFactory STATISTIC_FACTORY = new StatisticFactory();
-    private static final Statistic EXPRESSION_STATISTIC = STATISTIC_FACTORY.getStatistic("expression");
+    private static final Statistic EXPRESSION_STATISTIC = ExpressionStatistic.getInstance();
     private static final int HEARTBEAT_INTERVAL_MILLISECONDS = 15000;
     private static final Logger LOGGER = LoggerFactory.getLogger(AggregationServerSink.class);
 
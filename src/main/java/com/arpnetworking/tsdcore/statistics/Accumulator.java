@@ -15,8 +15,12 @@
  */
 package com.arpnetworking.tsdcore.statistics;
 
+import com.arpnetworking.commons.builder.ThreadLocalBuilder;
 import com.arpnetworking.tsdcore.model.CalculatedValue;
 import com.arpnetworking.tsdcore.model.Quantity;
+import com.arpnetworking.tsdcore.model.Unit;
+
+import java.util.Optional;
 
 /**
  * Specialization of <code>Calculator</code> directly supporting streaming
@@ -38,6 +42,26 @@ public interface Accumulator<T> extends Calculator<T> {
      */
     Accumulator<T> accumulate(Quantity quantity);
 
+    /**
+     * Add the specified raw values sharing a single normalized unit to the
+     * accumulated value. This is equivalent to accumulating a
+     * <code>Quantity</code> for each value, but implementations should
+     * check the unit once and avoid creating a <code>Quantity</code> per
+     * value.
+     *
+     * @param values The values to include in the accumulated value.
+     * @param unit The unit of the values.
+     * @return This <code>Accumulator</code>.
+     */
+    default Accumulator<T> accumulate(final double[] values, final Optional<Unit> unit) {
+        for (final double value : values) {
+            accumulate(ThreadLocalBuilder.build(
+                    Quantity.Builder.class,
+                    b -> b.setValue(value).setUnit(unit.orElse(null))));
+        }
+        return this;
+    }
+
     /**
      * Add the specified <code>CalculatedValue</code> to the accumulated value. The
      * <code>CalculatedValue</code> was produced by this <code>Accumulator</code> in
@@ -41,4 +41,11 @@ public interface Calculator<T> {
      * @return The <code>CalculatedValue</code> for the statistic.
      */
     CalculatedValue<T> calculate(Map<Statistic, Calculator<?>> dependencies);
+
+    /**
+     * Release any resources held by the <code>Calculator</code>. Values
+     * previously returned by <code>calculate</code> remain valid, but the
+     * <code>Calculator</code> should not be used after it is released.
+     */
+    default void release() { }
 }
@@ -19,9 +19,11 @@ import com.arpnetworking.commons.builder.ThreadLocalBuilder;
 import com.arpnetworking.logback.annotations.Loggable;
 import com.arpnetworking.tsdcore.model.CalculatedValue;
 import com.arpnetworking.tsdcore.model.Quantity;
+import com.arpnetworking.tsdcore.model.Unit;
 
 import java.util.Collections;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 /**
@@ -73,6 +75,12 @@ public final class CountStatistic extends BaseStatistic {
             return this;
         }
 
+        @Override
+        public Accumulator<Void> accumulate(final double[] values, final Optional<Unit> unit) {
+            _count += values.length;
+            return this;
+        }
+
         @Override
         public Accumulator<Void> accumulate(final CalculatedValue<Void> calculatedValue) {
             _count += calculatedValue.getValue().getValue();
@@ -17,19 +17,29 @@ package com.arpnetworking.tsdcore.statistics;
 
 import com.arpnetworking.logback.annotations.Loggable;
 
-import java.util.Set;
-
 /**
- * The aggregation is performed with a user-defined expression. At this time
- * this class is only a place holder, but evaluation of the expression will
- * in theory be moved into each unique instance in the future. Use
- * <code>StatisticFactory</code> for construction.
+ * The aggregation is performed with a user-defined expression. The values
+ * are not accumulated from samples; instead each <code>Expression</code>
+ * configured on the pipeline is evaluated over the statistics computed for
+ * a key and period when its <code>Bucket</code> is closed. This statistic
+ * identifies the resulting <code>AggregatedData</code>. Since it cannot be
+ * computed for a metric it is not available from
+ * <code>StatisticFactory</code>; use <code>getInstance</code> instead.
  *
  * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
  */
 @Loggable
 public final class ExpressionStatistic extends BaseStatistic {
 
+    /**
+     * Accessor for the expression statistic.
+     *
+     * @return The expression statistic.
+     */
+    public static Statistic getInstance() {
+        return INSTANCE;
+    }
+
     @Override
     public String getName() {
         return "expression";
@@ -37,15 +47,12 @@ public final class ExpressionStatistic extends BaseStatistic {
 
     @Override
     public Accumulator<Void> createCalculator() {
-        throw new UnsupportedOperationException("Calculation of ExpressionStatistic instances is not supported");
-    }
-
-    @Override
-    public Set<Statistic> getDependencies() {
-        throw new UnsupportedOperationException("Calculation of ExpressionStatistic instances is not supported");
+        throw new UnsupportedOperationException(
+                "ExpressionStatistic instances are evaluated from pipeline expressions and not from samples");
     }
 
     private ExpressionStatistic() { }
 
+    private static final ExpressionStatistic INSTANCE = new ExpressionStatistic();
     private static final long serialVersionUID = -9159667444288515901L;
 }
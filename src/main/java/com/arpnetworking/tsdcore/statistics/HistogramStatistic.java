@@ -19,12 +19,14 @@ import com.arpnetworking.commons.builder.ThreadLocalBuilder;
 import com.arpnetworking.tsdcore.model.CalculatedValue;
 import com.arpnetworking.tsdcore.model.Quantity;
 import com.arpnetworking.tsdcore.model.Unit;
+import com.arpnetworking.utility.SlabAllocator;
 import it.unimi.dsi.fastutil.doubles.Double2IntAVLTreeMap;
 import it.unimi.dsi.fastutil.doubles.Double2IntMap;
 import it.unimi.dsi.fastutil.doubles.Double2IntSortedMap;
 import it.unimi.dsi.fastutil.objects.ObjectSortedSet;
 import net.sf.oval.constraint.NotNull;
 
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Optional;
 import javax.annotation.Nullable;
@@ -45,7 +47,19 @@ public final class HistogramStatistic extends BaseStatistic {
 
     @Override
     public Accumulator<HistogramSupportingData> createCalculator() {
-        return new HistogramAccumulator(this);
+        return new HistogramAccumulator(this, new Histogram());
+    }
+
+    /**
+     * Create a <code>Calculator</code> for this statistic which stores the
+     * histogram off-heap in chunks from the specified allocator. The memory
+     * is returned to the allocator when the <code>Calculator</code> is released.
+     *
+     * @param allocator The <code>SlabAllocator</code> to allocate from.
+     * @return The new <code>Calculator</code> instance.
+     */
+    public Accumulator<HistogramSupportingData> createCalculator(final SlabAllocator allocator) {
+        return new HistogramAccumulator(this, new OffHeapHistogram(allocator));
     }
 
     private HistogramStatistic() { }
@@ -66,28 +80,49 @@ public final class HistogramStatistic extends BaseStatistic {
          * Public constructor.
          *
          * @param statistic The <code>Statistic</code>.
+         * @param histogram The <code>HistogramBackend</code> to store samples in.
          */
-        /* package private */ HistogramAccumulator(final Statistic statistic) {
+        /* package private */ HistogramAccumulator(final Statistic statistic, final HistogramBackend histogram) {
             super(statistic);
+            _histogram = histogram;
         }
 
         @Override
         public Accumulator<HistogramSupportingData> accumulate(final Quantity quantity) {
             // Assert: that under the new Quantity normalization the units should always be the same.
-            assertUnit(_unit, quantity.getUnit(), _histogram._entriesCount > 0);
+            assertUnit(_unit, quantity.getUnit(), _histogram.getEntriesCount() > 0);
 
-            _histogram.recordValue(quantity.getValue());
+            _histogram.recordValue(quantity.getValue(), 1);
+            _percentiles = null;
             _unit = Optional.ofNullable(_unit.orElse(quantity.getUnit().orElse(null)));
 
             return this;
         }
 
+        @Override
+        public Accumulator<HistogramSupportingData> accumulate(final double[] values, final Optional<Unit> unit) {
+            if (values.length == 0) {
+                return this;
+            }
+            // Assert: that under the new Quantity normalization the units should always be the same.
+            assertUnit(_unit, unit, _histogram.getEntriesCount() > 0);
+
+            for (final double value : values) {
+                _histogram.recordValue(value, 1);
+            }
+            _percentiles = null;
+            _unit = Optional.ofNullable(_unit.orElse(unit.orElse(null)));
+
+            return this;
+        }
+
         @Override
         public Accumulator<HistogramSupportingData> accumulate(final CalculatedValue<HistogramSupportingData> calculatedValue) {
             // Assert: that under the new Quantity normalization the units should always be the same.
-            assertUnit(_unit, calculatedValue.getData().getUnit(), _histogram._entriesCount > 0);
+            assertUnit(_unit, calculatedValue.getData().getUnit(), _histogram.getEntriesCount() > 0);
 
             _histogram.add(calculatedValue.getData().getHistogramSnapshot());
+            _percentiles = null;
             _unit = Optional.ofNullable(_unit.orElse(calculatedValue.getData().getUnit().orElse(null)));
 
             return this;
@@ -117,15 +152,57 @@ public final class HistogramStatistic extends BaseStatistic {
          * @return The value at the desired percentile.
          */
         public Quantity calculate(final double percentile) {
-            final HistogramSnapshot snapshot = _histogram.getSnapshot();
+            final double value = _histogram.getValueAtPercentile(percentile);
             return ThreadLocalBuilder.build(
                     Quantity.Builder.class,
-                    b -> b.setValue(snapshot.getValueAtPercentile(percentile))
+                    b -> b.setValue(value)
                             .setUnit(_unit.orElse(null)));
         }
 
+        /**
+         * Calculate the value at the specified percentile. The values at the
+         * percentiles of every <code>TPStatistic</code> among the dependencies
+         * are computed together in a single pass over the histogram and are
+         * retained until the next sample is accumulated.
+         *
+         * @param percentile The desired percentile to calculate.
+         * @param dependencies The calculators for the metric by statistic.
+         * @return The value at the desired percentile.
+         */
+        public Quantity calculate(final double percentile, final Map<Statistic, Calculator<?>> dependencies) {
+            int index = _percentiles == null ? -1 : Arrays.binarySearch(_percentiles, percentile);
+            if (index < 0) {
+                final double[] percentiles = dependencies.keySet()
+                        .stream()
+                        .filter(statistic -> statistic instanceof TPStatistic)
+                        .mapToDouble(statistic -> ((TPStatistic) statistic).getPercentile())
+                        .sorted()
+                        .distinct()
+                        .toArray();
+                index = Arrays.binarySearch(percentiles, percentile);
+                if (index < 0) {
+                    return calculate(percentile);
+                }
+                _percentiles = percentiles;
+                _percentileValues = new double[percentiles.length];
+                _histogram.getValuesAtPercentiles(_percentiles, _percentileValues);
+            }
+            final double value = _percentileValues[index];
+            return ThreadLocalBuilder.build(
+                    Quantity.Builder.class,
+                    b -> b.setValue(value)
+                            .setUnit(_unit.orElse(null)));
+        }
+
+        @Override
+        public void release() {
+            _histogram.release();
+        }
+
         private Optional<Unit> _unit = Optional.empty();
-        private final Histogram _histogram = new Histogram();
+        private double[] _percentiles;
+        private double[] _percentileValues;
+        private final HistogramBackend _histogram;
     }
 
     /**
@@ -154,13 +231,16 @@ public final class HistogramStatistic extends BaseStatistic {
          *
          * @param newUnit the new unit
          * @return a new HistogramSupportingData with the units converted
+         * @deprecated Samples are normalized to the default unit of their
+         * type when each metric is built so histograms never require conversion.
          */
+        @Deprecated
         public HistogramSupportingData toUnit(final Unit newUnit) {
             if (_unit.isPresent()) {
                 final Histogram newHistogram = new Histogram();
-                for (final Map.Entry<Double, Integer> entry : _histogramSnapshot.getValues()) {
-                    final Double newBucket = newUnit.convert(entry.getKey(), _unit.get());
-                    newHistogram.recordValue(newBucket, entry.getValue());
+                for (int i = 0; i < _histogramSnapshot.size(); ++i) {
+                    final double newBucket = newUnit.convert(_histogramSnapshot.getValue(i), _unit.get());
+                    newHistogram.recordValue(newBucket, _histogramSnapshot.getCount(i));
                 }
                 return ThreadLocalBuilder.build(
                         HistogramSupportingData.Builder.class,
@@ -224,10 +304,69 @@ public final class HistogramStatistic extends BaseStatistic {
         }
     }
 
+    /**
+     * Storage of the samples in a histogram. Implementations are not required
+     * to be thread safe.
+     */
+    /* package private */ interface HistogramBackend {
+
+        /**
+         * Records a value into the histogram.
+         *
+         * @param value The value of the entry.
+         * @param count The number of entries at this value.
+         */
+        void recordValue(double value, int count);
+
+        /**
+         * Adds a histogram snapshot to this one.
+         *
+         * @param histogramSnapshot The histogram snapshot to add to this one.
+         */
+        void add(HistogramSnapshot histogramSnapshot);
+
+        /**
+         * Gets the value of the bucket that corresponds to the percentile.
+         *
+         * @param percentile the percentile
+         * @return The value of the bucket at the percentile.
+         */
+        double getValueAtPercentile(double percentile);
+
+        /**
+         * Gets the values of the buckets that correspond to each of the
+         * percentiles in a single pass over the histogram.
+         *
+         * @param percentiles The percentiles in ascending order.
+         * @param values The array to store the value at each percentile in.
+         */
+        void getValuesAtPercentiles(double[] percentiles, double[] values);
+
+        /**
+         * Accessor for the total number of entries recorded.
+         *
+         * @return The number of entries.
+         */
+        int getEntriesCount();
+
+        /**
+         * Create an immutable snapshot of the histogram which remains valid
+         * after the histogram is released.
+         *
+         * @return The snapshot.
+         */
+        HistogramSnapshot getSnapshot();
+
+        /**
+         * Release any resources held by the histogram.
+         */
+        default void release() { }
+    }
+
     /**
      * A simple histogram implementation.
      */
-    public static final class Histogram {
+    public static final class Histogram implements HistogramBackend {
 
         /**
          * Records a value into the histogram.
@@ -235,6 +374,7 @@ public final class HistogramStatistic extends BaseStatistic {
          * @param value The value of the entry.
          * @param count The number of entries at this value.
          */
+        @Override
         public void recordValue(final double value, final int count) {
             _data.merge(truncate(value), count, (i, j) -> i + j);
             _entriesCount += count;
@@ -254,18 +394,64 @@ public final class HistogramStatistic extends BaseStatistic {
          *
          * @param histogramSnapshot The histogram snapshot to add to this one.
          */
+        @Override
         public void add(final HistogramSnapshot histogramSnapshot) {
-            for (final Double2IntMap.Entry entry : histogramSnapshot._data.double2IntEntrySet()) {
-                _data.merge(entry.getDoubleKey(), entry.getIntValue(), (i, j) -> i + j);
+            for (int i = 0; i < histogramSnapshot.size(); ++i) {
+                _data.merge(histogramSnapshot.getValue(i), histogramSnapshot.getCount(i), (a, b) -> a + b);
             }
             _entriesCount += histogramSnapshot._entriesCount;
         }
 
+        @Override
+        public double getValueAtPercentile(final double percentile) {
+            final int target = HistogramSnapshot.getTargetCount(_entriesCount, percentile);
+            int accumulated = 0;
+            for (final Double2IntMap.Entry next : _data.double2IntEntrySet()) {
+                accumulated += next.getIntValue();
+                if (accumulated >= target) {
+                    return next.getDoubleKey();
+                }
+            }
+            return 0D;
+        }
+
+        @Override
+        public void getValuesAtPercentiles(final double[] percentiles, final double[] values) {
+            int index = 0;
+            int target = HistogramSnapshot.getTargetCount(_entriesCount, percentiles[0]);
+            int accumulated = 0;
+            for (final Double2IntMap.Entry next : _data.double2IntEntrySet()) {
+                accumulated += next.getIntValue();
+                while (accumulated >= target) {
+                    values[index++] = next.getDoubleKey();
+                    if (index == percentiles.length) {
+                        return;
+                    }
+                    target = HistogramSnapshot.getTargetCount(_entriesCount, percentiles[index]);
+                }
+            }
+            Arrays.fill(values, index, percentiles.length, 0D);
+        }
+
+        @Override
+        public int getEntriesCount() {
+            return _entriesCount;
+        }
+
+        @Override
         public HistogramSnapshot getSnapshot() {
-            return new HistogramSnapshot(_data, _entriesCount);
+            final double[] values = new double[_data.size()];
+            final int[] counts = new int[_data.size()];
+            int index = 0;
+            for (final Double2IntMap.Entry entry : _data.double2IntEntrySet()) {
+                values[index] = entry.getDoubleKey();
+                counts[index] = entry.getIntValue();
+                ++index;
+            }
+            return new HistogramSnapshot(values, counts, _entriesCount);
         }
 
-        private static double truncate(final double val) {
+        /* package private */ static double truncate(final double val) {
             final long mask = 0xffffe00000000000L;
             return Double.longBitsToDouble(Double.doubleToRawLongBits(val) & mask);
         }
@@ -275,14 +461,17 @@ public final class HistogramStatistic extends BaseStatistic {
     }
 
     /**
-     * Represents a snapshot of immutable histogram data.
+     * Represents a snapshot of immutable histogram data. The buckets are
+     * stored in ascending order of value in compact primitive arrays.
      *
      * @author Brandon Arp (brandon dot arp at inscopemetrics dot com)
      */
     public static final class HistogramSnapshot {
-        private HistogramSnapshot(final Double2IntSortedMap data, final int entriesCount) {
+
+        /* package private */ HistogramSnapshot(final double[] values, final int[] counts, final int entriesCount) {
+            _values = values;
+            _counts = counts;
             _entriesCount = entriesCount;
-            _data.putAll(data);
         }
 
         /**
@@ -292,15 +481,12 @@ public final class HistogramStatistic extends BaseStatistic {
          * @return The value of the bucket at the percentile.
          */
         public Double getValueAtPercentile(final double percentile) {
-            // Always "round up" on fractional samples to bias toward 100%
-            // The Math.min is for the case where the computation may be just
-            // slightly larger than the _entriesCount and prevents an index out of range.
-            final int target = (int) Math.min(Math.ceil(_entriesCount * percentile / 100.0D), _entriesCount);
+            final int target = getTargetCount(_entriesCount, percentile);
             int accumulated = 0;
-            for (final Double2IntMap.Entry next : _data.double2IntEntrySet()) {
-                accumulated += next.getIntValue();
+            for (int i = 0; i < _values.length; ++i) {
+                accumulated += _counts[i];
                 if (accumulated >= target) {
-                    return next.getDoubleKey();
+                    return _values[i];
                 }
             }
             return 0D;
@@ -310,11 +496,59 @@ public final class HistogramStatistic extends BaseStatistic {
             return _entriesCount;
         }
 
+        /**
+         * Accessor for the number of buckets in the histogram.
+         *
+         * @return The number of buckets.
+         */
+        public int size() {
+            return _values.length;
+        }
+
+        /**
+         * Accessor for the value of a bucket.
+         *
+         * @param index The index of the bucket in ascending order of value.
+         * @return The value of the bucket.
+         */
+        public double getValue(final int index) {
+            return _values[index];
+        }
+
+        /**
+         * Accessor for the number of entries in a bucket.
+         *
+         * @param index The index of the bucket in ascending order of value.
+         * @return The number of entries in the bucket.
+         */
+        public int getCount(final int index) {
+            return _counts[index];
+        }
+
+        /**
+         * Accessor for the buckets as a sorted set of entries. This creates
+         * a new sorted map on each invocation; prefer indexed access through
+         * <code>size</code>, <code>getValue</code> and <code>getCount</code>.
+         *
+         * @return The buckets as a sorted set of entries.
+         */
         public ObjectSortedSet<Double2IntMap.Entry> getValues() {
-            return _data.double2IntEntrySet();
+            final Double2IntSortedMap data = new Double2IntAVLTreeMap();
+            for (int i = 0; i < _values.length; ++i) {
+                data.put(_values[i], _counts[i]);
+            }
+            return data.double2IntEntrySet();
         }
 
-        private int _entriesCount = 0;
-        private final Double2IntSortedMap _data = new Double2IntAVLTreeMap();
+        /* package private */ static int getTargetCount(final int entriesCount, final double percentile) {
+            // Always "round up" on fractional samples to bias toward 100%
+            // The Math.min is for the case where the computation may be just
+            // slightly larger than the _entriesCount and prevents an index out of range.
+            return (int) Math.min(Math.ceil(entriesCount * percentile / 100.0D), entriesCount);
+        }
+
+        private final int _entriesCount;
+        private final double[] _values;
+        private final int[] _counts;
     }
 }
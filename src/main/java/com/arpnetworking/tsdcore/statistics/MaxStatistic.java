@@ -19,6 +19,7 @@ import com.arpnetworking.commons.builder.ThreadLocalBuilder;
 import com.arpnetworking.logback.annotations.Loggable;
 import com.arpnetworking.tsdcore.model.CalculatedValue;
 import com.arpnetworking.tsdcore.model.Quantity;
+import com.arpnetworking.tsdcore.model.Unit;
 import com.google.common.collect.Sets;
 
 import java.util.Map;
@@ -92,6 +93,29 @@ public final class MaxStatistic extends BaseStatistic {
             return this;
         }
 
+        @Override
+        public Accumulator<Void> accumulate(final double[] values, final Optional<Unit> unit) {
+            if (values.length == 0) {
+                return this;
+            }
+            // Assert: that under the new Quantity normalization the units should always be the same.
+            assertUnit(_max.map(Quantity::getUnit).orElse(Optional.empty()), unit, _max.isPresent());
+
+            double max = values[0];
+            for (final double value : values) {
+                if (value > max) {
+                    max = value;
+                }
+            }
+            if (!_max.isPresent() || max > _max.get().getValue()) {
+                final double newMax = max;
+                _max = Optional.of(ThreadLocalBuilder.build(
+                        Quantity.Builder.class,
+                        b -> b.setValue(newMax).setUnit(unit.orElse(null))));
+            }
+            return this;
+        }
+
         @Override
         public Accumulator<Void> accumulate(final CalculatedValue<Void> calculatedValue) {
             return accumulate(calculatedValue.getValue());
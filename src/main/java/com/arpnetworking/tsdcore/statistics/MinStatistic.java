@@ -19,6 +19,7 @@ import com.arpnetworking.commons.builder.ThreadLocalBuilder;
 import com.arpnetworking.logback.annotations.Loggable;
 import com.arpnetworking.tsdcore.model.CalculatedValue;
 import com.arpnetworking.tsdcore.model.Quantity;
+import com.arpnetworking.tsdcore.model.Unit;
 import com.google.common.collect.Sets;
 
 import java.util.Map;
@@ -90,6 +91,29 @@ public final class MinStatistic extends BaseStatistic {
             return this;
         }
 
+        @Override
+        public Accumulator<Void> accumulate(final double[] values, final Optional<Unit> unit) {
+            if (values.length == 0) {
+                return this;
+            }
+            // Assert: that under the new Quantity normalization the units should always be the same.
+            assertUnit(_min.map(Quantity::getUnit).orElse(Optional.empty()), unit, _min.isPresent());
+
+            double min = values[0];
+            for (final double value : values) {
+                if (value < min) {
+                    min = value;
+                }
+            }
+            if (!_min.isPresent() || min < _min.get().getValue()) {
+                final double newMin = min;
+                _min = Optional.of(ThreadLocalBuilder.build(
+                        Quantity.Builder.class,
+                        b -> b.setValue(newMin).setUnit(unit.orElse(null))));
+            }
+            return this;
+        }
+
         @Override
         public Accumulator<Void> accumulate(final CalculatedValue<Void> calculatedValue) {
             return accumulate(calculatedValue.getValue());
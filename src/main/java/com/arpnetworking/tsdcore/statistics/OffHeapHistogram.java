@@ -0,0 +1,179 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.tsdcore.statistics;
+
+import com.arpnetworking.utility.SlabAllocator;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Histogram backend storing its buckets off-heap in a chunk obtained from a
+ * <code>SlabAllocator</code>. The buckets are kept as a sorted array of
+ * fixed size entries; each entry is the upper 32 bits of the truncated
+ * bucket value (the truncation leaves the lower bits zero) followed by the
+ * count. The keys are transformed so that signed integer order matches the
+ * order of the bucket values which allows percentiles to be computed by
+ * walking the chunk directly. The chunk is doubled in size as necessary and
+ * returned to the allocator on <code>release</code>.
+ *
+ * This class is not thread safe.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+/* package private */ final class OffHeapHistogram implements HistogramStatistic.HistogramBackend {
+
+    @Override
+    public void recordValue(final double value, final int count) {
+        final int key = toKey(value);
+        final int index = search(key);
+        if (index >= 0) {
+            final int offset = index * ENTRY_SIZE + COUNT_OFFSET;
+            _buffer.putInt(offset, _buffer.getInt(offset) + count);
+        } else {
+            insert(-(index + 1), key, count);
+        }
+        _entriesCount += count;
+    }
+
+    @Override
+    public void add(final HistogramStatistic.HistogramSnapshot histogramSnapshot) {
+        for (int i = 0; i < histogramSnapshot.size(); ++i) {
+            recordValue(histogramSnapshot.getValue(i), histogramSnapshot.getCount(i));
+        }
+    }
+
+    @Override
+    public double getValueAtPercentile(final double percentile) {
+        final int target = HistogramStatistic.HistogramSnapshot.getTargetCount(_entriesCount, percentile);
+        int accumulated = 0;
+        for (int i = 0; i < _size; ++i) {
+            accumulated += _buffer.getInt(i * ENTRY_SIZE + COUNT_OFFSET);
+            if (accumulated >= target) {
+                return fromKey(_buffer.getInt(i * ENTRY_SIZE));
+            }
+        }
+        return 0D;
+    }
+
+    @Override
+    public void getValuesAtPercentiles(final double[] percentiles, final double[] values) {
+        int index = 0;
+        int target = HistogramStatistic.HistogramSnapshot.getTargetCount(_entriesCount, percentiles[0]);
+        int accumulated = 0;
+        for (int i = 0; i < _size; ++i) {
+            accumulated += _buffer.getInt(i * ENTRY_SIZE + COUNT_OFFSET);
+            while (accumulated >= target) {
+                values[index++] = fromKey(_buffer.getInt(i * ENTRY_SIZE));
+                if (index == percentiles.length) {
+                    return;
+                }
+                target = HistogramStatistic.HistogramSnapshot.getTargetCount(_entriesCount, percentiles[index]);
+            }
+        }
+        Arrays.fill(values, index, percentiles.length, 0D);
+    }
+
+    @Override
+    public int getEntriesCount() {
+        return _entriesCount;
+    }
+
+    @Override
+    public HistogramStatistic.HistogramSnapshot getSnapshot() {
+        final double[] values = new double[_size];
+        final int[] counts = new int[_size];
+        for (int i = 0; i < _size; ++i) {
+            values[i] = fromKey(_buffer.getInt(i * ENTRY_SIZE));
+            counts[i] = _buffer.getInt(i * ENTRY_SIZE + COUNT_OFFSET);
+        }
+        return new HistogramStatistic.HistogramSnapshot(values, counts, _entriesCount);
+    }
+
+    @Override
+    public void release() {
+        if (_buffer != null) {
+            _allocator.free(_buffer);
+            _buffer = null;
+        }
+        _size = 0;
+        _entriesCount = 0;
+    }
+
+    /* package private */ OffHeapHistogram(final SlabAllocator allocator) {
+        _allocator = allocator;
+    }
+
+    private int search(final int key) {
+        int low = 0;
+        int high = _size - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int middleKey = _buffer.getInt(middle * ENTRY_SIZE);
+            if (middleKey < key) {
+                low = middle + 1;
+            } else if (middleKey > key) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void insert(final int index, final int key, final int count) {
+        ensureCapacity(_size + 1);
+        for (int i = _size - 1; i >= index; --i) {
+            _buffer.putLong((i + 1) * ENTRY_SIZE, _buffer.getLong(i * ENTRY_SIZE));
+        }
+        _buffer.putInt(index * ENTRY_SIZE, key);
+        _buffer.putInt(index * ENTRY_SIZE + COUNT_OFFSET, count);
+        ++_size;
+    }
+
+    private void ensureCapacity(final int entries) {
+        if (_buffer == null) {
+            _buffer = _allocator.allocate(INITIAL_ENTRIES * ENTRY_SIZE);
+        } else if (entries * ENTRY_SIZE > _buffer.capacity()) {
+            final ByteBuffer newBuffer = _allocator.allocate(_buffer.capacity() * 2);
+            final ByteBuffer source = _buffer.duplicate();
+            source.clear().limit(_size * ENTRY_SIZE);
+            newBuffer.duplicate().put(source);
+            _allocator.free(_buffer);
+            _buffer = newBuffer;
+        }
+    }
+
+    private static int toKey(final double value) {
+        final int bits = (int) (Double.doubleToRawLongBits(HistogramStatistic.Histogram.truncate(value)) >>> 32);
+        // Flip the magnitude bits of negative values so that signed order matches numeric order
+        return bits ^ ((bits >> 31) & 0x7fffffff);
+    }
+
+    private static double fromKey(final int key) {
+        final int bits = key ^ ((key >> 31) & 0x7fffffff);
+        return Double.longBitsToDouble(((long) bits) << 32);
+    }
+
+    private final SlabAllocator _allocator;
+    private ByteBuffer _buffer;
+    private int _size = 0;
+    private int _entriesCount = 0;
+
+    private static final int ENTRY_SIZE = 8;
+    private static final int COUNT_OFFSET = 4;
+    private static final int INITIAL_ENTRIES = 8;
+}
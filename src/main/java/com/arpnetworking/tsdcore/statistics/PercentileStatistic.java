@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.tsdcore.statistics;
+
+import com.arpnetworking.logback.annotations.Loggable;
+
+/**
+ * Arbitrary percentile statistic. Instances are synthesized on demand by
+ * <code>StatisticFactory</code> for percentile names without a dedicated
+ * statistic class (e.g. <code>tp99.99</code>). Use
+ * <code>StatisticFactory</code> for construction.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+@Loggable
+/* package private */ final class PercentileStatistic extends TPStatistic {
+
+    @Override
+    public int hashCode() {
+        return Double.hashCode(getPercentile());
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof PercentileStatistic)) {
+            return false;
+        }
+        return Double.compare(getPercentile(), ((PercentileStatistic) other).getPercentile()) == 0;
+    }
+
+    /* package private */ PercentileStatistic(final double percentile) {
+        super(percentile);
+    }
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.tsdcore.statistics;
+
+import com.arpnetworking.commons.builder.ThreadLocalBuilder;
+import com.arpnetworking.logback.annotations.Loggable;
+import com.arpnetworking.tsdcore.model.CalculatedValue;
+import com.arpnetworking.tsdcore.model.Quantity;
+import com.arpnetworking.tsdcore.model.Unit;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * The period of the aggregation. Instances are created by the bucket being
+ * aggregated and its calculator is supplied to every other calculator as a
+ * dependency; statistics which depend on the length of the period (e.g.
+ * rates) look it up by <code>PeriodStatistic.KEY</code>. All instances are
+ * equal regardless of their period. The period is not a published statistic
+ * and is therefore not available from <code>StatisticFactory</code>.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+@Loggable
+public final class PeriodStatistic extends BaseStatistic {
+
+    /**
+     * Public constructor.
+     *
+     * @param period The period of the aggregation.
+     */
+    public PeriodStatistic(final Duration period) {
+        _period = period;
+    }
+
+    @Override
+    public String getName() {
+        return "period";
+    }
+
+    @Override
+    public Calculator<Void> createCalculator() {
+        return new PeriodCalculator(this);
+    }
+
+    /**
+     * Accessor for the period of the aggregation.
+     *
+     * @return The period of the aggregation.
+     */
+    public Duration getPeriod() {
+        return _period;
+    }
+
+    /**
+     * Convert a <code>Duration</code> to seconds. Quantities of time are
+     * normalized to seconds so expressing durations in seconds avoids
+     * rounding in the conversion.
+     *
+     * @param duration The <code>Duration</code> to convert.
+     * @return The number of seconds in the <code>Duration</code>.
+     */
+    /* package private */ static double toSeconds(final Duration duration) {
+        return duration.getSeconds() + duration.getNano() / NANOS_PER_SECOND;
+    }
+
+    private final Duration _period;
+
+    /**
+     * The key for the period in the dependencies of a <code>Calculator</code>.
+     */
+    public static final Statistic KEY = new PeriodStatistic(Duration.ZERO);
+
+    private static final double NANOS_PER_SECOND = 1000000000d;
+    private static final long serialVersionUID = 1;
+
+    /**
+     * Calculator reporting the period in seconds.
+     *
+     * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+     */
+    private static final class PeriodCalculator extends BaseCalculator<Void> {
+
+        /**
+         * Public constructor.
+         *
+         * @param statistic The <code>PeriodStatistic</code>.
+         */
+        private PeriodCalculator(final PeriodStatistic statistic) {
+            super(statistic);
+            _value = ThreadLocalBuilder.<CalculatedValue<Void>, CalculatedValue.Builder<Void>>buildGeneric(
+                    CalculatedValue.Builder.class,
+                    b1 -> b1.setValue(
+                            ThreadLocalBuilder.build(
+                                    Quantity.Builder.class,
+                                    b2 -> b2.setValue(toSeconds(statistic.getPeriod())).setUnit(Unit.SECOND))));
+        }
+
+        @Override
+        public CalculatedValue<Void> calculate(final Map<Statistic, Calculator<?>> dependencies) {
+            return _value;
+        }
+
+        private final CalculatedValue<Void> _value;
+    }
+}
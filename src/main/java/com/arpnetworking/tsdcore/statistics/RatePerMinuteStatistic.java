@@ -0,0 +1,36 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.tsdcore.statistics;
+
+import com.arpnetworking.logback.annotations.Loggable;
+import com.google.common.collect.ImmutableSet;
+
+import java.time.Duration;
+
+/**
+ * Rate per minute statistic. Use <code>StatisticFactory</code> for construction.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+@Loggable
+public final class RatePerMinuteStatistic extends RateStatistic {
+
+    private RatePerMinuteStatistic() {
+        super("rate_per_minute", ImmutableSet.of(), Duration.ofMinutes(1));
+    }
+
+    private static final long serialVersionUID = 1;
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.tsdcore.statistics;
+
+import com.arpnetworking.commons.builder.ThreadLocalBuilder;
+import com.arpnetworking.tsdcore.model.CalculatedValue;
+import com.arpnetworking.tsdcore.model.Quantity;
+import com.arpnetworking.tsdcore.model.Unit;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableSet;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Base class for rate statistics. The rate is the sum of the samples in a
+ * period divided by the length of the period expressed in the rate's time
+ * unit. The rate is derived from the sum when the bucket is closed and does
+ * not keep any per-sample state of its own; the length of the period is
+ * taken from the <code>PeriodStatistic</code> calculator among the
+ * dependencies. The rate is the unit of the samples per time unit of the
+ * statistic; since compound units are not supported the rate has no unit
+ * and its value is expressed in the default unit of the samples.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public abstract class RateStatistic extends BaseStatistic {
+
+    /**
+     * Accessor for the time unit of the rate.
+     *
+     * @return The time unit of the rate.
+     */
+    public Duration getTimeUnit() {
+        return _timeUnit;
+    }
+
+    @Override
+    public String getName() {
+        return _name;
+    }
+
+    @Override
+    public Set<String> getAliases() {
+        return _aliases;
+    }
+
+    @Override
+    public Calculator<Void> createCalculator() {
+        return new RateCalculator(this);
+    }
+
+    @Override
+    public Set<Statistic> getDependencies() {
+        return DEPENDENCIES.get();
+    }
+
+    /**
+     * Protected constructor.
+     *
+     * @param name The name of the statistic.
+     * @param aliases The aliases of the statistic.
+     * @param timeUnit The time unit of the rate.
+     */
+    protected RateStatistic(final String name, final Set<String> aliases, final Duration timeUnit) {
+        _name = name;
+        _aliases = Collections.unmodifiableSet(aliases);
+        _timeUnit = timeUnit;
+    }
+
+    private final String _name;
+    private final Set<String> _aliases;
+    private final Duration _timeUnit;
+
+    private static final StatisticFactory STATISTIC_FACTORY = new StatisticFactory();
+    private static final Supplier<Statistic> SUM_STATISTIC =
+            Suppliers.memoize(() -> STATISTIC_FACTORY.getStatistic("sum"));
+    private static final Supplier<Set<Statistic>> DEPENDENCIES =
+            Suppliers.memoize(() -> ImmutableSet.of(SUM_STATISTIC.get()));
+    private static final long serialVersionUID = 4690361718395364627L;
+
+    /**
+     * Calculator computing the rate from the sum over the period.
+     *
+     * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+     */
+    public static final class RateCalculator extends BaseCalculator<Void> {
+
+        /**
+         * Public constructor.
+         *
+         * @param statistic The <code>RateStatistic</code>.
+         */
+        public RateCalculator(final RateStatistic statistic) {
+            super(statistic);
+            _timeUnit = ThreadLocalBuilder.build(
+                    Quantity.Builder.class,
+                    b -> b.setValue(PeriodStatistic.toSeconds(statistic.getTimeUnit())).setUnit(Unit.SECOND));
+        }
+
+        @Override
+        public CalculatedValue<Void> calculate(final Map<Statistic, Calculator<?>> dependencies) {
+            final Calculator<?> periodCalculator = dependencies.get(PeriodStatistic.KEY);
+            if (periodCalculator == null) {
+                throw new IllegalStateException("Rate requires the period of the aggregation");
+            }
+            final Quantity sum = dependencies.get(SUM_STATISTIC.get()).calculate(dependencies).getValue();
+            // Both are durations so the quotient is the number of time units without a unit
+            final Quantity timeUnits = periodCalculator.calculate(dependencies).getValue().divide(_timeUnit);
+            return ThreadLocalBuilder.<CalculatedValue<Void>, CalculatedValue.Builder<Void>>buildGeneric(
+                    CalculatedValue.Builder.class,
+                    b1 -> b1.setValue(
+                            ThreadLocalBuilder.build(
+                                    Quantity.Builder.class,
+                                    b2 -> b2.setValue(sum.getValue() / timeUnits.getValue()))));
+        }
+
+        private final Quantity _timeUnit;
+    }
+}
@@ -30,6 +30,10 @@ import java.lang.reflect.Modifier;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Creates statistics.
@@ -54,13 +58,21 @@ public class StatisticFactory {
     }
 
     /**
-     * Get a statistic by name.
+     * Get a statistic by name. Percentile statistics without a dedicated
+     * class are synthesized on demand for names of the form
+     * <code>tpNN[.N]</code> (or <code>pNN[.N]</code>, <code>tpNNpN</code>
+     * and <code>pNNpN</code>); all instances for the same percentile are
+     * shared.
      *
      * @param name The name of the desired statistic.
      * @return A new <code>Statistic</code>.
      */
     public Optional<Statistic> tryGetStatistic(final String name) {
-        return Optional.ofNullable(STATISTICS_BY_NAME_AND_ALIAS.get(name));
+        final Statistic statistic = STATISTICS_BY_NAME_AND_ALIAS.get(name);
+        if (statistic != null) {
+            return Optional.of(statistic);
+        }
+        return tryGetPercentileStatistic(name);
     }
 
     /**
@@ -84,6 +96,25 @@ public class StatisticFactory {
         return Optional.ofNullable(STATISTICS_BY_NAME_AND_ALIAS.get(statistic));
     }
 
+    private static Optional<Statistic> tryGetPercentileStatistic(final String name) {
+        final Matcher matcher = PERCENTILE_PATTERN.matcher(name);
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        final String fraction = matcher.group(2);
+        final double percentile = Double.parseDouble(
+                fraction == null ? matcher.group(1) : matcher.group(1) + "." + fraction);
+        if (percentile > 100.0) {
+            return Optional.empty();
+        }
+        // Prefer the registered statistic for the canonical name (e.g. p99.90 is tp99.9)
+        final Statistic registeredStatistic = STATISTICS_BY_NAME_AND_ALIAS.get(TPStatistic.createName(percentile));
+        if (registeredStatistic != null) {
+            return Optional.of(registeredStatistic);
+        }
+        return Optional.of(PERCENTILE_STATISTICS.computeIfAbsent(percentile, PercentileStatistic::new));
+    }
+
     private static void checkedPut(final Map<String, Statistic> map, final Statistic statistic, final String key) {
         final Statistic existingStatistic =  map.get(key);
         if (existingStatistic != null) {
@@ -101,6 +132,8 @@ public class StatisticFactory {
     }
 
     private static final ImmutableMap<String, Statistic> STATISTICS_BY_NAME_AND_ALIAS;
+    private static final ConcurrentMap<Double, Statistic> PERCENTILE_STATISTICS = new ConcurrentHashMap<>();
+    private static final Pattern PERCENTILE_PATTERN = Pattern.compile("^t?p([0-9]{1,3})(?:[.p]([0-9]{1,4}))?$");
     private static final ImmutableSet<Statistic> ALL_STATISTICS;
     private static final InterfaceDatabase INTERFACE_DATABASE = ReflectionsDatabase.newInstance();
     private static final Logger LOGGER = LoggerFactory.getLogger(StatisticFactory.class);
@@ -111,7 +144,14 @@ public class StatisticFactory {
         final Set<Statistic> allStatistics = Sets.newHashSet();
         final Set<Class<? extends Statistic>> statisticClasses = INTERFACE_DATABASE.findClassesWithInterface(Statistic.class);
         for (final Class<? extends Statistic> statisticClass : statisticClasses) {
-            if (!statisticClass.isInterface() && !Modifier.isAbstract(statisticClass.getModifiers())) {
+            // Synthesized percentile statistics are created on demand, the
+            // period is supplied by the bucket and expressions are evaluated
+            // by the bucket; none of these is registered
+            if (!statisticClass.isInterface()
+                    && !Modifier.isAbstract(statisticClass.getModifiers())
+                    && !PercentileStatistic.class.equals(statisticClass)
+                    && !PeriodStatistic.class.equals(statisticClass)
+                    && !ExpressionStatistic.class.equals(statisticClass)) {
                 try {
                     final Constructor<? extends Statistic> constructor = statisticClass.getDeclaredConstructor();
                     if (!constructor.isAccessible()) {
@@ -19,6 +19,7 @@ import com.arpnetworking.commons.builder.ThreadLocalBuilder;
 import com.arpnetworking.logback.annotations.Loggable;
 import com.arpnetworking.tsdcore.model.CalculatedValue;
 import com.arpnetworking.tsdcore.model.Quantity;
+import com.arpnetworking.tsdcore.model.Unit;
 
 import java.util.Map;
 import java.util.Optional;
@@ -75,6 +76,25 @@ public final class SumStatistic extends BaseStatistic {
             return this;
         }
 
+        @Override
+        public Accumulator<Void> accumulate(final double[] values, final Optional<Unit> unit) {
+            if (values.length == 0) {
+                return this;
+            }
+            // Assert: that under the new Quantity normalization the units should always be the same.
+            assertUnit(_sum.map(Quantity::getUnit).orElse(Optional.empty()), unit, _sum.isPresent());
+
+            double sum = _sum.map(Quantity::getValue).orElse(0.0);
+            for (final double value : values) {
+                sum += value;
+            }
+            final double newSum = sum;
+            _sum = Optional.of(ThreadLocalBuilder.build(
+                    Quantity.Builder.class,
+                    b -> b.setValue(newSum).setUnit(unit.orElse(null))));
+            return this;
+        }
+
         @Override
         public Accumulator<Void> accumulate(final CalculatedValue<Void> calculatedValue) {
             return accumulate(calculatedValue.getValue());
@@ -22,7 +22,7 @@ import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 
-import java.text.DecimalFormat;
+import java.math.BigDecimal;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
@@ -71,7 +71,7 @@ public abstract class TPStatistic extends BaseStatistic implements OrderedStatis
      */
     protected TPStatistic(final double percentile) {
         _percentile = percentile;
-        _defaultName = "tp" + FORMAT.format(_percentile);
+        _defaultName = createName(_percentile);
         _aliases = Sets.newHashSet();
         _aliases.add(_defaultName);
         _aliases.add(_defaultName.substring(1));
@@ -79,11 +79,20 @@ public abstract class TPStatistic extends BaseStatistic implements OrderedStatis
         _aliases.add(_defaultName.substring(1).replace(".", "p"));
     }
 
+    /**
+     * Create the canonical name of the statistic for a percentile.
+     *
+     * @param percentile The percentile.
+     * @return The canonical name of the statistic.
+     */
+    /* package private */ static String createName(final double percentile) {
+        return "tp" + BigDecimal.valueOf(percentile).stripTrailingZeros().toPlainString();
+    }
+
     private final double _percentile;
     private final String _defaultName;
     private final Set<String> _aliases;
 
-    private static final DecimalFormat FORMAT = new DecimalFormat("##0.#");
     private static final StatisticFactory STATISTIC_FACTORY = new StatisticFactory();
     private static final Supplier<Statistic> HISTOGRAM_STATISTIC =
             Suppliers.memoize(() -> STATISTIC_FACTORY.getStatistic("histogram"));
@@ -113,7 +122,7 @@ public abstract class TPStatistic extends BaseStatistic implements OrderedStatis
                     (HistogramStatistic.HistogramAccumulator) dependencies.get(HISTOGRAM_STATISTIC.get());
             return ThreadLocalBuilder.<CalculatedValue<Void>, CalculatedValue.Builder<Void>>buildGeneric(
                     CalculatedValue.Builder.class,
-                    b -> b.setValue(calculator.calculate(((TPStatistic) getStatistic()).getPercentile())));
+                    b -> b.setValue(calculator.calculate(((TPStatistic) getStatistic()).getPercentile(), dependencies)));
         }
 
         @Override
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.utility;
+
+import com.arpnetworking.logback.annotations.LogValue;
+import com.arpnetworking.steno.LogValueMapFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Allocates chunks of off-heap memory carved out of large direct
+ * <code>ByteBuffer</code> slabs. Chunk sizes are rounded up to a power of
+ * two and freed chunks are kept on a free list per size for reuse. The
+ * slabs themselves are never returned to the operating system; instead
+ * the memory is recycled between owners as they free and allocate chunks.
+ * Requests larger than the slab size are served by a dedicated slab which
+ * is also recycled through the free list.
+ *
+ * This class is thread safe.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public final class SlabAllocator {
+
+    /**
+     * Public constructor.
+     *
+     * @param slabSize The size of each slab in bytes; rounded up to a power of two.
+     */
+    public SlabAllocator(final int slabSize) {
+        _slabSize = 1 << sizeClass(slabSize);
+        final List<Deque<ByteBuffer>> freeChunks = new ArrayList<>(MAX_SIZE_CLASS + 1);
+        for (int i = 0; i <= MAX_SIZE_CLASS; ++i) {
+            freeChunks.add(new ArrayDeque<>());
+        }
+        _freeChunks = freeChunks;
+    }
+
+    /**
+     * Allocate a chunk of at least the specified size. The returned buffer
+     * uses native byte order and its capacity is the size of the chunk.
+     *
+     * @param size The minimum size of the chunk in bytes.
+     * @return The chunk.
+     */
+    public synchronized ByteBuffer allocate(final int size) {
+        final int sizeClass = sizeClass(size);
+        final ByteBuffer freeChunk = _freeChunks.get(sizeClass).pollFirst();
+        if (freeChunk != null) {
+            _freeBytes -= freeChunk.capacity();
+            freeChunk.clear();
+            return freeChunk;
+        }
+
+        final int chunkSize = 1 << sizeClass;
+        if (chunkSize > _slabSize) {
+            _allocatedBytes += chunkSize;
+            return ByteBuffer.allocateDirect(chunkSize).order(ByteOrder.nativeOrder());
+        }
+        if (_slab == null || _slab.remaining() < chunkSize) {
+            retireSlab();
+            _slab = ByteBuffer.allocateDirect(_slabSize);
+            _allocatedBytes += _slabSize;
+        }
+        return carve(chunkSize);
+    }
+
+    /**
+     * Return a chunk to the allocator. The chunk must have been returned by
+     * <code>allocate</code> on this instance and must not be used after it
+     * is freed.
+     *
+     * @param chunk The chunk to free.
+     */
+    public synchronized void free(final ByteBuffer chunk) {
+        _freeChunks.get(sizeClass(chunk.capacity())).addFirst(chunk);
+        _freeBytes += chunk.capacity();
+    }
+
+    /**
+     * Accessor for the total number of off-heap bytes reserved by this allocator.
+     *
+     * @return The total number of bytes reserved.
+     */
+    public synchronized long getAllocatedBytes() {
+        return _allocatedBytes;
+    }
+
+    /**
+     * Accessor for the number of bytes in freed chunks available for reuse.
+     *
+     * @return The number of bytes available for reuse.
+     */
+    public synchronized long getFreeBytes() {
+        return _freeBytes;
+    }
+
+    /**
+     * Generate a Steno log compatible representation.
+     *
+     * @return Steno log compatible representation.
+     */
+    @LogValue
+    public synchronized Object toLogValue() {
+        return LogValueMapFactory.builder(this)
+                .put("slabSize", _slabSize)
+                .put("allocatedBytes", _allocatedBytes)
+                .put("freeBytes", _freeBytes)
+                .build();
+    }
+
+    @Override
+    public String toString() {
+        return toLogValue().toString();
+    }
+
+    private ByteBuffer carve(final int chunkSize) {
+        final int position = _slab.position();
+        final ByteBuffer view = _slab.duplicate();
+        view.limit(position + chunkSize);
+        _slab.position(position + chunkSize);
+        return view.slice().order(ByteOrder.nativeOrder());
+    }
+
+    private void retireSlab() {
+        // Place the unused tail of the current slab on the free lists
+        while (_slab != null && _slab.remaining() >= MIN_CHUNK_SIZE) {
+            final int chunkSize = Integer.highestOneBit(_slab.remaining());
+            final ByteBuffer chunk = carve(chunkSize);
+            _freeChunks.get(sizeClass(chunkSize)).addFirst(chunk);
+            _freeBytes += chunkSize;
+        }
+    }
+
+    private static int sizeClass(final int size) {
+        if (size <= MIN_CHUNK_SIZE) {
+            return MIN_SIZE_CLASS;
+        }
+        final int sizeClass = Integer.SIZE - Integer.numberOfLeadingZeros(size - 1);
+        if (sizeClass > MAX_SIZE_CLASS) {
+            throw new IllegalArgumentException(String.format("Chunk size too large; size=%d", size));
+        }
+        return sizeClass;
+    }
+
+    private final int _slabSize;
+    private final List<Deque<ByteBuffer>> _freeChunks;
+    private ByteBuffer _slab;
+    private long _allocatedBytes = 0;
+    private long _freeBytes = 0;
+
+    private static final int MIN_SIZE_CLASS = 6;
+    private static final int MIN_CHUNK_SIZE = 1 << MIN_SIZE_CLASS;
+    private static final int MAX_SIZE_CLASS = 30;
+}
@@ -38,16 +38,35 @@ public class TimerTrigger implements Trigger {
 
     @Override
     public void waitOnReadTrigger() throws InterruptedException {
-        Thread.sleep(_duration.toMillis());
+        Thread.sleep(getReadDelay().toMillis());
     }
 
     @Override
     public void waitOnFileNotFoundTrigger(final int attempt) throws InterruptedException {
+        Thread.sleep(getFileNotFoundDelay(attempt).toMillis());
+    }
+
+    /**
+     * The time <code>waitOnReadTrigger</code> waits for.
+     *
+     * @return The read delay.
+     */
+    public Duration getReadDelay() {
+        return _duration;
+    }
+
+    /**
+     * The time <code>waitOnFileNotFoundTrigger</code> waits for.
+     *
+     * @param attempt The attempt number to open or find the file.
+     * @return The file not found delay.
+     */
+    public Duration getFileNotFoundDelay(final int attempt) {
         // Max time = 1.3^n * base  (n capped at 20)
         final double maxBackoff = Math.pow(1.3, Math.min(attempt, 20)) * _duration.toMillis();
         // Sleep duration is random from 0 to max, capped at 30 seconds
         final int sleepDurationMillis = (int) Math.max(Math.random() * maxBackoff, 30000);
-        Thread.sleep(sleepDurationMillis);
+        return Duration.ofMillis(sleepDurationMillis);
     }
 
     /**
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.http;
+
+import akka.actor.ActorSystem;
+import akka.http.javadsl.model.HttpRequest;
+import akka.http.javadsl.model.HttpResponse;
+import akka.stream.ActorMaterializer;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import com.arpnetworking.metrics.incubator.PeriodicMetrics;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for the <code>Routes</code> class.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public final class RoutesTest {
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        _actorSystem = ActorSystem.create();
+        _materializer = ActorMaterializer.create(_actorSystem);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Await.result(_actorSystem.terminate(), Duration.create(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testConcurrentRequestsRespondInOrder() throws Exception {
+        final Map<String, CompletableFuture<HttpResponse>> responses = Maps.newConcurrentMap();
+        final SupplementalRoutes supplementalRoutes = request -> Optional.of(
+                responses.computeIfAbsent(request.getUri().path(), path -> new CompletableFuture<>()));
+        final Routes routes = createRoutes(supplementalRoutes, 3);
+
+        final CompletionStage<List<HttpResponse>> result = Source.from(ImmutableList.of(
+                HttpRequest.create("/a"),
+                HttpRequest.create("/b"),
+                HttpRequest.create("/c")))
+                .via(routes.flow())
+                .runWith(Sink.seq(), _materializer);
+
+        // All three requests are dispatched before any response is available
+        awaitRequests(responses, 3);
+        responses.get("/c").complete(HttpResponse.create().withStatus(202));
+        responses.get("/b").complete(HttpResponse.create().withStatus(201));
+        responses.get("/a").complete(HttpResponse.create().withStatus(200));
+
+        Assert.assertEquals(
+                ImmutableList.of(200, 201, 202),
+                result.toCompletableFuture().get(5, TimeUnit.SECONDS)
+                        .stream()
+                        .map(response -> response.status().intValue())
+                        .collect(Collectors.toList()));
+        Mockito.verify(_metrics).recordTimer(
+                Mockito.eq("rest_service/GET/a/latency"),
+                Mockito.anyLong(),
+                Mockito.any());
+        Mockito.verify(_metrics).recordTimer(
+                Mockito.eq("rest_service/GET/c/latency"),
+                Mockito.anyLong(),
+                Mockito.any());
+    }
+
+    @Test
+    public void testSerialRequests() throws Exception {
+        final Map<String, CompletableFuture<HttpResponse>> responses = Maps.newConcurrentMap();
+        final SupplementalRoutes supplementalRoutes = request -> Optional.of(
+                responses.computeIfAbsent(request.getUri().path(), path -> new CompletableFuture<>()));
+        final Routes routes = createRoutes(supplementalRoutes, 1);
+
+        final CompletionStage<List<HttpResponse>> result = Source.from(ImmutableList.of(
+                HttpRequest.create("/a"),
+                HttpRequest.create("/b")))
+                .via(routes.flow())
+                .runWith(Sink.seq(), _materializer);
+
+        awaitRequests(responses, 1);
+        Thread.sleep(100);
+        Assert.assertEquals(1, responses.size());
+        responses.get("/a").complete(HttpResponse.create().withStatus(200));
+        awaitRequests(responses, 2);
+        responses.get("/b").complete(HttpResponse.create().withStatus(201));
+
+        Assert.assertEquals(2, result.toCompletableFuture().get(5, TimeUnit.SECONDS).size());
+    }
+
+    private Routes createRoutes(final SupplementalRoutes supplementalRoutes, final int requestConcurrency) {
+        return new Routes(
+                _actorSystem,
+                _metrics,
+                "/ping",
+                "/status",
+                ImmutableList.of(supplementalRoutes),
+                requestConcurrency);
+    }
+
+    private static void awaitRequests(final Map<String, ?> responses, final int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (responses.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(count, responses.size());
+    }
+
+    @Mock
+    private PeriodicMetrics _metrics;
+    private ActorSystem _actorSystem;
+    private Materializer _materializer;
+}
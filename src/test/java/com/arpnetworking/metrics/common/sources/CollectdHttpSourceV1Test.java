@@ -16,9 +16,13 @@
 package com.arpnetworking.metrics.common.sources;
 
 import akka.actor.ActorRef;
+import akka.http.javadsl.model.ContentTypes;
+import akka.http.javadsl.model.HttpEntities;
 import akka.http.javadsl.model.HttpRequest;
 import akka.http.javadsl.model.HttpResponse;
 import akka.http.javadsl.model.headers.RawHeader;
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
 import com.arpnetworking.commons.observer.Observer;
 import com.arpnetworking.http.RequestReply;
 import com.arpnetworking.metrics.common.parsers.Parser;
@@ -26,6 +30,7 @@ import com.arpnetworking.metrics.common.parsers.exceptions.ParsingException;
 import com.arpnetworking.metrics.mad.model.Record;
 import com.arpnetworking.test.TestBeanFactory;
 import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import org.junit.Assert;
 import org.junit.Before;
@@ -35,13 +40,17 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Tests for the CollectdHttpSourceV1.
@@ -107,6 +116,165 @@ public final class CollectdHttpSourceV1Test extends BaseActorSourceTest {
         Assert.assertEquals(record3, constructed.get(2));
     }
 
+    @Test
+    public void testParsesStreamedEntity() throws ParsingException {
+        Mockito.when(_parser.parse(Mockito.any())).thenReturn(Collections.emptyList());
+        final HttpResponse response = dispatchRequest(
+                HttpRequest.create().withEntity(
+                        HttpEntities.create(
+                                ContentTypes.APPLICATION_JSON,
+                                Source.from(ImmutableList.of(ByteString.fromString("foo"), ByteString.fromString("bar"))))));
+        Assert.assertEquals(200, response.status().intValue());
+        final ArgumentCaptor<com.arpnetworking.metrics.mad.model.HttpRequest> captor =
+                ArgumentCaptor.forClass(com.arpnetworking.metrics.mad.model.HttpRequest.class);
+        Mockito.verify(_parser).parse(captor.capture());
+        Assert.assertEquals("foobar", captor.getValue().getBody().utf8String());
+    }
+
+    @Test
+    public void test503WhenQueueFull() throws Exception {
+        final CountDownLatch parsing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(_parser.parse(Mockito.any())).thenAnswer(invocation -> {
+            parsing.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return Collections.emptyList();
+        });
+        final CollectdHttpSourceV1 source = new CollectdHttpSourceV1.Builder()
+                .setActorName("collectd")
+                .setName("collectd_source")
+                .setParser(_parser)
+                .setParallelism(1)
+                .setMaxPendingRequests(1)
+                .build();
+        final ActorRef ref = getSystem().actorOf(CollectdHttpSourceV1.Actor.props(source));
+
+        final CompletableFuture<HttpResponse> first = sendRequest(ref, HttpRequest.create());
+        Assert.assertTrue(parsing.await(10, TimeUnit.SECONDS));
+        final CompletableFuture<HttpResponse> second = sendRequest(ref, HttpRequest.create());
+        final CompletableFuture<HttpResponse> third = sendRequest(ref, HttpRequest.create());
+
+        Assert.assertEquals(503, third.get(10, TimeUnit.SECONDS).status().intValue());
+        release.countDown();
+        Assert.assertEquals(200, first.get(10, TimeUnit.SECONDS).status().intValue());
+        Assert.assertEquals(200, second.get(10, TimeUnit.SECONDS).status().intValue());
+    }
+
+    @Test
+    public void testParallelRequests() throws Exception {
+        final CountDownLatch parsing = new CountDownLatch(4);
+        Mockito.when(_parser.parse(Mockito.any())).thenAnswer(invocation -> {
+            // All requests must be parsed concurrently for the latch to open
+            parsing.countDown();
+            Assert.assertTrue(parsing.await(10, TimeUnit.SECONDS));
+            return Collections.singletonList(TestBeanFactory.createRecord());
+        });
+        final CollectdHttpSourceV1 source = new CollectdHttpSourceV1.Builder()
+                .setActorName("collectd")
+                .setName("collectd_source")
+                .setParser(_parser)
+                .setParallelism(4)
+                .build();
+        source.attach(_observer);
+        final ActorRef ref = getSystem().actorOf(CollectdHttpSourceV1.Actor.props(source));
+
+        final List<CompletableFuture<HttpResponse>> responses = Lists.newArrayList();
+        for (int i = 0; i < 4; ++i) {
+            responses.add(sendRequest(ref, HttpRequest.create()));
+        }
+        for (final CompletableFuture<HttpResponse> response : responses) {
+            Assert.assertEquals(200, response.get(10, TimeUnit.SECONDS).status().intValue());
+        }
+        Mockito.verify(_observer, Mockito.times(4)).notify(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void testGzipEntity() throws Exception {
+        Mockito.when(_parser.parse(Mockito.any())).thenReturn(Collections.emptyList());
+        final byte[] entity = "{\"foo\":\"bar\"}".getBytes(Charsets.UTF_8);
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream outputStream = new GZIPOutputStream(compressed)) {
+            outputStream.write(entity);
+        }
+        final HttpResponse response = dispatchRequest(
+                HttpRequest.create()
+                        .withEntity(compressed.toByteArray())
+                        .addHeader(RawHeader.create("Content-Encoding", "gzip")));
+        Assert.assertEquals(200, response.status().intValue());
+        final ArgumentCaptor<com.arpnetworking.metrics.mad.model.HttpRequest> captor =
+                ArgumentCaptor.forClass(com.arpnetworking.metrics.mad.model.HttpRequest.class);
+        Mockito.verify(_parser).parse(captor.capture());
+        Assert.assertArrayEquals(entity, captor.getValue().getBody().toArray());
+    }
+
+    @Test
+    public void testDeflateEntity() throws Exception {
+        Mockito.when(_parser.parse(Mockito.any())).thenReturn(Collections.emptyList());
+        final byte[] entity = "{\"foo\":\"bar\"}".getBytes(Charsets.UTF_8);
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (DeflaterOutputStream outputStream = new DeflaterOutputStream(compressed)) {
+            outputStream.write(entity);
+        }
+        final HttpResponse response = dispatchRequest(
+                HttpRequest.create()
+                        .withEntity(compressed.toByteArray())
+                        .addHeader(RawHeader.create("content-encoding", "Deflate")));
+        Assert.assertEquals(200, response.status().intValue());
+        final ArgumentCaptor<com.arpnetworking.metrics.mad.model.HttpRequest> captor =
+                ArgumentCaptor.forClass(com.arpnetworking.metrics.mad.model.HttpRequest.class);
+        Mockito.verify(_parser).parse(captor.capture());
+        Assert.assertArrayEquals(entity, captor.getValue().getBody().toArray());
+    }
+
+    @Test
+    public void test413OnInflatedBodyTooLarge() throws Exception {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream outputStream = new GZIPOutputStream(compressed)) {
+            outputStream.write(new byte[1024 * 1024]);
+        }
+        final CollectdHttpSourceV1 source = new CollectdHttpSourceV1.Builder()
+                .setActorName("collectd")
+                .setName("collectd_source")
+                .setParser(_parser)
+                .setMaxInflatedBodySize(64 * 1024L)
+                .build();
+        final ActorRef ref = getSystem().actorOf(CollectdHttpSourceV1.Actor.props(source));
+        final HttpResponse response = sendRequest(
+                ref,
+                HttpRequest.create()
+                        .withEntity(compressed.toByteArray())
+                        .addHeader(RawHeader.create("Content-Encoding", "gzip")))
+                .get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(413, response.status().intValue());
+        Mockito.verifyZeroInteractions(_parser);
+    }
+
+    @Test
+    public void test400OnCorruptGzip() {
+        final HttpResponse response = dispatchRequest(
+                HttpRequest.create()
+                        .withEntity("not gzip".getBytes(Charsets.UTF_8))
+                        .addHeader(RawHeader.create("Content-Encoding", "gzip")));
+        Assert.assertEquals(400, response.status().intValue());
+        Mockito.verifyZeroInteractions(_parser);
+    }
+
+    @Test
+    public void test415OnUnsupportedEncoding() {
+        final HttpResponse response = dispatchRequest(
+                HttpRequest.create()
+                        .withEntity("foo".getBytes(Charsets.UTF_8))
+                        .addHeader(RawHeader.create("Content-Encoding", "br")));
+        Assert.assertEquals(415, response.status().intValue());
+        Mockito.verifyZeroInteractions(_parser);
+    }
+
+    private CompletableFuture<HttpResponse> sendRequest(final ActorRef ref, final HttpRequest request) {
+        final CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        ref.tell(new RequestReply(request, future), ActorRef.noSender());
+        return future;
+    }
+
     private HttpResponse dispatchRequest() throws ExecutionException {
         return dispatchRequest(HttpRequest.create());
     }
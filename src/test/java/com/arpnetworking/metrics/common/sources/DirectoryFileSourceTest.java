@@ -0,0 +1,181 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.common.sources;
+
+import com.arpnetworking.commons.observer.Observer;
+import com.arpnetworking.metrics.common.parsers.Parser;
+import com.arpnetworking.metrics.common.parsers.exceptions.ParsingException;
+import com.arpnetworking.metrics.common.tailer.InitialPosition;
+import com.google.common.base.Charsets;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+/**
+ * Tests for the <code>DirectoryFileSource</code> class.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public class DirectoryFileSourceTest {
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setUp() throws ParsingException {
+        _observer = Mockito.mock(Observer.class);
+        _parser = Mockito.mock(Parser.class);
+        // CHECKSTYLE.OFF: IllegalInstantiation - Decode the line as the record
+        Mockito.when(_parser.parse(Mockito.any(byte[].class)))
+                .thenAnswer(invocation -> new String(invocation.<byte[]>getArgument(0), Charsets.UTF_8));
+        // CHECKSTYLE.ON: IllegalInstantiation
+    }
+
+    @After
+    public void tearDown() {
+        if (_source != null) {
+            _source.stop();
+        }
+    }
+
+    @Test
+    public void testExistingFiles() throws IOException {
+        createDirectory("testExistingFiles");
+        write("query-1.log", "one");
+        write("query-2.log", "two");
+
+        _source = createBuilder().setRescanInterval(Duration.ofHours(1)).build();
+        _source.attach(_observer);
+        _source.start();
+
+        Mockito.verify(_observer, Mockito.timeout(TIMEOUT)).notify(_source, "one");
+        Mockito.verify(_observer, Mockito.timeout(TIMEOUT)).notify(_source, "two");
+        Assert.assertEquals(2, _source.getFiles().size());
+    }
+
+    @Test
+    public void testDiscoverNewFile() throws IOException, InterruptedException {
+        createDirectory("testDiscoverNewFile");
+        write("query-1.log", "existing");
+
+        _source = createBuilder()
+                .setInitialPosition(InitialPosition.END)
+                .setRescanInterval(Duration.ofHours(1))
+                .build();
+        _source.attach(_observer);
+        _source.start();
+        waitForFiles(1);
+
+        // Files created after start are read from their start
+        write("query-2.log", "created");
+
+        Mockito.verify(_observer, Mockito.timeout(TIMEOUT)).notify(_source, "created");
+        Mockito.verify(_observer, Mockito.never()).notify(_source, "existing");
+    }
+
+    @Test
+    public void testIgnoreNonMatchingFiles() throws IOException {
+        createDirectory("testIgnoreNonMatchingFiles");
+        write("query-1.log", "matched");
+        write("query-1.log.state", "ignored");
+        write("other.txt", "ignored");
+
+        _source = createBuilder().setRescanInterval(Duration.ofMillis(INTERVAL)).build();
+        _source.attach(_observer);
+        _source.start();
+
+        Mockito.verify(_observer, Mockito.timeout(TIMEOUT)).notify(_source, "matched");
+        Assert.assertEquals(Collections.singleton(_directory.resolve("query-1.log")), _source.getFiles());
+        Mockito.verify(_observer, Mockito.never()).notify(_source, "ignored");
+    }
+
+    @Test
+    public void testRetireDeletedFile() throws IOException, InterruptedException {
+        createDirectory("testRetireDeletedFile");
+        write("query-1.log", "first");
+
+        _source = createBuilder().setRescanInterval(Duration.ofMillis(INTERVAL)).build();
+        _source.attach(_observer);
+        _source.start();
+        Mockito.verify(_observer, Mockito.timeout(TIMEOUT)).notify(_source, "first");
+
+        // The final lines written before the file is removed are still read
+        Files.write(
+                _directory.resolve("query-1.log"),
+                "last\n".getBytes(Charsets.UTF_8),
+                StandardOpenOption.APPEND, StandardOpenOption.WRITE, StandardOpenOption.SYNC);
+        Files.delete(_directory.resolve("query-1.log"));
+
+        Mockito.verify(_observer, Mockito.timeout(TIMEOUT)).notify(_source, "last");
+        waitForFiles(0);
+    }
+
+    private void createDirectory(final String name) throws IOException {
+        _directory = BASE_DIRECTORY.resolve(name);
+        if (Files.exists(_directory)) {
+            try (Stream<Path> files = Files.list(_directory)) {
+                for (final Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+        }
+        Files.createDirectories(_directory);
+    }
+
+    private DirectoryFileSource.Builder<Object> createBuilder() {
+        return new DirectoryFileSource.Builder<>()
+                .setName("DirectoryFileSourceTest")
+                .setDirectory(_directory)
+                .setGlob("query-*.log")
+                .setParser(_parser)
+                .setStateFile(_directory.resolve("query-1.log.state"))
+                .setInterval(Duration.ofMillis(INTERVAL));
+    }
+
+    private void write(final String name, final String line) throws IOException {
+        Files.write(
+                _directory.resolve(name),
+                (line + "\n").getBytes(Charsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+    }
+
+    private void waitForFiles(final int expected) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (_source.getFiles().size() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(INTERVAL);
+        }
+        Assert.assertEquals(expected, _source.getFiles().size());
+    }
+
+    private Observer _observer;
+    private Parser<Object, byte[]> _parser;
+    private DirectoryFileSource<Object> _source;
+    private Path _directory;
+
+    private static final Path BASE_DIRECTORY = Paths.get("./target/tmp/filter/DirectoryFileSourceTest");
+
+    private static final long INTERVAL = 50;
+    private static final int TIMEOUT = 10000;
+}
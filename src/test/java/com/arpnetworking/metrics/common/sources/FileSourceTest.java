@@ -103,6 +103,84 @@ public class FileSourceTest {
         source.stop();
     }
 
+    @Test
+    public void testParseDataSharedTailer() throws IOException, InterruptedException, ParsingException {
+        final Path file = _directory.resolve("testParseDataSharedTailer.log");
+        final Path state = _directory.resolve("testParseDataSharedTailer.log.state");
+        Files.deleteIfExists(file);
+        Files.createFile(file);
+        Files.deleteIfExists(state);
+
+        final String expectedData = "Expected Data";
+        Mockito.when(_parser.parse(expectedData.getBytes(Charsets.UTF_8))).thenReturn(expectedData);
+
+        final FileSource<Object> source = new FileSource<>(
+                new FileSource.Builder<>()
+                        .setSourceFile(file)
+                        .setStateFile(state)
+                        .setParser(_parser)
+                        .setSharedTailer(true)
+                        .setInterval(Duration.ofMillis(INTERVAL)),
+                _logger);
+
+        source.attach(_observer);
+        source.start();
+
+        Files.write(
+                file,
+                (expectedData + "\n").getBytes(Charsets.UTF_8),
+                StandardOpenOption.APPEND, StandardOpenOption.WRITE, StandardOpenOption.SYNC);
+
+        Mockito.verify(_parser, Mockito.timeout(TIMEOUT)).parse(expectedData.getBytes(Charsets.UTF_8));
+        Mockito.verify(_observer, Mockito.timeout(TIMEOUT)).notify(source, expectedData);
+        source.stop();
+    }
+
+    @Test
+    public void testParseDataInParallel() throws IOException, InterruptedException, ParsingException {
+        final Path file = _directory.resolve("testParseDataInParallel.log");
+        final Path state = _directory.resolve("testParseDataInParallel.log.state");
+        Files.deleteIfExists(file);
+        Files.createFile(file);
+        Files.deleteIfExists(state);
+
+        // CHECKSTYLE.OFF: IllegalInstantiation - This is ok for String from byte[]
+        Mockito.when(_parser.parse(Mockito.any())).thenAnswer(
+                invocation -> new String(invocation.<byte[]>getArgument(0), Charsets.UTF_8));
+        // CHECKSTYLE.ON: IllegalInstantiation
+
+        final FileSource<Object> source = new FileSource<>(
+                new FileSource.Builder<>()
+                        .setSourceFile(file)
+                        .setStateFile(state)
+                        .setParser(_parser)
+                        .setParserThreads(4)
+                        .setParserBatchSize(7)
+                        .setInterval(Duration.ofMillis(INTERVAL)),
+                _logger);
+
+        source.attach(_observer);
+        source.start();
+
+        final int lineCount = 1000;
+        final StringBuilder data = new StringBuilder();
+        for (int i = 0; i < lineCount; ++i) {
+            data.append("Line ").append(i).append("\n");
+        }
+        Files.write(
+                file,
+                data.toString().getBytes(Charsets.UTF_8),
+                StandardOpenOption.APPEND, StandardOpenOption.WRITE, StandardOpenOption.SYNC);
+
+        final ArgumentCaptor<Object> notifyCapture = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(_observer, Mockito.timeout(TIMEOUT).times(lineCount)).notify(Mockito.eq(source), notifyCapture.capture());
+        final List<Object> notifyValues = notifyCapture.getAllValues();
+        for (int i = 0; i < lineCount; ++i) {
+            Assert.assertEquals("Line " + i, notifyValues.get(i));
+        }
+        source.stop();
+    }
+
     @Test
     public void testTailFromEnd() throws IOException, InterruptedException, ParsingException {
         final Path file = _directory.resolve("testTailFromEnd.log");
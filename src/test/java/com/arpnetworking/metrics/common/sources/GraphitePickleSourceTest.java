@@ -0,0 +1,168 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.common.sources;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
+import com.arpnetworking.commons.observer.Observer;
+import com.arpnetworking.metrics.mad.model.Record;
+import com.google.common.io.Resources;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import scala.concurrent.duration.Duration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the GraphitePickleSource class.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public final class GraphitePickleSourceTest {
+
+    @Before
+    public void setUp() {
+        _actorSystem = ActorSystem.create();
+    }
+
+    @After
+    public void tearDown() {
+        TestKit.shutdownActorSystem(_actorSystem);
+    }
+
+    @Test
+    public void testFramesSplitAcrossWrites() throws IOException {
+        final GraphitePickleSource source = createSource("testFramesSplitAcrossWrites", 21004, 1024);
+        final Observer observer = Mockito.mock(Observer.class);
+        source.attach(observer);
+        awaitReady(source);
+
+        final byte[] payload = Resources.toByteArray(Resources.getResource(
+                GraphitePickleSourceTest.class,
+                "/com/arpnetworking/metrics/mad/parsers/GraphitePickleParserTest/testParseProtocol2"));
+        final byte[] frame = createFrame(payload);
+        final byte[] frames = ByteBuffer.allocate(frame.length * 2).put(frame).put(frame).array();
+
+        try (Socket socket = new Socket("localhost", 21004)) {
+            // Split the second frame inside its length prefix
+            final OutputStream outputStream = socket.getOutputStream();
+            outputStream.write(frames, 0, frame.length + 2);
+            outputStream.flush();
+            outputStream.write(frames, frame.length + 2, frame.length - 2);
+            outputStream.flush();
+
+            // Each frame is parsed into two records
+            final ArgumentCaptor<Record> captor = ArgumentCaptor.forClass(Record.class);
+            Mockito.verify(observer, Mockito.timeout(5000).times(4)).notify(Mockito.same(source), captor.capture());
+            Assert.assertEquals(2, captor.getAllValues().get(0).getMetrics().size());
+            Assert.assertEquals(
+                    captor.getAllValues().get(0).getMetrics(),
+                    captor.getAllValues().get(2).getMetrics());
+        }
+    }
+
+    @Test
+    public void testFailedFrameDoesNotWedgeConnection() throws IOException, InterruptedException {
+        final GraphitePickleSource source = createSource("testFailedFrameDoesNotWedgeConnection", 21006, 1024);
+        final Observer observer = Mockito.mock(Observer.class);
+        Mockito.doThrow(new IllegalStateException("Test failure"))
+                .doNothing()
+                .when(observer)
+                .notify(Mockito.any(), Mockito.any());
+        source.attach(observer);
+        awaitReady(source);
+
+        final byte[] payload = Resources.toByteArray(Resources.getResource(
+                GraphitePickleSourceTest.class,
+                "/com/arpnetworking/metrics/mad/parsers/GraphitePickleParserTest/testParseProtocol2"));
+        final byte[] frame = createFrame(payload);
+        final byte[] frames = ByteBuffer.allocate(frame.length * 2).put(frame).put(frame).array();
+
+        try (Socket socket = new Socket("localhost", 21006)) {
+            // The first record of the first frame fails; the second frame is still processed
+            final OutputStream outputStream = socket.getOutputStream();
+            outputStream.write(frames);
+            outputStream.flush();
+            Mockito.verify(observer, Mockito.timeout(5000).times(3)).notify(Mockito.same(source), Mockito.any());
+
+            // Processed frames are not replayed by later data
+            outputStream.write(frame);
+            outputStream.flush();
+            Mockito.verify(observer, Mockito.timeout(5000).times(5)).notify(Mockito.same(source), Mockito.any());
+            Thread.sleep(100);
+            Mockito.verify(observer, Mockito.times(5)).notify(Mockito.same(source), Mockito.any());
+        }
+    }
+
+    @Test
+    public void testOversizedFrameClosesConnection() throws IOException {
+        final GraphitePickleSource source = createSource("testOversizedFrameClosesConnection", 21005, 16);
+        final Observer observer = Mockito.mock(Observer.class);
+        source.attach(observer);
+        awaitReady(source);
+
+        try (Socket socket = new Socket("localhost", 21005)) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write(createFrame(new byte[32]));
+            socket.getOutputStream().flush();
+
+            final InputStream inputStream = socket.getInputStream();
+            Assert.assertEquals(-1, inputStream.read());
+        }
+        Mockito.verify(observer, Mockito.never()).notify(Mockito.any(), Mockito.any());
+    }
+
+    private GraphitePickleSource createSource(final String name, final int port, final int maxFrameSize) {
+        return new GraphitePickleSource.Builder()
+                .setActorSystem(_actorSystem)
+                .setActorName("GraphitePickleSourceTest." + name)
+                .setName("GraphitePickleSourceTest." + name)
+                .setPort(port)
+                .setMaxFrameSize(maxFrameSize)
+                .build();
+    }
+
+    @SuppressWarnings("deprecation")
+    private void awaitReady(final GraphitePickleSource source) {
+        // CHECKSTYLE.OFF: AnonInnerLength - This is the Akka test pattern
+        new TestKit(_actorSystem) {{
+            final ActorRef listener = _actorSystem.actorOf(GraphitePickleSource.TcpListenerActor.props(source));
+
+            boolean isReady = false;
+            while (!isReady) {
+                listener.tell("IsReady", getRef());
+                isReady = expectMsgClass(Duration.create(10, TimeUnit.SECONDS), Boolean.class);
+            }
+        }};
+        // CHECKSTYLE.ON: AnonInnerLength
+    }
+
+    private static byte[] createFrame(final byte[] payload) {
+        return ByteBuffer.allocate(4 + payload.length).putInt(payload.length).put(payload).array();
+    }
+
+    private ActorSystem _actorSystem;
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.common.sources;
+
+import com.arpnetworking.commons.observer.Observer;
+import com.arpnetworking.metrics.mad.model.DefaultMetric;
+import com.arpnetworking.metrics.mad.model.Record;
+import com.arpnetworking.tsdcore.model.MetricType;
+import com.arpnetworking.tsdcore.model.Quantity;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.timgroup.statsd.NonBlockingStatsDClient;
+import com.timgroup.statsd.StatsDClient;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for the <code>MultiThreadedStatsdSource</code> class.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public final class MultiThreadedStatsdSourceTest {
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void test() {
+        final MultiThreadedStatsdSource statsdSource = new MultiThreadedStatsdSource.Builder()
+                .setName("MultiThreadedStatsdSourceTest.test")
+                .setPort(1235)
+                .setParserThreads(2)
+                .setReceiveBufferSize(1024 * 1024)
+                .build();
+        final Observer observer = Mockito.mock(Observer.class);
+        statsdSource.attach(observer);
+        statsdSource.start();
+        try {
+            final StatsDClient statsdClient = new NonBlockingStatsDClient("MultiThreadedStatsdSourceTest", "localhost", 1235);
+            statsdClient.count("counter1", 3);
+            statsdClient.stop();
+
+            Mockito.verify(observer, Mockito.timeout(1000)).notify(
+                    Mockito.same(statsdSource),
+                    _recordCaptor.capture());
+
+            final Record record = _recordCaptor.getValue();
+            Assert.assertEquals(
+                    ImmutableMap.of(
+                            "MultiThreadedStatsdSourceTest.counter1",
+                            new DefaultMetric.Builder()
+                                    .setType(MetricType.COUNTER)
+                                    .setValues(ImmutableList.of(
+                                            new Quantity.Builder()
+                                                    .setValue(3d)
+                                                    .build()))
+                                    .build()),
+                    record.getMetrics());
+        } finally {
+            statsdSource.stop();
+        }
+    }
+
+    @Test
+    public void testManyDatagrams() {
+        final MultiThreadedStatsdSource statsdSource = new MultiThreadedStatsdSource.Builder()
+                .setName("MultiThreadedStatsdSourceTest.testManyDatagrams")
+                .setPort(1236)
+                .setParserThreads(4)
+                .setParserQueueSize(1)
+                .build();
+        final Observer observer = Mockito.mock(Observer.class);
+        statsdSource.attach(observer);
+        statsdSource.start();
+        try {
+            final StatsDClient statsdClient = new NonBlockingStatsDClient("MultiThreadedStatsdSourceTest", "localhost", 1236);
+            for (int i = 0; i < 20; ++i) {
+                statsdClient.count("counter" + i, i);
+            }
+            statsdClient.stop();
+
+            Mockito.verify(observer, Mockito.timeout(5000).atLeast(20)).notify(
+                    Mockito.same(statsdSource),
+                    _recordCaptor.capture());
+            final Set<String> metrics = _recordCaptor.getAllValues()
+                    .stream()
+                    .flatMap(record -> record.getMetrics().keySet().stream())
+                    .collect(Collectors.toSet());
+            Assert.assertEquals(20, metrics.size());
+        } finally {
+            statsdSource.stop();
+        }
+    }
+
+    @Test
+    public void testFailedDatagramDoesNotStopSource() {
+        final MultiThreadedStatsdSource statsdSource = new MultiThreadedStatsdSource.Builder()
+                .setName("MultiThreadedStatsdSourceTest.testFailedDatagramDoesNotStopSource")
+                .setPort(1238)
+                .setParserThreads(1)
+                .setParserQueueSize(1)
+                .build();
+        final Observer observer = Mockito.mock(Observer.class);
+        Mockito.doThrow(new IllegalStateException("Observer failure"))
+                .doNothing()
+                .when(observer).notify(Mockito.any(), Mockito.any());
+        statsdSource.attach(observer);
+        statsdSource.start();
+        try {
+            final StatsDClient statsdClient = new NonBlockingStatsDClient("MultiThreadedStatsdSourceTest", "localhost", 1238);
+            statsdClient.count("counter1", 1);
+            Mockito.verify(observer, Mockito.timeout(1000)).notify(Mockito.same(statsdSource), Mockito.any());
+            statsdClient.count("counter2", 2);
+            statsdClient.stop();
+
+            Mockito.verify(observer, Mockito.timeout(1000).times(2)).notify(
+                    Mockito.same(statsdSource),
+                    _recordCaptor.capture());
+            Assert.assertEquals(
+                    ImmutableSet.of("MultiThreadedStatsdSourceTest.counter2"),
+                    _recordCaptor.getAllValues().get(1).getMetrics().keySet());
+        } finally {
+            statsdSource.stop();
+        }
+    }
+
+    @Test
+    public void testStopBeforeStart() {
+        final MultiThreadedStatsdSource statsdSource = new MultiThreadedStatsdSource.Builder()
+                .setName("MultiThreadedStatsdSourceTest.testStopBeforeStart")
+                .setPort(1237)
+                .build();
+        statsdSource.stop();
+        statsdSource.start();
+        statsdSource.start();
+        statsdSource.stop();
+        statsdSource.stop();
+    }
+
+    @Captor
+    private ArgumentCaptor<Record> _recordCaptor;
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.common.sources;
+
+import com.arpnetworking.metrics.common.parsers.Parser;
+import com.arpnetworking.metrics.common.parsers.exceptions.ParsingException;
+import com.arpnetworking.metrics.common.tailer.PositionStore;
+import com.arpnetworking.steno.LogBuilder;
+import com.arpnetworking.steno.Logger;
+import com.google.common.base.Charsets;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+/**
+ * Tests for the <code>ParallelLineParser</code> class.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public class ParallelLineParserTest {
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setUp() throws ParsingException {
+        _parser = Mockito.mock(Parser.class);
+        _sink = Mockito.mock(Consumer.class);
+        _positionStore = Mockito.mock(PositionStore.class);
+        _logger = Mockito.mock(Logger.class);
+        final LogBuilder logBuilder = Mockito.mock(LogBuilder.class);
+        Mockito.when(_logger.error()).thenReturn(logBuilder);
+        Mockito.when(_logger.warn()).thenReturn(logBuilder);
+        Mockito.when(logBuilder.setMessage(Mockito.anyString())).thenReturn(logBuilder);
+        Mockito.when(logBuilder.addData(Mockito.anyString(), Mockito.any())).thenReturn(logBuilder);
+        Mockito.when(logBuilder.setThrowable(Mockito.any(Throwable.class))).thenReturn(logBuilder);
+
+        _release = new CountDownLatch(1);
+        Mockito.when(_parser.parse(Mockito.any())).thenAnswer(invocation -> {
+            // CHECKSTYLE.OFF: IllegalInstantiation - This is ok for String from byte[]
+            final String line = new String(invocation.<byte[]>getArgument(0), Charsets.UTF_8);
+            // CHECKSTYLE.ON: IllegalInstantiation
+            if (BLOCKED.equals(line)) {
+                _release.await();
+            }
+            if (INVALID.equals(line)) {
+                throw new ParsingException("Invalid line", invocation.<byte[]>getArgument(0));
+            }
+            if (CRASH.equals(line)) {
+                throw new IllegalStateException("Parser failure");
+            }
+            return line;
+        });
+        Mockito.doThrow(new IllegalStateException("Sink failure")).when(_sink).accept(POISON);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        _release.countDown();
+        if (_lineParser != null) {
+            _lineParser.shutdown(TIMEOUT);
+        }
+    }
+
+    @Test
+    public void testCheckpointWithoutPendingLines() {
+        _lineParser = createLineParser(true);
+        _lineParser.getPositionStore().setPosition("hash", 123);
+        Mockito.verify(_positionStore).setPosition("hash", 123);
+    }
+
+    @Test
+    public void testCheckpointHeldForEarlierLines() throws ParsingException {
+        _lineParser = createLineParser(true);
+        final PositionStore positionStore = _lineParser.getPositionStore();
+        _lineParser.add(bytes(BLOCKED));
+        positionStore.setPosition("hash", 8);
+        _lineParser.add(bytes("second"));
+        positionStore.setPosition("hash", 15);
+
+        Mockito.verify(_parser, Mockito.timeout(TIMEOUT)).parse(bytes("second"));
+        Mockito.verify(_sink, Mockito.after(SETTLE).never()).accept(Mockito.any());
+        Mockito.verify(_positionStore, Mockito.never()).setPosition(Mockito.anyString(), Mockito.anyLong());
+
+        _release.countDown();
+        Mockito.verify(_positionStore, Mockito.timeout(TIMEOUT)).setPosition("hash", 15);
+        final InOrder inOrder = Mockito.inOrder(_sink, _positionStore);
+        inOrder.verify(_sink).accept(BLOCKED);
+        inOrder.verify(_sink).accept("second");
+        inOrder.verify(_positionStore).setPosition("hash", 15);
+        Mockito.verify(_positionStore).setPosition("hash", 8);
+    }
+
+    @Test
+    public void testUnorderedEmitsBeforeEarlierLines() throws ParsingException {
+        _lineParser = createLineParser(false);
+        final PositionStore positionStore = _lineParser.getPositionStore();
+        _lineParser.add(bytes(BLOCKED));
+        positionStore.setPosition("hash", 8);
+        _lineParser.add(bytes("second"));
+        positionStore.setPosition("hash", 15);
+
+        Mockito.verify(_sink, Mockito.timeout(TIMEOUT)).accept("second");
+        Mockito.verify(_positionStore, Mockito.after(SETTLE).never()).setPosition(Mockito.anyString(), Mockito.anyLong());
+
+        _release.countDown();
+        Mockito.verify(_sink, Mockito.timeout(TIMEOUT)).accept(BLOCKED);
+        Mockito.verify(_positionStore, Mockito.timeout(TIMEOUT)).setPosition("hash", 15);
+    }
+
+    @Test
+    public void testPartialBatchCheckpointedOnFlush() throws InterruptedException {
+        _lineParser = createLineParser(true, 2, 10);
+        final PositionStore positionStore = _lineParser.getPositionStore();
+        _lineParser.add(bytes("first"));
+        positionStore.setPosition("hash", 6);
+        _lineParser.add(bytes(INVALID));
+        positionStore.setPosition("hash", 14);
+        Mockito.verify(_positionStore, Mockito.after(SETTLE).never()).setPosition(Mockito.anyString(), Mockito.anyLong());
+
+        _lineParser.flush();
+        Mockito.verify(_sink, Mockito.timeout(TIMEOUT)).accept("first");
+        Mockito.verify(_positionStore, Mockito.timeout(TIMEOUT)).setPosition("hash", 14);
+        // Only the latest checkpoint within a batch is kept
+        Mockito.verify(_positionStore, Mockito.never()).setPosition("hash", 6);
+        Mockito.verify(_sink, Mockito.times(1)).accept(Mockito.any());
+    }
+
+    @Test
+    public void testUnexpectedFailuresDoNotStall() {
+        _lineParser = createLineParser(true);
+        final PositionStore positionStore = _lineParser.getPositionStore();
+        _lineParser.add(bytes(CRASH));
+        positionStore.setPosition("hash", 6);
+        _lineParser.add(bytes(POISON));
+        positionStore.setPosition("hash", 13);
+        _lineParser.add(bytes("third"));
+        positionStore.setPosition("hash", 19);
+
+        Mockito.verify(_positionStore, Mockito.timeout(TIMEOUT)).setPosition("hash", 19);
+        final InOrder inOrder = Mockito.inOrder(_sink);
+        inOrder.verify(_sink).accept(POISON);
+        inOrder.verify(_sink).accept("third");
+        Mockito.verify(_sink, Mockito.times(2)).accept(Mockito.any());
+    }
+
+    @Test
+    public void testShutdownTimeoutSkipsLateCheckpoints() throws InterruptedException {
+        _lineParser = createLineParser(true);
+        _lineParser.add(bytes(BLOCKED));
+        _lineParser.getPositionStore().setPosition("hash", 8);
+
+        Assert.assertFalse(_lineParser.shutdown(SETTLE));
+        _release.countDown();
+        Mockito.verify(_sink, Mockito.timeout(TIMEOUT)).accept(BLOCKED);
+        Mockito.verify(_positionStore, Mockito.after(SETTLE).never()).setPosition(Mockito.anyString(), Mockito.anyLong());
+    }
+
+    @Test
+    public void testLinesAfterShutdownAreNotCheckpointed() throws InterruptedException {
+        _lineParser = createLineParser(true);
+        _lineParser.add(bytes("first"));
+        _lineParser.getPositionStore().setPosition("hash", 6);
+        Assert.assertTrue(_lineParser.shutdown(TIMEOUT));
+        Mockito.verify(_positionStore).setPosition("hash", 6);
+
+        _lineParser.add(bytes("late"));
+        _lineParser.getPositionStore().setPosition("hash", 11);
+        _lineParser.flush();
+        Mockito.verify(_sink, Mockito.never()).accept("late");
+        Mockito.verify(_positionStore, Mockito.never()).setPosition("hash", 11);
+    }
+
+    private ParallelLineParser<Object> createLineParser(final boolean preserveOrder) {
+        return createLineParser(preserveOrder, 2, 1);
+    }
+
+    private ParallelLineParser<Object> createLineParser(
+            final boolean preserveOrder,
+            final int threads,
+            final int batchSize) {
+        return new ParallelLineParser<>(
+                _parser,
+                _sink,
+                _positionStore,
+                threads,
+                batchSize,
+                preserveOrder,
+                _logger);
+    }
+
+    private static byte[] bytes(final String line) {
+        return line.getBytes(Charsets.UTF_8);
+    }
+
+    private ParallelLineParser<Object> _lineParser;
+    private Parser<Object, byte[]> _parser;
+    private Consumer<Object> _sink;
+    private PositionStore _positionStore;
+    private Logger _logger;
+    private CountDownLatch _release;
+
+    private static final String BLOCKED = "blocked";
+    private static final String INVALID = "invalid";
+    private static final String CRASH = "crash";
+    private static final String POISON = "poison";
+    private static final int TIMEOUT = 10000;
+    private static final int SETTLE = 200;
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.common.sources;
+
+import com.arpnetworking.metrics.mad.model.DefaultMetric;
+import com.arpnetworking.metrics.mad.model.DefaultRecord;
+import com.arpnetworking.metrics.mad.model.Metric;
+import com.arpnetworking.metrics.mad.model.Record;
+import com.arpnetworking.tsdcore.model.MetricType;
+import com.arpnetworking.tsdcore.model.Quantity;
+import com.arpnetworking.tsdcore.model.Unit;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for the <code>StatsdPreAggregator</code> class.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public final class StatsdPreAggregatorTest {
+
+    @Test
+    public void testCounterSum() {
+        final StatsdPreAggregator preAggregator = new StatsdPreAggregator();
+        preAggregator.add(createRecord("counter", MetricType.COUNTER, 1, null, ImmutableMap.of()));
+        preAggregator.add(createRecord("counter", MetricType.COUNTER, 2, null, ImmutableMap.of()));
+        preAggregator.add(createRecord("counter", MetricType.COUNTER, 3, null, ImmutableMap.of()));
+
+        final Record record = Iterables.getOnlyElement(flush(preAggregator));
+        Assert.assertEquals(FIRST, record.getTime());
+        assertValues(record, "counter", MetricType.COUNTER, 6);
+        Assert.assertEquals(0, preAggregator.size());
+    }
+
+    @Test
+    public void testGaugeLast() {
+        final StatsdPreAggregator preAggregator = new StatsdPreAggregator();
+        preAggregator.add(createRecord("gauge", MetricType.GAUGE, 5, null, ImmutableMap.of()));
+        preAggregator.add(createRecord("gauge", MetricType.GAUGE, 3, null, ImmutableMap.of()));
+        preAggregator.add(createRecord("gauge", MetricType.GAUGE, 4, null, ImmutableMap.of()));
+
+        assertValues(Iterables.getOnlyElement(flush(preAggregator)), "gauge", MetricType.GAUGE, 4);
+    }
+
+    @Test
+    public void testTimerBatch() {
+        final StatsdPreAggregator preAggregator = new StatsdPreAggregator();
+        for (int i = 0; i < 20; ++i) {
+            preAggregator.add(createRecord("timer", MetricType.TIMER, i, Unit.MILLISECOND, ImmutableMap.of()));
+        }
+
+        final Record record = Iterables.getOnlyElement(flush(preAggregator));
+        final Metric metric = record.getMetrics().get("timer");
+        Assert.assertEquals(MetricType.TIMER, metric.getType());
+        Assert.assertEquals(20, metric.getValues().size());
+        for (int i = 0; i < 20; ++i) {
+            final Quantity quantity = metric.getValues().get(i);
+            Assert.assertEquals(i, Unit.MILLISECOND.convert(quantity.getValue(), quantity.getUnit().get()), 0.000001);
+        }
+    }
+
+    @Test
+    public void testKeys() {
+        final StatsdPreAggregator preAggregator = new StatsdPreAggregator();
+        preAggregator.add(createRecord("metric", MetricType.COUNTER, 1, null, ImmutableMap.of()));
+        preAggregator.add(createRecord("metric", MetricType.COUNTER, 2, null, ImmutableMap.of("host", "a")));
+        preAggregator.add(createRecord("metric", MetricType.COUNTER, 3, null, ImmutableMap.of("host", "b")));
+        preAggregator.add(createRecord("metric", MetricType.TIMER, 4, null, ImmutableMap.of()));
+        preAggregator.add(createRecord("metric", MetricType.TIMER, 5, Unit.MILLISECOND, ImmutableMap.of()));
+        preAggregator.add(createRecord("other", MetricType.COUNTER, 6, null, ImmutableMap.of()));
+        preAggregator.add(createRecord("metric", MetricType.COUNTER, 7, null, ImmutableMap.of("host", "a")));
+        Assert.assertEquals(6, preAggregator.size());
+
+        final List<Record> records = flush(preAggregator);
+        Assert.assertEquals(6, records.size());
+        Assert.assertEquals(ImmutableMap.of("host", "a"), records.get(1).getDimensions());
+        assertValues(records.get(1), "metric", MetricType.COUNTER, 9);
+        Assert.assertEquals(ImmutableMap.of("host", "b"), records.get(2).getDimensions());
+        assertValues(records.get(2), "metric", MetricType.COUNTER, 3);
+        Assert.assertEquals(
+                records.stream().map(Record::getId).distinct().count(),
+                records.size());
+    }
+
+    @Test
+    public void testFlushEmpty() {
+        final StatsdPreAggregator preAggregator = new StatsdPreAggregator();
+        Assert.assertTrue(flush(preAggregator).isEmpty());
+        preAggregator.add(createRecord("counter", MetricType.COUNTER, 1, null, ImmutableMap.of()));
+        Assert.assertEquals(1, flush(preAggregator).size());
+        Assert.assertTrue(flush(preAggregator).isEmpty());
+    }
+
+    private static List<Record> flush(final StatsdPreAggregator preAggregator) {
+        final List<Record> records = Lists.newArrayList();
+        preAggregator.flush(records::add);
+        return records;
+    }
+
+    private static void assertValues(
+            final Record record,
+            final String name,
+            final MetricType type,
+            final double... values) {
+        final Metric metric = record.getMetrics().get(name);
+        Assert.assertNotNull(metric);
+        Assert.assertEquals(type, metric.getType());
+        Assert.assertEquals(
+                Arrays.stream(values).boxed().collect(Collectors.toList()),
+                metric.getValues().stream().map(Quantity::getValue).collect(Collectors.toList()));
+    }
+
+    private Record createRecord(
+            final String name,
+            final MetricType type,
+            final double value,
+            final Unit unit,
+            final ImmutableMap<String, String> dimensions) {
+        final ZonedDateTime time = _first ? FIRST : FIRST.plusSeconds(1);
+        _first = false;
+        return new DefaultRecord.Builder()
+                .setId(UUID.randomUUID().toString())
+                .setTime(time)
+                .setDimensions(dimensions)
+                .setMetrics(ImmutableMap.of(
+                        name,
+                        new DefaultMetric.Builder()
+                                .setType(type)
+                                .setValues(ImmutableList.of(
+                                        new Quantity.Builder()
+                                                .setValue(value)
+                                                .setUnit(unit)
+                                                .build()))
+                                .build()))
+                .build();
+    }
+
+    private boolean _first = true;
+
+    private static final ZonedDateTime FIRST = ZonedDateTime.parse("2018-01-01T00:00:00Z");
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.common.tailer;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Tests for the <code>FilePositionStore</code> class.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public class FilePositionStoreTest {
+
+    @Before
+    public void setUp() throws IOException {
+        final Path directory = Files.createDirectories(Paths.get("./target/tmp/filter/FilePositionStoreTest"));
+        _file = Files.createTempFile(directory, "", ".state");
+        Files.deleteIfExists(_file);
+    }
+
+    @Test
+    public void testSharedByConcurrentTailers() throws IOException, InterruptedException, ExecutionException {
+        final FilePositionStore store = new FilePositionStore.Builder()
+                .setFile(_file)
+                .setFlushInterval(Duration.ZERO)
+                .build();
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            // Every update flushes so concurrent tailers contend on the state file
+            final List<Future<?>> futures = IntStream.range(0, THREADS)
+                    .mapToObj(i -> executor.submit(() -> {
+                        for (long position = 1; position <= UPDATES; ++position) {
+                            store.setPosition("file-" + i, position);
+                        }
+                    }))
+                    .collect(Collectors.toList());
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        store.close();
+
+        final FilePositionStore restored = new FilePositionStore.Builder().setFile(_file).build();
+        for (int i = 0; i < THREADS; ++i) {
+            Assert.assertEquals(Optional.of((long) UPDATES), restored.getPosition("file-" + i));
+        }
+        Assert.assertFalse(Files.exists(Paths.get(_file.toAbsolutePath().toString() + ".tmp")));
+    }
+
+    private Path _file;
+
+    private static final int THREADS = 8;
+    private static final int UPDATES = 200;
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.common.tailer;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Tests for the <code>MappedFilePositionStore</code> class.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public class MappedFilePositionStoreTest {
+
+    @Before
+    public void setUp() throws IOException {
+        final Path directory = Files.createDirectories(Paths.get("./target/tmp/filter/MappedFilePositionStoreTest"));
+        _file = Files.createTempFile(directory, "", ".state");
+        Files.deleteIfExists(_file);
+    }
+
+    @Test
+    public void testSetAndGetPosition() throws IOException {
+        try (MappedFilePositionStore store = new MappedFilePositionStore.Builder().setFile(_file).build()) {
+            Assert.assertEquals(Optional.empty(), store.getPosition(HASH_1));
+            store.setPosition(HASH_1, 123);
+            store.setPosition(HASH_2, 456);
+            store.setPosition(HASH_1, 789);
+            Assert.assertEquals(Optional.of(789L), store.getPosition(HASH_1));
+            Assert.assertEquals(Optional.of(456L), store.getPosition(HASH_2));
+        }
+    }
+
+    @Test
+    public void testPositionRestoredOnOpen() throws IOException {
+        try (MappedFilePositionStore store = new MappedFilePositionStore.Builder().setFile(_file).build()) {
+            store.setPosition(HASH_1, 123);
+            store.setPosition(HASH_2, 456);
+        }
+        try (MappedFilePositionStore store = new MappedFilePositionStore.Builder().setFile(_file).build()) {
+            Assert.assertEquals(Optional.of(123L), store.getPosition(HASH_1));
+            Assert.assertEquals(Optional.of(456L), store.getPosition(HASH_2));
+        }
+    }
+
+    @Test
+    public void testPositionVisibleWithoutClose() throws IOException {
+        final MappedFilePositionStore writer = new MappedFilePositionStore.Builder()
+                .setFile(_file)
+                .setFlushInterval(Duration.ofDays(1))
+                .build();
+        writer.setPosition(HASH_1, 123);
+        try (MappedFilePositionStore store = new MappedFilePositionStore.Builder().setFile(_file).build()) {
+            Assert.assertEquals(Optional.of(123L), store.getPosition(HASH_1));
+        }
+        writer.close();
+    }
+
+    @Test
+    public void testExpiredPositionsDiscardedOnOpen() throws IOException, InterruptedException {
+        try (MappedFilePositionStore store = new MappedFilePositionStore.Builder().setFile(_file).build()) {
+            store.setPosition(HASH_1, 123);
+        }
+        Thread.sleep(10);
+        try (MappedFilePositionStore store = new MappedFilePositionStore.Builder()
+                .setFile(_file)
+                .setRetention(Duration.ofMillis(5))
+                .build()) {
+            Assert.assertEquals(Optional.empty(), store.getPosition(HASH_1));
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUpdatedReplacedWhenFull() throws IOException, InterruptedException {
+        try (MappedFilePositionStore store = new MappedFilePositionStore.Builder()
+                .setFile(_file)
+                .setCapacity(2)
+                .build()) {
+            store.setPosition(HASH_1, 1);
+            Thread.sleep(5);
+            store.setPosition(HASH_2, 2);
+            Thread.sleep(5);
+            store.setPosition(HASH_1, 3);
+            store.setPosition(HASH_3, 4);
+            Assert.assertEquals(Optional.of(3L), store.getPosition(HASH_1));
+            Assert.assertEquals(Optional.empty(), store.getPosition(HASH_2));
+            Assert.assertEquals(Optional.of(4L), store.getPosition(HASH_3));
+        }
+        try (MappedFilePositionStore store = new MappedFilePositionStore.Builder()
+                .setFile(_file)
+                .setCapacity(2)
+                .build()) {
+            Assert.assertEquals(Optional.of(3L), store.getPosition(HASH_1));
+            Assert.assertEquals(Optional.empty(), store.getPosition(HASH_2));
+            Assert.assertEquals(Optional.of(4L), store.getPosition(HASH_3));
+        }
+    }
+
+    @Test
+    public void testUnrecognizedFileDiscarded() throws IOException {
+        Files.write(_file, "{\"ABC\":{\"position\":123}}".getBytes(StandardCharsets.UTF_8));
+        try (MappedFilePositionStore store = new MappedFilePositionStore.Builder().setFile(_file).build()) {
+            Assert.assertEquals(Optional.empty(), store.getPosition("ABC"));
+            store.setPosition(HASH_1, 123);
+        }
+        try (MappedFilePositionStore store = new MappedFilePositionStore.Builder().setFile(_file).build()) {
+            Assert.assertEquals(Optional.of(123L), store.getPosition(HASH_1));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIdentifierTooLong() throws IOException {
+        try (MappedFilePositionStore store = new MappedFilePositionStore.Builder().setFile(_file).build()) {
+            store.setPosition(HASH_1 + HASH_2, 123);
+        }
+    }
+
+    @Test
+    public void testEvictionByConcurrentTailers() throws IOException, InterruptedException, ExecutionException {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try (MappedFilePositionStore store = new MappedFilePositionStore.Builder()
+                .setFile(_file)
+                .setCapacity(THREADS / 2)
+                .build()) {
+            // Each tailer encodes its index in the position so a write to a
+            // reassigned slot shows up as another tailer's position
+            final List<Future<?>> futures = IntStream.range(0, THREADS)
+                    .mapToObj(i -> executor.submit(() -> {
+                        for (long update = 1; update <= UPDATES; ++update) {
+                            final long position = i * UPDATES * 10L + update;
+                            store.setPosition("file-" + i, position);
+                            final Optional<Long> stored = store.getPosition("file-" + i);
+                            if (stored.isPresent() && stored.get() / (UPDATES * 10L) != i) {
+                                throw new AssertionError("Position of file-" + i + " overwritten: " + stored.get());
+                            }
+                        }
+                    }))
+                    .collect(Collectors.toList());
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private Path _file;
+
+    private static final String HASH_1 = "0CC175B9C0F1B6A831C399E269772661";
+    private static final String HASH_2 = "92EB5FFEE6AE2FEC3AD71C777531578F";
+    private static final String HASH_3 = "4A8A08F09D37B73795649038408B5F33";
+    private static final int THREADS = 8;
+    private static final int UPDATES = 2000;
+}
@@ -21,6 +21,7 @@ import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,18 +29,24 @@ import org.slf4j.LoggerFactory;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import javax.xml.bind.DatatypeConverter;
 
 /**
  * Tests for the <code>StatefulTailer</code> class.
@@ -154,6 +161,55 @@ public class StatefulTailerTest {
         }
     }
 
+    @Test
+    public void testReadDataCarriageReturns() throws IOException, InterruptedException {
+        final BufferedWriter writer = Files.newBufferedWriter(_file, Charsets.UTF_8, StandardOpenOption.CREATE_NEW);
+        writer.write("a\r\rb\r\r\nc\n");
+        writer.close();
+        _executor.execute(_tailer);
+        _readTrigger.waitForWait();
+        _readTrigger.disable();
+        _tailer.stop();
+        _executor.shutdown();
+        _executor.awaitTermination(EXECUTOR_TERMINATE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+
+        final InOrder inOrder = Mockito.inOrder(_listener);
+        inOrder.verify(_listener).handle("a\r".getBytes(Charsets.UTF_8));
+        inOrder.verify(_listener).handle("b\r".getBytes(Charsets.UTF_8));
+        inOrder.verify(_listener).handle("c".getBytes(Charsets.UTF_8));
+        Mockito.verify(_listener, Mockito.times(3)).handle(Mockito.any(byte[].class));
+    }
+
+    @Test
+    public void testReadDataLongerThanBuffer() throws IOException, InterruptedException {
+        final BufferedWriter writer = Files.newBufferedWriter(_file, Charsets.UTF_8, StandardOpenOption.CREATE_NEW);
+        final List<String> expectedValues = Lists.newArrayList();
+        final StringBuilder longValue = new StringBuilder();
+        while (longValue.length() < 200000) {
+            longValue.append(UUID.randomUUID().toString());
+        }
+        for (int i = 0; i < 3; ++i) {
+            final String value = UUID.randomUUID().toString();
+            expectedValues.add(value);
+            writer.write(value + "\r\n");
+            expectedValues.add(longValue.toString());
+            writer.write(longValue + "\r\n");
+        }
+        writer.close();
+        _executor.execute(_tailer);
+        _readTrigger.waitForWait();
+        _readTrigger.disable();
+        _tailer.stop();
+        _executor.shutdown();
+        _executor.awaitTermination(EXECUTOR_TERMINATE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+
+        final InOrder inOrder = Mockito.inOrder(_listener);
+        for (final String expectedValue : expectedValues) {
+            inOrder.verify(_listener).handle(expectedValue.getBytes(Charsets.UTF_8));
+        }
+        Mockito.verify(_listener, Mockito.times(expectedValues.size())).handle(Mockito.any(byte[].class));
+    }
+
     @Test
     public void testTailData() throws IOException, InterruptedException {
         final BufferedWriter writer = Files.newBufferedWriter(_file, Charsets.UTF_8, StandardOpenOption.CREATE_NEW);
@@ -243,9 +299,60 @@ public class StatefulTailerTest {
         for (final String expectedValue : expectedValues) {
             Mockito.verify(_listener).handle(expectedValue.getBytes(Charsets.UTF_8));
         }
+        Mockito.verify(_listener, Mockito.atLeastOnce()).endOfData();
         Mockito.verifyNoMoreInteractions(_listener);
     }
 
+    @Test
+    public void testCheckpointPerReadBuffer() throws IOException, InterruptedException {
+        final BufferedWriter writer = Files.newBufferedWriter(_file, Charsets.UTF_8, StandardOpenOption.CREATE_NEW);
+        final List<String> expectedValues = Lists.newArrayList();
+        // 100 * (36 + 1) = 3700 bytes; 100 UUIDs of 36 characters plus line break
+        writeUuids(writer, 100, expectedValues);
+        writer.close();
+
+        _executor.execute(_tailer);
+        _readTrigger.waitForWait();
+        _readTrigger.disable();
+        _tailer.stop();
+        _executor.shutdown();
+        _executor.awaitTermination(EXECUTOR_TERMINATE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+
+        Mockito.verify(_listener, Mockito.times(100)).handle(Mockito.any(byte[].class));
+        Mockito.verify(_positionStore, Mockito.atLeastOnce()).setPosition(Mockito.anyString(), Mockito.eq(3700L));
+        Mockito.verify(_positionStore, Mockito.never()).setPosition(
+                Mockito.anyString(),
+                Mockito.longThat(position -> position != 3700L));
+    }
+
+    @Test
+    public void testCheckpointLineInterval() throws IOException, InterruptedException {
+        final StatefulTailer.Builder builder = new StatefulTailer.Builder()
+                .setListener(_listener)
+                .setFile(_file)
+                .setPositionStore(_positionStore)
+                .setReadInterval(READ_INTERVAL)
+                .setCheckpointLineInterval(40);
+        _tailer = new StatefulTailer(builder, _readTrigger);
+
+        final BufferedWriter writer = Files.newBufferedWriter(_file, Charsets.UTF_8, StandardOpenOption.CREATE_NEW);
+        final List<String> expectedValues = Lists.newArrayList();
+        writeUuids(writer, 100, expectedValues);
+        writer.close();
+
+        _executor.execute(_tailer);
+        _readTrigger.waitForWait();
+        _readTrigger.disable();
+        _tailer.stop();
+        _executor.shutdown();
+        _executor.awaitTermination(EXECUTOR_TERMINATE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+
+        final InOrder inOrder = Mockito.inOrder(_positionStore);
+        inOrder.verify(_positionStore).setPosition(Mockito.anyString(), Mockito.eq(1480L));
+        inOrder.verify(_positionStore).setPosition(Mockito.anyString(), Mockito.eq(2960L));
+        inOrder.verify(_positionStore, Mockito.atLeastOnce()).setPosition(Mockito.anyString(), Mockito.eq(3700L));
+    }
+
     @Test
     public void testReadDataWithNonZeroOffsetInLargeFile() throws IOException, InterruptedException {
         // Sufficient data for hash; 15 * (36 + 1) = 555 bytes; 15 UUIDs of 36 characters plus line break
@@ -282,6 +389,7 @@ public class StatefulTailerTest {
         for (final String expectedValue : expectedValues) {
             Mockito.verify(_listener).handle(expectedValue.getBytes(Charsets.UTF_8));
         }
+        Mockito.verify(_listener, Mockito.atLeastOnce()).endOfData();
         Mockito.verifyNoMoreInteractions(_listener);
     }
 
@@ -975,6 +1083,7 @@ public class StatefulTailerTest {
         //Mockito.verify(_listener).fileRotated();
 
         // BUG 2: Data from new file is never read
+        Mockito.verify(_listener, Mockito.atLeastOnce()).endOfData();
         Mockito.verifyNoMoreInteractions(_listener);
         // Should be:
         //for (final String expectedValue : expectedValues) {
@@ -1024,6 +1133,7 @@ public class StatefulTailerTest {
         for (final String expectedValue : expectedValues) {
             Mockito.verify(_listener).handle(expectedValue.getBytes(Charsets.UTF_8));
         }
+        Mockito.verify(_listener, Mockito.atLeastOnce()).endOfData();
         Mockito.verifyNoMoreInteractions(_listener);
     }
 
@@ -1087,9 +1197,159 @@ public class StatefulTailerTest {
         for (final String expectedValue : expectedValues) {
             Mockito.verify(_listener).handle(expectedValue.getBytes(Charsets.UTF_8));
         }
+        Mockito.verify(_listener, Mockito.atLeastOnce()).endOfData();
         Mockito.verifyNoMoreInteractions(_listener);
     }
 
+    @Test
+    public void testCatchUpRotatedCompressedFile() throws IOException, InterruptedException {
+        final List<String> rotatedValues = Lists.newArrayList();
+        final byte[] rotatedData = createUuids(20, rotatedValues);
+        final Path rotatedFile = Paths.get(_file.toString() + ".1.gz");
+        try (OutputStream stream = new GZIPOutputStream(Files.newOutputStream(rotatedFile))) {
+            stream.write(rotatedData);
+        }
+        // The first ten lines were read before the file was rotated
+        final String rotatedHash = hash(rotatedData);
+        final long readPosition = rotatedData.length / 2;
+        Mockito.when(_positionStore.getPosition(rotatedHash)).thenReturn(Optional.of(readPosition));
+
+        final BufferedWriter writer = Files.newBufferedWriter(_file, Charsets.UTF_8, StandardOpenOption.CREATE_NEW);
+        final List<String> expectedValues = Lists.newArrayList();
+        writeUuids(writer, 5, expectedValues);
+        writer.close();
+
+        final StatefulTailer tailer = new StatefulTailer(
+                new StatefulTailer.Builder()
+                        .setListener(_listener)
+                        .setFile(_file)
+                        .setPositionStore(_positionStore)
+                        .setReadInterval(READ_INTERVAL)
+                        .setCatchUpRotated(true),
+                _readTrigger);
+        _readTrigger.disable();
+        _executor.execute(tailer);
+        Mockito.verify(_listener, Mockito.timeout(10000)).handle(
+                expectedValues.get(expectedValues.size() - 1).getBytes(Charsets.UTF_8));
+        tailer.stop();
+        _executor.shutdown();
+        _executor.awaitTermination(EXECUTOR_TERMINATE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+
+        final InOrder inOrder = Mockito.inOrder(_listener);
+        for (final String rotatedValue : rotatedValues.subList(10, 20)) {
+            inOrder.verify(_listener).handle(rotatedValue.getBytes(Charsets.UTF_8));
+        }
+        for (final String expectedValue : expectedValues) {
+            inOrder.verify(_listener).handle(expectedValue.getBytes(Charsets.UTF_8));
+        }
+        for (final String rotatedValue : rotatedValues.subList(0, 10)) {
+            Mockito.verify(_listener, Mockito.never()).handle(rotatedValue.getBytes(Charsets.UTF_8));
+        }
+        Mockito.verify(_positionStore).setPosition(rotatedHash, (long) rotatedData.length);
+        Mockito.verify(_listener, Mockito.never()).handle(Mockito.any(Throwable.class));
+    }
+
+    @Test
+    public void testCatchUpRotatedFileCarriageReturns() throws IOException, InterruptedException {
+        final List<String> rotatedValues = Lists.newArrayList();
+        final StringBuilder rotatedContent = new StringBuilder();
+        for (int i = 0; i < 20; ++i) {
+            final String value = UUID.randomUUID().toString();
+            rotatedValues.add(value);
+            rotatedContent.append(value).append(i % 2 == 0 ? "\r" : "\r\n");
+        }
+        // The rotated file ends with a lone carriage return
+        rotatedContent.append("last\r");
+        rotatedValues.add("last");
+        final byte[] rotatedData = rotatedContent.toString().getBytes(Charsets.UTF_8);
+        Files.write(Paths.get(_file.toString() + ".1"), rotatedData);
+        final String rotatedHash = hash(rotatedData);
+        Mockito.when(_positionStore.getPosition(rotatedHash)).thenReturn(Optional.of(0L));
+
+        final BufferedWriter writer = Files.newBufferedWriter(_file, Charsets.UTF_8, StandardOpenOption.CREATE_NEW);
+        final List<String> expectedValues = Lists.newArrayList();
+        writeUuids(writer, 5, expectedValues);
+        writer.close();
+
+        final StatefulTailer tailer = new StatefulTailer(
+                new StatefulTailer.Builder()
+                        .setListener(_listener)
+                        .setFile(_file)
+                        .setPositionStore(_positionStore)
+                        .setReadInterval(READ_INTERVAL)
+                        .setCatchUpRotated(true),
+                _readTrigger);
+        _readTrigger.disable();
+        _executor.execute(tailer);
+        Mockito.verify(_listener, Mockito.timeout(10000)).handle(
+                expectedValues.get(expectedValues.size() - 1).getBytes(Charsets.UTF_8));
+        tailer.stop();
+        _executor.shutdown();
+        _executor.awaitTermination(EXECUTOR_TERMINATE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+
+        final InOrder inOrder = Mockito.inOrder(_listener);
+        for (final String rotatedValue : rotatedValues) {
+            inOrder.verify(_listener).handle(rotatedValue.getBytes(Charsets.UTF_8));
+        }
+        for (final String expectedValue : expectedValues) {
+            inOrder.verify(_listener).handle(expectedValue.getBytes(Charsets.UTF_8));
+        }
+        Mockito.verify(_positionStore).setPosition(rotatedHash, (long) rotatedData.length);
+        Mockito.verify(_listener, Mockito.never()).handle(Mockito.any(Throwable.class));
+    }
+
+    @Test
+    public void testCatchUpSkipsReadRotatedFile() throws IOException, InterruptedException {
+        final List<String> rotatedValues = Lists.newArrayList();
+        final byte[] rotatedData = createUuids(20, rotatedValues);
+        final Path rotatedFile = Paths.get(_file.toString() + ".1");
+        Files.write(rotatedFile, rotatedData);
+        Mockito.when(_positionStore.getPosition(hash(rotatedData))).thenReturn(Optional.of((long) rotatedData.length));
+
+        final BufferedWriter writer = Files.newBufferedWriter(_file, Charsets.UTF_8, StandardOpenOption.CREATE_NEW);
+        final List<String> expectedValues = Lists.newArrayList();
+        writeUuids(writer, 5, expectedValues);
+        writer.close();
+
+        final StatefulTailer tailer = new StatefulTailer(
+                new StatefulTailer.Builder()
+                        .setListener(_listener)
+                        .setFile(_file)
+                        .setPositionStore(_positionStore)
+                        .setReadInterval(READ_INTERVAL)
+                        .setCatchUpRotated(true),
+                _readTrigger);
+        _readTrigger.disable();
+        _executor.execute(tailer);
+        Mockito.verify(_listener, Mockito.timeout(10000)).handle(
+                expectedValues.get(expectedValues.size() - 1).getBytes(Charsets.UTF_8));
+        tailer.stop();
+        _executor.shutdown();
+        _executor.awaitTermination(EXECUTOR_TERMINATE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+
+        for (final String rotatedValue : rotatedValues) {
+            Mockito.verify(_listener, Mockito.never()).handle(rotatedValue.getBytes(Charsets.UTF_8));
+        }
+    }
+
+    private static byte[] createUuids(final int count, final List<String> values) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; ++i) {
+            final String value = UUID.randomUUID().toString();
+            values.add(value);
+            builder.append(value).append("\n");
+        }
+        return builder.toString().getBytes(Charsets.UTF_8);
+    }
+
+    private static String hash(final byte[] data) {
+        try {
+            return DatatypeConverter.printHexBinary(MessageDigest.getInstance("MD5").digest(Arrays.copyOf(data, 512)));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private static void writeUuids(final BufferedWriter writer, final int count, final List<String> values)
             throws IOException {
         for (int i = 0; i < count; ++i) {
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.common.tailer;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for the <code>TailerService</code> class.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public class TailerServiceTest {
+
+    @Before
+    public void setUp() throws IOException {
+        _directory = Files.createDirectories(Paths.get("./target/tmp/filter/TailerServiceTest"));
+    }
+
+    @After
+    public void tearDown() {
+        if (_service != null) {
+            _service.shutdown();
+        }
+    }
+
+    @Test
+    public void testPollsManyFilesOnFewThreads() throws IOException {
+        _service = new TailerService.Builder()
+                .setThreads(2)
+                .setWatchFiles(false)
+                .build();
+        final List<Path> files = Lists.newArrayList();
+        final List<TailerListener> listeners = Lists.newArrayList();
+        for (int i = 0; i < 20; ++i) {
+            final Path file = createFile("testPollsManyFilesOnFewThreads-" + i);
+            final TailerListener listener = Mockito.mock(TailerListener.class);
+            _service.start(createTailer(file, listener, Duration.ofMillis(50)));
+            files.add(file);
+            listeners.add(listener);
+        }
+        for (int i = 0; i < files.size(); ++i) {
+            append(files.get(i), "line-" + i + "\n");
+        }
+        for (int i = 0; i < files.size(); ++i) {
+            Mockito.verify(listeners.get(i), Mockito.timeout(TIMEOUT)).handle(bytes("line-" + i));
+        }
+    }
+
+    @Test
+    public void testChangeEndsWait() throws IOException, InterruptedException {
+        _service = new TailerService.Builder()
+                .setThreads(1)
+                .build();
+        final Path file = createFile("testChangeEndsWait");
+        final TailerListener listener = Mockito.mock(TailerListener.class);
+        // The read interval is longer than the verification timeout
+        _service.start(createTailer(file, listener, Duration.ofMinutes(1)));
+        Mockito.verify(listener, Mockito.timeout(TIMEOUT)).fileOpened();
+        Thread.sleep(100);
+
+        append(file, "line\n");
+        Mockito.verify(listener, Mockito.timeout(TIMEOUT)).handle(bytes("line"));
+    }
+
+    @Test
+    public void testRotation() throws IOException {
+        _service = new TailerService.Builder()
+                .setThreads(1)
+                .setWatchFiles(false)
+                .build();
+        final Path file = createFile("testRotation");
+        final TailerListener listener = Mockito.mock(TailerListener.class);
+        _service.start(createTailer(file, listener, Duration.ofMillis(50)));
+        append(file, "before\n");
+        Mockito.verify(listener, Mockito.timeout(TIMEOUT)).handle(bytes("before"));
+
+        final Path rotated = file.resolveSibling("testRotation.1.log");
+        Files.deleteIfExists(rotated);
+        Files.move(file, rotated);
+        append(rotated, "late\n");
+        Files.createFile(file);
+        append(file, "after\n");
+
+        Mockito.verify(listener, Mockito.timeout(TIMEOUT)).fileRotated();
+        Mockito.verify(listener, Mockito.timeout(TIMEOUT)).handle(bytes("late"));
+        Mockito.verify(listener, Mockito.timeout(TIMEOUT)).handle(bytes("after"));
+    }
+
+    @Test
+    public void testStop() throws IOException, InterruptedException {
+        _service = new TailerService.Builder()
+                .setThreads(1)
+                .build();
+        final Path file = createFile("testStop");
+        final TailerListener listener = Mockito.mock(TailerListener.class);
+        final StatefulTailer tailer = createTailer(file, listener, Duration.ofMillis(50));
+        _service.start(tailer);
+        append(file, "before\n");
+        Mockito.verify(listener, Mockito.timeout(TIMEOUT)).handle(bytes("before"));
+
+        _service.stop(tailer);
+        append(file, "after\n");
+        Thread.sleep(200);
+        Mockito.verify(listener, Mockito.never()).handle(bytes("after"));
+    }
+
+    @Test
+    public void testErrorBacksOffWithoutStarvingOthers() throws IOException, InterruptedException {
+        _service = new TailerService.Builder()
+                .setThreads(1)
+                .build();
+        final Path failingFile = createFile("testErrorBacksOffWithoutStarvingOthers-failing");
+        final TailerListener failingListener = Mockito.mock(TailerListener.class);
+        Mockito.doThrow(new IllegalStateException("Listener failure"))
+                .when(failingListener).handle(Mockito.any(byte[].class));
+        append(failingFile, "line\n");
+        final Path file = createFile("testErrorBacksOffWithoutStarvingOthers");
+        final TailerListener listener = Mockito.mock(TailerListener.class);
+        _service.start(createTailer(failingFile, failingListener, Duration.ofMillis(50)));
+        _service.start(createTailer(file, listener, Duration.ofMillis(50)));
+
+        // The healthy tailer shares the only thread with the failing one
+        Mockito.verify(failingListener, Mockito.timeout(TIMEOUT)).handle(Mockito.any(Throwable.class));
+        append(file, "line\n");
+        Mockito.verify(listener, Mockito.timeout(500)).handle(bytes("line"));
+
+        // A persistent error is retried with backoff instead of immediately
+        Thread.sleep(1500);
+        Mockito.verify(failingListener, Mockito.atMost(3)).handle(Mockito.any(Throwable.class));
+    }
+
+    @Test
+    public void testLargeFileDoesNotStarveOthers() throws IOException {
+        _service = new TailerService.Builder()
+                .setThreads(1)
+                .setWatchFiles(false)
+                .build();
+        final Path largeFile = createFile("testLargeFileDoesNotStarveOthers-large");
+        final StringBuilder chunk = new StringBuilder();
+        for (int i = 0; i < 1024; ++i) {
+            chunk.append(Strings.repeat("x", 1023)).append('\n');
+        }
+        for (int i = 0; i < LARGE_FILE_MEGABYTES; ++i) {
+            append(largeFile, chunk.toString());
+        }
+        final Path smallFile = createFile("testLargeFileDoesNotStarveOthers-small");
+        append(smallFile, "line\n");
+
+        // Invocations are not recorded for the millions of lines in the large file
+        final AtomicInteger largeLines = new AtomicInteger();
+        final TailerListener largeListener = Mockito.mock(TailerListener.class, Mockito.withSettings().stubOnly());
+        Mockito.doAnswer(invocation -> largeLines.incrementAndGet())
+                .when(largeListener).handle(Mockito.any(byte[].class));
+        final AtomicInteger largeLinesBeforeSmall = new AtomicInteger(-1);
+        final TailerListener listener = Mockito.mock(TailerListener.class);
+        Mockito.doAnswer(invocation -> {
+            largeLinesBeforeSmall.compareAndSet(-1, largeLines.get());
+            return null;
+        }).when(listener).handle(Mockito.any(byte[].class));
+        _service.start(createTailer(largeFile, largeListener, Duration.ofMillis(50)));
+        _service.start(createTailer(smallFile, listener, Duration.ofMillis(50)));
+
+        // The small file is read before the large file is read to the end
+        Mockito.verify(listener, Mockito.timeout(TIMEOUT)).handle(bytes("line"));
+        Assert.assertTrue(largeLinesBeforeSmall.get() < LARGE_FILE_MEGABYTES * 1024);
+    }
+
+    private StatefulTailer createTailer(final Path file, final TailerListener listener, final Duration interval) {
+        return new StatefulTailer.Builder()
+                .setFile(file)
+                .setListener(listener)
+                .setPositionStore(new NoPositionStore())
+                .setReadInterval(interval)
+                .build();
+    }
+
+    private Path createFile(final String name) throws IOException {
+        final Path file = _directory.resolve(name + ".log");
+        Files.deleteIfExists(file);
+        Files.createFile(file);
+        return file;
+    }
+
+    private static void append(final Path file, final String data) throws IOException {
+        Files.write(file, bytes(data), StandardOpenOption.APPEND, StandardOpenOption.WRITE, StandardOpenOption.SYNC);
+    }
+
+    private static byte[] bytes(final String data) {
+        return data.getBytes(Charsets.UTF_8);
+    }
+
+    private Path _directory;
+    private TailerService _service;
+
+    private static final int TIMEOUT = 10000;
+    private static final int LARGE_FILE_MEGABYTES = 48;
+}
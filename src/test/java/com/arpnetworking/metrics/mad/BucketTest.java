@@ -17,6 +17,7 @@ package com.arpnetworking.metrics.mad;
 
 import com.arpnetworking.metrics.mad.model.DefaultMetric;
 import com.arpnetworking.metrics.mad.model.DefaultRecord;
+import com.arpnetworking.tsdcore.expressions.Expression;
 import com.arpnetworking.tsdcore.model.AggregatedData;
 import com.arpnetworking.tsdcore.model.DefaultKey;
 import com.arpnetworking.tsdcore.model.Key;
@@ -25,6 +26,7 @@ import com.arpnetworking.tsdcore.model.PeriodicData;
 import com.arpnetworking.tsdcore.model.Quantity;
 import com.arpnetworking.tsdcore.model.Unit;
 import com.arpnetworking.tsdcore.sinks.Sink;
+import com.arpnetworking.tsdcore.statistics.ExpressionStatistic;
 import com.arpnetworking.tsdcore.statistics.Statistic;
 import com.arpnetworking.tsdcore.statistics.StatisticFactory;
 import com.google.common.cache.CacheBuilder;
@@ -205,6 +207,99 @@ public class BucketTest {
                                 .build()));
     }
 
+    @Test
+    public void testExpression() {
+        _bucket = new Bucket.Builder()
+                .setKey(new DefaultKey(
+                        ImmutableMap.of(
+                                Key.HOST_DIMENSION_KEY, "MyHost",
+                                Key.SERVICE_DIMENSION_KEY, "MyService",
+                                Key.CLUSTER_DIMENSION_KEY, "MyCluster")))
+                .setSink(_sink)
+                .setStart(START)
+                .setPeriod(Duration.ofMinutes(1))
+                .setSpecifiedCounterStatistics(ImmutableSet.of(SUM_STATISTIC))
+                .setSpecifiedGaugeStatistics(ImmutableSet.of(MEAN_STATISTIC))
+                .setSpecifiedTimerStatistics(ImmutableSet.of(MAX_STATISTIC))
+                .setDependentCounterStatistics(ImmutableSet.of())
+                .setDependentGaugeStatistics(ImmutableSet.of(COUNT_STATISTIC, SUM_STATISTIC))
+                .setDependentTimerStatistics(ImmutableSet.of())
+                .setSpecifiedStatistics(_specifiedStatsCache)
+                .setDependentStatistics(_dependentStatsCache)
+                .setExpressions(ImmutableList.of(
+                        new Expression.Builder()
+                                .setMetric("MyRatio")
+                                .setExpression("{MyErrors:sum} / {MyRequests:sum}")
+                                .build(),
+                        new Expression.Builder()
+                                .setMetric("MyMissing")
+                                .setExpression("{MyErrors:sum} / {MyOther:sum}")
+                                .build()))
+                .build();
+
+        addData("MyErrors", MetricType.COUNTER, ONE, 10);
+        addData("MyRequests", MetricType.COUNTER, TWO, 20);
+        addData("MyRequests", MetricType.COUNTER, TWO, 30);
+        _bucket.close();
+
+        final ArgumentCaptor<PeriodicData> dataCaptor = ArgumentCaptor.forClass(PeriodicData.class);
+        Mockito.verify(_sink).recordAggregateData(dataCaptor.capture());
+
+        final ImmutableMultimap<String, AggregatedData> data = dataCaptor.getValue().getData();
+        Assert.assertEquals(5, data.size());
+        Assert.assertTrue(data.get("MyMissing").isEmpty());
+        Assert.assertThat(
+                data.get("MyRatio"),
+                Matchers.contains(
+                        new AggregatedData.Builder()
+                                .setIsSpecified(true)
+                                .setPopulationSize(2L)
+                                .setStatistic(EXPRESSION_STATISTIC)
+                                .setValue(new Quantity.Builder().setValue(0.25).build())
+                                .build()));
+    }
+
+    @Test
+    public void testRate() {
+        _bucket = new Bucket.Builder()
+                .setKey(new DefaultKey(
+                        ImmutableMap.of(
+                                Key.HOST_DIMENSION_KEY, "MyHost",
+                                Key.SERVICE_DIMENSION_KEY, "MyService",
+                                Key.CLUSTER_DIMENSION_KEY, "MyCluster")))
+                .setSink(_sink)
+                .setStart(START)
+                .setPeriod(Duration.ofMinutes(1))
+                .setSpecifiedCounterStatistics(ImmutableSet.of(RATE_STATISTIC))
+                .setSpecifiedGaugeStatistics(ImmutableSet.of())
+                .setSpecifiedTimerStatistics(ImmutableSet.of())
+                .setDependentCounterStatistics(ImmutableSet.of(SUM_STATISTIC))
+                .setDependentGaugeStatistics(ImmutableSet.of())
+                .setDependentTimerStatistics(ImmutableSet.of())
+                .setSpecifiedStatistics(_specifiedStatsCache)
+                .setDependentStatistics(_dependentStatsCache)
+                .build();
+
+        addData("MyRequests", MetricType.COUNTER, ONE, 10);
+        addData("MyRequests", MetricType.COUNTER, TWO, 20);
+        _bucket.close();
+
+        final ArgumentCaptor<PeriodicData> dataCaptor = ArgumentCaptor.forClass(PeriodicData.class);
+        Mockito.verify(_sink).recordAggregateData(dataCaptor.capture());
+
+        final ImmutableMultimap<String, AggregatedData> data = dataCaptor.getValue().getData();
+        Assert.assertEquals(3, data.size());
+        Assert.assertThat(
+                data.get("MyRequests"),
+                Matchers.hasItem(
+                        new AggregatedData.Builder()
+                                .setIsSpecified(true)
+                                .setPopulationSize(2L)
+                                .setStatistic(RATE_STATISTIC)
+                                .setValue(new Quantity.Builder().setValue(0.05).build())
+                                .build()));
+    }
+
     @Test
     public void testToString() {
         final String asString = new Bucket.Builder()
@@ -277,6 +372,8 @@ public class BucketTest {
     private static final Statistic MAX_STATISTIC = STATISTIC_FACTORY.getStatistic("max");
     private static final Statistic SUM_STATISTIC = STATISTIC_FACTORY.getStatistic("sum");
     private static final Statistic COUNT_STATISTIC = STATISTIC_FACTORY.getStatistic("count");
+    private static final Statistic EXPRESSION_STATISTIC = ExpressionStatistic.getInstance();
+    private static final Statistic RATE_STATISTIC = STATISTIC_FACTORY.getStatistic("rate");
 
     private static final class AbsentStatisticCacheLoader extends CacheLoader<String, Optional<ImmutableSet<Statistic>>> {
         @Override
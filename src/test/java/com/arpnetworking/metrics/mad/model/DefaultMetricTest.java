@@ -0,0 +1,117 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.mad.model;
+
+import com.arpnetworking.tsdcore.model.MetricType;
+import com.arpnetworking.tsdcore.model.Quantity;
+import com.arpnetworking.tsdcore.model.Unit;
+import com.google.common.collect.ImmutableList;
+import net.sf.oval.exception.ConstraintsViolatedException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Optional;
+
+/**
+ * Tests for the <code>DefaultMetric</code> class.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public class DefaultMetricTest {
+
+    @Test
+    public void testRawValuesNormalized() {
+        final Metric metric = new DefaultMetric.Builder()
+                .setType(MetricType.TIMER)
+                .setRawValues(new double[]{1500d, 250d})
+                .setUnit(Unit.MILLISECOND)
+                .build();
+
+        Assert.assertEquals(Optional.of(Unit.SECOND), metric.getUnit());
+        Assert.assertTrue(metric.getRawValues().isPresent());
+        Assert.assertArrayEquals(new double[]{1.5d, 0.25d}, metric.getRawValues().get(), 0.000001);
+        Assert.assertEquals(
+                ImmutableList.of(
+                        new Quantity.Builder().setValue(1500d).setUnit(Unit.MILLISECOND).build(),
+                        new Quantity.Builder().setValue(250d).setUnit(Unit.MILLISECOND).build()),
+                metric.getValues());
+    }
+
+    @Test
+    public void testRawValuesWithoutUnit() {
+        final Metric metric = new DefaultMetric.Builder()
+                .setType(MetricType.COUNTER)
+                .setRawValues(new double[]{1d, 2d})
+                .build();
+
+        Assert.assertFalse(metric.getUnit().isPresent());
+        Assert.assertArrayEquals(new double[]{1d, 2d}, metric.getRawValues().get(), 0d);
+        Assert.assertEquals(
+                new DefaultMetric.Builder()
+                        .setType(MetricType.COUNTER)
+                        .setValues(ImmutableList.of(
+                                new Quantity.Builder().setValue(1d).build(),
+                                new Quantity.Builder().setValue(2d).build()))
+                        .build(),
+                metric);
+    }
+
+    @Test
+    public void testValues() {
+        final Metric metric = new DefaultMetric.Builder()
+                .setType(MetricType.GAUGE)
+                .setValues(ImmutableList.of(new Quantity.Builder().setValue(1d).build()))
+                .build();
+
+        Assert.assertFalse(metric.getRawValues().isPresent());
+        Assert.assertEquals(1, metric.getValues().size());
+    }
+
+    @Test
+    public void testToString() {
+        final String rawString = new DefaultMetric.Builder()
+                .setType(MetricType.TIMER)
+                .setRawValues(new double[]{1.5d, 0.25d})
+                .setUnit(Unit.SECOND)
+                .build()
+                .toString();
+        Assert.assertTrue(rawString, rawString.contains("RawValues=[1.5, 0.25]"));
+        Assert.assertTrue(rawString, rawString.contains("Unit=Optional[SECOND]"));
+
+        final String valuesString = new DefaultMetric.Builder()
+                .setType(MetricType.GAUGE)
+                .setValues(ImmutableList.of(new Quantity.Builder().setValue(1d).build()))
+                .build()
+                .toString();
+        Assert.assertTrue(valuesString, valuesString.contains("Values=[Quantity{"));
+    }
+
+    @Test(expected = ConstraintsViolatedException.class)
+    public void testNoValues() {
+        new DefaultMetric.Builder()
+                .setType(MetricType.GAUGE)
+                .build();
+    }
+
+    @Test(expected = ConstraintsViolatedException.class)
+    public void testBothValues() {
+        new DefaultMetric.Builder()
+                .setType(MetricType.GAUGE)
+                .setValues(ImmutableList.of())
+                .setRawValues(new double[]{})
+                .build();
+    }
+}
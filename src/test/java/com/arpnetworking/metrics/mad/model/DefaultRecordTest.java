@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.mad.model;
+
+import com.google.common.collect.ImmutableMap;
+import net.sf.oval.exception.ConstraintsViolatedException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+/**
+ * Tests for the <code>DefaultRecord</code> class.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public class DefaultRecordTest {
+
+    @Test
+    public void testExplicitId() {
+        final Record record = createBuilder().setId("MyId").build();
+        Assert.assertEquals("MyId", record.getId());
+    }
+
+    @Test
+    public void testGeneratedId() {
+        final Record record = createBuilder().build();
+        final String id = record.getId();
+        Assert.assertNotNull(id);
+        Assert.assertEquals(id, UUID.fromString(id).toString());
+        Assert.assertSame(id, record.getId());
+        Assert.assertNotEquals(id, createBuilder().build().getId());
+    }
+
+    @Test
+    public void testIdFromGenerated() {
+        final Record record = createBuilder().build();
+        final Record copy = createBuilder().setIdFrom(record).build();
+        Assert.assertEquals(record.getId(), copy.getId());
+        Assert.assertEquals(record, copy);
+
+        final Record otherRecord = createBuilder().build();
+        final Record otherCopy = createBuilder().setIdFrom(otherRecord).build();
+        Assert.assertEquals(otherCopy.getId(), otherRecord.getId());
+    }
+
+    @Test
+    public void testIdFromExplicit() {
+        final Record record = createBuilder().setId("MyId").build();
+        Assert.assertEquals("MyId", createBuilder().setIdFrom(record).build().getId());
+    }
+
+    @Test
+    public void testSetIdOverridesIdFrom() {
+        final Record record = createBuilder().build();
+        Assert.assertEquals("MyId", createBuilder().setIdFrom(record).setId("MyId").build().getId());
+    }
+
+    @Test(expected = ConstraintsViolatedException.class)
+    public void testEmptyId() {
+        createBuilder().setId("").build();
+    }
+
+    private static DefaultRecord.Builder createBuilder() {
+        return new DefaultRecord.Builder()
+                .setTime(ZonedDateTime.now())
+                .setMetrics(ImmutableMap.of());
+    }
+}
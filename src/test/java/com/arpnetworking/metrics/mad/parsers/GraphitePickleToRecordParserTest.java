@@ -0,0 +1,177 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.mad.parsers;
+
+import com.arpnetworking.metrics.common.parsers.Parser;
+import com.arpnetworking.metrics.common.parsers.exceptions.ParsingException;
+import com.arpnetworking.metrics.mad.model.Metric;
+import com.arpnetworking.metrics.mad.model.Record;
+import com.arpnetworking.tsdcore.model.MetricType;
+import com.arpnetworking.tsdcore.model.Quantity;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Resources;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for the Graphite pickle parser.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public final class GraphitePickleToRecordParserTest {
+
+    @Test
+    public void testParseProtocol0() throws ParsingException, IOException {
+        assertBatch(parseRecords("GraphitePickleParserTest/testParseProtocol0", createParser()));
+    }
+
+    @Test
+    public void testParseProtocol2() throws ParsingException, IOException {
+        assertBatch(parseRecords("GraphitePickleParserTest/testParseProtocol2", createParser()));
+    }
+
+    @Test
+    public void testParseProtocol4() throws ParsingException, IOException {
+        assertBatch(parseRecords("GraphitePickleParserTest/testParseProtocol4", createParser()));
+    }
+
+    @Test
+    public void testCarbonTagsOverrideGlobalTags() throws ParsingException, IOException {
+        final List<Record> records = parseRecords(
+                "GraphitePickleParserTest/testParseCarbonTags",
+                new GraphitePickleToRecordParser.Builder()
+                        .setGlobalTags(ImmutableMap.of("env", "test", "region", "US"))
+                        .setParseCarbonTags(true)
+                        .build());
+
+        Assert.assertEquals(2, records.size());
+
+        final Record prod = records.get(0);
+        Assert.assertEquals(
+                ImmutableMap.of("env", "prod", "dc", "a", "region", "US"),
+                prod.getDimensions());
+        Assert.assertEquals(2, prod.getMetrics().size());
+        Assert.assertEquals(1.0d, prod.getMetrics().get("foo.bar").getValues().get(0).getValue(), 0.001);
+        Assert.assertEquals(3.0d, prod.getMetrics().get("foo.baz").getValues().get(0).getValue(), 0.001);
+
+        final Record dev = records.get(1);
+        Assert.assertEquals(ImmutableMap.of("env", "dev", "region", "US"), dev.getDimensions());
+        Assert.assertEquals(1, dev.getMetrics().size());
+        Assert.assertEquals(2.0d, dev.getMetrics().get("foo.bar").getValues().get(0).getValue(), 0.001);
+    }
+
+    @Test
+    public void testCarbonTagsNotParsedByDefault() throws ParsingException, IOException {
+        final List<Record> records = parseRecords("GraphitePickleParserTest/testParseCarbonTags", createParser());
+
+        Assert.assertEquals(1, records.size());
+        Assert.assertTrue(records.get(0).getDimensions().isEmpty());
+        Assert.assertEquals(3, records.get(0).getMetrics().size());
+        Assert.assertTrue(records.get(0).getMetrics().containsKey("foo.bar;env=prod;dc=a"));
+    }
+
+    @Test
+    public void testParseUnicodeEscape() throws ParsingException, IOException {
+        final List<Record> records = parseRecords("GraphitePickleParserTest/testParseUnicodeEscape", createParser());
+
+        Assert.assertEquals(1, records.size());
+        assertValues(records.get(0).getMetrics().get("foo.\uD83D\uDE00\u00E9"), 1.23d);
+    }
+
+    @Test(expected = ParsingException.class)
+    public void testRejectsInvalidCodePoint() throws ParsingException, IOException {
+        parseRecords("GraphitePickleParserTest/testRejectsInvalidCodePoint", createParser());
+    }
+
+    @Test(expected = ParsingException.class)
+    public void testRejectsOnlyTagSeparators() throws ParsingException, IOException {
+        parseRecords(
+                "GraphitePickleParserTest/testRejectsOnlyTagSeparators",
+                new GraphitePickleToRecordParser.Builder().setParseCarbonTags(true).build());
+    }
+
+    @Test(expected = ParsingException.class)
+    public void testRejectsReduce() throws ParsingException, IOException {
+        parseRecords("GraphitePickleParserTest/testRejectsReduce", createParser());
+    }
+
+    @Test(expected = ParsingException.class)
+    public void testRejectsTruncated() throws ParsingException, IOException {
+        parseRecords("GraphitePickleParserTest/testRejectsTruncated", createParser());
+    }
+
+    @Test(expected = ParsingException.class)
+    public void testRejectsNotList() throws ParsingException, IOException {
+        parseRecords("GraphitePickleParserTest/testRejectsNotList", createParser());
+    }
+
+    @Test(expected = ParsingException.class)
+    public void testRejectsInvalidDatapoint() throws ParsingException, IOException {
+        parseRecords("GraphitePickleParserTest/testRejectsInvalidDatapoint", createParser());
+    }
+
+    private static void assertBatch(final List<Record> records) {
+        Assert.assertEquals(2, records.size());
+
+        final Record first = records.get(0);
+        Assert.assertTrue(first.getDimensions().isEmpty());
+        Assert.assertEquals(
+                ZonedDateTime.ofInstant(Instant.ofEpochMilli(1458229140000L), ZoneOffset.UTC),
+                first.getTime());
+        Assert.assertEquals(2, first.getMetrics().size());
+        assertValues(first.getMetrics().get("foo.bar"), 1.23d, 2.5d);
+        assertValues(first.getMetrics().get("foo.baz"), 7d);
+
+        final Record second = records.get(1);
+        Assert.assertEquals(
+                ZonedDateTime.ofInstant(Instant.ofEpochMilli(1458229200000L), ZoneOffset.UTC),
+                second.getTime());
+        Assert.assertEquals(1, second.getMetrics().size());
+        assertValues(second.getMetrics().get("foo.bar"), -3d);
+    }
+
+    private static void assertValues(final Metric metric, final Double... expected) {
+        Assert.assertNotNull(metric);
+        Assert.assertEquals(MetricType.GAUGE, metric.getType());
+        final List<Double> values = metric.getValues().stream().map(Quantity::getValue).collect(Collectors.toList());
+        Assert.assertArrayEquals(expected, values.toArray());
+    }
+
+    private static List<Record> parseRecords(
+            final String fileName,
+            final Parser<List<Record>, ByteBuffer> parser)
+            throws ParsingException, IOException {
+        // Frames arrive as read only buffers from the tcp source
+        return parser.parse(ByteBuffer.wrap(
+                Resources.toByteArray(
+                        Resources.getResource(
+                                GraphitePickleToRecordParserTest.class,
+                                fileName)))
+                .asReadOnlyBuffer());
+    }
+
+    private static Parser<List<Record>, ByteBuffer> createParser() {
+        return new GraphitePickleToRecordParser.Builder().build();
+    }
+}
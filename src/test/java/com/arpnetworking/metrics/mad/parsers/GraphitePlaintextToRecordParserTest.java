@@ -22,6 +22,7 @@ import com.arpnetworking.metrics.mad.model.Record;
 import com.arpnetworking.tsdcore.model.Key;
 import com.arpnetworking.tsdcore.model.MetricType;
 import com.arpnetworking.tsdcore.model.Quantity;
+import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.io.Resources;
@@ -204,6 +205,14 @@ public final class GraphitePlaintextToRecordParserTest {
                 record.getTime());
     }
 
+    @Test(expected = ParsingException.class)
+    public void testCarbonTagsOnlySeparators() throws ParsingException {
+        new GraphitePlaintextToRecordParser.Builder()
+                .setParseCarbonTags(true)
+                .build()
+                .parse(ByteBuffer.wrap(";; 1.23 1458229140".getBytes(Charsets.UTF_8)));
+    }
+
     @Test
     public void testCarbonTagsOverrideGlobalTags() throws ParsingException, IOException {
         final Record record = parseRecord(
@@ -15,6 +15,7 @@
  */
 package com.arpnetworking.metrics.mad.parsers;
 
+import com.arpnetworking.commons.jackson.databind.ObjectMapperFactory;
 import com.arpnetworking.metrics.common.parsers.exceptions.ParsingException;
 import com.arpnetworking.metrics.mad.model.Metric;
 import com.arpnetworking.metrics.mad.model.Record;
@@ -413,6 +414,34 @@ public class JsonToRecordParserV2gTest {
         Assert.assertTrue(c1.getValues().isEmpty());
     }
 
+    @Test
+    public void testParseMatchesModel() throws ParsingException, IOException {
+        final byte[] data = Resources.toByteArray(
+                Resources.getResource(JsonToRecordParserV2gTest.class, "QueryLogParserV2gTest/testParse.json"));
+        final JsonToRecordParser parser = new JsonToRecordParser.Builder().build();
+
+        final Record record = parser.parse(data);
+        final Record expected = parser.parseV2gLogLine(ObjectMapperFactory.getInstance().readTree(data));
+
+        assertRecordEquals(expected, record);
+    }
+
+    @Test
+    public void testVersionLast() throws ParsingException, IOException {
+        final Record record = parseRecord("QueryLogParserV2gTest/testVersionLast.json");
+        final Record expected = parseRecord("QueryLogParserV2gTest/testParse.json");
+
+        assertRecordEquals(expected, record);
+    }
+
+    private static void assertRecordEquals(final Record expected, final Record actual) {
+        Assert.assertEquals(expected.getId(), actual.getId());
+        Assert.assertEquals(expected.getTime(), actual.getTime());
+        Assert.assertEquals(expected.getAnnotations(), actual.getAnnotations());
+        Assert.assertEquals(expected.getDimensions(), actual.getDimensions());
+        Assert.assertEquals(expected.getMetrics(), actual.getMetrics());
+    }
+
     private static void assertValue(final Quantity quantity, final double value) {
         assertValue(quantity, value, Optional.empty());
     }
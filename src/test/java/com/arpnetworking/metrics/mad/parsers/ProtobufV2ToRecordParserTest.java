@@ -21,15 +21,19 @@ import com.arpnetworking.metrics.common.parsers.exceptions.ParsingException;
 import com.arpnetworking.metrics.mad.model.HttpRequest;
 import com.arpnetworking.metrics.mad.model.Metric;
 import com.arpnetworking.metrics.mad.model.Record;
+import com.arpnetworking.tsdcore.model.MetricType;
 import com.arpnetworking.tsdcore.model.Quantity;
 import com.arpnetworking.tsdcore.model.Unit;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.io.Resources;
+import com.inscopemetrics.client.protocol.ClientV2;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
@@ -82,6 +86,198 @@ public final class ProtobufV2ToRecordParserTest {
         Assert.assertEquals(new Quantity.Builder().setValue(1d).build(), counter.getValues().get(0));
     }
 
+    @Test
+    public void testParseDimensionsAnnotationsAndUnits() throws ParsingException {
+        final UUID uuid = UUID.randomUUID();
+        final ClientV2.RecordSet recordSet = ClientV2.RecordSet.newBuilder()
+                .addRecords(ClientV2.Record.newBuilder()
+                        .setId(toByteString(uuid))
+                        .setEndMillisSinceEpoch(1513239602974L)
+                        .addDimensions(ClientV2.DimensionEntry.newBuilder().setName("host").setValue("h1"))
+                        .addDimensions(ClientV2.DimensionEntry.newBuilder().setName("service").setValue("s1"))
+                        .addAnnotations(ClientV2.AnnotationEntry.newBuilder().setName("a").setValue("b"))
+                        .addTimers(ClientV2.MetricEntry.newBuilder()
+                                .setName("timer")
+                                .addSamples(createSample(1500d, ClientV2.Unit.Type.Value.SECOND, ClientV2.Unit.Scale.Value.MILLI))
+                                .addSamples(createSample(250L, ClientV2.Unit.Type.Value.SECOND, ClientV2.Unit.Scale.Value.MILLI)))
+                        .addGauges(ClientV2.MetricEntry.newBuilder()
+                                .setName("gauge")
+                                .addSamples(createSample(2d, ClientV2.Unit.Type.Value.BYTE, ClientV2.Unit.Scale.Value.KILO))
+                                .addSamples(createSample(3d, ClientV2.Unit.Type.Value.BYTE, ClientV2.Unit.Scale.Value.UNIT)))
+                        .addCounters(ClientV2.MetricEntry.newBuilder()
+                                .setName("counter")
+                                .addSamples(ClientV2.Quantity.newBuilder().setLongValue(7L))
+                                .addSamples(ClientV2.Quantity.newBuilder()
+                                        .setUnit(ClientV2.CompoundUnit.newBuilder()
+                                                .addNumerator(ClientV2.Unit.newBuilder()
+                                                        .setType(ClientV2.Unit.Type.Value.UNKNOWN))))
+                                .addSamples(ClientV2.Quantity.newBuilder().setDoubleValue(8d))))
+                .build();
+
+        final List<Record> records = createParser().parse(
+                new HttpRequest(ImmutableMultimap.of(), ByteString.fromArray(recordSet.toByteArray())));
+
+        Assert.assertEquals(1, records.size());
+        final Record record = records.get(0);
+        Assert.assertEquals(uuid.toString(), record.getId());
+        Assert.assertEquals(ImmutableMap.of("host", "h1", "service", "s1"), record.getDimensions());
+        Assert.assertEquals(ImmutableMap.of("a", "b"), record.getAnnotations());
+        Assert.assertEquals(3, record.getMetrics().size());
+
+        final Metric timer = record.getMetrics().get("timer");
+        Assert.assertEquals(MetricType.TIMER, timer.getType());
+        Assert.assertEquals(
+                ImmutableList.of(
+                        new Quantity.Builder().setValue(1500d).setUnit(Unit.MILLISECOND).build(),
+                        new Quantity.Builder().setValue(250d).setUnit(Unit.MILLISECOND).build()),
+                timer.getValues());
+        Assert.assertTrue(timer.getRawValues().isPresent());
+
+        final Metric gauge = record.getMetrics().get("gauge");
+        Assert.assertEquals(MetricType.GAUGE, gauge.getType());
+        Assert.assertEquals(
+                ImmutableList.of(
+                        new Quantity.Builder().setValue(2d).setUnit(Unit.KILOBYTE).build(),
+                        new Quantity.Builder().setValue(3d).setUnit(Unit.BYTE).build()),
+                gauge.getValues());
+
+        final Metric counter = record.getMetrics().get("counter");
+        Assert.assertEquals(MetricType.COUNTER, counter.getType());
+        Assert.assertEquals(
+                ImmutableList.of(
+                        new Quantity.Builder().setValue(7d).build(),
+                        new Quantity.Builder().setValue(8d).build()),
+                counter.getValues());
+    }
+
+    @Test
+    public void testParseFragmentedBody() throws ParsingException, IOException {
+        final byte[] bytes =
+                Resources.toByteArray(Resources.getResource(ProtobufV2ToRecordParserTest.class, "ProtobufV2ParserTest/testSingleRecord"));
+        ByteString body = ByteString.empty();
+        for (final byte b : bytes) {
+            body = body.concat(ByteString.fromArray(new byte[]{b}));
+        }
+
+        final List<Record> records = createParser().parse(new HttpRequest(ImmutableMultimap.of(), body));
+
+        Assert.assertEquals(1, records.size());
+        Assert.assertEquals(UUID.fromString("142949d2-c0fc-469e-9958-7d2be2c49fa5"), UUID.fromString(records.get(0).getId()));
+        Assert.assertEquals(3, records.get(0).getMetrics().size());
+    }
+
+    @Test
+    public void testNamesInterned() throws ParsingException {
+        final ClientV2.RecordSet recordSet = ClientV2.RecordSet.newBuilder()
+                .addRecords(createRecord("metric", "dimension"))
+                .build();
+        final byte[] bytes = recordSet.toByteArray();
+        final Parser<List<Record>, HttpRequest> parser = createParser();
+
+        final Record first = parser.parse(new HttpRequest(ImmutableMultimap.of(), ByteString.fromArray(bytes))).get(0);
+        final Record second = parser.parse(new HttpRequest(ImmutableMultimap.of(), ByteString.fromArray(bytes))).get(0);
+
+        Assert.assertSame(
+                first.getMetrics().keySet().iterator().next(),
+                second.getMetrics().keySet().iterator().next());
+        Assert.assertSame(
+                first.getDimensions().keySet().iterator().next(),
+                second.getDimensions().keySet().iterator().next());
+    }
+
+    @Test
+    public void testMissingIdGenerated() throws ParsingException {
+        final ClientV2.RecordSet recordSet = ClientV2.RecordSet.newBuilder()
+                .addRecords(createRecord("metric", "dimension").toBuilder().clearId())
+                .build();
+
+        final List<Record> records = createParser().parse(
+                new HttpRequest(ImmutableMultimap.of(), ByteString.fromArray(recordSet.toByteArray())));
+
+        Assert.assertEquals(1, records.size());
+        Assert.assertNotNull(UUID.fromString(records.get(0).getId()));
+    }
+
+    @Test(expected = ParsingException.class)
+    public void testUnsupportedUnit() throws ParsingException {
+        final ClientV2.RecordSet recordSet = ClientV2.RecordSet.newBuilder()
+                .addRecords(ClientV2.Record.newBuilder()
+                        .setId(toByteString(UUID.randomUUID()))
+                        .addGauges(ClientV2.MetricEntry.newBuilder()
+                                .setName("gauge")
+                                .addSamples(createSample(1d, ClientV2.Unit.Type.Value.DEGREE, ClientV2.Unit.Scale.Value.KIBI))))
+                .build();
+
+        createParser().parse(new HttpRequest(ImmutableMultimap.of(), ByteString.fromArray(recordSet.toByteArray())));
+    }
+
+    @Test(expected = ParsingException.class)
+    public void testDuplicateMetric() throws ParsingException {
+        final ClientV2.Record record = createRecord("metric", "dimension");
+        final ClientV2.RecordSet recordSet = ClientV2.RecordSet.newBuilder()
+                .addRecords(record.toBuilder().addTimers(record.getCounters(0)))
+                .build();
+
+        createParser().parse(new HttpRequest(ImmutableMultimap.of(), ByteString.fromArray(recordSet.toByteArray())));
+    }
+
+    @Test(expected = ParsingException.class)
+    public void testTruncatedBody() throws ParsingException {
+        final byte[] bytes = ClientV2.RecordSet.newBuilder()
+                .addRecords(createRecord("metric", "dimension"))
+                .build()
+                .toByteArray();
+
+        createParser().parse(new HttpRequest(ImmutableMultimap.of(), ByteString.fromArray(bytes, 0, bytes.length - 3)));
+    }
+
+    private static ClientV2.Record createRecord(final String metricName, final String dimensionName) {
+        return ClientV2.Record.newBuilder()
+                .setId(toByteString(UUID.randomUUID()))
+                .setEndMillisSinceEpoch(1513239602974L)
+                .addDimensions(ClientV2.DimensionEntry.newBuilder().setName(dimensionName).setValue("value"))
+                .addCounters(ClientV2.MetricEntry.newBuilder()
+                        .setName(metricName)
+                        .addSamples(ClientV2.Quantity.newBuilder().setDoubleValue(1d)))
+                .build();
+    }
+
+    private static ClientV2.Quantity createSample(
+            final double value,
+            final ClientV2.Unit.Type.Value type,
+            final ClientV2.Unit.Scale.Value scale) {
+        return ClientV2.Quantity.newBuilder()
+                .setDoubleValue(value)
+                .setUnit(createUnit(type, scale))
+                .build();
+    }
+
+    private static ClientV2.Quantity createSample(
+            final long value,
+            final ClientV2.Unit.Type.Value type,
+            final ClientV2.Unit.Scale.Value scale) {
+        return ClientV2.Quantity.newBuilder()
+                .setLongValue(value)
+                .setUnit(createUnit(type, scale))
+                .build();
+    }
+
+    private static ClientV2.CompoundUnit createUnit(
+            final ClientV2.Unit.Type.Value type,
+            final ClientV2.Unit.Scale.Value scale) {
+        return ClientV2.CompoundUnit.newBuilder()
+                .addNumerator(ClientV2.Unit.newBuilder().setType(type).setScale(scale))
+                .build();
+    }
+
+    private static com.google.protobuf.ByteString toByteString(final UUID uuid) {
+        final ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putLong(uuid.getMostSignificantBits());
+        buffer.putLong(uuid.getLeastSignificantBits());
+        buffer.flip();
+        return com.google.protobuf.ByteString.copyFrom(buffer);
+    }
+
     private static List<Record> parseRecords(final String fileName) throws ParsingException, IOException {
         return parseRecords(fileName, createParser());
     }
@@ -22,9 +22,11 @@ import com.arpnetworking.metrics.mad.model.DefaultRecord;
 import com.arpnetworking.metrics.mad.model.Record;
 import com.arpnetworking.tsdcore.model.MetricType;
 import com.arpnetworking.tsdcore.model.Quantity;
+import com.arpnetworking.tsdcore.model.Unit;
 import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import org.junit.Assert;
 import org.junit.Before;
@@ -264,6 +266,166 @@ public final class StatsdToRecordParserTest {
         _parser.parse(ByteBuffer.wrap("users.online,:,service=statsd|c".getBytes(Charsets.UTF_8)));
     }
 
+    @Test
+    public void testMultipleLines() throws ParsingException {
+        final List<Record> records = _parser.parse(
+                ByteBuffer.wrap("page.views:1|c\n\nfuel.level:0.5|g\nsong.length:240|ms\n".getBytes(Charsets.UTF_8)));
+        Assert.assertEquals(3, records.size());
+        Assert.assertEquals(
+                ImmutableMap.of(
+                        "fuel.level",
+                        new DefaultMetric.Builder()
+                                .setType(MetricType.GAUGE)
+                                .setValues(ImmutableList.of(
+                                        new Quantity.Builder()
+                                                .setValue(0.5)
+                                                .build()))
+                                .build()),
+                records.get(1).getMetrics());
+        Assert.assertEquals(
+                ImmutableMap.of(
+                        "song.length",
+                        new DefaultMetric.Builder()
+                                .setType(MetricType.TIMER)
+                                .setValues(ImmutableList.of(
+                                        new Quantity.Builder()
+                                                .setValue(240.0)
+                                                .setUnit(Unit.MILLISECOND)
+                                                .build()))
+                                .build()),
+                records.get(2).getMetrics());
+    }
+
+    @Test
+    public void testSamplingRejectsOnlyLine() throws ParsingException {
+        Mockito.doReturn(0.51).when(_random).nextDouble();
+        final List<Record> records = _parser.parse(
+                ByteBuffer.wrap("song.length:240|h|@0.5\npage.views:1|c".getBytes(Charsets.UTF_8)));
+        Assert.assertEquals(1, records.size());
+        Assert.assertEquals(ImmutableSet.of("page.views"), records.get(0).getMetrics().keySet());
+    }
+
+    @Test
+    public void testRespectsPositionAndLimit() throws ParsingException {
+        final byte[] bytes = "xxpage.views:1|c|#country:chinayy".getBytes(Charsets.UTF_8);
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes, 2, bytes.length - 4).slice();
+        final ByteBuffer offsetBuffer = ByteBuffer.wrap(bytes);
+        offsetBuffer.position(2).limit(bytes.length - 2);
+        final ByteBuffer directBuffer = ByteBuffer.allocateDirect(bytes.length);
+        directBuffer.put(bytes).position(2).limit(bytes.length - 2);
+
+        for (final ByteBuffer datagram : ImmutableList.of(buffer, offsetBuffer, directBuffer.asReadOnlyBuffer())) {
+            final int position = datagram.position();
+            final int limit = datagram.limit();
+            final Record record = Iterables.getOnlyElement(_parser.parse(datagram));
+            Assert.assertEquals(ImmutableMap.of("country", "china"), record.getDimensions());
+            Assert.assertEquals(ImmutableSet.of("page.views"), record.getMetrics().keySet());
+            Assert.assertEquals(position, datagram.position());
+            Assert.assertEquals(limit, datagram.limit());
+        }
+    }
+
+    @Test
+    public void testInfluxAndDataDogTags() throws ParsingException {
+        final Record record = Iterables.getOnlyElement(
+                _parser.parse(ByteBuffer.wrap("users.online,service=statsd,host=a:1|c|#country:china".getBytes(Charsets.UTF_8))));
+        Assert.assertEquals(
+                ImmutableMap.of("service", "statsd", "host", "a", "country", "china"),
+                record.getDimensions());
+    }
+
+    @Test(expected = ParsingException.class)
+    public void testDuplicateTags() throws ParsingException {
+        _parser.parse(ByteBuffer.wrap("users.online,country=usa:1|c|#country:china".getBytes(Charsets.UTF_8)));
+    }
+
+    @Test
+    public void testUnicodeName() throws ParsingException {
+        final Record record = Iterables.getOnlyElement(
+                _parser.parse(ByteBuffer.wrap("caf\u00e9.views:1|c|#city:z\u00fcrich".getBytes(Charsets.UTF_8))));
+        Assert.assertEquals(ImmutableSet.of("caf\u00e9.views"), record.getMetrics().keySet());
+        Assert.assertEquals(ImmutableMap.of("city", "z\u00fcrich"), record.getDimensions());
+    }
+
+    @Test
+    public void testParseNumber() {
+        for (final String number : ImmutableList.of(
+                "0", "1", "-1", "+2", "0.5", ".5", "5.", "-0.0001", "123456789012345", "1234567890123456789012",
+                "0.1", "0.3", "3.14159265358979323846", "1e3", "1E-3", "2.5e+10", "1e300", "4.9e-324", "1e400",
+                "0.000000000000000000000000001", "9007199254740993")) {
+            final double expected = Double.parseDouble(number);
+            final double actual = StatsdToRecordParser.parseNumber(
+                    ByteBuffer.wrap(number.getBytes(Charsets.UTF_8)),
+                    0,
+                    number.length());
+            Assert.assertEquals(number, Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+        }
+    }
+
+    @Test
+    public void testParseNumberNegativeFallback() {
+        // These values fall back to Double.parseDouble and must keep their sign
+        for (final String number : ImmutableList.of(
+                "-1e30", "-1E-30", "-2.5e+300", "-1e400", "+1e30", "-12345678901234567", "-1234567890123456789012",
+                "-3.14159265358979323846", "-9007199254740993")) {
+            final double expected = Double.parseDouble(number);
+            final double actual = StatsdToRecordParser.parseNumber(
+                    ByteBuffer.wrap(("x:" + number).getBytes(Charsets.UTF_8)),
+                    2,
+                    number.length() + 2);
+            Assert.assertEquals(number, Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+        }
+    }
+
+    @Test
+    public void testNegativeExponentValue() throws ParsingException {
+        final Record record = Iterables.getOnlyElement(
+                _parser.parse(ByteBuffer.wrap("latency:-1e30|h".getBytes(Charsets.UTF_8))));
+        Assert.assertEquals(-1e30, record.getMetrics().get("latency").getValues().get(0).getValue(), 0.0);
+    }
+
+    @Test
+    public void testParseNumberInvalid() {
+        for (final String number : ImmutableList.of("", "-", ".", "1e", "1.2.3", "abc", "1,000", "0x10", "NaN")) {
+            try {
+                StatsdToRecordParser.parseNumber(ByteBuffer.wrap(number.getBytes(Charsets.UTF_8)), 0, number.length());
+                Assert.fail("Expected exception for: " + number);
+            } catch (final NumberFormatException e) {
+                // Expected exception
+            }
+        }
+    }
+
+    @Test(expected = ParsingException.class)
+    public void testInvalidValue() throws ParsingException {
+        _parser.parse(ByteBuffer.wrap("page.views:1x|c".getBytes(Charsets.UTF_8)));
+    }
+
+    @Test(expected = ParsingException.class)
+    public void testMissingType() throws ParsingException {
+        _parser.parse(ByteBuffer.wrap("page.views:1".getBytes(Charsets.UTF_8)));
+    }
+
+    @Test(expected = ParsingException.class)
+    public void testInvalidTrailer() throws ParsingException {
+        _parser.parse(ByteBuffer.wrap("page.views:1|c|x".getBytes(Charsets.UTF_8)));
+    }
+
+    @Test(expected = ParsingException.class)
+    public void testSampleRateNotSupported() throws ParsingException {
+        _parser.parse(ByteBuffer.wrap("fuel.level:0.5|g|@0.5".getBytes(Charsets.UTF_8)));
+    }
+
+    @Test(expected = ParsingException.class)
+    public void testSampleRateInvalid() throws ParsingException {
+        _parser.parse(ByteBuffer.wrap("page.views:1|c|@1.5".getBytes(Charsets.UTF_8)));
+    }
+
+    @Test(expected = ParsingException.class)
+    public void testNameInvalid() throws ParsingException {
+        _parser.parse(ByteBuffer.wrap("page|views:1|c".getBytes(Charsets.UTF_8)));
+    }
+
     private void assertRecordEquality(final Record expected, final Record actual) {
         Assert.assertEquals(expected.getTime(), actual.getTime());
         Assert.assertEquals(expected.getAnnotations(), actual.getAnnotations());
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.mad.sources;
+
+import com.arpnetworking.commons.jackson.databind.ObjectMapperFactory;
+import com.arpnetworking.commons.observer.Observable;
+import com.arpnetworking.commons.observer.Observer;
+import com.arpnetworking.configuration.jackson.HoconFileSource;
+import com.arpnetworking.metrics.common.sources.Source;
+import com.arpnetworking.metrics.mad.model.Record;
+import com.arpnetworking.test.TestBeanFactory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for the <code>DimensionMappingSource</code> class.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public class DimensionMappingSourceTest {
+
+    @Before
+    public void setUp() {
+        _mockObserver = Mockito.mock(Observer.class);
+        _mockSource = Mockito.mock(Source.class);
+        _builder = new DimensionMappingSource.Builder()
+                .setName("DimensionMappingSourceTest")
+                .setSource(_mockSource);
+    }
+
+    @Test
+    public void testAttach() {
+        _builder.build();
+        Mockito.verify(_mockSource).attach(Mockito.any(Observer.class));
+    }
+
+    @Test
+    public void testStartStop() {
+        final DimensionMappingSource source = _builder.build();
+        source.start();
+        Mockito.verify(_mockSource).start();
+        source.stop();
+        Mockito.verify(_mockSource).stop();
+    }
+
+    @Test
+    public void testToString() {
+        final String asString = _builder.setDropDimensions(ImmutableList.of("request_id")).build().toString();
+        Assert.assertNotNull(asString);
+        Assert.assertFalse(asString.isEmpty());
+    }
+
+    @Test
+    public void testInvalidEvent() {
+        _builder.build();
+        final Observer observer = captureObserver();
+        Mockito.reset(_mockSource);
+        observer.notify(_mockSource, "Not a Record");
+        Mockito.verifyZeroInteractions(_mockSource);
+    }
+
+    @Test
+    public void testUnchangedRecordForwarded() {
+        final Record record = createRecord(ImmutableMap.of("host", "h", "service", "s", "cluster", "c", "region", "us"));
+        final Record actual = map(_builder.setDropDimensions(ImmutableList.of("request_id")), record);
+        Assert.assertSame(record, actual);
+    }
+
+    @Test
+    public void testDropDimensions() {
+        final Record record = createRecord(ImmutableMap.of("host", "h", "request_id", "1234", "pod_uid", "abc"));
+        final Record actual = map(_builder.setDropDimensions(ImmutableList.of("request_id", "pod_uid")), record);
+        Assert.assertEquals(ImmutableMap.of("host", "h"), actual.getDimensions());
+        Assert.assertEquals(record.getId(), actual.getId());
+        Assert.assertEquals(record.getTime(), actual.getTime());
+        Assert.assertSame(record.getMetrics(), actual.getMetrics());
+    }
+
+    @Test
+    public void testRenameDimensions() {
+        final Record record = createRecord(ImmutableMap.of("host", "h", "dc", "us-east", "az", "a", "zone", "b"));
+        final Record actual = map(
+                _builder.setRenameDimensions(ImmutableMap.of("dc", "region", "az", "zone")),
+                record);
+        // The existing zone dimension takes precedence over the renamed one
+        Assert.assertEquals(ImmutableMap.of("host", "h", "region", "us-east", "zone", "b"), actual.getDimensions());
+    }
+
+    @Test
+    public void testRenameDimensionsToSameName() {
+        final DimensionMappingSource source = _builder
+                .setRenameDimensions(ImmutableMap.of("dc", "region", "datacenter", "region", "region", "location"))
+                .build();
+        // The first renamed dimension in the record is kept
+        Assert.assertEquals(
+                ImmutableMap.of("region", "us-east", "location", "eu"),
+                source.map(ImmutableMap.of("dc", "us-east", "datacenter", "us-west", "region", "eu")));
+        Assert.assertEquals(
+                ImmutableMap.of("region", "us-west"),
+                source.map(ImmutableMap.of("datacenter", "us-west", "dc", "us-east")));
+    }
+
+    @Test
+    public void testBucketDimensions() {
+        final DimensionMappingSource source = _builder
+                .setBucketDimensions(ImmutableMap.of(
+                        "status", ImmutableList.of(
+                                createBucket("^([1-5])\\d\\d$", "$1xx"),
+                                createBucket("^.*$", "other")),
+                        "path", ImmutableList.of(createBucket("^/users/\\d+", "/users/id"))))
+                .build();
+        Assert.assertEquals(
+                ImmutableMap.of("status", "2xx", "path", "/users/id/orders"),
+                source.map(ImmutableMap.of("status", "204", "path", "/users/42/orders")));
+        Assert.assertEquals(
+                ImmutableMap.of("status", "other", "path", "/health"),
+                source.map(ImmutableMap.of("status", "unknown", "path", "/health")));
+    }
+
+    @Test
+    public void testBucketDimensionsFromConfiguration() throws IOException {
+        // Configuration keys are sorted when rendered, so bucket order must come from a list
+        final File file = new File(
+                "./target/tmp/test/DimensionMappingSourceTest/testBucketDimensionsFromConfiguration.conf");
+        Files.createDirectories(file.toPath().getParent());
+        Files.write(
+                file.toPath(),
+                ("bucketDimensions={\"status\"=["
+                        + "{pattern=\"^5..$\", replacement=\"5xx\"}, "
+                        + "{pattern=\"^2..$\", replacement=\"2xx\"}, "
+                        + "{pattern=\"^.*$\", replacement=\"other\"}]}").getBytes(Charsets.UTF_8));
+        final HoconFileSource configuration = new HoconFileSource.Builder()
+                .setFile(file)
+                .build();
+        final Map<String, List<DimensionMappingSource.Bucket>> buckets = ObjectMapperFactory.getInstance().convertValue(
+                configuration.getValue("bucketDimensions").get(),
+                new TypeReference<Map<String, List<DimensionMappingSource.Bucket>>>() { });
+
+        final DimensionMappingSource source = _builder.setBucketDimensions(buckets).build();
+        Assert.assertEquals(ImmutableMap.of("status", "5xx"), source.map(ImmutableMap.of("status", "503")));
+        Assert.assertEquals(ImmutableMap.of("status", "2xx"), source.map(ImmutableMap.of("status", "200")));
+        Assert.assertEquals(ImmutableMap.of("status", "other"), source.map(ImmutableMap.of("status", "404")));
+    }
+
+    @Test
+    public void testAllowedDimensions() {
+        final DimensionMappingSource source = _builder
+                .setAllowedDimensions(ImmutableMap.of("api", ImmutableList.of("status")))
+                .setDefaultAllowedDimensions(ImmutableList.of("region"))
+                .build();
+        Assert.assertEquals(
+                ImmutableMap.of("host", "h", "service", "api", "cluster", "c", "status", "200"),
+                source.map(ImmutableMap.of(
+                        "host", "h", "service", "api", "cluster", "c", "status", "200", "region", "us")));
+        Assert.assertEquals(
+                ImmutableMap.of("host", "h", "service", "worker", "region", "us"),
+                source.map(ImmutableMap.of("host", "h", "service", "worker", "status", "200", "region", "us")));
+    }
+
+    @Test
+    public void testAllowedDimensionsOnlyForListedServices() {
+        final DimensionMappingSource source = _builder
+                .setAllowedDimensions(ImmutableMap.of("api", ImmutableList.of("status")))
+                .build();
+        final ImmutableMap<String, String> dimensions = ImmutableMap.of("service", "worker", "pod_uid", "abc");
+        Assert.assertSame(dimensions, source.map(dimensions));
+    }
+
+    private Record map(final DimensionMappingSource.Builder builder, final Record record) {
+        final Source source = builder.build();
+        source.attach(_mockObserver);
+        captureObserver().notify(_mockSource, record);
+
+        final ArgumentCaptor<Record> argument = ArgumentCaptor.forClass(Record.class);
+        Mockito.verify(_mockObserver).notify(Mockito.same(source), argument.capture());
+        return argument.getValue();
+    }
+
+    private Observer captureObserver() {
+        final ArgumentCaptor<Observer> argument = ArgumentCaptor.forClass(Observer.class);
+        Mockito.verify((Observable) _mockSource).attach(argument.capture());
+        return argument.getValue();
+    }
+
+    private static DimensionMappingSource.Bucket createBucket(final String pattern, final String replacement) {
+        return new DimensionMappingSource.Bucket.Builder()
+                .setPattern(pattern)
+                .setReplacement(replacement)
+                .build();
+    }
+
+    private static Record createRecord(final ImmutableMap<String, String> dimensions) {
+        return TestBeanFactory.createRecordBuilder()
+                .setMetrics(ImmutableMap.of("metric", TestBeanFactory.createMetric()))
+                .setDimensions(dimensions)
+                .build();
+    }
+
+    private Observer _mockObserver;
+    private Source _mockSource;
+    private DimensionMappingSource.Builder _builder;
+}
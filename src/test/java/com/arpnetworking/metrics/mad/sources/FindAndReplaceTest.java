@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.mad.sources;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tests for the <code>FindAndReplace</code> class.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public class FindAndReplaceTest {
+
+    @Test
+    public void testGetAnchoredPrefix() {
+        Assert.assertEquals(Optional.of("cpu/"), FindAndReplace.getAnchoredPrefix("^cpu/([\\d]+)/(cpu|percent)"));
+        Assert.assertEquals(Optional.of("load/load/"), FindAndReplace.getAnchoredPrefix("^load/load/((1|5|15)min)"));
+        Assert.assertEquals(Optional.of("memcached/df/cache/"), FindAndReplace.getAnchoredPrefix("^memcached/df/cache/(.*)"));
+        Assert.assertEquals(Optional.of("swap"), FindAndReplace.getAnchoredPrefix("^swap\\/"));
+        Assert.assertEquals(Optional.of("ab"), FindAndReplace.getAnchoredPrefix("^abc*"));
+        Assert.assertEquals(Optional.of("ab"), FindAndReplace.getAnchoredPrefix("^abc{2}"));
+        Assert.assertEquals(Optional.of(""), FindAndReplace.getAnchoredPrefix("^.*"));
+        Assert.assertEquals(Optional.empty(), FindAndReplace.getAnchoredPrefix("foo/([^/]*)/bar"));
+        Assert.assertEquals(Optional.empty(), FindAndReplace.getAnchoredPrefix("^foo|bar"));
+        Assert.assertEquals(Optional.empty(), FindAndReplace.getAnchoredPrefix("^foo/[|]|bar"));
+        Assert.assertEquals(Optional.empty(), FindAndReplace.getAnchoredPrefix("^foo/[]|]|bar"));
+        Assert.assertEquals(Optional.empty(), FindAndReplace.getAnchoredPrefix("^foo/\\(|bar"));
+        Assert.assertEquals(Optional.empty(), FindAndReplace.getAnchoredPrefix("^foo/\\Q(\\E|bar"));
+        Assert.assertEquals(Optional.of("foo/"), FindAndReplace.getAnchoredPrefix("^foo/[(](a|b)"));
+    }
+
+    @Test
+    public void testUnmatchedNameIsKept() {
+        final FindAndReplace findAndReplace = new FindAndReplace(createRules(), 100);
+        Assert.assertEquals(ImmutableList.of("unmatched/metric"), findAndReplace.apply("unmatched/metric"));
+    }
+
+    @Test
+    public void testEmptyReplacementsSuppressName() {
+        final FindAndReplace findAndReplace = new FindAndReplace(createRules(), 100);
+        Assert.assertEquals(ImmutableList.of(), findAndReplace.apply("memcached/ps_count/value"));
+    }
+
+    @Test
+    public void testMultipleExpressionsMatch() {
+        final FindAndReplace findAndReplace = new FindAndReplace(createRules(), 100);
+        Assert.assertEquals(
+                ImmutableList.of("cpu/user", "cpu/by_core/3/user", "any/cpu/3/cpu/user"),
+                findAndReplace.apply("cpu/3/cpu/user"));
+    }
+
+    @Test
+    public void testMatchesEvaluatingAllExpressions() {
+        final Map<Pattern, List<String>> rules = createRules();
+        final FindAndReplace findAndReplace = new FindAndReplace(rules, 0);
+        final FindAndReplace cachedFindAndReplace = new FindAndReplace(rules, 100);
+        for (final String name : NAMES) {
+            final ImmutableList<String> expected = applyAll(rules, name);
+            Assert.assertEquals(name, expected, findAndReplace.apply(name));
+            Assert.assertEquals(name, expected, cachedFindAndReplace.apply(name));
+            Assert.assertEquals(name, expected, cachedFindAndReplace.apply(name));
+        }
+    }
+
+    private static ImmutableList<String> applyAll(final Map<Pattern, List<String>> rules, final String name) {
+        boolean found = false;
+        final ImmutableList.Builder<String> names = ImmutableList.builder();
+        for (final Map.Entry<Pattern, List<String>> rule : rules.entrySet()) {
+            final Matcher matcher = rule.getKey().matcher(name);
+            if (matcher.find()) {
+                for (final String replacement : rule.getValue()) {
+                    names.add(matcher.replaceAll(replacement));
+                }
+                found = true;
+            }
+        }
+        return found ? names.build() : ImmutableList.of(name);
+    }
+
+    private static Map<Pattern, List<String>> createRules() {
+        final Map<Pattern, List<String>> rules = Maps.newLinkedHashMap();
+        rules.put(Pattern.compile("^cpu/([\\d]+)/(cpu|percent)/([^/]+)(/value)?"), ImmutableList.of("cpu/$3", "cpu/by_core/$1/$3"));
+        rules.put(Pattern.compile("^load/load/((1|5|15)min)"), ImmutableList.of("load/$1"));
+        rules.put(Pattern.compile("^memory/memory/([^/]+)(/value)?"), ImmutableList.of("memory/$1"));
+        rules.put(Pattern.compile("^memcached/ps_count/.*"), ImmutableList.of());
+        rules.put(Pattern.compile("^memcached/memcached_ops/([^/]+)(/value)?"), ImmutableList.of("memcached/operations/$1"));
+        rules.put(Pattern.compile("^uptime/uptime(/value)?"), ImmutableList.of("uptime/value"));
+        rules.put(Pattern.compile("^a+b"), ImmutableList.of("ab"));
+        rules.put(Pattern.compile("cpu/([\\d]+)"), ImmutableList.of("any/cpu/$1"));
+        rules.put(Pattern.compile("^$"), ImmutableList.of("empty"));
+        return rules;
+    }
+
+    private static final List<String> NAMES = ImmutableList.of(
+            "cpu/0/cpu/idle",
+            "cpu/12/percent/system/value",
+            "cpu/x/cpu/idle",
+            "load/load/5min",
+            "load/load/10min",
+            "memory/memory/used/value",
+            "memcached/ps_count/processes",
+            "memcached/memcached_ops/hits",
+            "uptime/uptime",
+            "uptime/uptime/value",
+            "b",
+            "ab",
+            "aaab",
+            "host/cpu/7",
+            "",
+            "unmatched");
+}
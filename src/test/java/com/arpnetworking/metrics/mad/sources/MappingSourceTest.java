@@ -18,6 +18,7 @@ package com.arpnetworking.metrics.mad.sources;
 import com.arpnetworking.commons.observer.Observable;
 import com.arpnetworking.commons.observer.Observer;
 import com.arpnetworking.metrics.common.sources.Source;
+import com.arpnetworking.metrics.mad.model.Metric;
 import com.arpnetworking.metrics.mad.model.Record;
 import com.arpnetworking.metrics.mad.sources.MappingSource.MergingMetric;
 import com.arpnetworking.test.TestBeanFactory;
@@ -91,7 +92,7 @@ public class MappingSourceTest {
         Mockito.reset(_mockSource);
         new MappingSource.MappingObserver(
                 mappingSource,
-                Collections.<Pattern, List<String>>emptyMap())
+                new FindAndReplace(Collections.<Pattern, List<String>>emptyMap(), 0))
                 .notify(OBSERVABLE, "Not a Record");
         Mockito.verifyZeroInteractions(_mockSource);
     }
@@ -126,6 +127,31 @@ public class MappingSourceTest {
         Assert.assertTrue(
                 String.format("expected=%s, actual=%s", nonMatchingRecord, actualRecord),
                 UnorderedRecordEquality.equals(nonMatchingRecord, actualRecord));
+        Assert.assertSame(nonMatchingRecord, actualRecord);
+    }
+
+    @Test
+    public void testRenameReusesUnmergedMetrics() {
+        final Metric renamedMetric = TestBeanFactory.createMetric();
+        final Metric unchangedMetric = TestBeanFactory.createMetric();
+        final Record matchingRecord = TestBeanFactory.createRecordBuilder()
+                .setMetrics(ImmutableMap.of(
+                        "foo/1/bar", renamedMetric,
+                        "does_not_match", unchangedMetric))
+                .build();
+
+        final Source mappingSource = _mappingSourceBuilder.build();
+        mappingSource.attach(_mockObserver);
+        notify(_mockSource, matchingRecord);
+
+        final ArgumentCaptor<Record> argument = ArgumentCaptor.forClass(Record.class);
+        Mockito.verify(_mockObserver).notify(Mockito.same(mappingSource), argument.capture());
+        final Record actualRecord = argument.getValue();
+
+        Assert.assertEquals(matchingRecord.getId(), actualRecord.getId());
+        Assert.assertEquals(2, actualRecord.getMetrics().size());
+        Assert.assertSame(renamedMetric, actualRecord.getMetrics().get("foo/bar"));
+        Assert.assertSame(unchangedMetric, actualRecord.getMetrics().get("does_not_match"));
     }
 
     @Test
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.tsdcore.expressions;
+
+import com.arpnetworking.tsdcore.model.AggregatedData;
+import com.arpnetworking.tsdcore.model.Quantity;
+import com.arpnetworking.tsdcore.model.Unit;
+import com.arpnetworking.tsdcore.statistics.ExpressionStatistic;
+import com.arpnetworking.tsdcore.statistics.Statistic;
+import com.arpnetworking.tsdcore.statistics.StatisticFactory;
+import com.google.common.collect.ImmutableMultimap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Optional;
+
+/**
+ * Tests for the <code>Expression</code> class.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public class ExpressionTest {
+
+    @Test
+    public void testRatio() {
+        final Expression expression = createExpression("100 * {errors:sum} / {requests:sum}");
+        Assert.assertEquals(2, expression.getReferences().size());
+
+        final Optional<AggregatedData> result = expression.evaluate(ImmutableMultimap.of(
+                "errors", createDatum(SUM_STATISTIC, 5.0, null, 5),
+                "requests", createDatum(SUM_STATISTIC, 200.0, null, 200)));
+        Assert.assertTrue(result.isPresent());
+        Assert.assertEquals(2.5, result.get().getValue().getValue(), 0.00001);
+        Assert.assertFalse(result.get().getValue().getUnit().isPresent());
+        Assert.assertEquals(EXPRESSION_STATISTIC, result.get().getStatistic());
+        Assert.assertEquals(200, result.get().getPopulationSize());
+        Assert.assertTrue(result.get().isSpecified());
+    }
+
+    @Test
+    public void testPrecedenceAndParentheses() {
+        final ImmutableMultimap<String, AggregatedData> data = ImmutableMultimap.of(
+                "foo", createDatum(SUM_STATISTIC, 4.0, null, 1));
+        Assert.assertEquals(
+                14.0,
+                createExpression("2 + 3 * {foo:sum}").evaluate(data).get().getValue().getValue(),
+                0.00001);
+        Assert.assertEquals(
+                20.0,
+                createExpression("(2 + 3) * {foo:sum}").evaluate(data).get().getValue().getValue(),
+                0.00001);
+        Assert.assertEquals(
+                -2.0,
+                createExpression("-{foo:sum} / 2").evaluate(data).get().getValue().getValue(),
+                0.00001);
+        Assert.assertEquals(
+                3.0,
+                createExpression("{foo:sum} - 1e0").evaluate(data).get().getValue().getValue(),
+                0.00001);
+    }
+
+    @Test
+    public void testSharedReference() {
+        final Expression expression = createExpression("{foo:sum} * {foo:sum} + {foo:count}");
+        Assert.assertEquals(2, expression.getReferences().size());
+    }
+
+    @Test
+    public void testUnits() {
+        final Optional<AggregatedData> result = createExpression("{latency:max} / {latency:min}").evaluate(
+                ImmutableMultimap.of(
+                        "latency", createDatum(MAX_STATISTIC, 2.0, Unit.SECOND, 10),
+                        "latency", createDatum(MIN_STATISTIC, 500.0, Unit.MILLISECOND, 10)));
+        Assert.assertTrue(result.isPresent());
+        Assert.assertEquals(4.0, result.get().getValue().getValue(), 0.00001);
+        Assert.assertFalse(result.get().getValue().getUnit().isPresent());
+    }
+
+    @Test
+    public void testMissingReference() {
+        final Optional<AggregatedData> result = createExpression("{errors:sum} / {requests:sum}").evaluate(
+                ImmutableMultimap.of("errors", createDatum(SUM_STATISTIC, 5.0, null, 5)));
+        Assert.assertFalse(result.isPresent());
+    }
+
+    @Test
+    public void testMissingStatistic() {
+        final Optional<AggregatedData> result = createExpression("{errors:sum} / {requests:sum}").evaluate(
+                ImmutableMultimap.of(
+                        "errors", createDatum(SUM_STATISTIC, 5.0, null, 5),
+                        "requests", createDatum(MAX_STATISTIC, 5.0, null, 5)));
+        Assert.assertFalse(result.isPresent());
+    }
+
+    @Test
+    public void testDivideByZero() {
+        final Optional<AggregatedData> result = createExpression("{errors:sum} / {requests:sum}").evaluate(
+                ImmutableMultimap.of(
+                        "errors", createDatum(SUM_STATISTIC, 5.0, null, 5),
+                        "requests", createDatum(SUM_STATISTIC, 0.0, null, 0)));
+        Assert.assertFalse(result.isPresent());
+    }
+
+    @Test
+    public void testConstant() {
+        final Optional<AggregatedData> result = createExpression("(1 + 2) * 3").evaluate(ImmutableMultimap.of());
+        Assert.assertTrue(result.isPresent());
+        Assert.assertEquals(9.0, result.get().getValue().getValue(), 0.00001);
+        Assert.assertEquals(0, result.get().getPopulationSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownStatistic() {
+        createExpression("{errors:foo}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedReference() {
+        createExpression("{errors} + 1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnbalancedParentheses() {
+        createExpression("(1 + {errors:sum}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTrailingCharacters() {
+        createExpression("1 + 2 3");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingOperand() {
+        createExpression("1 +");
+    }
+
+    private static Expression createExpression(final String expression) {
+        return new Expression.Builder()
+                .setMetric("result")
+                .setExpression(expression)
+                .build();
+    }
+
+    private static AggregatedData createDatum(
+            final Statistic statistic,
+            final double value,
+            final Unit unit,
+            final long populationSize) {
+        return new AggregatedData.Builder()
+                .setStatistic(statistic)
+                .setIsSpecified(true)
+                .setPopulationSize(populationSize)
+                .setValue(new Quantity.Builder()
+                        .setValue(value)
+                        .setUnit(unit)
+                        .build())
+                .build();
+    }
+
+    private static final StatisticFactory STATISTIC_FACTORY = new StatisticFactory();
+    private static final Statistic SUM_STATISTIC = STATISTIC_FACTORY.getStatistic("sum");
+    private static final Statistic MIN_STATISTIC = STATISTIC_FACTORY.getStatistic("min");
+    private static final Statistic MAX_STATISTIC = STATISTIC_FACTORY.getStatistic("max");
+    private static final Statistic EXPRESSION_STATISTIC = ExpressionStatistic.getInstance();
+}
@@ -273,4 +273,32 @@ public class QuantityTest {
                 .build();
         quantity1.subtract(quantity2);
     }
+
+    @Test
+    public void testDivideQuantitiesUnits() {
+        final Quantity quantity1 = new Quantity.Builder()
+                .setValue(5.0)
+                .setUnit(Unit.SECOND)
+                .build();
+        final Quantity quantity2 = new Quantity.Builder()
+                .setValue(10.0)
+                .setUnit(Unit.MILLISECOND)
+                .build();
+        final Quantity result = quantity1.divide(quantity2);
+        Assert.assertEquals(500d, result.getValue(), 0.00001);
+        Assert.assertFalse(result.getUnit().isPresent());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testDivideQuantitiesUnitsMismatch() {
+        final Quantity quantity1 = new Quantity.Builder()
+                .setValue(5.0)
+                .setUnit(Unit.SECOND)
+                .build();
+        final Quantity quantity2 = new Quantity.Builder()
+                .setValue(10.0)
+                .setUnit(Unit.BYTE)
+                .build();
+        quantity1.divide(quantity2);
+    }
 }
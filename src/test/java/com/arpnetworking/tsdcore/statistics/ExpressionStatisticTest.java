@@ -0,0 +1,41 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.tsdcore.statistics;
+
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for the <code>ExpressionStatistic</code> class.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public class ExpressionStatisticTest {
+
+    @Test
+    public void testGetName() {
+        Assert.assertThat(ExpressionStatistic.getInstance().getName(), Matchers.equalTo("expression"));
+    }
+
+    @Test
+    public void testNotRegistered() {
+        Assert.assertFalse(STATISTIC_FACTORY.tryGetStatistic("expression").isPresent());
+        Assert.assertThat(STATISTIC_FACTORY.getAllStatistics(), Matchers.not(Matchers.hasItem(ExpressionStatistic.getInstance())));
+    }
+
+    private static final StatisticFactory STATISTIC_FACTORY = new StatisticFactory();
+}
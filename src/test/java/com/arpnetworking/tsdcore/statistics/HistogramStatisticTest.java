@@ -18,11 +18,13 @@ package com.arpnetworking.tsdcore.statistics;
 import com.arpnetworking.tsdcore.model.CalculatedValue;
 import com.arpnetworking.tsdcore.model.Quantity;
 import com.arpnetworking.tsdcore.model.Unit;
+import com.arpnetworking.utility.SlabAllocator;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.Collections;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Tests the HistogramStatistic class.
@@ -131,6 +133,122 @@ public class HistogramStatisticTest {
         Assert.assertEquals(50d, histogram.getValueAtPercentile(100), 1d);
     }
 
+    @Test
+    public void offHeapHistogramMatchesOnHeap() {
+        final SlabAllocator allocator = new SlabAllocator(1024);
+        final Accumulator<HistogramStatistic.HistogramSupportingData> onHeap = HISTOGRAM_STATISTIC.createCalculator();
+        final Accumulator<HistogramStatistic.HistogramSupportingData> offHeap = HISTOGRAM_STATISTIC.createCalculator(allocator);
+        for (int x = -500; x <= 1000; x += 3) {
+            final Quantity quantity = new Quantity.Builder().setValue(x * 1.5d).build();
+            onHeap.accumulate(quantity);
+            offHeap.accumulate(quantity);
+        }
+        onHeap.accumulate(new Quantity.Builder().setValue(0d).build());
+        offHeap.accumulate(new Quantity.Builder().setValue(0d).build());
+
+        final HistogramStatistic.HistogramSnapshot expected =
+                onHeap.calculate(Collections.emptyMap()).getData().getHistogramSnapshot();
+        final HistogramStatistic.HistogramSnapshot actual =
+                offHeap.calculate(Collections.emptyMap()).getData().getHistogramSnapshot();
+        Assert.assertEquals(expected.getEntriesCount(), actual.getEntriesCount());
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            Assert.assertEquals(expected.getValue(i), actual.getValue(i), 0d);
+            Assert.assertEquals(expected.getCount(i), actual.getCount(i));
+        }
+        for (final double percentile : new double[]{0d, 1d, 25d, 50d, 90d, 99.9d, 100d}) {
+            Assert.assertEquals(
+                    expected.getValueAtPercentile(percentile),
+                    actual.getValueAtPercentile(percentile),
+                    0d);
+        }
+    }
+
+    @Test
+    public void offHeapHistogramAccumulateHistogram() {
+        final SlabAllocator allocator = new SlabAllocator(1024);
+        final Accumulator<HistogramStatistic.HistogramSupportingData> accumulator = HISTOGRAM_STATISTIC.createCalculator();
+        for (int x = 1; x <= 100; ++x) {
+            accumulator.accumulate(new Quantity.Builder().setValue((double) x).build());
+        }
+
+        final Accumulator<HistogramStatistic.HistogramSupportingData> merged = HISTOGRAM_STATISTIC.createCalculator(allocator);
+        merged.accumulate(accumulator.calculate(Collections.emptyMap()));
+        merged.accumulate(accumulator.calculate(Collections.emptyMap()));
+
+        final HistogramStatistic.HistogramSnapshot histogram =
+                merged.calculate(Collections.emptyMap()).getData().getHistogramSnapshot();
+        Assert.assertEquals(200, histogram.getEntriesCount());
+        Assert.assertEquals(100, histogram.size());
+        for (int i = 0; i < histogram.size(); ++i) {
+            Assert.assertEquals(2, histogram.getCount(i));
+        }
+    }
+
+    @Test
+    public void offHeapHistogramRelease() {
+        final SlabAllocator allocator = new SlabAllocator(1024);
+        final Accumulator<HistogramStatistic.HistogramSupportingData> accumulator = HISTOGRAM_STATISTIC.createCalculator(allocator);
+        for (int x = 1; x <= 100; ++x) {
+            accumulator.accumulate(new Quantity.Builder().setValue((double) x).build());
+        }
+        final HistogramStatistic.HistogramSnapshot histogram =
+                accumulator.calculate(Collections.emptyMap()).getData().getHistogramSnapshot();
+        final long freeBytes = allocator.getFreeBytes();
+
+        accumulator.release();
+        Assert.assertTrue(allocator.getFreeBytes() > freeBytes);
+
+        // The snapshot remains valid after the off-heap memory is released
+        Assert.assertEquals(100, histogram.getEntriesCount());
+        Assert.assertEquals(100d, histogram.getValueAtPercentile(100), 1d);
+    }
+
+    @Test
+    public void histogramBatchedPercentiles() {
+        final SlabAllocator allocator = new SlabAllocator(1024);
+        final HistogramStatistic.Histogram onHeap = new HistogramStatistic.Histogram();
+        final OffHeapHistogram offHeap = new OffHeapHistogram(allocator);
+        for (int x = 1; x <= 1000; ++x) {
+            onHeap.recordValue(x, x % 7);
+            offHeap.recordValue(x, x % 7);
+        }
+        final double[] percentiles = new double[]{0d, 10d, 50d, 50d, 99d, 99.99d, 100d};
+        for (final HistogramStatistic.HistogramBackend histogram : new HistogramStatistic.HistogramBackend[]{onHeap, offHeap}) {
+            final double[] values = new double[percentiles.length];
+            histogram.getValuesAtPercentiles(percentiles, values);
+            for (int i = 0; i < percentiles.length; ++i) {
+                Assert.assertEquals(histogram.getValueAtPercentile(percentiles[i]), values[i], 0d);
+            }
+        }
+        offHeap.release();
+    }
+
+    @Test
+    public void histogramAccumulateRawValues() {
+        final Accumulator<HistogramStatistic.HistogramSupportingData> accumulator = HISTOGRAM_STATISTIC.createCalculator();
+        final double[] values = new double[100];
+        for (int x = 1; x <= 100; ++x) {
+            values[x - 1] = x;
+        }
+        accumulator.accumulate(values, Optional.of(Unit.SECOND));
+        accumulator.accumulate(new Quantity.Builder().setValue(50d).setUnit(Unit.SECOND).build());
+
+        final HistogramStatistic.HistogramSupportingData supportingData =
+                accumulator.calculate(Collections.emptyMap()).getData();
+        Assert.assertEquals(Optional.of(Unit.SECOND), supportingData.getUnit());
+        Assert.assertEquals(101, supportingData.getHistogramSnapshot().getEntriesCount());
+        Assert.assertEquals(100, supportingData.getHistogramSnapshot().size());
+        Assert.assertEquals(100d, supportingData.getHistogramSnapshot().getValueAtPercentile(100), 1d);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void histogramAccumulateRawValuesInvalidConversion() {
+        final Accumulator<HistogramStatistic.HistogramSupportingData> accumulator = HISTOGRAM_STATISTIC.createCalculator();
+        accumulator.accumulate(new double[]{1d}, Optional.empty());
+        accumulator.accumulate(new double[]{1d}, Optional.of(Unit.SECOND));
+    }
+
     private static final StatisticFactory STATISTIC_FACTORY = new StatisticFactory();
     private static final HistogramStatistic HISTOGRAM_STATISTIC = (HistogramStatistic) STATISTIC_FACTORY.getStatistic("histogram");
 }
@@ -21,6 +21,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.Collections;
+import java.util.Optional;
 
 /**
  * Tests the TPStatistic class.
@@ -56,6 +57,15 @@ public class MaxStatisticTest {
         Assert.assertEquals(calculated.getValue(), new Quantity.Builder().setValue(18.0).build());
     }
 
+    @Test
+    public void testAccumulatorRawValues() {
+        final Accumulator<Void> accumulator = (Accumulator<Void>) MAX_STATISTIC.createCalculator();
+        accumulator.accumulate(new double[]{12d, 18d, 5d}, Optional.empty());
+        accumulator.accumulate(new double[]{7d}, Optional.empty());
+        final CalculatedValue<?> calculated = accumulator.calculate(Collections.emptyMap());
+        Assert.assertEquals(calculated.getValue(), new Quantity.Builder().setValue(18.0).build());
+    }
+
     private static final StatisticFactory STATISTIC_FACTORY = new StatisticFactory();
     private static final MaxStatistic MAX_STATISTIC = (MaxStatistic) STATISTIC_FACTORY.getStatistic("max");
 }
@@ -21,6 +21,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.Collections;
+import java.util.Optional;
 
 /**
  * Tests the MinStatistic class.
@@ -56,6 +57,15 @@ public class MinStatisticTest {
         Assert.assertEquals(calculated.getValue(), new Quantity.Builder().setValue(5.0).build());
     }
 
+    @Test
+    public void testAccumulatorRawValues() {
+        final Accumulator<Void> accumulator = (Accumulator<Void>) MIN_STATISTIC.createCalculator();
+        accumulator.accumulate(new double[]{12d, 18d, 5d}, Optional.empty());
+        accumulator.accumulate(new double[]{7d}, Optional.empty());
+        final CalculatedValue<?> calculated = accumulator.calculate(Collections.emptyMap());
+        Assert.assertEquals(calculated.getValue(), new Quantity.Builder().setValue(5.0).build());
+    }
+
     private static final StatisticFactory STATISTIC_FACTORY = new StatisticFactory();
     private static final MinStatistic MIN_STATISTIC = (MinStatistic) STATISTIC_FACTORY.getStatistic("min");
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.tsdcore.statistics;
+
+import com.arpnetworking.tsdcore.model.CalculatedValue;
+import com.arpnetworking.tsdcore.model.Quantity;
+import com.arpnetworking.tsdcore.model.Unit;
+import com.google.common.collect.ImmutableMap;
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+
+/**
+ * Tests for the <code>RateStatistic</code> class.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public class RateStatisticTest {
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void testGetName() {
+        Assert.assertThat(RATE_STATISTIC.getName(), Matchers.equalTo("rate"));
+        Assert.assertThat(RATE_PER_MINUTE_STATISTIC.getName(), Matchers.equalTo("rate_per_minute"));
+    }
+
+    @Test
+    public void testDependencies() {
+        Assert.assertThat(RATE_STATISTIC.getDependencies(), Matchers.contains(SUM_STATISTIC));
+    }
+
+    @Test
+    public void testCalculator() {
+        Mockito.doReturn(
+                new CalculatedValue.Builder<Void>()
+                        .setValue(new Quantity.Builder().setValue(600.0).setUnit(Unit.BYTE).build())
+                        .build())
+                .when(_sumCalculator).calculate(Mockito.any());
+
+        final CalculatedValue<?> perSecond = RATE_STATISTIC.createCalculator()
+                .calculate(ImmutableMap.of(
+                        SUM_STATISTIC, _sumCalculator,
+                        PeriodStatistic.KEY, new PeriodStatistic(Duration.ofMinutes(5)).createCalculator()));
+        Assert.assertEquals(new Quantity.Builder().setValue(2.0).build(), perSecond.getValue());
+
+        final CalculatedValue<?> perMinute = RATE_PER_MINUTE_STATISTIC.createCalculator()
+                .calculate(ImmutableMap.of(
+                        SUM_STATISTIC, _sumCalculator,
+                        PeriodStatistic.KEY, new PeriodStatistic(Duration.ofSeconds(30)).createCalculator()));
+        Assert.assertEquals(new Quantity.Builder().setValue(1200.0).build(), perMinute.getValue());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCalculatorRequiresPeriod() {
+        Mockito.doReturn(
+                new CalculatedValue.Builder<Void>()
+                        .setValue(new Quantity.Builder().setValue(600.0).build())
+                        .build())
+                .when(_sumCalculator).calculate(Mockito.any());
+        RATE_STATISTIC.createCalculator().calculate(ImmutableMap.of(SUM_STATISTIC, _sumCalculator));
+    }
+
+    @Test
+    public void testPeriodNotRegistered() {
+        Assert.assertFalse(STATISTIC_FACTORY.tryGetStatistic("period").isPresent());
+    }
+
+    @Mock(name = "SumCalculator")
+    private Calculator<Void> _sumCalculator;
+
+    private static final StatisticFactory STATISTIC_FACTORY = new StatisticFactory();
+    private static final Statistic RATE_STATISTIC = STATISTIC_FACTORY.getStatistic("rate");
+    private static final Statistic RATE_PER_MINUTE_STATISTIC = STATISTIC_FACTORY.getStatistic("rate_per_minute");
+    private static final Statistic SUM_STATISTIC = STATISTIC_FACTORY.getStatistic("sum");
+}
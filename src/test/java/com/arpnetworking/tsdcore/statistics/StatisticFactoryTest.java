@@ -45,13 +45,17 @@ public class StatisticFactoryTest {
                 a(l("mean"), MeanStatistic.class),
                 a(l("sum"), SumStatistic.class),
                 a(l("count", "n"), CountStatistic.class),
+                a(l("rate", "rate_per_second"), RatePerSecondStatistic.class),
+                a(l("rate_per_minute"), RatePerMinuteStatistic.class),
                 a(l("p0", "tp0", "min"), MinStatistic.class),
                 a(l("p50", "tp50", "median"), MedianStatistic.class),
                 a(l("p75", "tp75"), TP75Statistic.class),
                 a(l("p90", "tp90"), TP90Statistic.class),
                 a(l("p95", "tp95"), TP95Statistic.class),
                 a(l("p99", "tp99"), TP99Statistic.class),
-                a(l("p99.9", "tp99.9", "p99p9", "tp99p9"), TP99p9Statistic.class),
+                a(l("p99.9", "tp99.9", "p99p9", "tp99p9", "tp99.90"), TP99p9Statistic.class),
+                a(l("p65", "tp65", "tp65.0"), PercentileStatistic.class),
+                a(l("p99.99", "tp99.99", "p99p99", "tp99p99"), PercentileStatistic.class),
                 a(l("p100", "tp100", "max"), MaxStatistic.class)
         );
     }
@@ -74,6 +78,9 @@ public class StatisticFactoryTest {
         final StatisticFactory factory = new StatisticFactory();
         final Optional<Statistic> statistic = factory.tryGetStatistic("notARealStatistic");
         Assert.assertFalse(statistic.isPresent());
+        Assert.assertFalse(factory.tryGetStatistic("tp100.1").isPresent());
+        Assert.assertFalse(factory.tryGetStatistic("tp99.99999").isPresent());
+        Assert.assertFalse(factory.tryGetStatistic("tp").isPresent());
     }
 
 
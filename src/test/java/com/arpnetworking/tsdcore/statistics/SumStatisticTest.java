@@ -17,11 +17,13 @@ package com.arpnetworking.tsdcore.statistics;
 
 import com.arpnetworking.tsdcore.model.CalculatedValue;
 import com.arpnetworking.tsdcore.model.Quantity;
+import com.arpnetworking.tsdcore.model.Unit;
 import org.hamcrest.Matchers;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.Collections;
+import java.util.Optional;
 
 /**
  * Tests for the SumStatistic class.
@@ -58,6 +60,23 @@ public class SumStatisticTest {
         Assert.assertEquals(calculated.getValue(), new Quantity.Builder().setValue(35.0).build());
     }
 
+    @Test
+    public void testAccumulatorRawValues() {
+        final Accumulator<Void> accumulator = (Accumulator<Void>) SUM_STATISTIC.createCalculator();
+        accumulator.accumulate(new Quantity.Builder().setValue(12d).setUnit(Unit.SECOND).build());
+        accumulator.accumulate(new double[]{18d, 5d}, Optional.of(Unit.SECOND));
+        accumulator.accumulate(new double[]{}, Optional.empty());
+        final CalculatedValue<?> calculated = accumulator.calculate(Collections.emptyMap());
+        Assert.assertEquals(calculated.getValue(), new Quantity.Builder().setValue(35.0).setUnit(Unit.SECOND).build());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAccumulatorRawValuesUnitMismatch() {
+        final Accumulator<Void> accumulator = (Accumulator<Void>) SUM_STATISTIC.createCalculator();
+        accumulator.accumulate(new double[]{18d, 5d}, Optional.of(Unit.SECOND));
+        accumulator.accumulate(new double[]{1d}, Optional.of(Unit.BYTE));
+    }
+
     private static final StatisticFactory STATISTIC_FACTORY = new StatisticFactory();
     private static final SumStatistic SUM_STATISTIC = (SumStatistic) STATISTIC_FACTORY.getStatistic("sum");
 }
@@ -17,10 +17,12 @@ package com.arpnetworking.tsdcore.statistics;
 
 import com.arpnetworking.tsdcore.model.CalculatedValue;
 import com.arpnetworking.tsdcore.model.Quantity;
+import com.google.common.collect.Maps;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.Collections;
+import java.util.Map;
 
 /**
  * Tests the TPStatistic class.
@@ -138,6 +140,55 @@ public class TPStatisticTest {
         Assert.assertTrue(areClose(new Quantity.Builder().setValue(100.0).build(), calculated.getValue()));
     }
 
+    @Test
+    public void testSynthesizedPercentile() {
+        final Statistic statistic = STATISTIC_FACTORY.getStatistic("tp99.99");
+        Assert.assertEquals("tp99.99", statistic.getName());
+        Assert.assertSame(statistic, STATISTIC_FACTORY.getStatistic("p99p99"));
+        Assert.assertNotEquals(statistic, STATISTIC_FACTORY.getStatistic("tp99.98"));
+        Assert.assertEquals(statistic.getDependencies(), TP99_STATISTIC.getDependencies());
+
+        final Accumulator<?> accumulator = (Accumulator<?>) HISTOGRAM_STATISTIC.createCalculator();
+        for (int x = 1; x <= 100000; ++x) {
+            accumulator.accumulate(new Quantity.Builder().setValue((double) x).build());
+        }
+        final CalculatedValue<?> calculated = statistic.createCalculator().calculate(
+                Collections.singletonMap(HISTOGRAM_STATISTIC, accumulator));
+        Assert.assertTrue(areClose(new Quantity.Builder().setValue(99990.0).build(), calculated.getValue()));
+    }
+
+    @Test
+    public void testBatchedPercentiles() {
+        final Accumulator<?> accumulator = (Accumulator<?>) HISTOGRAM_STATISTIC.createCalculator();
+        for (int x = 1; x <= 10000; ++x) {
+            accumulator.accumulate(new Quantity.Builder().setValue((double) x).build());
+        }
+        final Statistic tp65Statistic = STATISTIC_FACTORY.getStatistic("tp65");
+        final Map<Statistic, Calculator<?>> dependencies = Maps.newHashMap();
+        dependencies.put(HISTOGRAM_STATISTIC, accumulator);
+        dependencies.put(TP75_STATISTIC, TP75_STATISTIC.createCalculator());
+        dependencies.put(TP99_STATISTIC, TP99_STATISTIC.createCalculator());
+        dependencies.put(tp65Statistic, tp65Statistic.createCalculator());
+
+        for (final Map.Entry<Statistic, Calculator<?>> entry : dependencies.entrySet()) {
+            if (entry.getKey() instanceof TPStatistic) {
+                final double percentile = ((TPStatistic) entry.getKey()).getPercentile();
+                final CalculatedValue<?> calculated = entry.getValue().calculate(dependencies);
+                Assert.assertTrue(areClose(
+                        new Quantity.Builder().setValue(percentile * 100).build(),
+                        calculated.getValue()));
+            }
+        }
+
+        // Accumulating another sample invalidates the batched percentiles
+        for (int x = 1; x <= 10000; ++x) {
+            accumulator.accumulate(new Quantity.Builder().setValue(20000.0).build());
+        }
+        Assert.assertTrue(areClose(
+                new Quantity.Builder().setValue(20000.0).build(),
+                TP75_STATISTIC.createCalculator().calculate(dependencies).getValue()));
+    }
+
     private boolean areClose(final Quantity expected, final Quantity actual) {
         final double diff = Math.abs(expected.getValue() - actual.getValue());
         return Math.abs(diff / expected.getValue()) <= 0.01;
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 Inscope Metrics, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.utility;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Tests for the <code>SlabAllocator</code> class.
+ *
+ * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
+ */
+public class SlabAllocatorTest {
+
+    @Test
+    public void testAllocateRoundsUp() {
+        final SlabAllocator allocator = new SlabAllocator(4096);
+        Assert.assertEquals(64, allocator.allocate(1).capacity());
+        Assert.assertEquals(128, allocator.allocate(100).capacity());
+        Assert.assertEquals(256, allocator.allocate(256).capacity());
+        Assert.assertEquals(4096, allocator.getAllocatedBytes());
+    }
+
+    @Test
+    public void testChunksDoNotOverlap() {
+        final SlabAllocator allocator = new SlabAllocator(4096);
+        final ByteBuffer first = allocator.allocate(64);
+        final ByteBuffer second = allocator.allocate(64);
+        for (int i = 0; i < 64; ++i) {
+            first.put(i, (byte) 1);
+            second.put(i, (byte) 2);
+        }
+        for (int i = 0; i < 64; ++i) {
+            Assert.assertEquals(1, first.get(i));
+            Assert.assertEquals(2, second.get(i));
+        }
+    }
+
+    @Test
+    public void testFreeAndReuse() {
+        final SlabAllocator allocator = new SlabAllocator(4096);
+        final ByteBuffer chunk = allocator.allocate(512);
+        chunk.position(10);
+        allocator.free(chunk);
+        Assert.assertEquals(512, allocator.getFreeBytes());
+
+        final ByteBuffer reused = allocator.allocate(300);
+        Assert.assertSame(chunk, reused);
+        Assert.assertEquals(0, reused.position());
+        Assert.assertEquals(0, allocator.getFreeBytes());
+        Assert.assertEquals(4096, allocator.getAllocatedBytes());
+    }
+
+    @Test
+    public void testNewSlab() {
+        final SlabAllocator allocator = new SlabAllocator(1024);
+        allocator.allocate(512);
+        allocator.allocate(256);
+        allocator.allocate(512);
+        Assert.assertEquals(2048, allocator.getAllocatedBytes());
+        // The unused tail of the first slab is available for reuse
+        Assert.assertEquals(256, allocator.getFreeBytes());
+        Assert.assertEquals(256, allocator.allocate(256).capacity());
+        Assert.assertEquals(0, allocator.getFreeBytes());
+    }
+
+    @Test
+    public void testLargeChunk() {
+        final SlabAllocator allocator = new SlabAllocator(1024);
+        final ByteBuffer chunk = allocator.allocate(3000);
+        Assert.assertEquals(4096, chunk.capacity());
+        Assert.assertEquals(4096, allocator.getAllocatedBytes());
+        allocator.free(chunk);
+        Assert.assertSame(chunk, allocator.allocate(4000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooLarge() {
+        new SlabAllocator(1024).allocate(Integer.MAX_VALUE);
+    }
+}